@@ -98,6 +98,10 @@ public class Globals {
      * Maximum number of back-step operations to buffer
      */
     public static final int maximumBacksteps = getBackstepLimit();
+    /**
+     * Number of instructions between time-travel checkpoints
+     */
+    public static final int checkpointInterval = getCheckpointInterval();
     /**
      * Copyright years
      */
@@ -173,6 +177,11 @@ public class Globals {
         return getIntegerProperty(configPropertiesFile, "BackstepLimit", 1000);
     }
 
+    // Read time-travel checkpoint interval (in instructions) from properties file.
+    private static int getCheckpointInterval() {
+        return getIntegerProperty(configPropertiesFile, "CheckpointInterval", 100000);
+    }
+
     // Read ASCII default display character for non-printing characters, from properties file.
     public static String getAsciiNonPrint() {
         String anp = getPropertyEntry(configPropertiesFile, "AsciiNonPrint");
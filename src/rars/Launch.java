@@ -1,24 +1,39 @@
 package rars;
 
 import rars.api.Program;
+import rars.assembler.ElfLoader;
 import rars.riscv.InstructionSet;
 import rars.riscv.dump.DumpFormat;
 import rars.riscv.dump.DumpFormatLoader;
 import rars.riscv.hardware.*;
+import rars.simulator.BranchPredictor;
+import rars.simulator.BranchUnit;
+import rars.simulator.CacheHierarchy;
+import rars.simulator.Harts;
+import rars.simulator.PipelineModel;
+import rars.simulator.Profiler;
 import rars.simulator.Simulator;
+import rars.simulator.TraceRecorder;
+import rars.simulator.VirtualClock;
+import rars.tools.Framebuffer;
 import rars.util.Binary;
 import rars.util.FilenameFinder;
 import rars.util.MemoryDump;
+import rars.util.SystemIO;
 import rars.venus.VenusUI;
 import rars.api.Options;
 
 import javax.swing.*;
 import java.io.File;
 import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.BufferedOutputStream;
+import java.io.OutputStream;
 import java.io.PrintStream;
 import java.util.ArrayList;
 import java.util.Iterator;
+import java.util.zip.GZIPOutputStream;
 
 /**
  * Launch the application
@@ -32,12 +47,21 @@ public class Launch {
     /**
      * Main takes a number of command line arguments.<br>
      * Usage:  rars  [options] filename<br>
+     * The file may also be a statically linked RISC-V ELF executable, which is loaded<br>
+     * rather than assembled; an ELF64 file turns on rv64, and one using compressed instructions rvc.<br>
      * Valid options (not case sensitive, separate by spaces) are:<br>
      * a  -- assemble only, do not simulate<br>
      * ad  -- both a and d<br>
      * ae<n>  -- terminate RARS with integer exit code <n> if an assemble error occurs.<br>
      * ascii  -- display memory or register contents interpreted as ASCII
      * b  -- brief - do not display register/memory address along with contents<br>
+     * bitmap  -- save the bitmap display as a PNG image.  Option has 2 arguments, e.g.<br>
+     * <tt>bitmap 512x256 frame.png</tt> or <tt>bitmap 64x64@0x10040000 frame%d.png</tt>.  With %d in the<br>
+     * file name, a numbered frame is also saved each time the program stops at a breakpoint.<br>
+     * bp  -- model branch prediction and display its accuracy.  Option has 1 argument, the conditional<br>
+     * branch predictor, e.g. <tt>bp gshare:4096:12</tt>.<br>
+     * cache  -- model instruction and data caches and display their hit rates.  Option has 1 argument,<br>
+     * e.g. <tt>cache default</tt> or <tt>cache l1i=16K:64:4,l1d=16K:64:4:plru,l2=256K:64:8</tt>.<br>
      * d  -- print debugging statements<br>
      * da  -- both a and d<br>
      * dec  -- display memory or register contents in decimal.<br>
@@ -46,8 +70,12 @@ public class Launch {
      * an address range (see <i>m-n</i> below).  Current supported <br>
      * segments are <tt>.text</tt> and <tt>.data</tt>.  Current supported dump formats <br>
      * are <tt>Binary</tt>, <tt>HexText</tt>, <tt>BinaryText</tt>.<br>
+     * files  -- set the maximum number of files the program can have open at once, standard<br>
+     * input and output included.  Option has 1 argument, e.g. <tt>files 100</tt>.<br>
      * g  -- force GUI mode
      * h  -- display help.  Use by itself and with no filename</br>
+     * harts  -- run the program on several harts sharing memory, taking turns, and display the instructions<br>
+     * each executed.  Option has 1 argument, e.g. <tt>harts 4</tt> or <tt>harts 4,quantum=100,random=7</tt>.<br>
      * hex  -- display memory or register contents in hexadecimal (default)<br>
      * ic  -- display count of basic instructions 'executed'");
      * mc  -- set memory configuration.  Option has 1 argument, e.g.<br>
@@ -59,9 +87,24 @@ public class Launch {
      * nc  -- do not display copyright notice (for cleaner redirected/piped output).</br>
      * np  -- No Pseudo-instructions allowed ("ne" will work also).<br>
      * p  -- Project mode - assemble all files in the same directory as given file.<br>
+     * pipeline  -- model the timing of a 5-stage in-order pipeline and display cycles and stalls.  Option<br>
+     * has 1 argument, e.g. <tt>pipeline default</tt> or <tt>pipeline noforward,branch=3,div=20</tt>.<br>
+     * prof  -- profile execution.  Option has 1 argument, e.g. <tt>prof &lt;file&gt;</tt>.  A summary<br>
+     * of the busiest functions, lines and loops is displayed and the call stacks are written to<br>
+     * the file in collapsed format for flame graphs.<br>
      * se<n>  -- terminate RARS with integer exit code <n> if a simulation (run) error occurs.<br>
+     * timer  -- count time in executed instructions instead of reading the host clock, and raise<br>
+     * timer interrupts from the memory-mapped timecmp.  Option has 1 argument, e.g. <tt>timer 1000</tt><br>
+     * (instructions per tick) or <tt>timer 10mhz</tt> (ticks of a millisecond).<br>
+     * trace  -- record a binary trace of every executed instruction.  Option has 1 argument, e.g.<br>
+     * <tt>trace &lt;file&gt;</tt>.  The file is compressed if its name ends in .gz.<br>
+     * tracetail  -- like trace, but keep only the last instructions executed.  Option has 2 arguments,<br>
+     * e.g. <tt>tracetail &lt;n&gt; &lt;file&gt;</tt>.<br>
      * sm  -- Start execution at Main - Execution will start at program statement globally labeled main.<br>
+     * sparsedump  -- like dump, but goes on past memory never written rather than ending there.<br>
+     * Binary dumps leave it as a hole in the file, other formats skip it or write zeros.<br>
      * smc  -- Self Modifying Code - Program can write and branch to either text or data segment<br>
+     * rvc  -- execute compressed (16-bit) instructions, which may start at any halfword address, and assemble c.* mnemonics<br>
      * we  -- assembler Warnings will be considered Errors<br>
      * <n>  -- where <n> is an integer maximum count of steps to simulate.<br>
      * If 0, negative or not specified, there is no maximum.<br>
@@ -82,10 +125,22 @@ public class Launch {
     private boolean gui;
     private boolean simulate;
     private boolean rv64;
+    private boolean rvc;
     private int displayFormat;
     private boolean verbose;  // display register name or address along with contents
     private boolean assembleProject; // assemble only the given file or all files in its directory
     private boolean countInstructions; // Whether to count and report number of instructions executed
+    private String profileFile; // where to write collapsed call stacks when profiling, null if not profiling
+    private BranchUnit branchUnit; // branch prediction to model while running, null if not modelling it
+    private CacheHierarchy caches; // caches to model while running, null if not modelling caches
+    private PipelineModel pipeline; // pipeline timing to model while running, null if not modelling it
+    private VirtualClock clock; // virtual time for the time CSR and timer interrupts, null for the host clock
+    private Harts harts; // harts to run the program on, null for a single hart
+    private String traceFile; // where to write the execution trace, null if not tracing
+    private Framebuffer framebuffer; // bitmap display to save as PNG, null if not saving one
+    private String frameFile; // where to save the bitmap display, %d numbering frames
+    private int frames; // number of frames saved so far
+    private int traceTail; // number of instructions to keep when tracing only the end of execution, 0 to keep all
     private static final String rangeSeparator = "-";
     private static final int memoryWordsPerLine = 4; // display 4 memory words, tab separated, per line
     private static final int DECIMAL = 0; // memory and register display format
@@ -96,7 +151,7 @@ public class Launch {
     private ArrayList<String> filenameList;
     private int instructionCount;
     private PrintStream out; // stream for display of command line output
-    private ArrayList<String[]> dumpTriples = null; // each element holds 3 arguments for dump option
+    private ArrayList<String[]> dumpTriples = null; // each element holds 3 arguments for dump option, and whether sparse
     private ArrayList<String> programArgumentList; // optional program args for program (becomes argc, argv)
     private int assembleErrorExitCode;  // RARS command exit code to return if assemble error occurs
     private int simulateErrorExitCode;// RARS command exit code to return if simulation error occurs
@@ -178,13 +233,21 @@ public class Launch {
                 out.println("Error while attempting to save dump, format " + triple[1] + " was not found!");
                 continue;
             }
+            boolean sparse = triple[3] != null;
             try {
-                int highAddress = program.getMemory().getAddressOfFirstNull(segInfo[0], segInfo[1]) - Memory.WORD_LENGTH_BYTES;
+                int highAddress;
+                if (sparse) {
+                    highAddress = segInfo[1] - Memory.WORD_LENGTH_BYTES;
+                    if (program.getMemory().getAddressOfNextWord(segInfo[0], highAddress) == -1)
+                        highAddress = segInfo[0] - Memory.WORD_LENGTH_BYTES;
+                } else {
+                    highAddress = program.getMemory().getAddressOfFirstNull(segInfo[0], segInfo[1]) - Memory.WORD_LENGTH_BYTES;
+                }
                 if (highAddress < segInfo[0]) {
                     out.println("This segment has not been written to, there is nothing to dump.");
                     continue;
                 }
-                format.dumpMemoryRange(file, segInfo[0], highAddress, program.getMemory());
+                format.dumpMemoryRange(file, segInfo[0], highAddress, program.getMemory(), sparse);
             } catch (FileNotFoundException e) {
                 out.println("Error while attempting to save dump, file " + file + " was not found!");
             } catch (AddressErrorException e) {
@@ -270,14 +333,15 @@ public class Launch {
                 displayVersion();
                 continue;
             }
-            if (args[i].toLowerCase().equals("dump")) {
+            if (args[i].toLowerCase().equals("dump") || args[i].toLowerCase().equals("sparsedump")) {
                 if (args.length <= (i + 3)) {
                     out.println("Dump command line argument requires a segment, format and file name.");
                     argsOK = false;
                 } else {
                     if (dumpTriples == null)
                         dumpTriples = new ArrayList<>();
-                    dumpTriples.add(new String[]{args[++i], args[++i], args[++i]});
+                    String sparse = args[i].toLowerCase().equals("sparsedump") ? "sparse" : null;
+                    dumpTriples.add(new String[]{args[++i], args[++i], args[++i], sparse});
                     //simulate = false;
                 }
                 continue;
@@ -371,10 +435,151 @@ public class Launch {
                 rv64 = true;
                 continue;
             }
+            if (args[i].toLowerCase().equals("rvc")) {
+                rvc = true;
+                continue;
+            }
             if (args[i].toLowerCase().equals("ic")) { // added 19-Jul-2012 DPS
                 countInstructions = true;
                 continue;
             }
+            if (args[i].toLowerCase().equals("files")) {
+                if (args.length <= (i + 1)) {
+                    out.println("Files command line argument requires a number of files.");
+                    argsOK = false;
+                    continue;
+                }
+                try {
+                    SystemIO.setMaxFiles(Integer.parseInt(args[++i]));
+                } catch (IllegalArgumentException e) {
+                    out.println("Invalid number of files " + args[i] + ": " + e.getMessage());
+                    argsOK = false;
+                }
+                continue;
+            }
+            if (args[i].toLowerCase().equals("prof")) {
+                if (args.length <= (i + 1)) {
+                    out.println("Profile command line argument requires a file name.");
+                    argsOK = false;
+                } else {
+                    profileFile = args[++i];
+                }
+                continue;
+            }
+            if (args[i].toLowerCase().equals("bp")) {
+                if (args.length <= (i + 1)) {
+                    out.println("Bp command line argument requires a branch predictor.");
+                    argsOK = false;
+                    continue;
+                }
+                try {
+                    branchUnit = new BranchUnit(BranchPredictor.parse(args[++i]));
+                } catch (IllegalArgumentException e) {
+                    out.println("Invalid branch predictor " + args[i] + ": " + e.getMessage());
+                    argsOK = false;
+                }
+                continue;
+            }
+            if (args[i].toLowerCase().equals("cache")) {
+                if (args.length <= (i + 1)) {
+                    out.println("Cache command line argument requires a cache specification.");
+                    argsOK = false;
+                    continue;
+                }
+                try {
+                    caches = CacheHierarchy.parse(args[++i]);
+                } catch (IllegalArgumentException e) {
+                    out.println("Invalid cache specification " + args[i] + ": " + e.getMessage());
+                    argsOK = false;
+                }
+                continue;
+            }
+            if (args[i].toLowerCase().equals("pipeline")) {
+                if (args.length <= (i + 1)) {
+                    out.println("Pipeline command line argument requires a timing specification.");
+                    argsOK = false;
+                    continue;
+                }
+                try {
+                    pipeline = PipelineModel.parse(args[++i]);
+                } catch (IllegalArgumentException e) {
+                    out.println("Invalid pipeline specification " + args[i] + ": " + e.getMessage());
+                    argsOK = false;
+                }
+                continue;
+            }
+            if (args[i].toLowerCase().equals("harts")) {
+                if (args.length <= (i + 1)) {
+                    out.println("Harts command line argument requires a number of harts.");
+                    argsOK = false;
+                    continue;
+                }
+                try {
+                    harts = Harts.parse(args[++i]);
+                } catch (IllegalArgumentException e) {
+                    out.println("Invalid harts specification " + args[i] + ": " + e.getMessage());
+                    argsOK = false;
+                }
+                continue;
+            }
+            if (args[i].toLowerCase().equals("timer")) {
+                if (args.length <= (i + 1)) {
+                    out.println("Timer command line argument requires a clock rate.");
+                    argsOK = false;
+                    continue;
+                }
+                try {
+                    clock = VirtualClock.parse(args[++i]);
+                } catch (IllegalArgumentException e) {
+                    out.println("Invalid clock rate " + args[i] + ": " + e.getMessage());
+                    argsOK = false;
+                }
+                continue;
+            }
+            if (args[i].toLowerCase().equals("bitmap")) {
+                if (args.length <= (i + 2)) {
+                    out.println("Bitmap command line argument requires a display size and a file name.");
+                    argsOK = false;
+                    i = args.length;
+                    continue;
+                }
+                try {
+                    framebuffer = Framebuffer.parse(args[++i]);
+                } catch (IllegalArgumentException e) {
+                    out.println("Invalid bitmap display " + args[i] + ": " + e.getMessage());
+                    argsOK = false;
+                }
+                frameFile = args[++i];
+                continue;
+            }
+            if (args[i].toLowerCase().equals("trace")) {
+                if (args.length <= (i + 1)) {
+                    out.println("Trace command line argument requires a file name.");
+                    argsOK = false;
+                } else {
+                    traceFile = args[++i];
+                    traceTail = 0;
+                }
+                continue;
+            }
+            if (args[i].toLowerCase().equals("tracetail")) {
+                if (args.length <= (i + 2)) {
+                    out.println("Tracetail command line argument requires a count and a file name.");
+                    argsOK = false;
+                    continue;
+                }
+                try {
+                    traceTail = Integer.decode(args[++i]);
+                } catch (NumberFormatException nfe) {
+                    traceTail = 0;
+                }
+                if (traceTail <= 0 || traceTail > Integer.MAX_VALUE / TraceRecorder.RECORD_BYTES) {
+                    out.println("Invalid tracetail count: " + args[i]);
+                    argsOK = false;
+                }
+                traceFile = args[++i];
+                continue;
+            }
             
             if (new File(args[i]).exists()) {  // is it a file name?
                 filenameList.add(args[i]);
@@ -433,10 +638,33 @@ public class Launch {
             return null;
         }
 
+        File elfFile = new File(filenameList.get(0));
+        int elfClass = (filenameList.size() == 1) ? ElfLoader.getElfClass(elfFile) : 0;
+        if (elfClass == 64) {
+            rv64 = true;
+        }
+        if (elfClass != 0 && ElfLoader.usesCompressed(elfFile)) {
+            rvc = true;
+        }
         Globals.getSettings().setBooleanSettingNonPersistent(Settings.Bool.RV64_ENABLED,rv64);
         InstructionSet.rv64 = rv64;
+        Globals.getSettings().setBooleanSettingNonPersistent(Settings.Bool.RVC_ENABLED,rvc);
+        InstructionSet.rvc = rvc;
         Globals.instructionSet.populate();
 
+        if (elfClass != 0) {
+            Program program = new Program(options);
+            try {
+                program.loadElf(elfFile.getPath());
+            } catch (AssemblyException e) {
+                Globals.exitCode = assembleErrorExitCode;
+                out.println(e.errors().generateErrorAndWarningReport());
+                out.println("Processing terminated due to errors.");
+                return null;
+            }
+            return simulateProgram(program);
+        }
+
         File mainFile = new File(filenameList.get(0)).getAbsoluteFile();// First file is "main" file
         ArrayList<String> filesToAssemble;
         if (assembleProject) {
@@ -476,12 +704,42 @@ public class Launch {
             out.println("Processing terminated due to errors.");
             return null;
         }
+        return simulateProgram(program);
+    }
+
+    private Program simulateProgram(Program program) {
         // Setup for program simulation even if just assembling to prepare memory dumps
         program.setup(programArgumentList,null);
         if (simulate) {
             if (Globals.debug) {
                 out.println("--------  SIMULATION BEGINS  -----------");
             }
+            if (profileFile != null) {
+                Profiler.setActive(new Profiler());
+            }
+            if (caches != null) {
+                CacheHierarchy.setActive(caches);
+            }
+            if (branchUnit != null) {
+                BranchUnit.setActive(branchUnit);
+            }
+            if (pipeline != null) {
+                PipelineModel.setActive(pipeline);
+            }
+            if (clock != null) {
+                VirtualClock.setActive(clock);
+            }
+            if (harts != null) {
+                Harts.setActive(harts);
+            }
+            if (traceFile != null) {
+                try {
+                    TraceRecorder.setActive(traceTail > 0 ? TraceRecorder.toRing(traceTail)
+                            : TraceRecorder.toFile(new File(traceFile)));
+                } catch (IOException e) {
+                    out.println("Error while attempting to create trace, file " + traceFile + "!  " + e.getMessage());
+                }
+            }
             try {
                 while (true) {
                     Simulator.Reason done = program.simulate();
@@ -498,6 +756,7 @@ public class Launch {
                     }
                     assert done == Simulator.Reason.BREAKPOINT : "Internal error: All cases other than breakpoints should be handled already";
                     displayAllPostMortem(program); // print registers if we hit a breakpoint, then continue
+                    saveFrame(program, false);
                 }
 
             } catch (SimulationException e) {
@@ -506,6 +765,13 @@ public class Launch {
                 out.println("Simulation terminated due to errors.");
             }
             displayAllPostMortem(program);
+            displayProfile();
+            displayCaches();
+            displayBranchPrediction();
+            displayPipeline();
+            displayHarts();
+            saveTrace();
+            saveFrame(program, true);
         }
         if (Globals.debug) {
             out.println("\n--------  ALL PROCESSING COMPLETE  -----------");
@@ -549,6 +815,115 @@ public class Launch {
     }
 
 
+    //////////////////////////////////////////////////////////////////////
+    // Displays the profile summary and writes the collapsed call stacks, if profiling
+
+    private void displayProfile() {
+        Profiler profiler = Profiler.getActive();
+        if (profileFile == null || profiler == null) {
+            return;
+        }
+        Profiler.setActive(null);
+        out.println();
+        profiler.writeReport(out, 10);
+        try (PrintStream stacks = new PrintStream(new FileOutputStream(profileFile), false, "UTF-8")) {
+            profiler.writeCollapsedStacks(stacks);
+        } catch (IOException e) {
+            out.println("Error while attempting to save profile, file " + profileFile + "!  " + e.getMessage());
+        }
+    }
+
+    //////////////////////////////////////////////////////////////////////
+    // Displays the cache summary, if modelling caches
+
+    private void displayCaches() {
+        if (caches == null) {
+            return;
+        }
+        caches.detach();
+        out.println();
+        caches.writeReport(out);
+    }
+
+    //////////////////////////////////////////////////////////////////////
+    // Displays branch prediction accuracy, if modelling it
+
+    private void displayBranchPrediction() {
+        if (branchUnit == null) {
+            return;
+        }
+        BranchUnit.setActive(null);
+        out.println();
+        branchUnit.writeReport(out, 10);
+    }
+
+    //////////////////////////////////////////////////////////////////////
+    // Displays cycles and stalls, if modelling pipeline timing
+
+    private void displayPipeline() {
+        if (pipeline == null) {
+            return;
+        }
+        PipelineModel.setActive(null);
+        out.println();
+        pipeline.writeReport(out, 10);
+    }
+
+    //////////////////////////////////////////////////////////////////////
+    // Displays the instructions executed by each hart and in all, if running several
+
+    private void displayHarts() {
+        if (harts == null) {
+            return;
+        }
+        Harts.setActive(null);
+        out.println();
+        harts.writeReport(out);
+    }
+
+    //////////////////////////////////////////////////////////////////////
+    // Saves the bitmap display as a PNG image, if asked to.  Frames at breakpoints
+    // are only saved when the file name numbers them.
+
+    private void saveFrame(Program program, boolean last) {
+        boolean numbered = frameFile != null && frameFile.contains("%d");
+        if (framebuffer == null || !(last || numbered)) {
+            return;
+        }
+        String name = numbered ? frameFile.replace("%d", Integer.toString(frames)) : frameFile;
+        frames++;
+        try {
+            framebuffer.writePng(program.getMemory(), new File(name));
+        } catch (IOException e) {
+            out.println("Error while attempting to save bitmap display, file " + name + "!  " + e.getMessage());
+        }
+    }
+
+    //////////////////////////////////////////////////////////////////////
+    // Completes the execution trace, if tracing
+
+    private void saveTrace() {
+        TraceRecorder trace = TraceRecorder.getActive();
+        if (traceFile == null || trace == null) {
+            return;
+        }
+        TraceRecorder.setActive(null);
+        try {
+            if (traceTail > 0) {
+                OutputStream file = new BufferedOutputStream(new FileOutputStream(traceFile));
+                if (traceFile.endsWith(".gz")) {
+                    file = new GZIPOutputStream(file);
+                }
+                try (OutputStream tail = file) {
+                    trace.writeRing(tail);
+                }
+            }
+            trace.close();
+        } catch (IOException e) {
+            out.println("Error while attempting to save trace, file " + traceFile + "!  " + e.getMessage());
+        }
+    }
+
     //////////////////////////////////////////////////////////////////////
     // Displays requested register or registers
 
@@ -676,11 +1051,24 @@ public class Launch {
             }
         }
         out.println("Usage:  Rars  [options] filename [additional filenames]");
+        out.println("  filename may instead be a statically linked RISC-V ELF executable (ELF64 implies rv64,");
+        out.println("  compressed instructions rvc).");
         out.println("  Valid options (not case sensitive, separate by spaces) are:");
         out.println("      a  -- assemble only, do not simulate");
         out.println("  ae<n>  -- terminate RARS with integer exit code <n> if an assemble error occurs.");
         out.println("  ascii  -- display memory or register contents interpreted as ASCII codes.");
         out.println("      b  -- brief - do not display register/memory address along with contents");
+        out.println("  bitmap <size> <file> -- save the bitmap display as a PNG image at the end of the run.");
+        out.println("            <size> is <width>x<height>[@<base address>], one word per pixel, based at");
+        out.println("            static data by default.  If <file> contains %d, a numbered frame is also");
+        out.println("            saved whenever the program stops at a breakpoint (e.g. ebreak).");
+        out.println("   bp <predictor> -- model branch prediction and display its accuracy.  <predictor> is");
+        out.println("            taken, nottaken, btfn, bimodal:<entries>, gshare:<entries>:<history bits>");
+        out.println("            or tournament:<entries>:<history bits>.  Jumps use a BTB and return stack.");
+        out.println("  cache <spec> -- model caches and display their hit rates.  <spec> is 'default' or");
+        out.println("            comma separated levels name=size:block:ways[:policy][:wb|wt][:wa|nwa], with");
+        out.println("            names l1i, l1d, l1, l2, l3 and policies lru, fifo, random, plru.");
+        out.println("            e.g. cache l1i=16K:64:4,l1d=16K:64:4:plru,l2=256K:64:8");
         out.println("      d  -- display RARS debugging statements");
         out.println("    dec  -- display memory or register contents in decimal.");
         out.println("   dump <segment> <format> <file> -- memory dump of specified memory segment");
@@ -689,8 +1077,15 @@ public class Launch {
         out.println("            Segment and format are case-sensitive and possible values are:");
         out.println("            <segment> = " + segments+", or a range like 0x400000-0x10000000");
         out.println("            <format> = " + formats);
+        out.println("  files <n> -- allow the program <n> open files, standard input and output included");
+        out.println("            (default " + SystemIO.SYSCALL_MAXFILES + ")");
         out.println("      g  -- force GUI mode");
         out.println("      h  -- display this help.  Use by itself with no filename.");
+        out.println("  harts <spec> -- run the program on several harts (hardware threads) sharing memory,");
+        out.println("            each with its own registers and mhartid CSR, and display the instructions");
+        out.println("            each executed.  <spec> is the number of harts then optional settings:");
+        out.println("            quantum=<n> (instructions per turn, default 1), random[=<seed>] (next hart");
+        out.println("            at random instead of round robin) and stack=<bytes> (between stacks).");
         out.println("    hex  -- display memory or register contents in hexadecimal (default)");
         out.println("     ic  -- display count of basic instructions 'executed'");
         out.println("     mc <config>  -- set memory configuration.  Argument <config> is");
@@ -700,10 +1095,27 @@ public class Launch {
         out.println("            memory with text segment at address 0.");
         out.println("     np  -- use of pseudo instructions and formats not permitted");
         out.println("      p  -- Project mode - assemble all files in the same directory as given file.");
+        out.println("  pipeline <spec> -- model 5-stage pipeline timing and display cycles, CPI and stalls.");
+        out.println("            <spec> is 'default' or comma separated settings: noforward, branch=<n>,");
+        out.println("            jump=<n>, mul=<n>, div=<n>, fpadd=<n>, fpmul=<n>, fpdiv=<n>, miss=<n> and");
+        out.println("            memory=<n> (penalties and latencies in cycles).  Uses bp and cache if given.");
+        out.println("   prof <file> -- profile execution: display the busiest functions, source lines");
+        out.println("            and loops, and write call stacks to <file> in collapsed (flame graph) format.");
         out.println("  se<n>  -- terminate RARS with integer exit code <n> if a simulation (run) error occurs.");
+        out.println("  timer <rate> -- virtual time: the time CSR and the Timer Tool's memory-mapped time and");
+        out.println("            timecmp advance one tick every <rate> instructions, or every millisecond of");
+        out.println("            a processor running at <rate> given as <n>hz, <n>khz or <n>mhz.");
+        out.println("  trace <file> -- record every executed instruction to <file> in binary trace format,");
+        out.println("            compressed if <file> ends in .gz.  Use rars.simulator.TraceReader to read it.");
+        out.println("  tracetail <n> <file> -- like trace, but keep only the last <n> instructions executed.");
+        out.println("  sparsedump <segment> <format> <file> -- like dump, but goes on past memory never");
+        out.println("            written.  Binary leaves it as a hole in the file, HexText, BinaryText and");
+        out.println("            AsciiText write zeros, and the others leave it out.");
         out.println("     sm  -- start execution at statement with global label main, if defined");
         out.println("    smc  -- Self Modifying Code - Program can write and branch to either text or data segment");
         out.println("    rv64 -- Enables 64 bit assembly and executables (Not fully compatible with rv32)");
+        out.println("     rvc -- Executes compressed (16-bit) instructions, which may start at any halfword");
+        out.println("            address, and assembles their c.* mnemonics");
         out.println(" version -- Show version and copyright");
         out.println("    <n>  -- where <n> is an integer maximum count of steps to simulate.");
         out.println("            If 0, negative or not specified, there is no maximum.");
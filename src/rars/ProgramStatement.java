@@ -10,6 +10,7 @@ import rars.riscv.hardware.Register;
 import rars.riscv.hardware.RegisterFile;
 import rars.riscv.BasicInstruction;
 import rars.riscv.BasicInstructionFormat;
+import rars.riscv.CompressedInstruction;
 import rars.riscv.Instruction;
 import rars.util.Binary;
 import rars.venus.NumberDisplayBaseChooser;
@@ -37,6 +38,8 @@ public class ProgramStatement implements Comparable<ProgramStatement> {
     private int textAddress;
     private int sourceLine;
     private int binaryStatement;
+    private int compressedStatement = -1; // 16-bit machine code of a compressed instruction, else -1
+    private String compressedMnemonic; // c.* mnemonic this statement is assembled as, else null
     private boolean altered;
     private static final String invalidOperator = "<INVALID>";
 
@@ -80,7 +83,8 @@ public class ProgramStatement implements Comparable<ProgramStatement> {
      * instruction with no source code to refer back to.  Originally supported
      * only NOP instruction (all zeroes), but extended in release 4.4 to support
      * all basic instructions.  This was required for the self-modifying code
-     * feature.
+     * feature.  Only what execution needs is decoded here; the basic statement
+     * and machine code strings are built when first asked for.
      *
      * @param binaryStatement The 32-bit machine code.
      * @param textAddress     The Text Segment address in memory where the binary machine code for this statement
@@ -123,7 +127,21 @@ public class ProgramStatement implements Comparable<ProgramStatement> {
             }
         }
         this.altered = false;
-        this.basicStatementList = buildBasicStatementListFromBinaryCode(binaryStatement, instr, operands, numOperands);
+        this.basicStatementList = null; // see getPrintableBasicAssemblyStatement()
+    }
+
+    /**
+     * Constructor for ProgramStatement for a compressed (16-bit) instruction, with no source
+     * code.  It executes as the 32-bit instruction it expands to, which is its binary
+     * statement, but takes 2 bytes of memory.
+     *
+     * @param compressedStatement The 16-bit machine code.
+     * @param textAddress         The Text Segment address in memory where the machine code is stored.
+     * @see CompressedInstruction
+     **/
+    public ProgramStatement(short compressedStatement, int textAddress) {
+        this(CompressedInstruction.expand(compressedStatement & 0xFFFF), textAddress);
+        this.compressedStatement = compressedStatement & 0xFFFF;
     }
 
     public int compareTo(ProgramStatement obj1) {
@@ -377,6 +395,25 @@ public class ProgramStatement implements Comparable<ProgramStatement> {
                 this.insertBinaryCode(this.operands[i], Instruction.operandMask[i], errors);
         }
         this.binaryStatement = Binary.binaryStringToInt(this.machineStatement);
+        if (compressedMnemonic != null) {
+            this.compressedStatement = CompressedInstruction.compress(this.binaryStatement, compressedMnemonic);
+            if (this.compressedStatement == -1) {
+                errors.add(new ErrorMessage(this.sourceProgram, this.sourceLine, 0,
+                        "Operands cannot be encoded in " + compressedMnemonic));
+            }
+        }
+    }
+
+    /**
+     * Has this statement, the basic instruction a compressed (c.*) mnemonic stands for,
+     * assembled as that compressed instruction.  Building its machine code then also
+     * produces the 16-bit form, or reports that the operands do not fit it.
+     *
+     * @param mnemonic the compressed mnemonic, such as "c.addi"
+     * @see CompressedInstruction#compress(int, String)
+     */
+    public void setCompressedMnemonic(String mnemonic) {
+        this.compressedMnemonic = mnemonic;
     }
 
 
@@ -537,6 +574,9 @@ public class ProgramStatement implements Comparable<ProgramStatement> {
      **/
 
     public String getBasicAssemblyStatement() {
+        if (basicAssemblyStatement == null && strippedTokenList == null) {
+            return getPrintableBasicAssemblyStatement(); // from binary code; there was no source
+        }
         return basicAssemblyStatement;
     }
 
@@ -549,6 +589,10 @@ public class ProgramStatement implements Comparable<ProgramStatement> {
      * @return The Basic Assembly statement.
      **/
     public String getPrintableBasicAssemblyStatement() {
+        if (basicStatementList == null) {
+            basicStatementList = buildBasicStatementListFromBinaryCode(binaryStatement,
+                    (BasicInstruction) instruction, operands, numOperands);
+        }
         return basicStatementList.toString();
     }
 
@@ -559,6 +603,9 @@ public class ProgramStatement implements Comparable<ProgramStatement> {
      **/
 
     public String getMachineStatement() {
+        if (machineStatement == null && strippedTokenList == null) {
+            machineStatement = Binary.intToBinaryString(binaryStatement); // from binary code; there was no source
+        }
         return machineStatement;
     }
 
@@ -571,6 +618,33 @@ public class ProgramStatement implements Comparable<ProgramStatement> {
         return binaryStatement;
     }
 
+    /**
+     * Produces the 16-bit machine code of a compressed instruction.
+     *
+     * @return The machine code in the low half, or -1 if this is not a compressed instruction.
+     **/
+    public int getCompressedStatement() {
+        return compressedStatement;
+    }
+
+    /**
+     * Tells whether this is a compressed (16-bit) instruction.
+     *
+     * @return true if it was built from 16-bit machine code.
+     **/
+    public boolean isCompressed() {
+        return compressedStatement != -1;
+    }
+
+    /**
+     * Produces the number of bytes of memory this statement's machine code takes.
+     *
+     * @return 2 for a compressed instruction, otherwise Instruction.INSTRUCTION_LENGTH.
+     **/
+    public int getInstructionLength() {
+        return (compressedStatement != -1) ? CompressedInstruction.LENGTH : Instruction.INSTRUCTION_LENGTH;
+    }
+
     /**
      * Produces token list generated from original source statement.
      *
@@ -3,7 +3,10 @@ package rars;
 import rars.assembler.*;
 import rars.riscv.hardware.RegisterFile;
 import rars.simulator.BackStepper;
+import rars.simulator.Harts;
+import rars.simulator.Profiler;
 import rars.simulator.Simulator;
+import rars.simulator.TimeTravel;
 
 import java.io.*;
 import java.util.ArrayList;
@@ -321,10 +324,53 @@ public class RISCVprogram {
         Assembler asm = new Assembler();
         asm.assemble(programsToAssemble, extendedAssemblerEnabled, warningsAreErrors, this);
         this.backStepper = new BackStepper();
+        TimeTravel.setActive(Globals.getSettings().getBooleanSetting(Settings.Bool.TIME_TRAVEL_ENABLED)
+                ? new TimeTravel(Globals.checkpointInterval) : null);
+        Profiler profiler = Profiler.getActive();
+        if (profiler != null) {
+            profiler.reset(); // counts and call stack belong to the previous program
+        }
+        Harts harts = Harts.getActive();
+        if (harts != null) {
+            harts.reset(); // registers and counts belong to the previous program
+        }
         return asm.getErrorList();
     }
 
 
+    /**
+     * Loads a statically linked RISC-V ELF executable instead of assembling source code.
+     * There is no source, so the machine list is empty and labels come from the ELF symbol table.
+     *
+     * @param file String containing name of the ELF file.
+     * @return the entry point address, where execution starts.
+     * @throws AssemblyException Will throw exception if the file cannot be loaded.
+     * @see ElfLoader
+     **/
+
+    public int loadElf(String file) throws AssemblyException {
+        this.filename = file;
+        this.sourceList = new ArrayList<>();
+        this.localSymbolTable = new SymbolTable(file);
+        this.backStepper = null;
+        createMachineList();
+        createTextSegmentLines();
+        int entry = new ElfLoader().load(new File(file), this);
+        this.backStepper = new BackStepper();
+        TimeTravel.setActive(Globals.getSettings().getBooleanSetting(Settings.Bool.TIME_TRAVEL_ENABLED)
+                ? new TimeTravel(Globals.checkpointInterval) : null);
+        Profiler profiler = Profiler.getActive();
+        if (profiler != null) {
+            profiler.reset(); // counts and call stack belong to the previous program
+        }
+        Harts harts = Harts.getActive();
+        if (harts != null) {
+            harts.reset(); // registers and counts belong to the previous program
+        }
+        return entry;
+    }
+
+
     /**
      * Simulates execution of the program (in this thread). Program must have already been assembled.
      * Begins simulation at current program counter address and continues until stopped,
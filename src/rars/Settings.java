@@ -138,7 +138,17 @@ public class Settings extends Observable {
         /**
          * Flag to determine whether or not the register numbers are displayed.
          */
-        DISPLAY_REGISTER_NUMBERS("DisplayRegisterNumbers", true);
+        DISPLAY_REGISTER_NUMBERS("DisplayRegisterNumbers", true),
+        /**
+         * Flag to determine whether execution is checkpointed and its inputs recorded so that
+         * the debugger can travel back to any earlier instruction.
+         */
+        TIME_TRAVEL_ENABLED("TimeTravel", false),
+        /**
+         * Flag to determine whether compressed (RVC) instructions are executed, which also lets
+         * instructions start at any halfword address, and whether c.* mnemonics are assembled.
+         */
+        RVC_ENABLED("rvcEnabled", false);
 
         // TODO: add option for turning off user trap handling and interrupts
         private String name;
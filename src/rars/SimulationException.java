@@ -45,7 +45,7 @@ public class SimulationException extends Exception {
      **/
     public SimulationException(ProgramStatement ps, String m) {
         message = new ErrorMessage(ps, "Runtime exception at " +
-                Binary.intToHexString(RegisterFile.getProgramCounter() - Instruction.INSTRUCTION_LENGTH) +
+                Binary.intToHexString(RegisterFile.getProgramCounter() - RegisterFile.getInstructionLength()) +
                 ": " + m);
         // Stopped using ps.getAddress() because of pseudo-instructions.  All instructions in
         // the macro expansion point to the same ProgramStatement, and thus all will return the
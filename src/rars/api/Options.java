@@ -6,11 +6,13 @@ public class Options {
     public boolean startAtMain;       // Whether to start execution at statement labeled 'main'
     public boolean selfModifyingCode; // Whether to allow self-modifying code (e.g. write to text segment)
     public int maxSteps;
+    public int checkpointInterval;    // Instructions between time-travel checkpoints; 0 turns time travel off
     public Options(){
         pseudo = true;
         warningsAreErrors = false;
         startAtMain = false;
         selfModifyingCode = false;
         maxSteps = -1;
+        checkpointInterval = 0;
     }
 }
@@ -2,8 +2,10 @@ package rars.api;
 
 import rars.*;
 import rars.riscv.hardware.*;
+import rars.simulator.Harts;
 import rars.simulator.ProgramArgumentList;
 import rars.simulator.Simulator;
+import rars.simulator.TimeTravel;
 import rars.util.SystemIO;
 
 import java.io.ByteArrayInputStream;
@@ -19,7 +21,7 @@ import java.util.ArrayList;
  *
  * The order you are expected to run the methods is:
  * <ol>
- * <li> assemble(...)
+ * <li> assemble(...) or loadElf(...)
  * <li> setup(...)
  * <li> get/set for any specific setup
  * <li> simulate()
@@ -47,6 +49,7 @@ public class Program {
     private SystemIO.Data fds;
     private ByteArrayOutputStream stdout, stderr;
     private Memory assembled, simulation;
+    private TimeTravel history;
     private int startPC, exitCode;
 
     public Program() {
@@ -108,6 +111,23 @@ public class Program {
         return assemble(programs);
     }
 
+    /**
+     * Loads a statically linked RISC-V ELF executable (e.g. from gcc or clang) in place of
+     * assembling source code.  Execution starts at its entry point.  ELF64 files need RV64
+     * enabled, and the segments must fit the memory configuration.
+     *
+     * @param file path to the ELF file
+     * @throws AssemblyException thrown if the file cannot be loaded
+     */
+    public void loadElf(String file) throws AssemblyException {
+        Memory temp = Memory.swapInstance(assembled);
+        try {
+            startPC = code.loadElf(file);
+        } finally {
+            Memory.swapInstance(temp);
+        }
+    }
+
     private ErrorList assemble(ArrayList<RISCVprogram> programs) throws AssemblyException {
         Memory temp = Memory.swapInstance(assembled); // Assembling changes memory so we need to swap to capture that.
         ErrorList warnings = null;
@@ -139,6 +159,10 @@ public class Program {
         ControlAndStatusRegisterFile.resetRegisters();
         InterruptController.reset();
         RegisterFile.initializeProgramCounter(startPC);
+        Harts harts = Harts.getActive();
+        if (harts != null) {
+            harts.reset();
+        }
         Globals.exitCode = 0;
 
         // Copy in assembled code and arguments
@@ -157,6 +181,9 @@ public class Program {
         } else {
             fds = new SystemIO.Data(true);
         }
+
+        history = (set.checkpointInterval > 0) ? new TimeTravel(set.checkpointInterval) : null;
+        TimeTravel.setActive(history);
     }
 
     public RISCVprogram getCode() {
@@ -176,6 +203,59 @@ public class Program {
      * @throws SimulationException thrown if there is an uncaught interrupt. The program cannot be simulated further.
      */
     public Simulator.Reason simulate() throws SimulationException {
+        return run(() -> code.simulate(set.maxSteps));
+    }
+
+    /**
+     * Moves execution to just after the given number of instructions have been executed,
+     * backward or forward.  Requires Options.checkpointInterval to be set before setup.
+     *
+     * @param instruction the instruction count to travel to
+     * @return MAX_STEPS if the instruction count was reached, otherwise why execution stopped first
+     * @throws IllegalStateException if time travel is not enabled
+     */
+    public Simulator.Reason seek(long instruction) {
+        TimeTravel history = getTimeTravel();
+        return runQuietly(() -> history.seek(instruction));
+    }
+
+    /**
+     * Runs backward to the previous point at which the program counter was at a breakpoint.
+     * Requires Options.checkpointInterval to be set before setup.
+     *
+     * @param breakPoints addresses of instructions to stop at
+     * @return BREAKPOINT if one was found, otherwise execution is back at the start
+     * @throws IllegalStateException if time travel is not enabled
+     */
+    public Simulator.Reason reverseContinue(int[] breakPoints) {
+        TimeTravel history = getTimeTravel();
+        return runQuietly(() -> history.reverseContinue(breakPoints, null));
+    }
+
+    /**
+     * @return the time-travel engine recording this program
+     * @throws IllegalStateException if time travel is not enabled
+     */
+    public TimeTravel getTimeTravel() {
+        if (history == null) {
+            throw new IllegalStateException("time travel requires Options.checkpointInterval > 0");
+        }
+        return history;
+    }
+
+    private interface Run {
+        Simulator.Reason run() throws SimulationException;
+    }
+
+    private Simulator.Reason runQuietly(Run run) {
+        try {
+            return run(run);
+        } catch (SimulationException se) {
+            return Simulator.Reason.EXCEPTION;
+        }
+    }
+
+    private Simulator.Reason run(Run run) throws SimulationException {
         Simulator.Reason ret = null;
         SimulationException e = null;
 
@@ -186,7 +266,7 @@ public class Program {
         Memory tmpMem = Memory.swapInstance(simulation);
 
         try {
-            ret = code.simulate(set.maxSteps);
+            ret = run.run();
         }catch(SimulationException se){
             e = se;
         }
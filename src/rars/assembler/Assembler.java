@@ -6,6 +6,7 @@ import rars.riscv.hardware.Memory;
 import rars.riscv.BasicInstruction;
 import rars.riscv.ExtendedInstruction;
 import rars.riscv.Instruction;
+import rars.riscv.InstructionSet;
 import rars.util.Binary;
 import rars.util.SystemIO;
 
@@ -260,7 +261,11 @@ public class Assembler {
                                     this.fileCurrentlyBeingAssembled,
                                     (instrNumber == 0) ? statement.getSource() : "", newTokenList,
                                     newTokenList, instr, textAddress.get(), statement.getSourceLine());
-                            textAddress.increment(Instruction.INSTRUCTION_LENGTH);
+                            if (inst.isCompressed()) {
+                                ps.setCompressedMnemonic(inst.getName());
+                            }
+                            textAddress.increment(inst.isCompressed() ? inst.getInstructionLength()
+                                    : Instruction.INSTRUCTION_LENGTH);
                             ps.buildBasicStatementFromBasicInstruction(errors);
                             machineList.add(ps);
                             textSegmentLines.add(ps);
@@ -270,10 +275,13 @@ public class Assembler {
                                     this.fileCurrentlyBeingAssembled,
                                     (instrNumber == 0) ? statement.getSource() : "", newTokenList,
                                     newTokenList, instr, dataAddress.get(), statement.getSourceLine());
+                            if (inst.isCompressed()) {
+                                ps.setCompressedMnemonic(inst.getName());
+                            }
                             ps.buildBasicStatementFromBasicInstruction(errors);
                             ps.buildMachineStatementFromBasicStatement(errors);
-                            writeToDataSegment(ps.getBinaryStatement(), Instruction.INSTRUCTION_LENGTH,
-                                    ps.getStrippedTokenList().get(0), errors); //also increments dataAddress
+                            writeToDataSegment(ps.isCompressed() ? ps.getCompressedStatement() : ps.getBinaryStatement(),
+                                    ps.getInstructionLength(), ps.getStrippedTokenList().get(0), errors); //also increments dataAddress
                             textSegmentLines.add(ps);
                         }
                     } // end of FOR loop, repeated for each template in list.
@@ -500,7 +508,13 @@ public class Assembler {
         Instruction inst = OperandFormat.bestOperandMatch(tokens, instrMatches);
         // Here's the place to flag use of extended (pseudo) instructions
         // when setting disabled.
-        if (inst instanceof ExtendedInstruction && !extendedAssemblerEnabled) {
+        if (inst instanceof ExtendedInstruction && ((ExtendedInstruction) inst).isCompressed()) {
+            if (!InstructionSet.rvc) {
+                errors.add(new ErrorMessage(token.getSourceProgram(), token.getSourceLine(),
+                        token.getStartPos(),
+                        "Compressed instructions not permitted.  See Settings."));
+            }
+        } else if (inst instanceof ExtendedInstruction && !extendedAssemblerEnabled) {
             errors.add(new ErrorMessage(token.getSourceProgram(), token.getSourceLine(),
                     token.getStartPos(),
                     "Extended (pseudo) instruction or format not permitted.  See Settings."));
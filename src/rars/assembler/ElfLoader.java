@@ -0,0 +1,252 @@
+package rars.assembler;
+
+import rars.*;
+import rars.riscv.InstructionSet;
+import rars.riscv.hardware.AddressErrorException;
+import rars.riscv.hardware.Memory;
+import rars.util.Binary;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+/**
+ * Loads a statically linked RISC-V ELF executable, as produced by gcc or clang, in place of
+ * assembling source code.  The PT_LOAD segments are copied into memory, the symbols from
+ * .symtab go into the global symbol table, locals included since the program is already
+ * linked, and the entry point is returned for the program counter.
+ * <p>
+ * Segments must fit the current memory configuration: those in the text segment are stored
+ * as machine code, decoded into ProgramStatements as they are fetched, and the rest are
+ * written a block at a time like any data.  With the default configuration, link with
+ * e.g. <tt>-Wl,-Ttext=0x400000 -Wl,-Tdata=0x10010000</tt>.  Code compiled with the C
+ * extension needs compressed instructions enabled (InstructionSet.rvc).
+ *
+ * @see Assembler
+ */
+public class ElfLoader {
+    private static final int EM_RISCV = 243;
+    private static final int ET_EXEC = 2;
+    private static final int EF_RISCV_RVC = 0x1;
+    private static final int PT_LOAD = 1;
+    private static final int SHT_SYMTAB = 2;
+    private static final int STT_OBJECT = 1, STT_FUNC = 2;
+    private static final int SHN_UNDEF = 0, SHN_LORESERVE = 0xff00, SHN_ABS = 0xfff1;
+
+    private RISCVprogram program;
+    private ByteBuffer elf;
+    private boolean is64;
+
+    /**
+     * Tells whether a file is an ELF file, and which class.
+     *
+     * @param file the file to look at
+     * @return 32 or 64 for an ELF32 or ELF64 file, 0 if it is not an ELF file
+     */
+    public static int getElfClass(File file) {
+        byte[] ident = new byte[5];
+        try (InputStream in = new FileInputStream(file)) {
+            if (in.read(ident) != ident.length) {
+                return 0;
+            }
+        } catch (IOException e) {
+            return 0;
+        }
+        if (ident[0] != 0x7f || ident[1] != 'E' || ident[2] != 'L' || ident[3] != 'F') {
+            return 0;
+        }
+        return ident[4] == 1 ? 32 : ident[4] == 2 ? 64 : 0;
+    }
+
+    /**
+     * Tells whether an ELF file says it uses compressed (RVC) instructions.
+     *
+     * @param file the file to look at
+     * @return true if it is a RISC-V ELF file with the RVC flag set
+     */
+    public static boolean usesCompressed(File file) {
+        int elfClass = getElfClass(file);
+        byte[] header = new byte[52];
+        try (InputStream in = new FileInputStream(file)) {
+            if (elfClass == 0 || in.readNBytes(header, 0, header.length) != header.length) {
+                return false;
+            }
+        } catch (IOException e) {
+            return false;
+        }
+        ByteBuffer elf = ByteBuffer.wrap(header).order(ByteOrder.LITTLE_ENDIAN);
+        return Short.toUnsignedInt(elf.getShort(18)) == EM_RISCV
+                && (elf.getInt(elfClass == 64 ? 48 : 36) & EF_RISCV_RVC) != 0;
+    }
+
+    /**
+     * Loads an ELF executable into Globals.memory, which is cleared first.
+     *
+     * @param file    the ELF file
+     * @param program the program it stands for, named in error messages
+     * @return the entry point address
+     * @throws AssemblyException if the file cannot be read, is not a RISC-V executable for the
+     *                           current instruction set, or does not fit the memory configuration
+     */
+    public int load(File file, RISCVprogram program) throws AssemblyException {
+        this.program = program;
+        try {
+            elf = ByteBuffer.wrap(Files.readAllBytes(file.toPath())).order(ByteOrder.LITTLE_ENDIAN);
+        } catch (IOException e) {
+            throw error(e.toString());
+        }
+        try {
+            checkHeader();
+            Globals.symbolTable.clear();
+            Globals.memory.clear();
+            loadSegments();
+            loadSymbols();
+            return address(is64 ? elf.getLong(24) : elf.getInt(24) & 0xFFFFFFFFL, "entry point");
+        } catch (BufferUnderflowException | IndexOutOfBoundsException e) {
+            throw error("file is truncated or corrupt");
+        }
+    }
+
+    private void checkHeader() throws AssemblyException {
+        if (elf.limit() < 52 || elf.getInt(0) != 0x464c457f) {
+            throw error("not an ELF file");
+        }
+        is64 = elf.get(4) == 2;
+        if (elf.get(5) != 1) {
+            throw error("not a little-endian ELF file");
+        }
+        if (Short.toUnsignedInt(elf.getShort(18)) != EM_RISCV) {
+            throw error("not a RISC-V ELF file");
+        }
+        if (elf.getShort(16) != ET_EXEC) {
+            throw error("not an executable; link it statically (-static), without -pie");
+        }
+        if (is64 != InstructionSet.rv64) {
+            throw error(is64 ? "ELF64 file needs RV64 enabled" : "ELF32 file cannot run with RV64 enabled");
+        }
+        if ((elf.getInt(is64 ? 48 : 36) & EF_RISCV_RVC) != 0 && !InstructionSet.rvc) {
+            throw error("file uses compressed instructions (RVC), which need rvc enabled");
+        }
+    }
+
+    private void loadSegments() throws AssemblyException {
+        long phoff = is64 ? elf.getLong(32) : elf.getInt(28) & 0xFFFFFFFFL;
+        int phentsize = Short.toUnsignedInt(elf.getShort(is64 ? 54 : 42));
+        int phnum = Short.toUnsignedInt(elf.getShort(is64 ? 56 : 44));
+        for (int i = 0; i < phnum; i++) {
+            int header = Math.toIntExact(phoff + (long) i * phentsize);
+            if (elf.getInt(header) != PT_LOAD) {
+                continue;
+            }
+            long offset = is64 ? elf.getLong(header + 8) : elf.getInt(header + 4) & 0xFFFFFFFFL;
+            long vaddr = is64 ? elf.getLong(header + 16) : elf.getInt(header + 8) & 0xFFFFFFFFL;
+            long filesz = is64 ? elf.getLong(header + 32) : elf.getInt(header + 16) & 0xFFFFFFFFL;
+            if (filesz == 0) {
+                continue; // .bss only; memory never written reads as zero
+            }
+            int address = address(vaddr, "segment");
+            address(vaddr + filesz - 1, "segment end");
+            try {
+                if (Memory.inTextSegment(address)) {
+                    loadText(address, Math.toIntExact(offset), Math.toIntExact(filesz));
+                } else {
+                    Globals.memory.writeBytes(address, elf.array(), Math.toIntExact(offset), Math.toIntExact(filesz));
+                }
+            } catch (AddressErrorException e) {
+                throw error("segment at " + Binary.intToHexString(address) + " does not fit the memory configuration "
+                        + "(text " + Binary.intToHexString(Memory.textBaseAddress)
+                        + ", data " + Binary.intToHexString(Memory.dataSegmentBaseAddress)
+                        + "); link with e.g. -Wl,-Ttext=" + Binary.intToHexString(Memory.textBaseAddress)
+                        + " -Wl,-Tdata=" + Binary.intToHexString(Memory.dataBaseAddress));
+            }
+        }
+    }
+
+    // The text segment holds machine code by the word, so store it a word at a time, keeping
+    // the bytes of a word shared with a segment loaded before.
+    private void loadText(int address, int offset, int length) throws AddressErrorException {
+        int end = address + length;
+        for (int word = address & ~3; word - end < 0; word += Memory.WORD_LENGTH_BYTES) {
+            if (!Memory.inTextSegment(word) || !Memory.inTextSegment(word + 3)) {
+                throw new AddressErrorException("segment leaves the text segment",
+                        SimulationException.STORE_ACCESS_FAULT, word);
+            }
+            Integer old = Globals.memory.getRawWordOrNull(word);
+            int value = old == null ? 0 : old;
+            for (int i = 0; i < 4; i++) {
+                int byteAddress = word + i;
+                if (byteAddress - address >= 0 && byteAddress - end < 0) {
+                    int b = elf.get(offset + byteAddress - address) & 0xFF;
+                    value = (value & ~(0xFF << (8 * i))) | (b << (8 * i));
+                }
+            }
+            Globals.memory.setMachineCode(word, value);
+        }
+    }
+
+    private void loadSymbols() throws AssemblyException {
+        long shoff = is64 ? elf.getLong(40) : elf.getInt(32) & 0xFFFFFFFFL;
+        int shentsize = Short.toUnsignedInt(elf.getShort(is64 ? 58 : 46));
+        int shnum = Short.toUnsignedInt(elf.getShort(is64 ? 60 : 48));
+        for (int i = 0; i < shnum; i++) {
+            int section = Math.toIntExact(shoff + (long) i * shentsize);
+            if (elf.getInt(section + 4) != SHT_SYMTAB) {
+                continue;
+            }
+            int offset = Math.toIntExact(is64 ? elf.getLong(section + 24) : elf.getInt(section + 16) & 0xFFFFFFFFL);
+            long size = is64 ? elf.getLong(section + 32) : elf.getInt(section + 20) & 0xFFFFFFFFL;
+            int entsize = Math.toIntExact(is64 ? elf.getLong(section + 56) : elf.getInt(section + 36) & 0xFFFFFFFFL);
+            int link = elf.getInt(section + (is64 ? 40 : 24));
+            int strings = Math.toIntExact(is64 ? elf.getLong(Math.toIntExact(shoff + (long) link * shentsize) + 24)
+                    : elf.getInt(Math.toIntExact(shoff + (long) link * shentsize) + 16) & 0xFFFFFFFFL);
+            for (long entry = offset + entsize; entry + entsize <= offset + size; entry += entsize) {
+                addSymbol(Math.toIntExact(entry), strings);
+            }
+        }
+    }
+
+    private void addSymbol(int entry, int strings) {
+        int info = elf.get(entry + (is64 ? 4 : 12)) & 0xFF;
+        int shndx = Short.toUnsignedInt(elf.getShort(entry + (is64 ? 6 : 14)));
+        long value = is64 ? elf.getLong(entry + 8) : elf.getInt(entry + 4) & 0xFFFFFFFFL;
+        int type = info & 0xF;
+        if (type > STT_FUNC || shndx == SHN_UNDEF || shndx >= SHN_LORESERVE && shndx != SHN_ABS
+                || value >>> 32 != 0) {
+            return; // sections, files, TLS and such, or not an address
+        }
+        String name = string(strings + elf.getInt(entry));
+        if (name.isEmpty() || name.startsWith("$") || name.startsWith(".L")) {
+            return; // mapping symbols and assembler locals
+        }
+        int address = (int) value;
+        Globals.symbolTable.addSymbol(name, address, type == STT_OBJECT || !Memory.inTextSegment(address));
+    }
+
+    private String string(int offset) {
+        int end = offset;
+        while (elf.get(end) != 0) {
+            end++;
+        }
+        return new String(elf.array(), offset, end - offset, StandardCharsets.UTF_8);
+    }
+
+    // RARS addresses are 32 bits; an ELF64 address must fit in them
+    private int address(long value, String what) throws AssemblyException {
+        if (value >>> 32 != 0 && value >> 31 != -1) {
+            throw error(what + " address " + Long.toHexString(value) + " is beyond 32 bits");
+        }
+        return (int) value;
+    }
+
+    private AssemblyException error(String message) {
+        ErrorList errors = new ErrorList();
+        errors.add(new ErrorMessage(program, 0, 0, message));
+        return new AssemblyException(errors);
+    }
+}
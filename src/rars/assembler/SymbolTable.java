@@ -54,6 +54,21 @@ public class SymbolTable {
     }
 
 
+    /**
+     * Adds a Symbol that has no source line, such as one read from an ELF file.  Unlike
+     * source labels, a name may appear more than once (e.g. static functions in different
+     * files); lookups by name find the first.
+     *
+     * @param label   The name of the Symbol.
+     * @param address The address of the Symbol.
+     * @param b       The type of Symbol, true for data, false for text.
+     **/
+
+    public void addSymbol(String label, int address, boolean b) {
+        table.add(new Symbol(label, address, b, 0));
+    }
+
+
     /**
      * Removes a symbol from the Symbol table.  If not found, it does nothing.
      * This will rarely happen (only when variable is declared .globl after already
@@ -14,6 +14,19 @@ import rars.SimulationException;
  */
 
 public abstract class AbstractSyscall implements Comparable<AbstractSyscall> {
+    /**
+     * Capability: writes to the program's standard output or error, or to a file
+     */
+    public static final int WRITES_OUTPUT = 1;
+    /**
+     * Capability: reads from the program's standard input, a file or the user
+     */
+    public static final int READS_INPUT = 2;
+    /**
+     * Capability: may wait, for the user, a sound or a while; pending output is shown first
+     */
+    public static final int MAY_BLOCK = 4;
+
     private int serviceNumber;
     private String serviceName;
     private String description, inputs, outputs;
@@ -102,6 +115,17 @@ public abstract class AbstractSyscall implements Comparable<AbstractSyscall> {
         return serviceNumber;
     }
 
+    /**
+     * Return what the service does besides computing, so the simulator can prepare for it
+     * without knowing about particular services.  Services that neither read nor write
+     * nor wait need not override this.
+     *
+     * @return WRITES_OUTPUT, READS_INPUT and MAY_BLOCK combined, or 0
+     */
+    public int getCapabilities() {
+        return 0;
+    }
+
     /**
      * Performs syscall function.  It will be invoked when the service is invoked
      * at simulation time.  Service is identified by value stored in a7.
@@ -0,0 +1,345 @@
+package rars.riscv;
+
+import java.util.Arrays;
+import java.util.HashMap;
+
+/**
+ * Expands compressed (RVC) instructions, the 16-bit forms of the C extension, into the
+ * 32-bit instructions they stand for, so they run as those instructions.  RV64C is used
+ * when InstructionSet.rv64 is set, RV32C otherwise; the two differ in quadrant 0 and 2
+ * floating-point/doubleword loads and stores, and in c.jal versus c.addiw.
+ * <p>
+ * The assembler goes the other way for c.* mnemonics, with {@link #compress(int, String)}.
+ *
+ * @see rars.ProgramStatement
+ */
+public class CompressedInstruction {
+    public static final int LENGTH = 2;
+
+    private static final int LOAD = 0x03, LOAD_FP = 0x07, OP_IMM = 0x13, OP_IMM_32 = 0x1b, STORE = 0x23,
+            STORE_FP = 0x27, OP = 0x33, LUI = 0x37, OP_32 = 0x3b, BRANCH = 0x63, JALR = 0x67, JAL = 0x6f,
+            SYSTEM = 0x73;
+    private static final int SP = 2, RA = 1;
+    private static final int[] OP_FUNCT3 = {0, 4, 6, 7}; // sub, xor, or, and
+    private static final String[] OP_NAMES = {"c.sub", "c.xor", "c.or", "c.and"};
+
+    // Compressed instructions by the 32-bit instruction they expand to, for RV32C and RV64C;
+    // built when first needed
+    private static HashMap<Integer, int[]> rv32Compressions, rv64Compressions;
+
+    private CompressedInstruction() {
+    }
+
+    /**
+     * Tells whether machine code starts with a compressed instruction: the two low bits
+     * of a 32-bit (or longer) instruction are both set.
+     *
+     * @param code machine code, the instruction's first 16 bits in the low half
+     * @return true if it is a compressed instruction
+     */
+    public static boolean isCompressed(int code) {
+        return (code & 0x3) != 0x3;
+    }
+
+    /**
+     * Expands a compressed instruction.
+     *
+     * @param parcel the 16-bit instruction, in the low half
+     * @return the equivalent 32-bit instruction, or 0 (an illegal instruction) if the parcel
+     * is illegal or reserved
+     */
+    public static int expand(int parcel) {
+        int funct3 = (parcel >>> 13) & 0x7;
+        switch (parcel & 0x3) {
+            case 0:
+                return quadrant0(parcel, funct3);
+            case 1:
+                return quadrant1(parcel, funct3);
+            case 2:
+                return quadrant2(parcel, funct3);
+            default:
+                return 0;
+        }
+    }
+
+    /**
+     * Finds the encoding of a compressed instruction, given the 32-bit instruction it expands
+     * to.  The mnemonic picks between encodings that expand to the same instruction, such as
+     * c.lw and c.lwsp, or c.addi and c.addi16sp.
+     *
+     * @param instruction the 32-bit instruction
+     * @param mnemonic    the compressed instruction wanted, such as "c.addi"
+     * @return the 16-bit instruction, or -1 if that compressed instruction cannot express it
+     */
+    public static int compress(int instruction, String mnemonic) {
+        int[] parcels = compressions().get(instruction);
+        if (parcels != null) {
+            for (int parcel : parcels) {
+                if (mnemonic.equalsIgnoreCase(getName(parcel))) {
+                    return parcel;
+                }
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Names a compressed instruction.
+     *
+     * @param parcel the 16-bit instruction, in the low half
+     * @return its mnemonic, such as "c.addi", or null if it is not a compressed instruction
+     */
+    public static String getName(int parcel) {
+        int funct3 = (parcel >>> 13) & 0x7;
+        int rd = bits(parcel, 11, 7), rs2 = bits(parcel, 6, 2);
+        switch (parcel & 0x3) {
+            case 0:
+                return new String[]{"c.addi4spn", "c.fld", "c.lw", InstructionSet.rv64 ? "c.ld" : "c.flw", null,
+                        "c.fsd", "c.sw", InstructionSet.rv64 ? "c.sd" : "c.fsw"}[funct3];
+            case 1:
+                switch (funct3) {
+                    case 0:
+                        return (rd == 0) ? "c.nop" : "c.addi";
+                    case 1:
+                        return InstructionSet.rv64 ? "c.addiw" : "c.jal";
+                    case 2:
+                        return "c.li";
+                    case 3:
+                        return (rd == SP) ? "c.addi16sp" : "c.lui";
+                    case 4:
+                        switch (bits(parcel, 11, 10)) {
+                            case 0:
+                                return "c.srli";
+                            case 1:
+                                return "c.srai";
+                            case 2:
+                                return "c.andi";
+                            default:
+                                if (bit(parcel, 12) == 0) return OP_NAMES[bits(parcel, 6, 5)];
+                                return (bits(parcel, 6, 5) == 0) ? "c.subw" : "c.addw";
+                        }
+                    case 5:
+                        return "c.j";
+                    case 6:
+                        return "c.beqz";
+                    default:
+                        return "c.bnez";
+                }
+            case 2:
+                if (funct3 == 4) {
+                    if (bit(parcel, 12) == 0) return (rs2 == 0) ? "c.jr" : "c.mv";
+                    if (rs2 != 0) return "c.add";
+                    return (rd == 0) ? "c.ebreak" : "c.jalr";
+                }
+                return new String[]{"c.slli", "c.fldsp", "c.lwsp", InstructionSet.rv64 ? "c.ldsp" : "c.flwsp", null,
+                        "c.fsdsp", "c.swsp", InstructionSet.rv64 ? "c.sdsp" : "c.fswsp"}[funct3];
+            default:
+                return null;
+        }
+    }
+
+    // Every legal compressed instruction by its expansion, for the current RV32C or RV64C
+    private static synchronized HashMap<Integer, int[]> compressions() {
+        if (InstructionSet.rv64) {
+            if (rv64Compressions == null) rv64Compressions = buildCompressions();
+            return rv64Compressions;
+        }
+        if (rv32Compressions == null) rv32Compressions = buildCompressions();
+        return rv32Compressions;
+    }
+
+    private static HashMap<Integer, int[]> buildCompressions() {
+        HashMap<Integer, int[]> table = new HashMap<>();
+        for (int parcel = 0; parcel <= 0xFFFF; parcel++) {
+            int instruction = expand(parcel);
+            if (instruction != 0) {
+                int[] parcels = table.get(instruction);
+                if (parcels == null) {
+                    table.put(instruction, new int[]{parcel});
+                } else {
+                    int[] more = Arrays.copyOf(parcels, parcels.length + 1);
+                    more[parcels.length] = parcel;
+                    table.put(instruction, more);
+                }
+            }
+        }
+        return table;
+    }
+
+    private static int quadrant0(int parcel, int funct3) {
+        int rd = 8 + bits(parcel, 4, 2), rs1 = 8 + bits(parcel, 9, 7);
+        // Offsets scaled by 4 (words) and 8 (doublewords)
+        int word = (bits(parcel, 12, 10) << 3) | (bit(parcel, 6) << 2) | (bit(parcel, 5) << 6);
+        int doubleword = (bits(parcel, 12, 10) << 3) | (bits(parcel, 6, 5) << 6);
+        switch (funct3) {
+            case 0: { // c.addi4spn
+                int imm = (bits(parcel, 12, 11) << 4) | (bits(parcel, 10, 7) << 6) | (bit(parcel, 6) << 2)
+                        | (bit(parcel, 5) << 3);
+                return (imm == 0) ? 0 : iType(imm, SP, 0, rd, OP_IMM);
+            }
+            case 1: // c.fld
+                return iType(doubleword, rs1, 3, rd, LOAD_FP);
+            case 2: // c.lw
+                return iType(word, rs1, 2, rd, LOAD);
+            case 3: // c.ld or c.flw
+                return InstructionSet.rv64 ? iType(doubleword, rs1, 3, rd, LOAD) : iType(word, rs1, 2, rd, LOAD_FP);
+            case 5: // c.fsd
+                return sType(doubleword, rd, rs1, 3, STORE_FP);
+            case 6: // c.sw
+                return sType(word, rd, rs1, 2, STORE);
+            case 7: // c.sd or c.fsw
+                return InstructionSet.rv64 ? sType(doubleword, rd, rs1, 3, STORE) : sType(word, rd, rs1, 2, STORE_FP);
+            default:
+                return 0;
+        }
+    }
+
+    private static int quadrant1(int parcel, int funct3) {
+        int rd = bits(parcel, 11, 7);
+        int imm = signExtend((bit(parcel, 12) << 5) | bits(parcel, 6, 2), 6);
+        switch (funct3) {
+            case 0: // c.addi, c.nop
+                return iType(imm, rd, 0, rd, OP_IMM);
+            case 1: // c.addiw or c.jal
+                if (InstructionSet.rv64) {
+                    return (rd == 0) ? 0 : iType(imm, rd, 0, rd, OP_IMM_32);
+                }
+                return jType(jumpOffset(parcel), RA);
+            case 2: // c.li
+                return iType(imm, 0, 0, rd, OP_IMM);
+            case 3:
+                if (rd == SP) { // c.addi16sp
+                    int offset = signExtend((bit(parcel, 12) << 9) | (bit(parcel, 6) << 4) | (bit(parcel, 5) << 6)
+                            | (bits(parcel, 4, 3) << 7) | (bit(parcel, 2) << 5), 10);
+                    return (offset == 0) ? 0 : iType(offset, SP, 0, SP, OP_IMM);
+                }
+                // c.lui
+                return (imm == 0) ? 0 : (imm << 12) | (rd << 7) | LUI;
+            case 4:
+                return arithmetic(parcel, imm);
+            case 5: // c.j
+                return jType(jumpOffset(parcel), 0);
+            case 6: // c.beqz
+            case 7: { // c.bnez
+                int offset = signExtend((bit(parcel, 12) << 8) | (bits(parcel, 11, 10) << 3) | (bits(parcel, 6, 5) << 6)
+                        | (bits(parcel, 4, 3) << 1) | (bit(parcel, 2) << 5), 9);
+                return bType(offset, 0, 8 + bits(parcel, 9, 7), funct3 - 6);
+            }
+            default:
+                return 0;
+        }
+    }
+
+    // c.srli, c.srai, c.andi, c.sub, c.xor, c.or, c.and, c.subw, c.addw
+    private static int arithmetic(int parcel, int imm) {
+        int rd = 8 + bits(parcel, 9, 7), rs2 = 8 + bits(parcel, 4, 2);
+        int shamt = (bit(parcel, 12) << 5) | bits(parcel, 6, 2);
+        switch (bits(parcel, 11, 10)) {
+            case 0: // c.srli
+                return validShift(shamt) ? iType(shamt, rd, 5, rd, OP_IMM) : 0;
+            case 1: // c.srai
+                return validShift(shamt) ? iType(shamt | 0x400, rd, 5, rd, OP_IMM) : 0;
+            case 2: // c.andi
+                return iType(imm, rd, 7, rd, OP_IMM);
+            default:
+                int funct2 = bits(parcel, 6, 5);
+                if (bit(parcel, 12) == 0) {
+                    // c.sub, c.xor, c.or, c.and
+                    return rType(funct2 == 0 ? 0x20 : 0, rs2, rd, OP_FUNCT3[funct2], rd, OP);
+                }
+                if (!InstructionSet.rv64 || funct2 > 1) {
+                    return 0;
+                }
+                // c.subw, c.addw
+                return rType(funct2 == 0 ? 0x20 : 0, rs2, rd, 0, rd, OP_32);
+        }
+    }
+
+    private static int quadrant2(int parcel, int funct3) {
+        int rd = bits(parcel, 11, 7), rs2 = bits(parcel, 6, 2);
+        int wordLoad = (bit(parcel, 12) << 5) | (bits(parcel, 6, 4) << 2) | (bits(parcel, 3, 2) << 6);
+        int doublewordLoad = (bit(parcel, 12) << 5) | (bits(parcel, 6, 5) << 3) | (bits(parcel, 4, 2) << 6);
+        int wordStore = (bits(parcel, 12, 9) << 2) | (bits(parcel, 8, 7) << 6);
+        int doublewordStore = (bits(parcel, 12, 10) << 3) | (bits(parcel, 9, 7) << 6);
+        switch (funct3) {
+            case 0: { // c.slli
+                int shamt = (bit(parcel, 12) << 5) | rs2;
+                return validShift(shamt) ? iType(shamt, rd, 1, rd, OP_IMM) : 0;
+            }
+            case 1: // c.fldsp
+                return iType(doublewordLoad, SP, 3, rd, LOAD_FP);
+            case 2: // c.lwsp
+                return (rd == 0) ? 0 : iType(wordLoad, SP, 2, rd, LOAD);
+            case 3: // c.ldsp or c.flwsp
+                if (InstructionSet.rv64) {
+                    return (rd == 0) ? 0 : iType(doublewordLoad, SP, 3, rd, LOAD);
+                }
+                return iType(wordLoad, SP, 2, rd, LOAD_FP);
+            case 4:
+                if (bit(parcel, 12) == 0) {
+                    if (rs2 == 0) { // c.jr
+                        return (rd == 0) ? 0 : iType(0, rd, 0, 0, JALR);
+                    }
+                    return rType(0, rs2, 0, 0, rd, OP); // c.mv
+                }
+                if (rs2 == 0) {
+                    // c.ebreak, c.jalr
+                    return (rd == 0) ? 0x00100000 | SYSTEM : iType(0, rd, 0, RA, JALR);
+                }
+                return rType(0, rs2, rd, 0, rd, OP); // c.add
+            case 5: // c.fsdsp
+                return sType(doublewordStore, rs2, SP, 3, STORE_FP);
+            case 6: // c.swsp
+                return sType(wordStore, rs2, SP, 2, STORE);
+            case 7: // c.sdsp or c.fswsp
+                return InstructionSet.rv64 ? sType(doublewordStore, rs2, SP, 3, STORE) : sType(wordStore, rs2, SP, 2, STORE_FP);
+            default:
+                return 0;
+        }
+    }
+
+    // RV32C shift amounts are 5 bits; the sixth is reserved
+    private static boolean validShift(int shamt) {
+        return InstructionSet.rv64 || shamt < 32;
+    }
+
+    private static int jumpOffset(int parcel) {
+        return signExtend((bit(parcel, 12) << 11) | (bit(parcel, 11) << 4) | (bits(parcel, 10, 9) << 8)
+                | (bit(parcel, 8) << 10) | (bit(parcel, 7) << 6) | (bit(parcel, 6) << 7) | (bits(parcel, 5, 3) << 1)
+                | (bit(parcel, 2) << 5), 12);
+    }
+
+    private static int iType(int imm, int rs1, int funct3, int rd, int opcode) {
+        return (imm << 20) | (rs1 << 15) | (funct3 << 12) | (rd << 7) | opcode;
+    }
+
+    private static int sType(int imm, int rs2, int rs1, int funct3, int opcode) {
+        return ((imm >> 5) << 25) | (rs2 << 20) | (rs1 << 15) | (funct3 << 12) | ((imm & 0x1F) << 7) | opcode;
+    }
+
+    private static int rType(int funct7, int rs2, int rs1, int funct3, int rd, int opcode) {
+        return (funct7 << 25) | (rs2 << 20) | (rs1 << 15) | (funct3 << 12) | (rd << 7) | opcode;
+    }
+
+    private static int bType(int imm, int rs2, int rs1, int funct3) {
+        return (bit(imm, 12) << 31) | (bits(imm, 10, 5) << 25) | (rs2 << 20) | (rs1 << 15) | (funct3 << 12)
+                | (bits(imm, 4, 1) << 8) | (bit(imm, 11) << 7) | BRANCH;
+    }
+
+    private static int jType(int imm, int rd) {
+        return (bit(imm, 20) << 31) | (bits(imm, 10, 1) << 21) | (bit(imm, 11) << 20) | (bits(imm, 19, 12) << 12)
+                | (rd << 7) | JAL;
+    }
+
+    private static int bit(int value, int position) {
+        return (value >>> position) & 1;
+    }
+
+    private static int bits(int value, int high, int low) {
+        return (value >>> low) & ((1 << (high - low + 1)) - 1);
+    }
+
+    private static int signExtend(int value, int width) {
+        return (value << (32 - width)) >> (32 - width);
+    }
+}
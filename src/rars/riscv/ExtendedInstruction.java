@@ -20,6 +20,7 @@ import java.util.StringTokenizer;
 public class ExtendedInstruction extends Instruction {
 
     private ArrayList<String> translationStrings;
+    private boolean compressed;
 
     /**
      * Constructor for ExtendedInstruction.  No compact translation is provided.
@@ -51,6 +52,32 @@ public class ExtendedInstruction extends Instruction {
         this(example, translation, "");
     }
 
+    /**
+     * Constructor for ExtendedInstruction that may stand for a compressed instruction.
+     *
+     * @param example     A String containing example use of the extended instruction.
+     * @param translation Specification for translating this instruction; a compressed
+     *                    instruction translates into the single basic instruction it expands to.
+     * @param description a helpful description to be included on help requests
+     * @param compressed  true if this is a compressed (c.*) mnemonic, assembled into 2 bytes
+     **/
+
+    public ExtendedInstruction(String example, String translation, String description, boolean compressed) {
+        this(example, translation, description);
+        this.compressed = compressed;
+    }
+
+    /**
+     * Tells whether this is a compressed (c.*) mnemonic rather than a pseudo-instruction.
+     * It is assembled into the 16-bit form of the basic instruction it translates into.
+     *
+     * @return true if this is a compressed instruction
+     * @see CompressedInstruction
+     */
+    public boolean isCompressed() {
+        return compressed;
+    }
+
     /**
      * Get length in bytes that this extended instruction requires in its
      * binary form. The answer depends on how many basic instructions it
@@ -60,7 +87,7 @@ public class ExtendedInstruction extends Instruction {
      */
 
     public int getInstructionLength() {
-        return getInstructionLength(translationStrings);
+        return compressed ? CompressedInstruction.LENGTH : getInstructionLength(translationStrings);
     }
 
 
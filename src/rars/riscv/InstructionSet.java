@@ -5,7 +5,6 @@ import rars.ProgramStatement;
 import rars.Settings;
 import rars.SimulationException;
 import rars.riscv.hardware.RegisterFile;
-import rars.riscv.syscalls.*;
 import rars.util.FilenameFinder;
 import rars.util.SystemIO;
 
@@ -30,6 +29,7 @@ public class InstructionSet {
     private static final String INSTRUCTIONS_DIRECTORY_PATH = "rars/riscv/instructions";
     private static final String CLASS_EXTENSION = "class";
     public static boolean rv64 = Globals.getSettings().getBooleanSetting(Settings.Bool.RV64_ENABLED);
+    public static boolean rvc = Globals.getSettings().getBooleanSetting(Settings.Bool.RVC_ENABLED);
 
     private ArrayList<Instruction> instructionList;
     private ArrayList<MatchMap> opcodeMatchMaps;
@@ -71,6 +71,9 @@ public class InstructionSet {
         }
 
         addPseudoInstructions("/PseudoOps.txt");
+
+        addCompressedInstructions(rv64 ? "/CompressedOps-64.txt" : "/CompressedOps-32.txt");
+        addCompressedInstructions("/CompressedOps.txt");
         // Initialization step.  Create token list for each instruction example.  This is
         // used by parser to determine user program correct syntax.
         for (Instruction inst : instructionList) {
@@ -141,6 +144,16 @@ public class InstructionSet {
     /*  METHOD TO ADD PSEUDO-INSTRUCTIONS
     */
     private void addPseudoInstructions(String file) {
+        addExtendedInstructions(file, false);
+    }
+
+    /*  METHOD TO ADD COMPRESSED (c.*) MNEMONICS, written in the same format as pseudo-instructions
+    */
+    private void addCompressedInstructions(String file) {
+        addExtendedInstructions(file, true);
+    }
+
+    private void addExtendedInstructions(String file, boolean compressed) {
         InputStream is = null;
         BufferedReader in = null;
         try {
@@ -149,7 +162,7 @@ public class InstructionSet {
             in = new BufferedReader(new InputStreamReader(is));
         } catch (NullPointerException e) {
             System.out.println(
-                    "Error: Pseudo-instruction file PseudoOps.txt not found.");
+                    "Error: Instruction file " + file.substring(1) + " not found.");
             System.exit(0);
         }
         try {
@@ -176,7 +189,7 @@ public class InstructionSet {
                             template = template + "\n";
                         }
                     }
-                    instructionList.add(new ExtendedInstruction(pseudoOp, template, description));
+                    instructionList.add(new ExtendedInstruction(pseudoOp, template, description, compressed));
                     //if (firstTemplate != null) System.out.println("\npseudoOp: "+pseudoOp+"\ndefault template:\n"+firstTemplate+"\ncompact template:\n"+template);
                 }
             }
@@ -248,18 +261,8 @@ public class InstructionSet {
             throws SimulationException {
         AbstractSyscall service = SyscallLoader.findSyscall(number);
         if (service != null) {
-            // TODO: find a cleaner way of doing this
-            // This was introduced to solve issue #108
-            boolean is_writing = service instanceof SyscallPrintChar ||
-                    service instanceof SyscallPrintDouble ||
-                    service instanceof SyscallPrintFloat ||
-                    service instanceof SyscallPrintInt ||
-                    service instanceof SyscallPrintIntBinary ||
-                    service instanceof SyscallPrintIntHex ||
-                    service instanceof SyscallPrintIntUnsigned ||
-                    service instanceof SyscallPrintString ||
-                    service instanceof SyscallWrite;
-            if (!is_writing) {
+            // Show pending output before the program waits for input or anything else (issue #108)
+            if ((service.getCapabilities() & (AbstractSyscall.READS_INPUT | AbstractSyscall.MAY_BLOCK)) != 0) {
                 SystemIO.flush(true);
             }
             service.simulate(statement);
@@ -280,7 +283,7 @@ public class InstructionSet {
 
     public static void processBranch(int displacement) {
         // Decrement needed because PC has already been incremented
-        RegisterFile.setProgramCounter(RegisterFile.getProgramCounter() + displacement - Instruction.INSTRUCTION_LENGTH);
+        RegisterFile.setProgramCounter(RegisterFile.getProgramCounter() + displacement - RegisterFile.getInstructionLength());
     }
 
    	/*
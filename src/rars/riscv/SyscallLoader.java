@@ -21,6 +21,8 @@ public class SyscallLoader {
     private static final String CLASS_EXTENSION = "class";
 
     private static ArrayList<AbstractSyscall> syscallList;
+    // Indexed by service number; numbers are small and dense enough for a plain array
+    private static AbstractSyscall[] syscallTable;
 
     /*
        *  Dynamically loads Syscalls into an ArrayList.  This method is adapted from
@@ -60,6 +62,14 @@ public class SyscallLoader {
             }
         }
         syscallList = processSyscallNumberOverrides(syscallList);
+        int highest = 0;
+        for (AbstractSyscall syscall : syscallList) {
+            highest = Math.max(highest, syscall.getNumber());
+        }
+        syscallTable = new AbstractSyscall[highest + 1];
+        for (AbstractSyscall syscall : syscallList) {
+            syscallTable[syscall.getNumber()] = syscall;
+        }
     }
 
     // Loads system call numbers from Syscall.properties
@@ -75,7 +85,7 @@ public class SyscallLoader {
             for (AbstractSyscall syscall : syscallList) {
                 if (syscall.getNumber() == override.getNumber()) {
                     System.out.println("Duplicate service number: " + syscall.getNumber() + " already registered to " +
-                            findSyscall(syscall.getNumber()).getName());
+                            syscall.getName());
                     System.exit(0);
                 }
                 if (override.getName().equals(syscall.getName())) {
@@ -106,13 +116,7 @@ public class SyscallLoader {
      * Returns null if no associated object found.
      */
     public static AbstractSyscall findSyscall(int number) {
-        // linear search is OK since number of syscalls is small.
-        for (AbstractSyscall service : syscallList) {
-            if (service.getNumber() == number) {
-                return service;
-            }
-        }
-        return null;
+        return (number >= 0 && number < syscallTable.length) ? syscallTable[number] : null;
     }
 
     public static ArrayList<AbstractSyscall> getSyscallList() {
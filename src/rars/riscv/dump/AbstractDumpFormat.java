@@ -92,7 +92,27 @@ public abstract class AbstractDumpFormat implements DumpFormat {
      * @throws AddressErrorException if firstAddress is invalid or not on a word boundary.
      * @throws IOException           if error occurs during file output.
      */
-    public abstract void dumpMemoryRange(File file, int firstAddress, int lastAddress, Memory memory)
+    public void dumpMemoryRange(File file, int firstAddress, int lastAddress, Memory memory)
+            throws AddressErrorException, IOException {
+        dumpMemoryRange(file, firstAddress, lastAddress, memory, false);
+    }
+
+    /**
+     * Write memory contents according to the specification for this format,
+     * optionally going past words that were never written.  Subclasses go through
+     * the words with a {@link DumpWordIterator} and write them with a {@link DumpWriter}.
+     *
+     * @param file         File in which to store memory contents.
+     * @param firstAddress first (lowest) memory address to dump.  In bytes but
+     *                     must be on word boundary.
+     * @param lastAddress  last (highest) memory address to dump.  In bytes but
+     *                     must be on word boundary.  Will dump the word that starts at this address.
+     * @param memory
+     * @param sparse       if true, words never written are left out, rather than ending the dump.
+     * @throws AddressErrorException if firstAddress is invalid or not on a word boundary.
+     * @throws IOException           if error occurs during file output.
+     */
+    public abstract void dumpMemoryRange(File file, int firstAddress, int lastAddress, Memory memory, boolean sparse)
             throws AddressErrorException, IOException;
 
 }
\ No newline at end of file
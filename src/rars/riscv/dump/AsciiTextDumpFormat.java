@@ -5,9 +5,7 @@ import rars.riscv.hardware.Memory;
 import rars.util.Binary;
 
 import java.io.File;
-import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.PrintStream;
 
 /**
  * Class that represents the "ASCII text" memory dump format. Memory contents
@@ -38,25 +36,24 @@ public class AsciiTextDumpFormat extends AbstractDumpFormat {
      * corresponding to tab, newline, null, etc are rendered as backslash
      * followed by single-character code, e.g. \t for tab, \0 for null.
      * Non-printing character (control code,
-     * values above 127) is rendered as a period (.).  Written
-     * using PrintStream's println() method.
+     * values above 127) is rendered as a period (.).  In a sparse dump, words
+     * never written between others are written as zeros.
      * Adapted by Pete Sanderson from code written by Greg Gibeling.
      *
      * @see AbstractDumpFormat
      */
-    public void dumpMemoryRange(File file, int firstAddress, int lastAddress, Memory memory)
+    public void dumpMemoryRange(File file, int firstAddress, int lastAddress, Memory memory, boolean sparse)
             throws AddressErrorException, IOException {
-        PrintStream out = new PrintStream(new FileOutputStream(file));
-        String string = null;
-        try {
-            for (int address = firstAddress; address <= lastAddress; address += Memory.WORD_LENGTH_BYTES) {
-                Integer temp = memory.getRawWordOrNull(address);
-                if (temp == null)
-                    break;
-                out.println(Binary.intToAscii(temp));
+        try (DumpWriter out = new DumpWriter(file)) {
+            DumpWordIterator words = new DumpWordIterator(memory, firstAddress, lastAddress, sparse);
+            while (words.next()) {
+                for (int i = words.getGapWords(); i > 0; i--) {
+                    out.write(Binary.intToAscii(0));
+                    out.newLine();
+                }
+                out.write(Binary.intToAscii(words.getWord()));
+                out.newLine();
             }
-        } finally {
-            out.close();
         }
     }
 
@@ -4,14 +4,12 @@ import rars.riscv.hardware.AddressErrorException;
 import rars.riscv.hardware.Memory;
 
 import java.io.File;
-import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.PrintStream;
 
 /**
  * Class that represents the "binary" memory dump format.  The output
- * is a binary file containing the memory words as a byte stream.  Output
- * is produced using PrintStream's write() method.
+ * is a binary file containing the memory words as a byte stream.  In a
+ * sparse dump, memory never written is left as a hole in the file.
  *
  * @author Pete Sanderson
  * @version December 2007
@@ -29,26 +27,20 @@ public class BinaryDumpFormat extends AbstractDumpFormat {
 
 
     /**
-     * Write memory contents in pure binary format.  One byte at a time
-     * using PrintStream's write() method.  Adapted by Pete Sanderson from
-     * code written by Greg Gibeling.
+     * Write memory contents in pure binary format, each word least significant
+     * byte first.  Adapted by Pete Sanderson from code written by Greg Gibeling.
      *
      * @see AbstractDumpFormat
      */
-    public void dumpMemoryRange(File file, int firstAddress, int lastAddress, Memory memory)
+    public void dumpMemoryRange(File file, int firstAddress, int lastAddress, Memory memory, boolean sparse)
             throws AddressErrorException, IOException {
-        PrintStream out = new PrintStream(new FileOutputStream(file));
-        try {
-            for (int address = firstAddress; address <= lastAddress; address += Memory.WORD_LENGTH_BYTES) {
-                Integer temp = memory.getRawWordOrNull(address);
-                if (temp == null)
-                    break;
-                int word = temp;
-                for (int i = 0; i < 4; i++)
-                    out.write((word >>> (i << 3)) & 0xFF);
+        try (DumpWriter out = new DumpWriter(file)) {
+            DumpWordIterator words = new DumpWordIterator(memory, firstAddress, lastAddress, sparse);
+            while (words.next()) {
+                if (words.followsGap())
+                    out.skip((long) words.getGapWords() * Memory.WORD_LENGTH_BYTES);
+                out.writeWord(words.getWord());
             }
-        } finally {
-            out.close();
         }
     }
 
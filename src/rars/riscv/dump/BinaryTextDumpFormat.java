@@ -4,9 +4,7 @@ import rars.riscv.hardware.AddressErrorException;
 import rars.riscv.hardware.Memory;
 
 import java.io.File;
-import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.PrintStream;
 
 /**
  * Class that represents the "binary text" memory dump format.  The output
@@ -30,29 +28,24 @@ public class BinaryTextDumpFormat extends AbstractDumpFormat {
 
     /**
      * Write memory contents in binary text format.  Each line of
-     * text contains one memory word written as 32 '0' and '1' characters.  Written
-     * using PrintStream's println() method.
+     * text contains one memory word written as 32 '0' and '1' characters.  In a
+     * sparse dump, words never written between others are written as zeros.
      * Adapted by Pete Sanderson from code written by Greg Gibeling.
      *
      * @see AbstractDumpFormat
      */
-    public void dumpMemoryRange(File file, int firstAddress, int lastAddress, Memory memory)
+    public void dumpMemoryRange(File file, int firstAddress, int lastAddress, Memory memory, boolean sparse)
             throws AddressErrorException, IOException {
-        PrintStream out = new PrintStream(new FileOutputStream(file));
-        String string = null;
-        try {
-            for (int address = firstAddress; address <= lastAddress; address += Memory.WORD_LENGTH_BYTES) {
-                Integer temp = memory.getRawWordOrNull(address);
-                if (temp == null)
-                    break;
-                string = Integer.toBinaryString(temp);
-                while (string.length() < 32) {
-                    string = '0' + string;
+        try (DumpWriter out = new DumpWriter(file)) {
+            DumpWordIterator words = new DumpWordIterator(memory, firstAddress, lastAddress, sparse);
+            while (words.next()) {
+                for (int i = words.getGapWords(); i > 0; i--) {
+                    out.writeBinary(0, 32);
+                    out.newLine();
                 }
-                out.println(string);
+                out.writeBinary(words.getWord(), 32);
+                out.newLine();
             }
-        } finally {
-            out.close();
         }
     }
 
@@ -67,4 +67,23 @@ public interface DumpFormat {
     void dumpMemoryRange(File file, int firstAddress, int lastAddress, Memory memory)
             throws AddressErrorException, IOException;
 
+    /**
+     * Write memory contents according to the specification for this format,
+     * optionally going past words that were never written.  Formats that do not
+     * support sparse dumps end at the first such word anyway.
+     *
+     * @param file         File in which to store memory contents.
+     * @param firstAddress first (lowest) memory address to dump.  In bytes but
+     *                     must be on word boundary.
+     * @param lastAddress  last (highest) memory address to dump.  In bytes but
+     *                     must be on word boundary.  Will dump the word that starts at this address.
+     * @param sparse       if true, words never written are left out, rather than ending the dump.
+     * @throws AddressErrorException if firstAddress is invalid or not on a word boundary.
+     * @throws IOException           if error occurs during file output.
+     */
+    default void dumpMemoryRange(File file, int firstAddress, int lastAddress, Memory memory, boolean sparse)
+            throws AddressErrorException, IOException {
+        dumpMemoryRange(file, firstAddress, lastAddress, memory);
+    }
+
 }
\ No newline at end of file
@@ -0,0 +1,112 @@
+package rars.riscv.dump;
+
+import rars.riscv.hardware.AddressErrorException;
+import rars.riscv.hardware.Memory;
+
+/**
+ * Goes through the words of a memory range for a dump, reading them a block at a time.
+ * A dump ends at the first word that was never written (see Memory.getRawWordOrNull()),
+ * unless it is sparse: then it goes on with the next word that was written, skipping
+ * blocks never referenced, and {@link #followsGap()} tells where that happened.
+ * <p>
+ * Typical use:
+ * <pre>
+ * DumpWordIterator words = new DumpWordIterator(memory, firstAddress, lastAddress, sparse);
+ * while (words.next()) {
+ *     ... words.getAddress() ... words.getWord() ...
+ * }
+ * </pre>
+ */
+public class DumpWordIterator {
+    private static final int BUFFER_WORDS = 1024;
+
+    private final Memory memory;
+    private final boolean sparse;
+    private final long lastAddress;
+    private final int[] words = new int[BUFFER_WORDS];
+    private int count, index;
+    private long bufferAddress, previousEnd;
+    private boolean gap, ended;
+
+    /**
+     * @param memory       memory to dump
+     * @param firstAddress first (lowest) address to dump, on a word boundary
+     * @param lastAddress  address of the last word to dump
+     * @param sparse       whether to go on past words never written
+     */
+    public DumpWordIterator(Memory memory, int firstAddress, int lastAddress, boolean sparse) {
+        this.memory = memory;
+        this.sparse = sparse;
+        this.lastAddress = lastAddress & 0xFFFFFFFFL;
+        this.bufferAddress = firstAddress & 0xFFFFFFFFL;
+        this.ended = bufferAddress > this.lastAddress;
+    }
+
+    /**
+     * Moves to the next word.
+     *
+     * @return false if there are no more words to dump
+     * @throws AddressErrorException if an address is out of range or firstAddress is not on a word boundary
+     */
+    public boolean next() throws AddressErrorException {
+        if (++index < count) {
+            gap = false;
+            return true;
+        }
+        if (ended) {
+            return false;
+        }
+        long address = bufferAddress + (long) count * Memory.WORD_LENGTH_BYTES;
+        previousEnd = address;
+        int read = read(address);
+        gap = false;
+        if (read == 0 && sparse) {
+            int next = memory.getAddressOfNextWord((int) address, (int) lastAddress);
+            if (next != -1) {
+                address = next & 0xFFFFFFFFL;
+                read = read(address);
+                gap = true;
+            }
+        }
+        bufferAddress = address;
+        count = read;
+        index = 0;
+        long end = address + (long) read * Memory.WORD_LENGTH_BYTES;
+        // Ended by a word never written, unless sparse, or by the end of the range
+        ended = read == 0 || end > lastAddress || !sparse && read < BUFFER_WORDS;
+        return read > 0;
+    }
+
+    private int read(long address) throws AddressErrorException {
+        int wanted = (int) Math.min(BUFFER_WORDS, (lastAddress - address) / Memory.WORD_LENGTH_BYTES + 1);
+        return memory.getWordsOrNull((int) address, words, 0, wanted);
+    }
+
+    /**
+     * @return the address of the current word
+     */
+    public int getAddress() {
+        return (int) (bufferAddress + (long) index * Memory.WORD_LENGTH_BYTES);
+    }
+
+    /**
+     * @return the current word
+     */
+    public int getWord() {
+        return words[index];
+    }
+
+    /**
+     * @return whether words were skipped before the current one, which is only in a sparse dump
+     */
+    public boolean followsGap() {
+        return gap;
+    }
+
+    /**
+     * @return the number of words skipped before the current one
+     */
+    public int getGapWords() {
+        return gap ? (int) ((bufferAddress - previousEnd) / Memory.WORD_LENGTH_BYTES) : 0;
+    }
+}
@@ -0,0 +1,138 @@
+package rars.riscv.dump;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Buffered output of a memory dump to a file, through a FileChannel.  Text is written in
+ * the platform's default charset with its line separator, as a PrintStream would, and
+ * binary words in little-endian byte order.
+ *
+ * @see AbstractDumpFormat
+ */
+public class DumpWriter implements Closeable {
+    private static final int BUFFER_BYTES = 1 << 16;
+    private static final byte[] HEX_DIGITS = "0123456789abcdef".getBytes();
+    private static final byte[] UPPER_HEX_DIGITS = "0123456789ABCDEF".getBytes();
+    private static final byte[] LINE_SEPARATOR = System.lineSeparator().getBytes();
+
+    private final FileChannel channel;
+    private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+    private long skipped;
+
+    /**
+     * Creates the file, or empties it if it exists.
+     */
+    public DumpWriter(File file) throws IOException {
+        channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+    }
+
+    public void write(int b) throws IOException {
+        reserve(1);
+        buffer.put((byte) b);
+    }
+
+    public void write(String text) throws IOException {
+        int length = text.length();
+        for (int i = 0; i < length; i++) {
+            if (text.charAt(i) >= 0x80) {
+                byte[] bytes = text.getBytes(Charset.defaultCharset());
+                for (int written = 0; written < bytes.length; ) {
+                    reserve(1);
+                    int count = Math.min(buffer.remaining(), bytes.length - written);
+                    buffer.put(bytes, written, count);
+                    written += count;
+                }
+                return;
+            }
+        }
+        for (int i = 0; i < length; ) {
+            reserve(1);
+            int end = Math.min(length, i + buffer.remaining());
+            for (; i < end; i++) {
+                buffer.put((byte) text.charAt(i));
+            }
+        }
+    }
+
+    /**
+     * Writes the low digits of a value in hexadecimal, with leading zeros.
+     *
+     * @param value     the value
+     * @param digits    number of digits, at most 16
+     * @param upperCase whether to use upper case letters
+     */
+    public void writeHex(long value, int digits, boolean upperCase) throws IOException {
+        byte[] hex = upperCase ? UPPER_HEX_DIGITS : HEX_DIGITS;
+        reserve(digits);
+        for (int shift = (digits - 1) * 4; shift >= 0; shift -= 4) {
+            buffer.put(hex[(int) (value >>> shift) & 0xF]);
+        }
+    }
+
+    /**
+     * Writes the low bits of a value as '0' and '1' characters, most significant first.
+     */
+    public void writeBinary(int value, int bits) throws IOException {
+        reserve(bits);
+        for (int bit = bits - 1; bit >= 0; bit--) {
+            buffer.put((byte) ('0' + ((value >>> bit) & 1)));
+        }
+    }
+
+    public void newLine() throws IOException {
+        reserve(LINE_SEPARATOR.length);
+        buffer.put(LINE_SEPARATOR);
+    }
+
+    /**
+     * Writes a word as 4 bytes, least significant byte first.
+     */
+    public void writeWord(int word) throws IOException {
+        reserve(4);
+        buffer.putInt(word);
+    }
+
+    /**
+     * Leaves bytes out of the file, which read as zeros.  Where the file system supports it
+     * they take no space.  Nothing is written for bytes skipped at the end of the file.
+     */
+    public void skip(long bytes) throws IOException {
+        flush();
+        skipped += bytes;
+    }
+
+    public void close() throws IOException {
+        try {
+            skipped = 0;
+            flush();
+        } finally {
+            channel.close();
+        }
+    }
+
+    private void reserve(int bytes) throws IOException {
+        if (buffer.remaining() < bytes || skipped != 0) {
+            flush();
+            if (skipped != 0) {
+                channel.position(channel.position() + skipped);
+                skipped = 0;
+            }
+        }
+    }
+
+    private void flush() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+}
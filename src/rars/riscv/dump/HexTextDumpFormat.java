@@ -4,9 +4,7 @@ import rars.riscv.hardware.AddressErrorException;
 import rars.riscv.hardware.Memory;
 
 import java.io.File;
-import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.PrintStream;
 
 /**
  * Class that represents the "hexadecimal text" memory dump format.  The output
@@ -30,29 +28,24 @@ public class HexTextDumpFormat extends AbstractDumpFormat {
 
     /**
      * Write memory contents in hexadecimal text format.  Each line of
-     * text contains one memory word written in hexadecimal characters.  Written
-     * using PrintStream's println() method.
+     * text contains one memory word written in hexadecimal characters.  In a
+     * sparse dump, words never written between others are written as zeros.
      * Adapted by Pete Sanderson from code written by Greg Gibeling.
      *
      * @see AbstractDumpFormat
      */
-    public void dumpMemoryRange(File file, int firstAddress, int lastAddress, Memory memory)
+    public void dumpMemoryRange(File file, int firstAddress, int lastAddress, Memory memory, boolean sparse)
             throws AddressErrorException, IOException {
-        PrintStream out = new PrintStream(new FileOutputStream(file));
-        String string = null;
-        try {
-            for (int address = firstAddress; address <= lastAddress; address += Memory.WORD_LENGTH_BYTES) {
-                Integer temp = memory.getRawWordOrNull(address);
-                if (temp == null)
-                    break;
-                string = Integer.toHexString(temp);
-                while (string.length() < 8) {
-                    string = '0' + string;
+        try (DumpWriter out = new DumpWriter(file)) {
+            DumpWordIterator words = new DumpWordIterator(memory, firstAddress, lastAddress, sparse);
+            while (words.next()) {
+                for (int i = words.getGapWords(); i > 0; i--) {
+                    out.writeHex(0, 8, false);
+                    out.newLine();
                 }
-                out.println(string);
+                out.writeHex(words.getWord(), 8, false);
+                out.newLine();
             }
-        } finally {
-            out.close();
         }
     }
 
@@ -4,9 +4,7 @@ import rars.riscv.hardware.AddressErrorException;
 import rars.riscv.hardware.Memory;
 
 import java.io.File;
-import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.PrintStream;
 
 /**
  * Intel's Hex memory initialization format
@@ -26,47 +24,42 @@ public class IntelHexDumpFormat extends AbstractDumpFormat {
 
     /**
      * Write memory contents according to the Memory Initialization File
-     * (MIF) specification.
+     * (MIF) specification.  Record addresses are offsets from the first address;
+     * beyond 64K an extended linear address record gives their upper 16 bits.
+     * In a sparse dump, words never written are left out.
      *
      * @see AbstractDumpFormat
      */
-    public void dumpMemoryRange(File file, int firstAddress, int lastAddress, Memory memory)
+    public void dumpMemoryRange(File file, int firstAddress, int lastAddress, Memory memory, boolean sparse)
             throws AddressErrorException, IOException {
-        PrintStream out = new PrintStream(new FileOutputStream(file));
-        String string = null;
-        try {
-            for (int address = firstAddress; address <= lastAddress; address += Memory.WORD_LENGTH_BYTES) {
-                Integer temp = memory.getRawWordOrNull(address);
-                if (temp == null)
-                    break;
-                string = Integer.toHexString(temp);
-                while (string.length() < 8) {
-                    string = '0' + string;
+        try (DumpWriter out = new DumpWriter(file)) {
+            DumpWordIterator words = new DumpWordIterator(memory, firstAddress, lastAddress, sparse);
+            int upper = 0;
+            while (words.next()) {
+                int offset = words.getAddress() - firstAddress;
+                if (offset >>> 16 != upper) {
+                    upper = offset >>> 16;
+                    out.write(":02000004");
+                    out.writeHex(upper, 4, true);
+                    out.writeHex(checksum(2 + 4 + (upper >> 8) + (upper & 0xFF)), 2, true);
+                    out.newLine();
                 }
-                String addr = Integer.toHexString(address - firstAddress);
-                while (addr.length() < 4) {
-                    addr = '0' + addr;
-                }
-                String chksum;
-                int tmp_chksum = 0;
-                tmp_chksum += 4;
-                tmp_chksum += 0xFF & (address - firstAddress);
-                tmp_chksum += 0xFF & ((address - firstAddress) >> 8);
-                tmp_chksum += 0xFF & temp;
-                tmp_chksum += 0xFF & (temp >> 8);
-                tmp_chksum += 0xFF & (temp >> 16);
-                tmp_chksum += 0xFF & (temp >> 24);
-                tmp_chksum = tmp_chksum % 256;
-                tmp_chksum = ~tmp_chksum + 1;
-                chksum = Integer.toHexString(0xFF & tmp_chksum);
-                if (chksum.length() == 1) chksum = '0' + chksum;
-                String finalstr = ":04" + addr + "00" + string + chksum;
-                out.println(finalstr.toUpperCase());
+                int word = words.getWord();
+                out.write(":04");
+                out.writeHex(offset, 4, true);
+                out.write("00");
+                out.writeHex(word, 8, true);
+                out.writeHex(checksum(4 + (0xFF & offset) + (0xFF & (offset >> 8)) + (0xFF & word)
+                        + (0xFF & (word >> 8)) + (0xFF & (word >> 16)) + (0xFF & (word >> 24))), 2, true);
+                out.newLine();
             }
-            out.println(":00000001FF");
-        } finally {
-            out.close();
+            out.write(":00000001FF");
+            out.newLine();
         }
+    }
 
+    // Two's complement of the low byte of the sum of a record's bytes
+    private static int checksum(int sum) {
+        return -sum & 0xFF;
     }
 }
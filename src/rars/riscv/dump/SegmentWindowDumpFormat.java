@@ -8,15 +8,12 @@ import rars.riscv.hardware.Memory;
 import rars.util.Binary;
 
 import java.io.File;
-import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.PrintStream;
 
 /**
  * Dump memory contents in Segment Window format.  Each line of
  * text output resembles the Text Segment Window or Data Segment Window
- * depending on which segment is selected for the dump.  Written
- * using PrintStream's println() method.  Each line of Text Segment
+ * depending on which segment is selected for the dump.  Each line of Text Segment
  * Window represents one word of text segment memory.  The line
  * includes (1) address, (2) machine code in hex, (3) basic instruction,
  * (4) source line.  Each line of Data Segment Window represents 8
@@ -44,44 +41,45 @@ public class SegmentWindowDumpFormat extends AbstractDumpFormat {
     /**
      * Write memory contents in Segment Window format.  Each line of
      * text output resembles the Text Segment Window or Data Segment Window
-     * depending on which segment is selected for the dump.  Written
-     * using PrintStream's println() method.
+     * depending on which segment is selected for the dump.  In a sparse dump,
+     * words never written are left out and a data line stops short before them.
      *
      * @see AbstractDumpFormat
      */
-    public void dumpMemoryRange(File file, int firstAddress, int lastAddress, Memory memory)
+    public void dumpMemoryRange(File file, int firstAddress, int lastAddress, Memory memory, boolean sparse)
             throws AddressErrorException, IOException {
 
-        PrintStream out = new PrintStream(new FileOutputStream(file));
-
         // TODO: check if these settings work right
         boolean hexAddresses = Globals.getSettings().getBooleanSetting(Settings.Bool.DISPLAY_ADDRESSES_IN_HEX);
 
         // If address in data segment, print in same format as Data Segment Window
         if (Memory.inDataSegment(firstAddress)) {
             boolean hexValues = Globals.getSettings().getBooleanSetting(Settings.Bool.DISPLAY_VALUES_IN_HEX);
-            int offset = 0;
-            String string = "";
-            try {
-                for (int address = firstAddress; address <= lastAddress; address += Memory.WORD_LENGTH_BYTES) {
+            try (DumpWriter out = new DumpWriter(file)) {
+                DumpWordIterator words = new DumpWordIterator(memory, firstAddress, lastAddress, sparse);
+                int offset = 0;
+                while (words.next()) {
+                    if (words.followsGap() && offset % 8 != 0) {
+                        out.newLine();
+                        offset = 0;
+                    }
                     if (offset % 8 == 0) {
-                        string = ((hexAddresses) ? Binary.intToHexString(address) : Binary.unsignedIntToIntString(address)) + "    ";
+                        int address = words.getAddress();
+                        out.write(((hexAddresses) ? Binary.intToHexString(address) : Binary.unsignedIntToIntString(address)) + "    ");
                     }
                     offset++;
-                    Integer temp = memory.getRawWordOrNull(address);
-                    if (temp == null)
-                        break;
-                    string += ((hexValues)
+                    int temp = words.getWord();
+                    out.write(((hexValues)
                             ? Binary.intToHexString(temp)
-                            : ("           " + temp).substring(temp.toString().length())
-                    ) + " ";
+                            : ("           " + temp).substring(Integer.toString(temp).length())
+                    ) + " ");
                     if (offset % 8 == 0) {
-                        out.println(string);
-                        string = "";
+                        out.newLine();
                     }
                 }
-            } finally {
-                out.close();
+                if (offset % 8 != 0) {
+                    out.newLine();
+                }
             }
             return;
         }
@@ -89,18 +87,17 @@ public class SegmentWindowDumpFormat extends AbstractDumpFormat {
         if (!Memory.inTextSegment(firstAddress)) {
             return;
         }
-        
+
         // If address in text segment, print in same format as Text Segment Window
-        out.println("Address     Code        Basic                        Line Source");
-        out.println();
-        String string = null;
-        try {
-            for (int address = firstAddress; address <= lastAddress; address += Memory.WORD_LENGTH_BYTES) {
-                string = ((hexAddresses) ? Binary.intToHexString(address) : Binary.unsignedIntToIntString(address)) + "  ";
-                Integer temp = memory.getRawWordOrNull(address);
-                if (temp == null)
-                    break;
-                string += Binary.intToHexString(temp) + "  ";
+        try (DumpWriter out = new DumpWriter(file)) {
+            out.write("Address     Code        Basic                        Line Source");
+            out.newLine();
+            out.newLine();
+            DumpWordIterator words = new DumpWordIterator(memory, firstAddress, lastAddress, sparse);
+            while (words.next()) {
+                int address = words.getAddress();
+                String string = ((hexAddresses) ? Binary.intToHexString(address) : Binary.unsignedIntToIntString(address)) + "  ";
+                string += Binary.intToHexString(words.getWord()) + "  ";
                 try {
                     ProgramStatement ps = memory.getStatement(address);
                     string += (ps.getPrintableBasicAssemblyStatement() + "                             ").substring(0, 29);
@@ -108,10 +105,9 @@ public class SegmentWindowDumpFormat extends AbstractDumpFormat {
                     string += ps.getSource();
                 } catch (AddressErrorException aee) {
                 }
-                out.println(string);
+                out.write(string);
+                out.newLine();
             }
-        } finally {
-            out.close();
         }
     }
 
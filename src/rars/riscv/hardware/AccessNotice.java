@@ -31,6 +31,11 @@ public abstract class AccessNotice {
         thread = Thread.currentThread();
     }
 
+    // Only for notices that are reused, see MemoryAccessNotice
+    void setAccessType(int type) {
+        accessType = type;
+    }
+
     /**
      * Get the access type: READ or WRITE.
      *
@@ -0,0 +1,250 @@
+package rars.riscv.hardware;
+
+import rars.riscv.Instruction;
+
+import java.util.Observable;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+
+/**
+ * Memory observer that hands accesses to a consumer on a separate thread, in batches.
+ * <p>
+ * Registered with Memory like any other observer, but its update method only copies the
+ * access (type, address, length, value and the address of the instruction making it) into
+ * a ring buffer and returns.  A daemon thread drains the buffer and passes each run of
+ * records to the consumer as a {@link Batch}, so a slow consumer no longer holds up the
+ * simulator while it has the memory and registers lock.
+ * <p>
+ * Only accesses made by the executing program are recorded, the same filter
+ * AbstractToolAndApplication applies to notices.  There is exactly one producer
+ * (the simulator thread) and one consumer, so no locking is needed.
+ * <p>
+ * The consumer runs while the simulator keeps going, so it must not take
+ * Globals.memoryAndRegistersLock when using LOSSLESS delivery: the simulator may be
+ * waiting on it for space while holding that lock.
+ */
+public class AccessStream implements TransientNoticeObserver {
+    /**
+     * What to do when the consumer falls behind and the buffer fills.
+     */
+    public enum Delivery {
+        /**
+         * Every access is delivered; the simulator waits for the consumer to make room.
+         */
+        LOSSLESS,
+        /**
+         * Accesses made while the buffer is full are dropped and counted, so the simulator
+         * never waits.  Suitable for displays that only need a sample of the traffic.
+         */
+        LOSSY
+    }
+
+    /**
+     * Default number of records the buffer holds.
+     */
+    public static final int DEFAULT_CAPACITY = 1 << 14;
+
+    private final Delivery delivery;
+    private final Consumer<Batch> consumer;
+    private final int capacity, mask;
+    private final byte[] types;
+    private final int[] lengths;
+    private final int[] addresses, values, pcs;
+    private final Batch batch = new Batch();
+    private final Thread thread;
+
+    // head is only written by the consumer, tail and dropped only by the producer
+    private volatile long head, tail, dropped;
+    private volatile boolean closed;
+
+    /**
+     * Creates a stream with the default capacity and starts its delivery thread.
+     *
+     * @param name     name for the delivery thread
+     * @param delivery behaviour when the buffer is full
+     * @param consumer receives each batch on the delivery thread
+     */
+    public AccessStream(String name, Delivery delivery, Consumer<Batch> consumer) {
+        this(name, delivery, consumer, DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Creates a stream and starts its delivery thread.
+     *
+     * @param name     name for the delivery thread
+     * @param delivery behaviour when the buffer is full
+     * @param consumer receives each batch on the delivery thread
+     * @param capacity number of records buffered, rounded up to a power of two
+     */
+    public AccessStream(String name, Delivery delivery, Consumer<Batch> consumer, int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("capacity must be positive");
+        }
+        this.delivery = delivery;
+        this.consumer = consumer;
+        int rounded = Integer.highestOneBit(capacity);
+        this.capacity = (rounded < capacity) ? rounded << 1 : rounded;
+        this.mask = this.capacity - 1;
+        types = new byte[this.capacity];
+        lengths = new int[this.capacity];
+        addresses = new int[this.capacity];
+        values = new int[this.capacity];
+        pcs = new int[this.capacity];
+        thread = new Thread(this::deliver, name);
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Records a memory access.  Called by Memory on the thread making the access.
+     */
+    public void update(Observable resource, Object accessNotice) {
+        if (!(accessNotice instanceof MemoryAccessNotice) || closed) {
+            return;
+        }
+        MemoryAccessNotice notice = (MemoryAccessNotice) accessNotice;
+        if (!notice.accessIsFromRISCV()) {
+            return;
+        }
+        long t = tail;
+        if (t - head == capacity) {
+            if (delivery == Delivery.LOSSY) {
+                dropped = dropped + 1;
+                return;
+            }
+            while (t - head == capacity) {
+                if (closed || !thread.isAlive()) return;
+                LockSupport.parkNanos(this, 50_000);
+            }
+        }
+        int i = (int) t & mask;
+        types[i] = (byte) notice.getAccessType();
+        lengths[i] = notice.getLength();
+        addresses[i] = notice.getAddress();
+        values[i] = notice.getValue();
+        // The program counter has already moved past the instruction doing the access
+        pcs[i] = (int) RegisterFile.getProgramCounterRegister().getValueNoNotify() - RegisterFile.getInstructionLength();
+        tail = t + 1;
+    }
+
+    /**
+     * @return the number of accesses dropped so far because the buffer was full
+     */
+    public long getDropped() {
+        return dropped;
+    }
+
+    /**
+     * Stops accepting accesses.  Whatever is already buffered is still delivered, after
+     * which the delivery thread ends.  The stream should also be removed from Memory.
+     */
+    public void close() {
+        closed = true;
+        LockSupport.unpark(thread);
+    }
+
+    /**
+     * Waits until everything recorded so far has been delivered, or the stream has closed.
+     *
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public void flush() throws InterruptedException {
+        long target = tail;
+        while (head < target && thread.isAlive()) {
+            LockSupport.unpark(thread);
+            Thread.sleep(1);
+        }
+    }
+
+    private void deliver() {
+        long reported = 0;
+        while (true) {
+            long h = head, t = tail;
+            if (h == t) {
+                if (closed) return;
+                LockSupport.parkNanos(this, 1_000_000);
+                continue;
+            }
+            // Deliver up to the end of the array; the rest goes in the next batch
+            int start = (int) h & mask;
+            int size = (int) Math.min(t - h, capacity - start);
+            long lost = dropped;
+            batch.start = start;
+            batch.size = size;
+            batch.dropped = lost - reported;
+            reported = lost;
+            try {
+                consumer.accept(batch);
+            } catch (RuntimeException e) {
+                e.printStackTrace();
+            }
+            head = h + size;
+        }
+    }
+
+    /**
+     * A run of consecutive accesses, oldest first.  Only valid during the consumer call;
+     * the same object is reused for every batch.
+     */
+    public final class Batch {
+        private int start, size;
+        private long dropped;
+
+        private Batch() {
+        }
+
+        /**
+         * @return the number of accesses in this batch
+         */
+        public int size() {
+            return size;
+        }
+
+        /**
+         * @return accesses dropped between the previous batch and this one (always 0 for LOSSLESS
+         * delivery); drops after the last batch only show up in AccessStream.getDropped()
+         */
+        public long getDropped() {
+            return dropped;
+        }
+
+        /**
+         * @return AccessNotice.READ or AccessNotice.WRITE
+         */
+        public int getAccessType(int i) {
+            return types[index(i)];
+        }
+
+        public int getAddress(int i) {
+            return addresses[index(i)];
+        }
+
+        /**
+         * @return length of the access in bytes (1, 2 or 4)
+         */
+        public int getLength(int i) {
+            return lengths[index(i)];
+        }
+
+        /**
+         * @return the value read or written
+         */
+        public int getValue(int i) {
+            return values[index(i)];
+        }
+
+        /**
+         * @return address of the instruction that made the access
+         */
+        public int getProgramCounter(int i) {
+            return pcs[index(i)];
+        }
+
+        private int index(int i) {
+            if (i < 0 || i >= size) {
+                throw new IndexOutOfBoundsException("index " + i + " out of batch of " + size);
+            }
+            return start + i;
+        }
+    }
+}
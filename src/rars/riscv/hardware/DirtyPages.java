@@ -0,0 +1,79 @@
+package rars.riscv.hardware;
+
+import java.util.Arrays;
+
+/**
+ * Records which pages of memory have been written, so that a display can redraw only what
+ * changed since it was last painted.  A display registers one with
+ * {@link Memory#addDirtyPages(DirtyPages)}, and before each repaint calls {@link #take()} and then
+ * asks {@link #wasWritten(int, int)} about the addresses it shows.
+ * <p>
+ * Pages are {@value #PAGE_BYTES} bytes.  Writes are marked by the simulator thread and taken by
+ * the display's thread; a write that lands after {@link #take()} is kept for the next one.
+ */
+public class DirtyPages {
+    public static final int PAGE_BYTES = 64;
+    // Each leaf is 64 longs of 64 page bits, covering 256 KB of the address space
+    private static final int LEAF_SHIFT = 18;
+    private static final int LEAVES = 1 << (32 - LEAF_SHIFT);
+
+    private long[][] marked = new long[LEAVES][];
+    private long[][] taken = new long[LEAVES][];
+    private boolean allMarked = true, allTaken;
+
+    synchronized void mark(int address, int length) {
+        if (allMarked || length <= 0) return;
+        int last = lastAddress(address, length);
+        for (int page = address >>> 6; ; page++) {
+            long[] leaf = marked[page >>> (LEAF_SHIFT - 6)];
+            if (leaf == null) {
+                leaf = marked[page >>> (LEAF_SHIFT - 6)] = new long[64];
+            }
+            leaf[(page >>> 6) & 63] |= 1L << (page & 63);
+            if (page == last >>> 6) break;
+        }
+    }
+
+    /**
+     * Marks all of memory as written, as when it is cleared or restored.
+     */
+    public synchronized void markAll() {
+        allMarked = true;
+    }
+
+    /**
+     * Takes the pages written since the last call, which {@link #wasWritten(int, int)} then reports,
+     * and starts recording afresh.
+     */
+    public synchronized void take() {
+        long[][] swap = taken;
+        taken = marked;
+        allTaken = allMarked;
+        marked = swap;
+        allMarked = false;
+        for (long[] leaf : marked) {
+            if (leaf != null) Arrays.fill(leaf, 0);
+        }
+    }
+
+    /**
+     * @return whether any page of the given range was written before the last {@link #take()}
+     */
+    public synchronized boolean wasWritten(int address, int length) {
+        if (allTaken) return true;
+        int last = lastAddress(address, length);
+        for (int page = address >>> 6; ; page++) {
+            long[] leaf = taken[page >>> (LEAF_SHIFT - 6)];
+            if (leaf != null && (leaf[(page >>> 6) & 63] & (1L << (page & 63))) != 0) {
+                return true;
+            }
+            if (page == last >>> 6) return false;
+        }
+    }
+
+    // The last address of a range, which stops at the top of memory
+    private static int lastAddress(int address, int length) {
+        int last = address + length - 1;
+        return Integer.compareUnsigned(last, address) < 0 ? -1 : last;
+    }
+}
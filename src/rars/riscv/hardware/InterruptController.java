@@ -100,7 +100,7 @@ public class InterruptController {
     public static SimulationException claimTrap() {
         synchronized (lock) {
             assert trapPending : "Cannot claim, no trap pending";
-            assert trapPC == RegisterFile.getProgramCounter() - Instruction.INSTRUCTION_LENGTH : "trapPC doesn't match current pc";
+            assert trapPC == RegisterFile.getProgramCounter() - RegisterFile.getInstructionLength() : "trapPC doesn't match current pc";
             trapPending = false;
             return trapSE;
         }
@@ -4,13 +4,15 @@ import rars.Globals;
 import rars.ProgramStatement;
 import rars.Settings;
 import rars.SimulationException;
+import rars.riscv.CompressedInstruction;
 import rars.riscv.Instruction;
 import rars.riscv.InstructionSet;
+import rars.simulator.TimeTravel;
 
-import java.util.Collection;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Observable;
 import java.util.Observer;
-import java.util.Vector;
 
 /**
  * Represents memory. Different segments are represented by different data structs.
@@ -96,12 +98,22 @@ public class Memory extends Observable {
     // This assures that observers are not bombarded with notices from memory
     // addresses they do not care about.
     //
-    // Would like a tree-like implementation, but that is complicated by this fact:
-    // key for insertion into the tree would be based on Comparable using both low 
-    // and high end of address range, but retrieval from the tree has to be based
-    // on target address being ANYWHERE IN THE RANGE (not an exact key match).
+    // Every load, store and fetch checks for observers, so lookup has to be cheap.  The
+    // registrations are kept in a list for add/delete, and an immutable ObserverIndex is
+    // rebuilt from it on every change.  The index has a bitmap of observed 4K pages, so
+    // an access nobody watches costs one array lookup, and the ranges sorted by low end
+    // with a running maximum of high ends, so the candidates for an address are found
+    // by binary search instead of by walking every registration.
 
-    private Collection<MemoryObservable> observables = getNewMemoryObserversCollection();
+    private final ArrayList<MemoryObservable> observables = new ArrayList<>();
+    private volatile ObserverIndex observerIndex = ObserverIndex.EMPTY;
+
+    // Displays that redraw only what was written since they last painted
+    private volatile DirtyPages[] dirtyPages = new DirtyPages[0];
+
+    // One reusable notice per thread for observers that promise not to keep notices.
+    private static final ThreadLocal<MemoryAccessNotice> flyweightNotice =
+            ThreadLocal.withInitial(() -> new MemoryAccessNotice(AccessNotice.READ, 0, 0, 0));
 
     // The data segment is allocated in blocks of 1024 ints (4096 bytes).  Each block is
     // referenced by a "block table" entry, and the table has 1024 entries.  The capacity
@@ -171,6 +183,31 @@ public class Memory extends Observable {
     private static final int TEXT_BLOCK_TABLE_LENGTH = 1024; // Each entry of table points to a block.
     private ProgramStatement[][] textBlockTable;
 
+    // Machine code written to the text segment while running (self-modifying code) is kept as
+    // raw words alongside the statements.  Its statement is UNDECODED until it is fetched, so
+    // writes cost no allocation and code is only decoded once per write.  Both tables have
+    // the same blocks allocated.
+    private int[][] textWordTable;
+    private static final ProgramStatement UNDECODED = new ProgramStatement(null, "", null, null, null, 0, 0);
+
+    // Statements for instructions starting in the middle of a word (compressed code), by the
+    // word.  They are decoded from the machine code when fetched and only reused while it is
+    // unchanged, so this is a cache that checkpoints and copies leave out.
+    private ProgramStatement[][] textHalfTable;
+
+    // Statements decoded from outside the text segment (self-modifying code executing data),
+    // reused while the code at their address is unchanged.  Direct mapped by address.
+    private static final int DECODED_DATA_LENGTH = 1024;
+    private ProgramStatement[] decodedData;
+
+    // Checkpoints (see checkpoint() below) share blocks with the live tables rather than
+    // copying them.  A block whose flag is set here is referenced by at least one checkpoint
+    // and is cloned before it is next written, so taking a checkpoint only costs the blocks
+    // that are written afterwards.  blocksShared is false whenever no flag can be set, which
+    // keeps the store path free of the extra lookup for programs that never checkpoint.
+    private boolean[] dataBlockShared, stackBlockShared, memoryMapBlockShared, textBlockShared;
+    private boolean blocksShared;
+
     // Set "top" address boundary to go with each "base" address.  This determines permissable
     // address range for user program.  Currently limit is 4MB, or 1024 * 1024 * 4 bytes based
     // on the table structures described above (except memory mapped IO, limited to 64KB by range).
@@ -214,10 +251,14 @@ public class Memory extends Observable {
         for(int i = 0; i < textBlockTable.length; i++){
             if(other.textBlockTable[i] != null){
                 textBlockTable[i] = other.textBlockTable[i].clone(); // TODO: potentially make ProgramStatement clonable
+                textWordTable[i] = other.textWordTable[i].clone();
             }else{
                 textBlockTable[i] = null;
+                textWordTable[i] = null;
             }
         }
+        textHalfTable = new ProgramStatement[TEXT_BLOCK_TABLE_LENGTH][];
+        decodedData = new ProgramStatement[DECODED_DATA_LENGTH];
         for(int i = 0; i < dataBlockTable.length; i++){
             if(other.dataBlockTable[i] != null){
                 dataBlockTable[i] = other.dataBlockTable[i].clone();
@@ -239,9 +280,80 @@ public class Memory extends Observable {
                 memoryMapBlockTable[i] = null;
             }
         }
+        clearSharedBlocks();
+        markAllDirty();
         return true;
     }
 
+    /**
+     * Captures the current contents of memory, including the heap allocation pointer.
+     * Blocks are shared copy-on-write between the checkpoint and this memory, so the
+     * cost is proportional to the number of allocated blocks rather than their contents.
+     *
+     * @return a checkpoint that can later be passed to {@link #restore(Checkpoint)}
+     */
+    public synchronized Checkpoint checkpoint() {
+        Checkpoint checkpoint = new Checkpoint(textBlockTable.clone(), textWordTable.clone(), dataBlockTable.clone(),
+                stackBlockTable.clone(), memoryMapBlockTable.clone(), heapAddress);
+        shareBlocks();
+        return checkpoint;
+    }
+
+    /**
+     * Returns memory to the contents captured by a checkpoint.  Observers are not notified;
+     * callers are expected to refresh any displays themselves.  The checkpoint remains valid
+     * and may be restored again.
+     *
+     * @param checkpoint a checkpoint previously taken from this memory
+     */
+    public synchronized void restore(Checkpoint checkpoint) {
+        textBlockTable = checkpoint.text.clone();
+        textWordTable = checkpoint.textWords.clone();
+        dataBlockTable = checkpoint.data.clone();
+        stackBlockTable = checkpoint.stack.clone();
+        memoryMapBlockTable = checkpoint.memoryMap.clone();
+        heapAddress = checkpoint.heapAddress;
+        shareBlocks();
+        markAllDirty();
+    }
+
+    /**
+     * Contents of memory at the time {@link #checkpoint()} was called.  Opaque to clients;
+     * the blocks it references are never written.
+     */
+    public static final class Checkpoint {
+        private final ProgramStatement[][] text;
+        private final int[][] textWords, data, stack, memoryMap;
+        private final int heapAddress;
+
+        private Checkpoint(ProgramStatement[][] text, int[][] textWords, int[][] data, int[][] stack, int[][] memoryMap,
+                           int heapAddress) {
+            this.text = text;
+            this.textWords = textWords;
+            this.data = data;
+            this.stack = stack;
+            this.memoryMap = memoryMap;
+            this.heapAddress = heapAddress;
+        }
+    }
+
+    // Flag every allocated block as shared with a checkpoint.
+    private void shareBlocks() {
+        for (int i = 0; i < textBlockTable.length; i++) textBlockShared[i] = textBlockTable[i] != null;
+        for (int i = 0; i < dataBlockTable.length; i++) dataBlockShared[i] = dataBlockTable[i] != null;
+        for (int i = 0; i < stackBlockTable.length; i++) stackBlockShared[i] = stackBlockTable[i] != null;
+        for (int i = 0; i < memoryMapBlockTable.length; i++) memoryMapBlockShared[i] = memoryMapBlockTable[i] != null;
+        blocksShared = true;
+    }
+
+    private void clearSharedBlocks() {
+        textBlockShared = new boolean[textBlockTable.length];
+        dataBlockShared = new boolean[dataBlockTable.length];
+        stackBlockShared = new boolean[stackBlockTable.length];
+        memoryMapBlockShared = new boolean[memoryMapBlockTable.length];
+        blocksShared = false;
+    }
+
     public static Memory swapInstance(Memory mem){
         Memory temp = uniqueMemoryInstance;
         uniqueMemoryInstance = mem;
@@ -302,9 +414,14 @@ public class Memory extends Observable {
     private void initialize() {
         heapAddress = heapBaseAddress;
         textBlockTable = new ProgramStatement[TEXT_BLOCK_TABLE_LENGTH][];
+        textWordTable = new int[TEXT_BLOCK_TABLE_LENGTH][];
+        textHalfTable = new ProgramStatement[TEXT_BLOCK_TABLE_LENGTH][];
+        decodedData = new ProgramStatement[DECODED_DATA_LENGTH];
         dataBlockTable = new int[BLOCK_TABLE_LENGTH][]; // array of null int[] references
         stackBlockTable = new int[BLOCK_TABLE_LENGTH][];
         memoryMapBlockTable = new int[MMIO_TABLE_LENGTH][];
+        clearSharedBlocks();
+        markAllDirty();
         System.gc(); // call garbage collector on any Table memory just deallocated.
     }
 
@@ -355,7 +472,14 @@ public class Memory extends Observable {
         // This method is very complex and produce wrong results if length>4
         // So clamp the length to 4
         if (length > 4) length = 4;
+        int oldValue = store(address, value, length);
+        markDirty(address, length);
+        notifyAnyObservers(AccessNotice.WRITE, address, length, value);
+        return oldValue;
+    }
 
+    // Does the work of set(), without notifying observers.
+    private int store(int address, int value, int length) throws AddressErrorException {
         int oldValue = 0;
         if (Globals.debug) System.out.println("memory[" + address + "] set to " + value + "(" + length + " bytes)");
         int relativeByteAddress;
@@ -379,10 +503,7 @@ public class Memory extends Observable {
                             "Load address crosses word boundary",
                             SimulationException.LOAD_ADDRESS_MISALIGNED, address);
                 }
-                ProgramStatement oldStatement = getStatementNoNotify((address/4)*4);
-                if (oldStatement != null) {
-                    oldValue = oldStatement.getBinaryStatement();
-                }
+                oldValue = fetchTextWord((address/4)*4);
 
                 // These manipulations set the bits in oldvalue to be like value was placed at address.
                 // TODO: like below, make this more clear
@@ -391,7 +512,7 @@ public class Memory extends Observable {
                 mask <<= (address%4)*8;
                 value = (value&mask) | (oldValue&~mask);
                 oldValue = (oldValue&mask) >> (address%4);
-                setStatement((address/4)*4, new ProgramStatement(value, (address/4)*4));
+                storeTextWord((address/4)*4, value);
             } else {
                 throw new AddressErrorException(
                         "Cannot write directly to text segment!",
@@ -401,12 +522,12 @@ public class Memory extends Observable {
             // memory mapped I/O.
             relativeByteAddress = address - memoryMapBaseAddress;
             oldValue = storeBytesInTable(memoryMapBlockTable, relativeByteAddress, length, value);
+            TimeTravel.memoryMappedWrite(address, value, length);
         } else {
             // falls outside addressing range
             throw new AddressErrorException("address out of range ",
                     SimulationException.STORE_ACCESS_FAULT, address);
         }
-        notifyAnyObservers(AccessNotice.WRITE, address, length, value);
         return oldValue;
     }
 
@@ -438,11 +559,7 @@ public class Memory extends Observable {
             // Burch Mod (Jan 2013): replace throw with call to setStatement
             // DPS adaptation 5-Jul-2013: either throw or call, depending on setting
             if (Globals.getSettings().getBooleanSetting(Settings.Bool.SELF_MODIFYING_CODE_ENABLED)) {
-                ProgramStatement oldStatement = getStatementNoNotify(address);
-                if (oldStatement != null) {
-                    oldValue = oldStatement.getBinaryStatement();
-                }
-                setStatement(address, new ProgramStatement(value, address));
+                oldValue = storeTextWord(address, value);
             } else {
                 throw new AddressErrorException(
                         "Cannot write directly to text segment!",
@@ -452,11 +569,13 @@ public class Memory extends Observable {
             // memory mapped I/O.
             relative = (address - memoryMapBaseAddress) >> 2; // convert byte address to word
             oldValue = storeWordInTable(memoryMapBlockTable, relative, value);
+            TimeTravel.memoryMappedWrite(address, value, 0);
         } else {
             // falls outside addressing range
             throw new AddressErrorException("store address out of range ",
                     SimulationException.STORE_ACCESS_FAULT, address);
         }
+        markDirty(address, WORD_LENGTH_BYTES);
         notifyAnyObservers(AccessNotice.WRITE, address, WORD_LENGTH_BYTES, value);
         if (Globals.getSettings().getBackSteppingEnabled()) {
             Globals.program.getBackStepper().addMemoryRestoreRawWord(address, oldValue);
@@ -466,6 +585,28 @@ public class Memory extends Observable {
 
     ///////////////////////////////////////////////////////////////////////////////////////
 
+    /**
+     * Stores a word in memory-mapped I/O on behalf of a device, such as a timer showing its
+     * time.  Unlike setRawWord(), observers are not notified and nothing is recorded for
+     * backstepping or time travel, as the device stores the value again whenever it changes.
+     * Displays of memory still see the new value.
+     *
+     * @param address Address of the word, in memory-mapped I/O.  Must be word boundary.
+     * @param value   Value to be stored at that address.
+     * @throws AddressErrorException If address is not on word boundary or not in memory-mapped I/O.
+     **/
+    public void setDeviceWord(int address, int value) throws AddressErrorException {
+        checkStoreWordAligned(address);
+        if (address < memoryMapBaseAddress || address >= memoryMapLimitAddress) {
+            throw new AddressErrorException("store address out of range ",
+                    SimulationException.STORE_ACCESS_FAULT, address);
+        }
+        storeWordInTable(memoryMapBlockTable, (address - memoryMapBaseAddress) >> 2, value);
+        markDirty(address, WORD_LENGTH_BYTES);
+    }
+
+    ///////////////////////////////////////////////////////////////////////////////////////
+
     /**
      * Starting at the given word address, write the given value over 4 bytes (a word).
      * The address must be word-aligned.
@@ -563,7 +704,8 @@ public class Memory extends Observable {
     /**
      * Stores ProgramStatement in Text Segment.
      *
-     * @param address   Starting address of Memory address to be set.  Must be word boundary.
+     * @param address   Starting address of Memory address to be set.  Must be word boundary, or halfword
+     *                  boundary if compressed instructions are enabled.
      * @param statement Machine code to be stored starting at that address -- for simulation
      *                  purposes, actually stores reference to ProgramStatement instead of 32-bit machine code.
      * @throws AddressErrorException If address is not on word boundary or is outside Text Segment.
@@ -571,14 +713,37 @@ public class Memory extends Observable {
      **/
 
     public void setStatement(int address, ProgramStatement statement) throws AddressErrorException {
-        checkStoreWordAligned(address);
+        if (!InstructionSet.rvc || address % 2 != 0) {
+            checkStoreWordAligned(address);
+        }
         if (!inTextSegment(address)) {
             throw new AddressErrorException(
                     "Store address to text segment out of range",
                     SimulationException.STORE_ACCESS_FAULT, address);
         }
         if (Globals.debug) System.out.println("memory[" + address + "] set to " + statement.getBinaryStatement());
-        storeProgramStatement(address, statement, textBaseAddress, textBlockTable);
+        storeProgramStatement(address, statement);
+        markDirty(address, statement.getInstructionLength());
+    }
+
+    /**
+     * Stores machine code in the text segment, to be decoded into a ProgramStatement when it
+     * is first fetched.  Unlike setRawWord(), this does not depend on the self-modifying code
+     * setting; it is for loading code.  Observers are not notified.
+     *
+     * @param address Address of the word.  Must be word boundary.
+     * @param value   Machine code, one 32-bit or two compressed instructions (or parts of them).
+     * @throws AddressErrorException If address is not on word boundary or is outside Text Segment.
+     **/
+    public void setMachineCode(int address, int value) throws AddressErrorException {
+        checkStoreWordAligned(address);
+        if (!inTextSegment(address)) {
+            throw new AddressErrorException(
+                    "Store address to text segment out of range",
+                    SimulationException.STORE_ACCESS_FAULT, address);
+        }
+        storeTextWord(address, value);
+        markDirty(address, WORD_LENGTH_BYTES);
     }
 
 
@@ -637,10 +802,10 @@ public class Memory extends Observable {
                 throw new AddressErrorException(
                         "Load address not aligned to word boundary ", SimulationException.LOAD_ADDRESS_MISALIGNED, address);
             }
-            ProgramStatement stmt = getStatementNoNotify((address/4)*4);
+            int word = fetchTextWord((address/4)*4);
             // TODO: maybe find a way to make the bit manipulation more clear
             // It just selects the right bytes from the word loaded
-            value = stmt == null ? 0 : length == 4 ? stmt.getBinaryStatement() : stmt.getBinaryStatement()>>(8*(address%4))&((1<<length*8)-1);
+            value = length == 4 ? word : word>>(8*(address%4))&((1<<length*8)-1);
         } else {
             // falls outside addressing range
             throw new AddressErrorException("address out of range ",
@@ -688,8 +853,7 @@ public class Memory extends Observable {
             // Burch Mod (Jan 2013): replace throw with calls to getStatementNoNotify & getBinaryStatement
             // DPS adaptation 5-Jul-2013: either throw or call, depending on setting
             if (Globals.getSettings().getBooleanSetting(Settings.Bool.SELF_MODIFYING_CODE_ENABLED)) {
-                ProgramStatement stmt = getStatementNoNotify(address);
-                value = stmt == null ? 0 : stmt.getBinaryStatement();
+                value = fetchTextWord(address);
             } else {
                 throw new AddressErrorException(
                         "Cannot read directly from text segment!",
@@ -739,11 +903,7 @@ public class Memory extends Observable {
             relative = (stackBaseAddress - address) >> 2; // convert byte address to words
             value = fetchWordOrNullFromTable(stackBlockTable, relative);
         } else if (inTextSegment(address)) {
-            try {
-                value = (getStatementNoNotify(address) == null) ? null : getStatementNoNotify(address).getBinaryStatement();
-            } catch (AddressErrorException aee) {
-                value = null;
-            }
+            value = fetchTextWordOrNull(address);
         } else {
             // falls outside addressing range
             throw new AddressErrorException("address out of range ", SimulationException.LOAD_ACCESS_FAULT, address);
@@ -765,15 +925,115 @@ public class Memory extends Observable {
      * @throws AddressErrorException if the base address is not on a word boundary
      */
     public int getAddressOfFirstNull(int baseAddress, int limitAddress) throws AddressErrorException {
+        int[] words = new int[BLOCK_LENGTH_WORDS];
         int address = baseAddress;
-        for (; address < limitAddress; address += Memory.WORD_LENGTH_BYTES) {
-            if (getRawWordOrNull(address) == null) {
+        while (address < limitAddress) {
+            int count = (int) Math.min(words.length, ((long) limitAddress - address + 3) / WORD_LENGTH_BYTES);
+            int read = getWordsOrNull(address, words, 0, count);
+            address += read * WORD_LENGTH_BYTES;
+            if (read < count) {
                 break;
             }
         }
         return address;
     }
 
+    /**
+     * Reads consecutive words into an array, as getRawWordOrNull() would one at a time, up to
+     * the first "null" word.  Data segment words are copied a block at a time.  Observers are
+     * NOT notified.
+     *
+     * @param address Starting address of the first word to be read.
+     * @param words   array receiving the words
+     * @param offset  index in the array of the first word
+     * @param count   maximum number of words to read
+     * @return the number of words read, less than count if a "null" word was reached
+     * @throws AddressErrorException If address is not on word boundary or a word is out of range.
+     */
+    public synchronized int getWordsOrNull(int address, int[] words, int offset, int count) throws AddressErrorException {
+        checkLoadWordAligned(address);
+        int read = 0;
+        while (read < count) {
+            if (inDataSegment(address)) {
+                int relative = (address - dataSegmentBaseAddress) >> 2;
+                int[] block = dataBlockTable[relative / BLOCK_LENGTH_WORDS];
+                if (block == null) {
+                    break;
+                }
+                int first = relative % BLOCK_LENGTH_WORDS;
+                int length = Math.min(count - read, BLOCK_LENGTH_WORDS - first);
+                length = Math.min(length, (dataSegmentLimitAddress - address) >> 2);
+                System.arraycopy(block, first, words, offset + read, length);
+                read += length;
+                address += length * WORD_LENGTH_BYTES;
+            } else if (address > stackLimitAddress && address <= stackBaseAddress) {
+                // The stack's blocks go downward from its base, so go word by word
+                int relative = (stackBaseAddress - address) >> 2;
+                int[] block = stackBlockTable[relative / BLOCK_LENGTH_WORDS];
+                if (block == null) {
+                    break;
+                }
+                words[offset + read++] = block[relative % BLOCK_LENGTH_WORDS];
+                address += WORD_LENGTH_BYTES;
+            } else {
+                Integer value = getRawWordOrNull(address);
+                if (value == null) {
+                    break;
+                }
+                words[offset + read++] = value;
+                address += WORD_LENGTH_BYTES;
+            }
+        }
+        return read;
+    }
+
+    /**
+     * Looks for the next word in an address range that is not "null" as described for
+     * getRawWordOrNull(), skipping whole blocks that have not been referenced.
+     *
+     * @param address     lowest address to be searched; the starting point
+     * @param lastAddress highest address to be searched
+     * @return lowest address within specified range whose word is not "null", or -1 if there is none
+     * @throws AddressErrorException If address is not on word boundary or a word is out of range.
+     */
+    public synchronized int getAddressOfNextWord(int address, int lastAddress) throws AddressErrorException {
+        checkLoadWordAligned(address);
+        long next = address & 0xFFFFFFFFL, last = lastAddress & 0xFFFFFFFFL;
+        while (next <= last) {
+            int word = (int) next;
+            if (inDataSegment(word)) {
+                int relative = (word - dataSegmentBaseAddress) >> 2;
+                if (dataBlockTable[relative / BLOCK_LENGTH_WORDS] != null) {
+                    return word;
+                }
+                next += (BLOCK_LENGTH_WORDS - relative % BLOCK_LENGTH_WORDS) * WORD_LENGTH_BYTES;
+            } else if (word > stackLimitAddress && word <= stackBaseAddress) {
+                // The stack's blocks go downward from its base, so the next address is the top of a block
+                int relative = (stackBaseAddress - word) >> 2;
+                if (stackBlockTable[relative / BLOCK_LENGTH_WORDS] != null) {
+                    return word;
+                }
+                next += (relative % BLOCK_LENGTH_WORDS + 1) * WORD_LENGTH_BYTES;
+            } else if (inTextSegment(word)) {
+                int relative = (word - textBaseAddress) >> 2;
+                int block = relative / TEXT_BLOCK_LENGTH_WORDS;
+                if (block < TEXT_BLOCK_TABLE_LENGTH && textBlockTable[block] != null) {
+                    if (textBlockTable[block][relative % TEXT_BLOCK_LENGTH_WORDS] != null) {
+                        return word;
+                    }
+                    next += WORD_LENGTH_BYTES;
+                } else {
+                    next += (TEXT_BLOCK_LENGTH_WORDS - relative % TEXT_BLOCK_LENGTH_WORDS) * WORD_LENGTH_BYTES;
+                }
+            } else {
+                // out of range, as getRawWordOrNull() reports it
+                getRawWordOrNull(word);
+                next += WORD_LENGTH_BYTES;
+            }
+        }
+        return -1;
+    }
+
 
     /**
      * Reads 64 bit doubleword value starting at specified Memory address.
@@ -821,6 +1081,212 @@ public class Memory extends Observable {
         return get(address, WORD_LENGTH_BYTES, false);
     }
 
+    ///////////////////////////////////////////////////////////////////////////////////////
+
+    /**
+     * Reads consecutive words into an array, copying straight from the data and memory
+     * mapped blocks a block at a time rather than word by word.  Words never written read
+     * as 0.  Observers are NOT notified.
+     *
+     * @param address Starting address of the first word to be read.
+     * @param words   array receiving the words
+     * @param offset  index in the array of the first word
+     * @param count   number of words to read
+     * @throws AddressErrorException If address is not on word boundary or a word is out of range.
+     **/
+    public synchronized void getWordsNoNotify(int address, int[] words, int offset, int count) throws AddressErrorException {
+        checkLoadWordAligned(address);
+        while (count > 0) {
+            int[][] table;
+            int relative;
+            if (inDataSegment(address)) {
+                table = dataBlockTable;
+                relative = (address - dataSegmentBaseAddress) >> 2;
+            } else if (address >= memoryMapBaseAddress && address < memoryMapLimitAddress) {
+                table = memoryMapBlockTable;
+                relative = (address - memoryMapBaseAddress) >> 2;
+            } else {
+                // The stack grows downward through its blocks, so go word by word
+                words[offset++] = get(address, WORD_LENGTH_BYTES, false);
+                address += WORD_LENGTH_BYTES;
+                count--;
+                continue;
+            }
+            int block = relative / BLOCK_LENGTH_WORDS, first = relative % BLOCK_LENGTH_WORDS;
+            int length = Math.min(count, BLOCK_LENGTH_WORDS - first);
+            if (table[block] == null) {
+                Arrays.fill(words, offset, offset + length, 0);
+            } else {
+                System.arraycopy(table[block], first, words, offset, length);
+            }
+            address += length * WORD_LENGTH_BYTES;
+            offset += length;
+            count -= length;
+        }
+    }
+
+    ///////////////////////////////////////////////////////////////////////////////////////
+    // Bulk byte operations, for system calls that move whole buffers and strings.  In the
+    // data segment and memory map they work a block at a time on the tables; elsewhere
+    // (stack, text) they go byte by byte.  Either way observers get a single notice for
+    // the whole span, whose value is its first byte, and backstepping a single record.
+
+    /**
+     * Reads consecutive bytes into an array.
+     *
+     * @param address Address of the first byte to be read.
+     * @param bytes   array receiving the bytes
+     * @param offset  index in the array of the first byte
+     * @param length  number of bytes to read
+     * @throws AddressErrorException If a byte is out of range; nothing is read then.
+     **/
+    public void readBytes(int address, byte[] bytes, int offset, int length) throws AddressErrorException {
+        if (length <= 0) return;
+        copyBytes(address, bytes, offset, length);
+        notifyRangeObservers(AccessNotice.READ, address, length, bytes[offset] & 0xFF);
+    }
+
+    /**
+     * Writes consecutive bytes from an array.
+     *
+     * @param address Address of the first byte to be written.
+     * @param bytes   array holding the bytes
+     * @param offset  index in the array of the first byte
+     * @param length  number of bytes to write
+     * @throws AddressErrorException If a byte is out of range; nothing is written then.
+     **/
+    public void writeBytes(int address, byte[] bytes, int offset, int length) throws AddressErrorException {
+        if (length <= 0) return;
+        // Reading the old contents first also checks the whole range before anything changes
+        byte[] old = new byte[length];
+        copyBytes(address, old, 0, length);
+        if (inTextSegment(address) && !Globals.getSettings().getBooleanSetting(Settings.Bool.SELF_MODIFYING_CODE_ENABLED)) {
+            throw new AddressErrorException("Cannot write directly to text segment!",
+                    SimulationException.STORE_ACCESS_FAULT, address);
+        }
+        storeBytes(address, bytes, offset, length);
+        markDirty(address, length);
+        notifyRangeObservers(AccessNotice.WRITE, address, length, bytes[offset] & 0xFF);
+        if (Globals.getSettings().getBackSteppingEnabled()) {
+            Globals.program.getBackStepper().addMemoryRestoreBytes(address, old);
+        }
+    }
+
+    /**
+     * Looks for a byte value.  Observers are NOT notified.
+     *
+     * @param address Address to start looking at.
+     * @param value   the byte to look for
+     * @param limit   maximum number of bytes to look at
+     * @return the number of bytes before the first one equal to value, or -1 if none
+     * of the first limit bytes is
+     * @throws AddressErrorException If the search runs out of addressable memory first.
+     **/
+    public synchronized int findByte(int address, byte value, int limit) throws AddressErrorException {
+        int found = 0;
+        while (found < limit) {
+            int[][] table = bulkTable(address);
+            if (table == null) {
+                if ((byte) get(address, 1, false) == value) return found;
+                address++;
+                found++;
+                continue;
+            }
+            int relative = address - bulkBase(table);
+            int[] block = table[relative / BLOCK_LENGTH_BYTES];
+            int first = relative % BLOCK_LENGTH_BYTES;
+            int count = Math.min(limit - found, BLOCK_LENGTH_BYTES - first);
+            if (block == null) {
+                if (value == 0) return found;
+            } else {
+                for (int i = first; i < first + count; i++) {
+                    if ((byte) (block[i >> 2] >> ((i & 3) << 3)) == value) return found + i - first;
+                }
+            }
+            address += count;
+            found += count;
+        }
+        return -1;
+    }
+
+    /**
+     * Measures a null terminated string.  Observers are NOT notified.
+     *
+     * @param address Address of the first byte of the string.
+     * @return the number of bytes before the terminating 0
+     * @throws AddressErrorException If the string runs out of addressable memory.
+     **/
+    public int strlen(int address) throws AddressErrorException {
+        return findByte(address, (byte) 0, Integer.MAX_VALUE);
+    }
+
+    private static final int BLOCK_LENGTH_BYTES = BLOCK_LENGTH_WORDS * WORD_LENGTH_BYTES;
+
+    // The table the bulk operations can work on directly for this address, or null to go byte by byte
+    private int[][] bulkTable(int address) {
+        if (inDataSegment(address)) {
+            return dataBlockTable;
+        } else if (address >= memoryMapBaseAddress && address < memoryMapLimitAddress) {
+            return memoryMapBlockTable;
+        }
+        return null;
+    }
+
+    private int bulkBase(int[][] table) {
+        return (table == dataBlockTable) ? dataSegmentBaseAddress : memoryMapBaseAddress;
+    }
+
+    private synchronized void copyBytes(int address, byte[] bytes, int offset, int length) throws AddressErrorException {
+        int end = offset + length;
+        while (offset < end) {
+            int[][] table = bulkTable(address);
+            if (table == null) {
+                bytes[offset++] = (byte) get(address++, 1, false);
+                continue;
+            }
+            int relative = address - bulkBase(table);
+            int[] block = table[relative / BLOCK_LENGTH_BYTES];
+            int first = relative % BLOCK_LENGTH_BYTES;
+            int count = Math.min(end - offset, BLOCK_LENGTH_BYTES - first);
+            if (block == null) {
+                Arrays.fill(bytes, offset, offset + count, (byte) 0);
+            } else {
+                for (int i = first; i < first + count; i++) {
+                    bytes[offset++] = (byte) (block[i >> 2] >> ((i & 3) << 3));
+                }
+                offset -= count;
+            }
+            offset += count;
+            address += count;
+        }
+    }
+
+    private synchronized void storeBytes(int address, byte[] bytes, int offset, int length) throws AddressErrorException {
+        int end = offset + length;
+        while (offset < end) {
+            int[][] table = bulkTable(address);
+            if (table == null) {
+                store(address++, bytes[offset++], 1);
+                continue;
+            }
+            int relative = address - bulkBase(table);
+            int index = relative / BLOCK_LENGTH_BYTES;
+            if (table[index] == null) {
+                table[index] = new int[BLOCK_LENGTH_WORDS];
+            } else if (blocksShared) {
+                unshareBlock(table, index);
+            }
+            int[] block = table[index];
+            int first = relative % BLOCK_LENGTH_BYTES;
+            int count = Math.min(end - offset, BLOCK_LENGTH_BYTES - first);
+            for (int i = first; i < first + count; i++) {
+                int shift = (i & 3) << 3;
+                block[i >> 2] = (block[i >> 2] & ~(0xFF << shift)) | ((bytes[offset++] & 0xFF) << shift);
+            }
+            address += count;
+        }
+    }
+
 
     ///////////////////////////////////////////////////////////////////////////////////////
 
@@ -857,7 +1323,8 @@ public class Memory extends Observable {
     /**
      * Gets ProgramStatement from Text Segment.
      *
-     * @param address Starting address of Memory address to be read.  Must be word boundary.
+     * @param address Starting address of Memory address to be read.  Must be word boundary, or
+     *                halfword boundary if compressed instructions are enabled.
      * @return reference to ProgramStatement object associated with that address, or null if none.
      * @throws AddressErrorException If address is not on word boundary or is outside Text Segment.
      * @see ProgramStatement
@@ -871,7 +1338,8 @@ public class Memory extends Observable {
     /**
      * Gets ProgramStatement from Text Segment without notifying observers.
      *
-     * @param address Starting address of Memory address to be read.  Must be word boundary.
+     * @param address Starting address of Memory address to be read.  Must be word boundary, or
+     *                halfword boundary if compressed instructions are enabled.
      * @return reference to ProgramStatement object associated with that address, or null if none.
      * @throws AddressErrorException If address is not on word boundary or is outside Text Segment.
      * @see ProgramStatement
@@ -884,7 +1352,15 @@ public class Memory extends Observable {
     //////////
 
     private ProgramStatement getStatement(int address, boolean notify) throws AddressErrorException {
-        checkLoadWordAligned(address);
+        if (InstructionSet.rvc) {
+            if (address % 2 != 0) {
+                throw new AddressErrorException(
+                        "Load address not aligned to halfword boundary ",
+                        SimulationException.LOAD_ADDRESS_MISALIGNED, address);
+            }
+        } else {
+            checkLoadWordAligned(address);
+        }
         if (!Globals.getSettings().getBooleanSetting(Settings.Bool.SELF_MODIFYING_CODE_ENABLED)
                 && !inTextSegment(address)) {
             throw new AddressErrorException(
@@ -892,9 +1368,16 @@ public class Memory extends Observable {
                     SimulationException.LOAD_ACCESS_FAULT, address);
         }
         if (inTextSegment(address))
-            return readProgramStatement(address, textBaseAddress, textBlockTable, notify);
-        else
-            return new ProgramStatement(get(address, WORD_LENGTH_BYTES), address);
+            return readProgramStatement(address, notify);
+        boolean compressed = InstructionSet.rvc && CompressedInstruction.isCompressed(get(address, 2, false));
+        int code = get(address, compressed ? CompressedInstruction.LENGTH : WORD_LENGTH_BYTES);
+        int index = (address >>> 1) & (DECODED_DATA_LENGTH - 1);
+        ProgramStatement statement = decodedData[index];
+        if (statement == null || statement.getAddress() != address || !decodedFrom(statement, code, compressed)) {
+            statement = decode(code, address, compressed);
+            decodedData[index] = statement;
+        }
+        return statement;
     }
 
 
@@ -982,6 +1465,35 @@ public class Memory extends Observable {
     //  USE A COLLECTION OF MemoryObserver OBJECTS, EACH OF WHICH IS COMBINATION
     //  OF AN OBSERVER WITH AN ADDRESS RANGE.
 
+    /**
+     * Starts recording the pages written, for a display that redraws only what changed.
+     * Everything counts as written at first.
+     */
+    public synchronized void addDirtyPages(DirtyPages pages) {
+        pages.markAll();
+        DirtyPages[] all = Arrays.copyOf(dirtyPages, dirtyPages.length + 1);
+        all[all.length - 1] = pages;
+        dirtyPages = all;
+    }
+
+    public synchronized void removeDirtyPages(DirtyPages pages) {
+        ArrayList<DirtyPages> all = new ArrayList<>(Arrays.asList(dirtyPages));
+        all.remove(pages);
+        dirtyPages = all.toArray(new DirtyPages[0]);
+    }
+
+    private void markDirty(int address, int length) {
+        for (DirtyPages pages : dirtyPages) {
+            pages.mark(address, length);
+        }
+    }
+
+    private void markAllDirty() {
+        for (DirtyPages pages : dirtyPages) {
+            pages.markAll();
+        }
+    }
+
     /**
      * Method to accept registration from observer for any memory address.  Overrides
      * inherited method.  Note to observers: this class delegates Observable operations
@@ -1036,14 +1548,17 @@ public class Memory extends Observable {
             throw new AddressErrorException("end address of range < start address of range ",
                     SimulationException.LOAD_ACCESS_FAULT, startAddr);
         }
-        observables.add(new MemoryObservable(obs, startAddr, endAddr));
+        synchronized (observables) {
+            observables.add(new MemoryObservable(obs, startAddr, endAddr));
+            observerIndex = new ObserverIndex(observables);
+        }
     }
 
     /**
      * Return number of observers
      */
     public int countObservers() {
-        return observables.size();
+        return observerIndex.observables.length;
     }
 
     /**
@@ -1052,8 +1567,10 @@ public class Memory extends Observable {
      * @param obs Observer to be removed
      */
     public void deleteObserver(Observer obs) {
-        for (MemoryObservable o : observables) {
-            o.deleteObserver(obs);
+        synchronized (observables) {
+            if (observables.removeIf(mo -> mo.observer == obs)) {
+                observerIndex = new ObserverIndex(observables);
+            }
         }
     }
 
@@ -1061,8 +1578,10 @@ public class Memory extends Observable {
      * Remove all memory observers
      */
     public void deleteObservers() {
-        // just drop the collection
-        observables = getNewMemoryObserversCollection();
+        synchronized (observables) {
+            observables.clear();
+            observerIndex = ObserverIndex.EMPTY;
+        }
     }
 
     /**
@@ -1088,47 +1607,110 @@ public class Memory extends Observable {
     }
 
 
-    private Collection<MemoryObservable> getNewMemoryObserversCollection() {
-        return new Vector<>();  // Vectors are thread-safe
-    }
-
     /////////////////////////////////////////////////////////////////////////
     // Private class whose objects will represent an observable-observer pair
-    // for a given memory address or range.
-    private class MemoryObservable extends Observable implements Comparable<MemoryObservable> {
-        private int lowAddress, highAddress;
+    // for a given memory address or range.  Notices are handed straight to the
+    // observer rather than going through Observable's change bookkeeping, which
+    // would copy the observer list on every access; the pair is still passed as
+    // the Observable argument so observers see the same source as before.
+    private class MemoryObservable extends Observable {
+        private final Observer observer;
+        private final int lowAddress, lastAddress;
+        private final boolean transientNotices;
 
         public MemoryObservable(Observer obs, int startAddr, int endAddr) {
+            observer = obs;
             lowAddress = startAddr;
-            highAddress = endAddr;
-            this.addObserver(obs);
+            lastAddress = endAddr - 1 + WORD_LENGTH_BYTES;
+            transientNotices = obs instanceof TransientNoticeObserver;
         }
 
         public boolean match(int address) {
-            return (address >= lowAddress && address <= highAddress - 1 + WORD_LENGTH_BYTES);
+            return (address >= lowAddress && address <= lastAddress);
         }
 
         public void notifyObserver(MemoryAccessNotice notice) {
-            this.setChanged();
-            this.notifyObservers(notice);
+            observer.update(this, notice);
         }
 
-        // Useful to have for future refactoring, if it actually becomes worthwhile to sort
-        // these or put 'em in a tree (rather than sequential search through list).
-        public int compareTo(MemoryObservable mo) {
-            if (this.lowAddress < mo.lowAddress || this.lowAddress == mo.lowAddress && this.highAddress < mo.highAddress) {
-                return -1;
+        public void deleteObserver(Observer obs) {
+            if (obs == observer) {
+                Memory.this.deleteObserver(obs);
             }
-            if (this.lowAddress > mo.lowAddress || this.lowAddress == mo.lowAddress && this.highAddress > mo.highAddress) {
-                return -1;
+        }
+
+        public int countObservers() {
+            return 1;
+        }
+    }
+
+    // Immutable lookup structure over the registered observables; replaced whole on change
+    // so the simulator thread can read it without locking.
+    private static final class ObserverIndex {
+        static final ObserverIndex EMPTY = new ObserverIndex(new ArrayList<>());
+
+        final MemoryObservable[] observables; // sorted by low address, ties in registration order
+        final int[] maxLast;                  // maxLast[i] = highest last address among observables[0..i]
+        final long[] pages;                   // one bit per 4K page covered by any observable
+
+        ObserverIndex(ArrayList<MemoryObservable> registered) {
+            observables = registered.toArray(new MemoryObservable[0]);
+            Arrays.sort(observables, (a, b) -> Integer.compare(a.lowAddress, b.lowAddress));
+            maxLast = new int[observables.length];
+            pages = new long[observables.length == 0 ? 0 : 1 << 14];
+            for (int i = 0; i < observables.length; i++) {
+                MemoryObservable mo = observables[i];
+                maxLast[i] = (i == 0) ? mo.lastAddress : Math.max(maxLast[i - 1], mo.lastAddress);
+                for (int page = mo.lowAddress >>> 12, last = mo.lastAddress >>> 12; page <= last; page++) {
+                    if ((page & 63) == 0 && page + 63 <= last) {
+                        pages[page >>> 6] = -1L;
+                        page += 63;
+                    } else {
+                        pages[page >>> 6] |= 1L << page;
+                    }
+                }
             }
-            return 0;  // they have to be equal at this point.
+        }
+
+        boolean observed(int address) {
+            return pages.length != 0 && (pages[address >>> 18] & (1L << (address >>> 12))) != 0;
+        }
+
+        // Index of the first observable that could contain the address.  Ranges never cross
+        // 0x80000000, so signed comparison orders them consistently.
+        int first(int address) {
+            int lo = 0, hi = maxLast.length;
+            while (lo < hi) {
+                int mid = (lo + hi) >>> 1;
+                if (maxLast[mid] < address) lo = mid + 1;
+                else hi = mid;
+            }
+            return lo;
         }
     }
 
 
     /*********************************  THE HELPERS  *************************************/
 
+    // Notify the observers of every range overlapping an access of several bytes, with a
+    // single notice for the whole access.
+    private void notifyRangeObservers(int type, int address, int length, int value) {
+        ObserverIndex index = observerIndex;
+        if (index.observables.length == 0 || (Globals.program == null && Globals.getGui() != null)) {
+            return;
+        }
+        int last = address + length - 1;
+        MemoryObservable[] candidates = index.observables;
+        MemoryAccessNotice notice = null;
+        for (int i = index.first(address); i < candidates.length && candidates[i].lowAddress <= last; i++) {
+            if (candidates[i].lastAddress < address) {
+                continue;
+            }
+            if (notice == null) notice = new MemoryAccessNotice(type, address, length, value);
+            candidates[i].notifyObserver(notice);
+        }
+    }
+
 
     ////////////////////////////////////////////////////////////////////////////////
     //
@@ -1136,13 +1718,38 @@ public class Memory extends Observable {
     //
     // The "|| Globals.getGui()==null" is a hack added 19 July 2012 DPS.  IF simulation
     // is from command mode, Globals.program is null but still want ability to observe.
+    //
+    // At most one notice is allocated per access and shared by the matching observers, since
+    // notices are immutable.  Observers marked TransientNoticeObserver get this thread's
+    // reusable notice instead, unless an observer is already holding it further up the stack.
     private void notifyAnyObservers(int type, int address, int length, int value) {
-        if ((Globals.program != null || Globals.getGui() == null) && this.observables.size() > 0) {
-            for (MemoryObservable mo : observables) {
-                if (mo.match(address)) {
-                    mo.notifyObserver(new MemoryAccessNotice(type, address, length, value));
+        ObserverIndex index = observerIndex;
+        if (!index.observed(address) || (Globals.program == null && Globals.getGui() != null)) {
+            return;
+        }
+        MemoryObservable[] candidates = index.observables;
+        MemoryAccessNotice shared = null, reused = null;
+        try {
+            for (int i = index.first(address); i < candidates.length && candidates[i].lowAddress <= address; i++) {
+                MemoryObservable mo = candidates[i];
+                if (!mo.match(address)) {
+                    continue;
+                }
+                if (mo.transientNotices && reused == null && shared == null) {
+                    MemoryAccessNotice flyweight = flyweightNotice.get();
+                    if (!flyweight.inUse) {
+                        reused = flyweight.reuse(type, address, length, value);
+                    }
+                }
+                if (mo.transientNotices && reused != null) {
+                    mo.notifyObserver(reused);
+                } else {
+                    if (shared == null) shared = new MemoryAccessNotice(type, address, length, value);
+                    mo.notifyObserver(shared);
                 }
             }
+        } finally {
+            if (reused != null) reused.inUse = false;
         }
     }
 
@@ -1213,6 +1820,7 @@ public class Memory extends Observable {
             }
             if (byteOrder == LITTLE_ENDIAN) bytePositionInMemory = 3 - bytePositionInMemory;
             if (op == STORE) {
+                if (blocksShared) unshareBlock(blockTable, block);
                 oldValue = replaceByte(blockTable[block][offset], bytePositionInMemory,
                         oldValue, bytePositionInValue);
                 blockTable[block][offset] = replaceByte(value, bytePositionInValue,
@@ -1241,12 +1849,24 @@ public class Memory extends Observable {
         if (blockTable[block] == null) {
             // First time writing to this block, so allocate the space.
             blockTable[block] = new int[BLOCK_LENGTH_WORDS];
+        } else if (blocksShared) {
+            unshareBlock(blockTable, block);
         }
         oldValue = blockTable[block][offset];
         blockTable[block][offset] = value;
         return oldValue;
     }
 
+    // Give the live table its own copy of a block that is shared with a checkpoint.
+    private void unshareBlock(int[][] blockTable, int block) {
+        boolean[] shared = (blockTable == dataBlockTable) ? dataBlockShared
+                : (blockTable == stackBlockTable) ? stackBlockShared : memoryMapBlockShared;
+        if (shared[block]) {
+            blockTable[block] = blockTable[block].clone();
+            shared[block] = false;
+        }
+    }
+
     // Same as above, but doesn't set, just gets
     private synchronized int fetchWordFromTable(int[][] blockTable, int relative) {
         int value = 0;
@@ -1295,48 +1915,172 @@ public class Memory extends Observable {
 
     ///////////////////////////////////////////////////////////////////////
     // Store a program statement at the given address.  Address has already been verified as valid.
-    private void storeProgramStatement(int address, ProgramStatement statement,
-                                       int baseAddress, ProgramStatement[][] blockTable) {
-        int relative = (address - baseAddress) >> 2; // convert byte address to words
-        int block = relative / BLOCK_LENGTH_WORDS;
-        int offset = relative % BLOCK_LENGTH_WORDS;
+    private void storeProgramStatement(int address, ProgramStatement statement) {
+        int relative = (address - textBaseAddress) >> 2; // convert byte address to words
+        int block = relative / TEXT_BLOCK_LENGTH_WORDS;
+        int offset = relative % TEXT_BLOCK_LENGTH_WORDS;
+        if (address % WORD_LENGTH_BYTES != 0) {
+            storeHalfwayStatement(relative, statement);
+        } else if (block < TEXT_BLOCK_TABLE_LENGTH) {
+            prepareTextBlock(block);
+            textBlockTable[block][offset] = statement;
+            textWordTable[block][offset] = statement.isCompressed()
+                    ? (textWordTable[block][offset] & 0xFFFF0000) | statement.getCompressedStatement()
+                    : statement.getBinaryStatement();
+        }
+    }
+
+    // Store a program statement starting halfway through the given word: a compressed one fills
+    // the word's upper half, a 32-bit one runs into the next word.  It goes where
+    // readHalfwayStatement() keeps the statements it decodes.
+    private void storeHalfwayStatement(int relative, ProgramStatement statement) {
+        int block = relative / TEXT_BLOCK_LENGTH_WORDS;
+        int offset = relative % TEXT_BLOCK_LENGTH_WORDS;
+        if (block >= TEXT_BLOCK_TABLE_LENGTH) {
+            return;
+        }
+        int code = statement.isCompressed() ? statement.getCompressedStatement() : statement.getBinaryStatement();
+        storeTextHalf(relative, true, code & 0xFFFF);
+        if (!statement.isCompressed()) {
+            storeTextHalf(relative + 1, false, code >>> 16);
+        }
+        if (textHalfTable[block] == null) {
+            textHalfTable[block] = new ProgramStatement[TEXT_BLOCK_LENGTH_WORDS];
+        }
+        textHalfTable[block][offset] = statement;
+    }
+
+    // Replace the upper or lower half of a text word.  A compressed statement stored in the
+    // lower half stays; otherwise the word is decoded again when it is fetched.
+    private void storeTextHalf(int relative, boolean upper, int half) {
+        int block = relative / TEXT_BLOCK_LENGTH_WORDS;
+        int offset = relative % TEXT_BLOCK_LENGTH_WORDS;
+        if (block >= TEXT_BLOCK_TABLE_LENGTH) {
+            return;
+        }
+        prepareTextBlock(block);
+        int word = textWordTable[block][offset];
+        textWordTable[block][offset] = upper ? (word & 0xFFFF) | (half << 16) : (word & 0xFFFF0000) | half;
+        ProgramStatement statement = textBlockTable[block][offset];
+        if (statement == null || !upper || !statement.isCompressed()) {
+            textBlockTable[block][offset] = UNDECODED;
+        }
+    }
+
+    // Store machine code at the given text segment address, to be decoded when it is fetched.
+    // Address has already been verified as valid.  Returns the word replaced, 0 if none.
+    private int storeTextWord(int address, int value) {
+        int relative = (address - textBaseAddress) >> 2; // convert byte address to words
+        int block = relative / TEXT_BLOCK_LENGTH_WORDS;
+        int offset = relative % TEXT_BLOCK_LENGTH_WORDS;
+        int oldValue = 0;
         if (block < TEXT_BLOCK_TABLE_LENGTH) {
-            if (blockTable[block] == null) {
-                // No instructions are stored in this block, so allocate the block.
-                blockTable[block] = new ProgramStatement[BLOCK_LENGTH_WORDS];
-            }
-            blockTable[block][offset] = statement;
+            prepareTextBlock(block);
+            oldValue = textWordTable[block][offset];
+            textBlockTable[block][offset] = UNDECODED;
+            textWordTable[block][offset] = value;
+        }
+        return oldValue;
+    }
+
+    // Allocate a text block if needed, or copy it if it is shared with a checkpoint
+    private void prepareTextBlock(int block) {
+        if (textBlockTable[block] == null) {
+            // No instructions are stored in this block, so allocate the block.
+            textBlockTable[block] = new ProgramStatement[TEXT_BLOCK_LENGTH_WORDS];
+            textWordTable[block] = new int[TEXT_BLOCK_LENGTH_WORDS];
+        } else if (blocksShared && textBlockShared[block]) {
+            textBlockTable[block] = textBlockTable[block].clone();
+            textWordTable[block] = textWordTable[block].clone();
+            textBlockShared[block] = false;
         }
     }
 
+    // Machine code at the given text segment address, or null if none was stored there.
+    private Integer fetchTextWordOrNull(int address) {
+        int relative = (address - textBaseAddress) >> 2; // convert byte address to words
+        int block = relative / TEXT_BLOCK_LENGTH_WORDS;
+        int offset = relative % TEXT_BLOCK_LENGTH_WORDS;
+        if (block < TEXT_BLOCK_TABLE_LENGTH && textBlockTable[block] != null && textBlockTable[block][offset] != null) {
+            return textWordTable[block][offset];
+        }
+        return null;
+    }
+
+    // Machine code at the given text segment address, or 0 if none was stored there.
+    private int fetchTextWord(int address) {
+        int relative = (address - textBaseAddress) >> 2; // convert byte address to words
+        int block = relative / TEXT_BLOCK_LENGTH_WORDS;
+        int offset = relative % TEXT_BLOCK_LENGTH_WORDS;
+        return (block < TEXT_BLOCK_TABLE_LENGTH && textWordTable[block] != null) ? textWordTable[block][offset] : 0;
+    }
+
 
     /**
-     * Read a program statement from the given address.  Address has already been verified
-     * as valid.
+     * Read a program statement from the given address, decoding it if it was stored as machine
+     * code.  Address has already been verified as valid.
      *
      * @param address     the address to read from
-     * @param baseAddress the base address for the section being read from (.text)
-     * @param blockTable  the internal table of program statements
      * @param notify      whether or not it notifies observers
      * @return associated ProgramStatement or null if none.
      */
-    private ProgramStatement readProgramStatement(int address, int baseAddress, ProgramStatement[][] blockTable, boolean notify) {
-        int relative = (address - baseAddress) >> 2; // convert byte address to words
+    private ProgramStatement readProgramStatement(int address, boolean notify) {
+        int relative = (address - textBaseAddress) >> 2; // convert byte address to words
         int block = relative / TEXT_BLOCK_LENGTH_WORDS;
         int offset = relative % TEXT_BLOCK_LENGTH_WORDS;
-        if (block < TEXT_BLOCK_TABLE_LENGTH) {
-            if (blockTable[block] == null || blockTable[block][offset] == null) {
+        ProgramStatement statement = null;
+        if (block < TEXT_BLOCK_TABLE_LENGTH && textBlockTable[block] != null && textBlockTable[block][offset] != null) {
+            if (address % WORD_LENGTH_BYTES == 0) {
+                statement = textBlockTable[block][offset];
+                if (statement == UNDECODED) {
+                    // Even in a block shared with a checkpoint, the checkpoint holds the same word
+                    int word = textWordTable[block][offset];
+                    statement = decode(word, address, InstructionSet.rvc && CompressedInstruction.isCompressed(word));
+                    textBlockTable[block][offset] = statement;
+                }
+            } else {
+                statement = readHalfwayStatement(address, block, offset);
+            }
+        }
+        if (notify) {
+            if (statement == null) {
                 // No instructions are stored in this block or offset.
-                if (notify) notifyAnyObservers(AccessNotice.READ, address, Instruction.INSTRUCTION_LENGTH, 0);
-                return null;
+                notifyAnyObservers(AccessNotice.READ, address, Instruction.INSTRUCTION_LENGTH, 0);
+            } else if (statement.isCompressed()) {
+                notifyAnyObservers(AccessNotice.READ, address, CompressedInstruction.LENGTH, statement.getCompressedStatement());
             } else {
-                if (notify)
-                    notifyAnyObservers(AccessNotice.READ, address, Instruction.INSTRUCTION_LENGTH, blockTable[block][offset].getBinaryStatement());
-                return blockTable[block][offset];
+                notifyAnyObservers(AccessNotice.READ, address, Instruction.INSTRUCTION_LENGTH, statement.getBinaryStatement());
             }
         }
-        if (notify) notifyAnyObservers(AccessNotice.READ, address, Instruction.INSTRUCTION_LENGTH, 0);
-        return null;
+        return statement;
+    }
+
+    // An instruction starting halfway through a word: a compressed one in its upper half, or a
+    // 32-bit one running into the next word.
+    private ProgramStatement readHalfwayStatement(int address, int block, int offset) {
+        int code = textWordTable[block][offset] >>> 16;
+        boolean compressed = CompressedInstruction.isCompressed(code);
+        if (!compressed) {
+            code |= fetchTextWord(address + 2) << 16;
+        }
+        if (textHalfTable[block] == null) {
+            textHalfTable[block] = new ProgramStatement[TEXT_BLOCK_LENGTH_WORDS];
+        }
+        ProgramStatement statement = textHalfTable[block][offset];
+        if (statement == null || !decodedFrom(statement, code, compressed)) {
+            statement = decode(code, address, compressed);
+            textHalfTable[block][offset] = statement;
+        }
+        return statement;
+    }
+
+    private static ProgramStatement decode(int code, int address, boolean compressed) {
+        return compressed ? new ProgramStatement((short) code, address) : new ProgramStatement(code, address);
+    }
+
+    private static boolean decodedFrom(ProgramStatement statement, int code, boolean compressed) {
+        return compressed ? statement.getCompressedStatement() == code
+                : !statement.isCompressed() && statement.getBinaryStatement() == code;
     }
 
 }
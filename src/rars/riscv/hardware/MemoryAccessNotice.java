@@ -35,6 +35,23 @@ public class MemoryAccessNotice extends AccessNotice {
         this.value = value;
     }
 
+    // Set while Memory is handing this notice to TransientNoticeObservers, so a nested
+    // access on the same thread does not overwrite it.
+    boolean inUse;
+
+    /**
+     * Refill this notice for another access.  Only used by Memory on its per-thread
+     * notice for TransientNoticeObservers.
+     */
+    MemoryAccessNotice reuse(int type, int address, int length, int value) {
+        setAccessType(type);
+        this.address = address;
+        this.length = length;
+        this.value = value;
+        this.inUse = true;
+        return this;
+    }
+
     /**
      * Fetch the memory address that was accessed.
      */
@@ -18,6 +18,8 @@ public class Register extends Observable {
     // are the only methods here used by the register collection
     // (RegisterFile, ControlAndStatusRegisterFile, FloatingPointRegisterFile) methods.
     private volatile long value;
+    // Counts changes of value, so displays can tell which registers to redraw
+    private volatile int changes;
 
     /**
      * Creates a new register with specified name, number, and value.
@@ -100,6 +102,7 @@ public class Register extends Observable {
     public synchronized long setValue(long val) {
         long old = value;
         value = val;
+        changes++;
         notifyAnyObservers(AccessNotice.WRITE);
         return old;
     }
@@ -115,6 +118,7 @@ public class Register extends Observable {
     public synchronized long setValueBackdoor(long val) {
         long old = value;
         value = val;
+        changes++;
         return old;
     }
 
@@ -126,6 +130,17 @@ public class Register extends Observable {
 
     public synchronized void resetValue() {
         value = resetValue;
+        changes++;
+    }
+
+    /**
+     * Returns a count of the changes to the value, which differs from an earlier count if the
+     * register has been written since.  Displays use it to redraw only the registers that changed.
+     *
+     * @return the number of times the value has been set, wrapping around
+     */
+    public int getChangeCount() {
+        return changes;
     }
 
     /**
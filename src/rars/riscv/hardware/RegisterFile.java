@@ -39,6 +39,7 @@ public class RegisterFile {
     });
 
     private static Register programCounter = new Register("pc", -1, Memory.textBaseAddress);
+    private static int instructionLength = Instruction.INSTRUCTION_LENGTH;
 
     /**
      * This method updates the register value who's number is num.  Also handles the lo and hi registers
@@ -241,9 +242,34 @@ public class RegisterFile {
      **/
 
     public static void incrementPC() {
+        instructionLength = Instruction.INSTRUCTION_LENGTH;
         programCounter.setValue(programCounter.getValue() + Instruction.INSTRUCTION_LENGTH);
     }
 
+    /**
+     * Method to correct the Program counter once the instruction it was incremented past
+     * turns out to be shorter than Instruction.INSTRUCTION_LENGTH (a compressed instruction).
+     * Observers are not notified again.
+     *
+     * @param length The length in bytes of the instruction being executed.
+     **/
+
+    public static void setInstructionLength(int length) {
+        programCounter.setValueBackdoor(programCounter.getValueNoNotify() - instructionLength + length);
+        instructionLength = length;
+    }
+
+    /**
+     * For returning the length of the instruction the Program Counter was last incremented
+     * past, so that the PC minus this is the address of the instruction being executed.
+     *
+     * @return The length in bytes: 2 for a compressed instruction, otherwise 4.
+     **/
+
+    public static int getInstructionLength() {
+        return instructionLength;
+    }
+
     /**
      * Each individual register is a separate object and Observable.  This handy method
      * will add the given Observer to each one.  Currently does not apply to Program
@@ -0,0 +1,13 @@
+package rars.riscv.hardware;
+
+import java.util.Observer;
+
+/**
+ * Marker for memory observers that only look at an AccessNotice while their update
+ * method runs and never keep a reference to it.  Memory hands such observers a reused
+ * notice instead of allocating a new one for every access, which matters for tools that
+ * watch every instruction fetch.  Anything the observer needs later must be copied out
+ * of the notice before update returns.
+ */
+public interface TransientNoticeObserver extends Observer {
+}
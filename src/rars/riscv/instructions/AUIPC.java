@@ -13,6 +13,6 @@ public class AUIPC extends BasicInstruction {
 
     public void simulate(ProgramStatement statement) {
         int[] operands = statement.getOperands();
-        RegisterFile.updateRegister(operands[0], RegisterFile.getProgramCounter() - INSTRUCTION_LENGTH + (operands[1] << 12));
+        RegisterFile.updateRegister(operands[0], RegisterFile.getProgramCounter() - RegisterFile.getInstructionLength() + (operands[1] << 12));
     }
 }
@@ -18,15 +18,95 @@ public abstract class Double extends BasicInstruction {
     }
     public void simulate(ProgramStatement statement) throws SimulationException{
         int[] operands = statement.getOperands();
-        Environment e = new Environment();
-        e.mode = Floating.getRoundingMode(operands[3],statement);
+        if (Floating.isNearestEven(operands[3])) {
+            double f1 = java.lang.Double.longBitsToDouble(FloatingPointRegisterFile.getValueLong(operands[1]));
+            double f2 = java.lang.Double.longBitsToDouble(FloatingPointRegisterFile.getValueLong(operands[2]));
+            double result = computeNative(f1, f2);
+            int flags = nativeFlags(f1, f2, result);
+            if (flags >= 0) {
+                Floating.raiseFlags(flags);
+                FloatingPointRegisterFile.updateRegisterLong(operands[0], java.lang.Double.doubleToRawLongBits(result));
+                return;
+            }
+        }
+        Environment e = Floating.environment(operands[3], statement);
         Float64 result = compute(new Float64(FloatingPointRegisterFile.getValueLong(operands[1])),new Float64(FloatingPointRegisterFile.getValueLong(operands[2])),e);
         Floating.setfflags(e);
         FloatingPointRegisterFile.updateRegisterLong(operands[0], result.bits);
     }
 
+    /**
+     * Computes the operation with Java arithmetic, which rounds to nearest even.  Only used when
+     * {@link #nativeFlags(double, double, double)} accepts the result.
+     */
+    protected double computeNative(double f1, double f2) {
+        return java.lang.Double.NaN;
+    }
+
+    /**
+     * Checks a result of {@link #computeNative(double, double)}.
+     *
+     * @return the fflags the operation raises, or -1 if the result must be computed with softfloat
+     * instead; by default always -1
+     */
+    protected int nativeFlags(double f1, double f2, double result) {
+        return -1;
+    }
+
+    /**
+     * Flags of a native result known to be exact or not.  Results that are not finite, or that are
+     * subnormal or rounded to zero, may raise other flags and are left to softfloat.  So are inexact
+     * results at the smallest normal magnitude, since RISC-V detects tininess after rounding and the
+     * value before rounding may have been tiny.
+     */
+    static int resultFlags(double result, boolean exact) {
+        if (result == 0 ? !exact : !(Math.abs(result) >= java.lang.Double.MIN_NORMAL && Math.abs(result) <= java.lang.Double.MAX_VALUE)) {
+            return -1;
+        }
+        if (!exact && Math.abs(result) == java.lang.Double.MIN_NORMAL) {
+            return -1;
+        }
+        return exact ? 0 : Floating.INEXACT;
+    }
+
+    // Below this sum of exponents the rounding error of a product may itself underflow
+    static final int MIN_EXACT_EXPONENT = -969;
+
+    // Flags of s = a + b; the rounding error of the sum is exact (TwoSum)
+    static int sumFlags(double a, double b, double s) {
+        double bb = s - a;
+        double err = (a - (s - bb)) + (b - bb);
+        return resultFlags(s, err == 0);
+    }
+
+    // Flags of p = a * b; the rounding error of the product is exact with fma unless it underflows
+    static int productFlags(double a, double b, double p) {
+        if (a == 0 || b == 0) {
+            return resultFlags(p, true);
+        }
+        if (Math.getExponent(a) + Math.getExponent(b) < MIN_EXACT_EXPONENT) {
+            return -1;
+        }
+        return resultFlags(p, Math.fma(a, b, -p) == 0);
+    }
+
+    // Flags of q = a / b; the remainder a - q * b is exact with fma unless it underflows
+    static int quotientFlags(double a, double b, double q) {
+        if (a == 0) {
+            return resultFlags(q, true);
+        }
+        if (Math.getExponent(a) < MIN_EXACT_EXPONENT) {
+            return -1;
+        }
+        return resultFlags(q, Math.fma(-q, b, a) == 0);
+    }
+
     public abstract Float64 compute(Float64 f1, Float64 f2, Environment e);
 
+    public static boolean isNaN(long bits) {
+        return (bits & 0x7FFFFFFF_FFFFFFFFL) > 0x7FF00000_00000000L;
+    }
+
     public static Float64 getDouble(int num){
         return new Float64(FloatingPointRegisterFile.getValueLong(num));
     }
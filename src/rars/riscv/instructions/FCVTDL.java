@@ -19,9 +19,8 @@ public class FCVTDL extends BasicInstruction {
 
     public void simulate(ProgramStatement statement) throws SimulationException {
         int[] operands = statement.getOperands();
-        Environment e = new Environment();
-        e.mode = Floating.getRoundingMode(operands[2],statement);
-        Float64 tmp = new Float64(0);
+        Environment e = Floating.environment(operands[2], statement);
+        Float64 tmp = Floating.FLOAT64;
         Float64 converted = jsoftfloat.operations.Conversions.convertFromInt(BigInteger.valueOf(RegisterFile.getValueLong(operands[1])),e,tmp);
         Floating.setfflags(e);
         FloatingPointRegisterFile.updateRegisterLong(operands[0],converted.bits);
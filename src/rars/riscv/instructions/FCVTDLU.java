@@ -19,9 +19,8 @@ public class FCVTDLU extends BasicInstruction {
 
     public void simulate(ProgramStatement statement) throws SimulationException {
         int[] operands = statement.getOperands();
-        Environment e = new Environment();
-        e.mode = Floating.getRoundingMode(operands[2],statement);
-        Float64 tmp = new Float64(0);
+        Environment e = Floating.environment(operands[2], statement);
+        Float64 tmp = Floating.FLOAT64;
         long value = RegisterFile.getValueLong(operands[1]);
         BigInteger unsigned = BigInteger.valueOf(value);
         if (value < 0) {
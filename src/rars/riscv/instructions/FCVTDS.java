@@ -17,10 +17,16 @@ public class FCVTDS extends BasicInstruction {
 
     public void simulate(ProgramStatement statement) throws SimulationException {
         int[] operands = statement.getOperands();
-        Environment e = new Environment();
-        e.mode = Floating.getRoundingMode(operands[2],statement);
-        Float32 in = new Float32(FloatingPointRegisterFile.getValue(operands[1]));
-        Float64 out = new Float64(0);
+        Environment e = Floating.environment(operands[2], statement);
+        int bits = FloatingPointRegisterFile.getValue(operands[1]);
+        if (!Floating.isNaN(bits)) {
+            // Widening is always exact
+            double out = Float.intBitsToFloat(bits);
+            FloatingPointRegisterFile.updateRegisterLong(operands[0], java.lang.Double.doubleToRawLongBits(out));
+            return;
+        }
+        Float32 in = new Float32(bits);
+        Float64 out = Floating.FLOAT64;
         out = FCVTSD.convert(in,out,e);
         Floating.setfflags(e);
         FloatingPointRegisterFile.updateRegisterLong(operands[0],out.bits);
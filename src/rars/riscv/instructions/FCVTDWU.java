@@ -1,7 +1,5 @@
 package rars.riscv.instructions;
 
-import jsoftfloat.Environment;
-import jsoftfloat.types.Float64;
 import rars.ProgramStatement;
 import rars.SimulationException;
 import rars.riscv.BasicInstruction;
@@ -9,8 +7,6 @@ import rars.riscv.BasicInstructionFormat;
 import rars.riscv.hardware.FloatingPointRegisterFile;
 import rars.riscv.hardware.RegisterFile;
 
-import java.math.BigInteger;
-
 public class FCVTDWU extends BasicInstruction {
     public FCVTDWU() {
         super("fcvt.d.wu f1, t1, dyn", "Convert double from unsigned integer: Assigns the value of t1 to f1",
@@ -19,12 +15,9 @@ public class FCVTDWU extends BasicInstruction {
 
     public void simulate(ProgramStatement statement) throws SimulationException {
         int[] operands = statement.getOperands();
-        Environment e = new Environment();
-        e.mode = Floating.getRoundingMode(operands[2],statement);
-        Float64 tmp = new Float64(0);
-        Float64 converted = jsoftfloat.operations.Conversions.convertFromInt(BigInteger.valueOf(RegisterFile.getValue(operands[1]) & 0xFFFFFFFFL),e,tmp);
-        Floating.setfflags(e);
-        FloatingPointRegisterFile.updateRegisterLong(operands[0],converted.bits);
+        Floating.getRoundingMode(operands[2], statement); // never needed, as the conversion is exact, but checked
+        double converted = RegisterFile.getValue(operands[1]) & 0xFFFFFFFFL;
+        FloatingPointRegisterFile.updateRegisterLong(operands[0], java.lang.Double.doubleToRawLongBits(converted));
     }
 }
 
@@ -17,8 +17,7 @@ public class FCVTLD extends BasicInstruction {
 
     public void simulate(ProgramStatement statement) throws SimulationException {
         int[] operands = statement.getOperands();
-        Environment e = new Environment();
-        e.mode = Floating.getRoundingMode(operands[2],statement);
+        Environment e = Floating.environment(operands[2], statement);
         Float64 in = new Float64(FloatingPointRegisterFile.getValueLong(operands[1]));
         long out = jsoftfloat.operations.Conversions.convertToLong(in,e,false);
         Floating.setfflags(e);
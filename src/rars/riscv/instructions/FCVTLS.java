@@ -17,8 +17,7 @@ public class FCVTLS extends BasicInstruction {
 
     public void simulate(ProgramStatement statement) throws SimulationException {
         int[] operands = statement.getOperands();
-        Environment e = new Environment();
-        e.mode = Floating.getRoundingMode(operands[2],statement);
+        Environment e = Floating.environment(operands[2], statement);
         Float32 in = new Float32(FloatingPointRegisterFile.getValue(operands[1]));
         long out = jsoftfloat.operations.Conversions.convertToLong(in,e,false);
         Floating.setfflags(e);
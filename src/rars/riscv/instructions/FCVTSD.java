@@ -1,6 +1,7 @@
 package rars.riscv.instructions;
 
 import jsoftfloat.Environment;
+import jsoftfloat.RoundingMode;
 import jsoftfloat.types.Float32;
 import jsoftfloat.types.Float64;
 import rars.ProgramStatement;
@@ -17,10 +18,20 @@ public class FCVTSD extends BasicInstruction {
 
     public void simulate(ProgramStatement statement) throws SimulationException {
         int[] operands = statement.getOperands();
-        Environment e = new Environment();
-        e.mode = Floating.getRoundingMode(operands[2],statement);
-        Float64 in = new Float64(FloatingPointRegisterFile.getValueLong(operands[1]));
-        Float32 out = new Float32(0);
+        Environment e = Floating.environment(operands[2], statement);
+        long bits = FloatingPointRegisterFile.getValueLong(operands[1]);
+        if (e.mode == RoundingMode.even) {
+            double value = java.lang.Double.longBitsToDouble(bits);
+            float rounded = (float) value;
+            int flags = Floating.resultFlags(rounded, rounded == value);
+            if (flags >= 0) {
+                Floating.raiseFlags(flags);
+                FloatingPointRegisterFile.updateRegister(operands[0], Float.floatToRawIntBits(rounded));
+                return;
+            }
+        }
+        Float64 in = new Float64(bits);
+        Float32 out = Floating.FLOAT32;
         out = convert(in,out,e);
         Floating.setfflags(e);
         FloatingPointRegisterFile.updateRegister(operands[0],out.bits);
@@ -19,9 +19,8 @@ public class FCVTSL extends BasicInstruction {
 
     public void simulate(ProgramStatement statement) throws SimulationException {
         int[] operands = statement.getOperands();
-        Environment e = new Environment();
-        e.mode = Floating.getRoundingMode(operands[2],statement);
-        Float32 tmp = new Float32(0);
+        Environment e = Floating.environment(operands[2], statement);
+        Float32 tmp = Floating.FLOAT32;
         Float32 converted = jsoftfloat.operations.Conversions.convertFromInt(BigInteger.valueOf(RegisterFile.getValueLong(operands[1])),e,tmp);
         Floating.setfflags(e);
         FloatingPointRegisterFile.updateRegister(operands[0],converted.bits);
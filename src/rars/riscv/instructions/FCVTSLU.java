@@ -19,9 +19,8 @@ public class FCVTSLU extends BasicInstruction {
 
     public void simulate(ProgramStatement statement) throws SimulationException {
         int[] operands = statement.getOperands();
-        Environment e = new Environment();
-        e.mode = Floating.getRoundingMode(operands[2],statement);
-        Float32 tmp = new Float32(0);
+        Environment e = Floating.environment(operands[2], statement);
+        Float32 tmp = Floating.FLOAT32;
         long value = RegisterFile.getValueLong(operands[1]);
         BigInteger unsigned = BigInteger.valueOf(value);
         if (value < 0) {
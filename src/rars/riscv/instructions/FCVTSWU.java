@@ -19,9 +19,11 @@ public class FCVTSWU extends BasicInstruction {
 
     public void simulate(ProgramStatement statement) throws SimulationException {
         int[] operands = statement.getOperands();
-        Environment e = new Environment();
-        e.mode = Floating.getRoundingMode(operands[2],statement);
-        Float32 tmp = new Float32(0);
+        Environment e = Floating.environment(operands[2], statement);
+        if (Floating.convertToFloat(RegisterFile.getValue(operands[1]) & 0xFFFFFFFFL, e, operands[0])) {
+            return;
+        }
+        Float32 tmp = Floating.FLOAT32;
         Float32 converted = jsoftfloat.operations.Conversions.convertFromInt(BigInteger.valueOf(RegisterFile.getValue(operands[1]) &0xFFFFFFFFL),e,tmp);
         Floating.setfflags(e);
         FloatingPointRegisterFile.updateRegister(operands[0],converted.bits);
@@ -17,9 +17,12 @@ public class FCVTWD extends BasicInstruction {
 
     public void simulate(ProgramStatement statement) throws SimulationException {
         int[] operands = statement.getOperands();
-        Environment e = new Environment();
-        e.mode = Floating.getRoundingMode(operands[2],statement);
-        Float64 in = new Float64(FloatingPointRegisterFile.getValueLong(operands[1]));
+        Environment e = Floating.environment(operands[2], statement);
+        long bits = FloatingPointRegisterFile.getValueLong(operands[1]);
+        if (Floating.convertToInt(java.lang.Double.longBitsToDouble(bits), e, operands[0])) {
+            return;
+        }
+        Float64 in = new Float64(bits);
         int out = jsoftfloat.operations.Conversions.convertToInt(in,e,false);
         Floating.setfflags(e);
         RegisterFile.updateRegister(operands[0],out);
@@ -21,9 +21,12 @@ public class FCVTWS extends BasicInstruction {
 
     public void simulate(ProgramStatement statement) throws SimulationException {
         int[] operands = statement.getOperands();
-        Environment e = new Environment();
-        e.mode = Floating.getRoundingMode(operands[2],statement);
-        Float32 in = new Float32(FloatingPointRegisterFile.getValue(operands[1]));
+        Environment e = Floating.environment(operands[2], statement);
+        int bits = FloatingPointRegisterFile.getValue(operands[1]);
+        if (Floating.convertToInt(Float.intBitsToFloat(bits), e, operands[0])) {
+            return;
+        }
+        Float32 in = new Float32(bits);
         int out = jsoftfloat.operations.Conversions.convertToInt(in,e,false);
         Floating.setfflags(e);
         RegisterFile.updateRegister(operands[0],out);
@@ -17,8 +17,7 @@ public class FCVTWUD extends BasicInstruction {
 
     public void simulate(ProgramStatement statement) throws SimulationException {
         int[] operands = statement.getOperands();
-        Environment e = new Environment();
-        e.mode = Floating.getRoundingMode(operands[2],statement);
+        Environment e = Floating.environment(operands[2], statement);
         Float64 in = new Float64(FloatingPointRegisterFile.getValueLong(operands[1]));
         int out = jsoftfloat.operations.Conversions.convertToUnsignedInt(in,e,false);
         Floating.setfflags(e);
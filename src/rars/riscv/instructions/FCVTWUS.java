@@ -19,8 +19,7 @@ public class FCVTWUS extends BasicInstruction {
 
     public void simulate(ProgramStatement statement) throws SimulationException {
         int[] operands = statement.getOperands();
-        Environment e = new Environment();
-        e.mode = Floating.getRoundingMode(operands[2],statement);
+        Environment e = Floating.environment(operands[2], statement);
         Float32 in = new Float32(FloatingPointRegisterFile.getValue(operands[1]));
         int out = jsoftfloat.operations.Conversions.convertToUnsignedInt(in,e,false);
         Floating.setfflags(e);
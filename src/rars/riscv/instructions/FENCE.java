@@ -11,6 +11,6 @@ public class FENCE extends BasicInstruction {
     }
 
     public void simulate(ProgramStatement statement) {
-        // Do nothing, currently there are no other threads so local consitency is enough
+        // Do nothing, harts run one instruction at a time so memory is sequentially consistent
     }
 }
\ No newline at end of file
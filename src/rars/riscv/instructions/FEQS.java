@@ -17,8 +17,15 @@ public class FEQS extends BasicInstruction {
 
     public void simulate(ProgramStatement statement) {
         int[] operands = statement.getOperands();
-        Float32 f1 = Floating.getFloat(operands[1]), f2 = Floating.getFloat(operands[2]);
-        Environment e = new Environment();
+        int bits1 = FloatingPointRegisterFile.getValue(operands[1]), bits2 = FloatingPointRegisterFile.getValue(operands[2]);
+        if (!Floating.isNaN(bits1) && !Floating.isNaN(bits2)) {
+            // Only NaNs raise flags
+            boolean result = Float.intBitsToFloat(bits1) == Float.intBitsToFloat(bits2);
+            RegisterFile.updateRegister(operands[0], result ? 1 : 0);
+            return;
+        }
+        Float32 f1 = new Float32(bits1), f2 = new Float32(bits2);
+        Environment e = Floating.environment();
         boolean result = jsoftfloat.operations.Comparisons.compareQuietEqual(f1,f2,e);
         Floating.setfflags(e);
         RegisterFile.updateRegister(operands[0], result ? 1 : 0);
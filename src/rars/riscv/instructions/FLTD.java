@@ -5,6 +5,7 @@ import jsoftfloat.types.Float64;
 import rars.ProgramStatement;
 import rars.riscv.BasicInstruction;
 import rars.riscv.BasicInstructionFormat;
+import rars.riscv.hardware.FloatingPointRegisterFile;
 import rars.riscv.hardware.RegisterFile;
 
 public class FLTD extends BasicInstruction {
@@ -15,8 +16,15 @@ public class FLTD extends BasicInstruction {
 
     public void simulate(ProgramStatement statement) {
         int[] operands = statement.getOperands();
-        Float64 f1 = Double.getDouble(operands[1]), f2 = Double.getDouble(operands[2]);
-        Environment e = new Environment();
+        long bits1 = FloatingPointRegisterFile.getValueLong(operands[1]), bits2 = FloatingPointRegisterFile.getValueLong(operands[2]);
+        if (!Double.isNaN(bits1) && !Double.isNaN(bits2)) {
+            // Only NaNs raise flags
+            boolean result = java.lang.Double.longBitsToDouble(bits1) < java.lang.Double.longBitsToDouble(bits2);
+            RegisterFile.updateRegister(operands[0], result ? 1 : 0);
+            return;
+        }
+        Float64 f1 = new Float64(bits1), f2 = new Float64(bits2);
+        Environment e = Floating.environment();
         boolean result = jsoftfloat.operations.Comparisons.compareSignalingLessThan(f1,f2,e);
         Floating.setfflags(e);
         RegisterFile.updateRegister(operands[0], result ? 1 : 0);
@@ -11,4 +11,12 @@ public class FMADDS extends FusedFloat {
     public Float32 compute(Float32 f1, Float32 f2, Float32 f3, Environment e){
         return jsoftfloat.operations.Arithmetic.fusedMultiplyAdd(f1,f2,f3,e);
     }
+
+    protected float computeNative(float f1, float f2, float f3) {
+        return Math.fma(f1, f2, f3);
+    }
+
+    protected int nativeFlags(float f1, float f2, float f3, float result) {
+        return fusedFlags(f1, f2, f3, result);
+    }
 }
@@ -11,4 +11,12 @@ public class FMSUBD extends FusedDouble {
     public Float64 compute(Float64 f1, Float64 f2, Float64 f3, Environment e){
         return jsoftfloat.operations.Arithmetic.fusedMultiplyAdd(f1,f2,f3.negate(),e);
     }
+
+    protected double computeNative(double f1, double f2, double f3) {
+        return Math.fma(f1, f2, -f3);
+    }
+
+    protected int nativeFlags(double f1, double f2, double f3, double result) {
+        return fusedFlags(f1, f2, -f3, result);
+    }
 }
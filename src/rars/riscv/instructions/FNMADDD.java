@@ -13,4 +13,12 @@ public class FNMADDD extends FusedDouble {
         FusedFloat.flipRounding(e);
         return jsoftfloat.operations.Arithmetic.fusedMultiplyAdd(f1,f2,f3,e).negate();
     }
+
+    protected double computeNative(double f1, double f2, double f3) {
+        return -Math.fma(f1, f2, f3);
+    }
+
+    protected int nativeFlags(double f1, double f2, double f3, double result) {
+        return fusedFlags(f1, f2, f3, -result);
+    }
 }
@@ -13,4 +13,12 @@ public class FNMADDS extends FusedFloat {
         flipRounding(e);
         return jsoftfloat.operations.Arithmetic.fusedMultiplyAdd(f1,f2,f3,e).negate();
     }
+
+    protected float computeNative(float f1, float f2, float f3) {
+        return -Math.fma(f1, f2, f3);
+    }
+
+    protected int nativeFlags(float f1, float f2, float f3, float result) {
+        return fusedFlags(f1, f2, f3, -result);
+    }
 }
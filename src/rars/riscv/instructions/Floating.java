@@ -3,10 +3,12 @@ package rars.riscv.instructions;
 import jsoftfloat.Flags;
 import jsoftfloat.RoundingMode;
 import jsoftfloat.types.Float32;
+import jsoftfloat.types.Float64;
 import rars.ProgramStatement;
 import rars.SimulationException;
 import rars.riscv.hardware.ControlAndStatusRegisterFile;
 import rars.riscv.hardware.FloatingPointRegisterFile;
+import rars.riscv.hardware.RegisterFile;
 import rars.riscv.BasicInstruction;
 import rars.riscv.BasicInstructionFormat;
 import jsoftfloat.Environment;
@@ -25,22 +27,180 @@ public abstract class Floating extends BasicInstruction {
     protected Floating(String name, String description, String funct, String rm) {
         super(name + " f1, f2, f3", description, BasicInstructionFormat.R_FORMAT, funct + "ttttt sssss " + rm + " fffff 1010011");
     }
+    // CSR numbers of fflags and frm, and the inexact bit of fflags
+    static final int FFLAGS = 0x001, FRM = 0x002, INEXACT = 1;
+
+    // The jsoftfloat flag for each bit of fflags, from the lowest
+    private static final Flags[] FLAGS = {Flags.inexact, Flags.underflow, Flags.overflow, Flags.divByZero, Flags.invalid};
+
+    // The simulator runs a single hart, which reuses one environment for every instruction
+    // rather than allocating an environment and its set of flags each time
+    private static final Environment environment = new Environment();
+
+    // Zero values that tell jsoftfloat conversions which type to produce
+    static final Float32 FLOAT32 = new Float32(0);
+    static final Float64 FLOAT64 = new Float64(0);
+
     public void simulate(ProgramStatement statement) throws SimulationException{
         int[] operands = statement.getOperands();
-        Environment e = new Environment();
-        e.mode = getRoundingMode(operands[3],statement);
+        if (isNearestEven(operands[3])) {
+            float f1 = Float.intBitsToFloat(FloatingPointRegisterFile.getValue(operands[1]));
+            float f2 = Float.intBitsToFloat(FloatingPointRegisterFile.getValue(operands[2]));
+            float result = computeNative(f1, f2);
+            int flags = nativeFlags(f1, f2, result);
+            if (flags >= 0) {
+                raiseFlags(flags);
+                FloatingPointRegisterFile.updateRegister(operands[0], Float.floatToRawIntBits(result));
+                return;
+            }
+        }
+        Environment e = environment(operands[3], statement);
         Float32 result = compute(new Float32(FloatingPointRegisterFile.getValue(operands[1])),new Float32(FloatingPointRegisterFile.getValue(operands[2])),e);
         setfflags(e);
         FloatingPointRegisterFile.updateRegister(operands[0], result.bits);
     }
 
+    /**
+     * Computes the operation with Java arithmetic, which rounds to nearest even.  Only used when
+     * {@link #nativeFlags(float, float, float)} accepts the result.
+     */
+    protected float computeNative(float f1, float f2) {
+        return Float.NaN;
+    }
+
+    /**
+     * Checks a result of {@link #computeNative(float, float)}.
+     *
+     * @return the fflags the operation raises, or -1 if the result must be computed with softfloat
+     * instead; by default always -1
+     */
+    protected int nativeFlags(float f1, float f2, float result) {
+        return -1;
+    }
+
+    /**
+     * @return whether the rounding mode field selects round to nearest even, which Java arithmetic uses
+     */
+    static boolean isNearestEven(int rm) {
+        return rm == 0 || (rm == 7 && ControlAndStatusRegisterFile.getValue(FRM) == 0);
+    }
+
+    /**
+     * Flags of a native result known to be exact or not.  Results that are not finite, or that are
+     * subnormal or rounded to zero, may raise other flags and are left to softfloat.  So are inexact
+     * results at the smallest normal magnitude, since RISC-V detects tininess after rounding and the
+     * value before rounding may have been tiny.
+     */
+    static int resultFlags(float result, boolean exact) {
+        if (result == 0 ? !exact : !(Math.abs(result) >= Float.MIN_NORMAL && Math.abs(result) <= Float.MAX_VALUE)) {
+            return -1;
+        }
+        if (!exact && Math.abs(result) == Float.MIN_NORMAL) {
+            return -1;
+        }
+        return exact ? 0 : INEXACT;
+    }
+
+    // Flags of s = a + b; the rounding error of the sum is exact (TwoSum)
+    static int sumFlags(float a, float b, float s) {
+        float bb = s - a;
+        float err = (a - (s - bb)) + (b - bb);
+        return resultFlags(s, err == 0);
+    }
+
+    // Flags of p = a * b; the product of two floats is exact as a double
+    static int productFlags(float a, float b, float p) {
+        return resultFlags(p, (double) p == (double) a * (double) b);
+    }
+
+    // Flags of q = a / b; q * b is exact as a double, and is a exactly when q is exact
+    static int quotientFlags(float a, float b, float q) {
+        return resultFlags(q, (double) q * (double) b == (double) a);
+    }
+
     public static void setfflags(Environment e){
-        int fflags =(e.flags.contains(Flags.inexact)?1:0)+
-                (e.flags.contains(Flags.underflow)?2:0)+
-                (e.flags.contains(Flags.overflow)?4:0)+
-                (e.flags.contains(Flags.divByZero)?8:0)+
-                (e.flags.contains(Flags.invalid)?16:0);
-        if(fflags != 0) ControlAndStatusRegisterFile.orRegister("fflags",fflags);
+        if (e.flags.isEmpty()) return;
+        int fflags = 0;
+        for (int i = 0; i < FLAGS.length; i++) {
+            if (e.flags.contains(FLAGS[i])) fflags |= 1 << i;
+        }
+        raiseFlags(fflags);
+    }
+
+    /**
+     * ORs flags into fflags.  Flags are sticky, so most of the time they are already set and
+     * the register is left alone.
+     */
+    static void raiseFlags(int fflags) {
+        if (fflags != 0 && (ControlAndStatusRegisterFile.getValue(FFLAGS) & fflags) != fflags) {
+            ControlAndStatusRegisterFile.orRegister(FFLAGS, fflags);
+        }
+    }
+
+    /**
+     * Gets the environment to pass to jsoftfloat for an instruction, with no flags raised and the
+     * rounding mode the instruction selects.  The environment is shared, so it is only good until
+     * the next instruction.
+     *
+     * @throws SimulationException if the rounding mode is not valid
+     */
+    public static Environment environment(int rm, ProgramStatement statement) throws SimulationException {
+        Environment e = environment();
+        e.mode = getRoundingMode(rm, statement);
+        return e;
+    }
+
+    /**
+     * Gets the environment to pass to jsoftfloat for an instruction that does not round.
+     */
+    public static Environment environment() {
+        environment.flags.clear();
+        environment.mode = RoundingMode.even;
+        return environment;
+    }
+
+    /**
+     * Converts to a signed word with Java arithmetic when rounding to nearest even or toward zero,
+     * and writes it to an integer register.
+     *
+     * @return false, having done nothing, for other rounding modes and values out of range
+     */
+    static boolean convertToInt(double value, Environment e, int rd) {
+        double rounded;
+        if (e.mode == RoundingMode.even) {
+            rounded = Math.rint(value);
+        } else if (e.mode == RoundingMode.zero) {
+            rounded = value;
+        } else {
+            return false;
+        }
+        if (!(rounded > -2147483649.0 && rounded < 2147483648.0)) {
+            return false;
+        }
+        int out = (int) rounded;
+        if (out != value) raiseFlags(INEXACT);
+        RegisterFile.updateRegister(rd, out);
+        return true;
+    }
+
+    /**
+     * Converts a word, signed or not, to a float with Java arithmetic when rounding to nearest
+     * even, and writes it to a floating point register.
+     *
+     * @return false, having done nothing, for other rounding modes
+     */
+    static boolean convertToFloat(long value, Environment e, int rd) {
+        if (e.mode != RoundingMode.even) {
+            return false;
+        }
+        float out = value;
+        if ((long) out != value) raiseFlags(INEXACT);
+        FloatingPointRegisterFile.updateRegister(rd, Float.floatToRawIntBits(out));
+        return true;
+    }
+
+    public static boolean isNaN(int bits) {
+        return (bits & 0x7FFFFFFF) > 0x7F800000;
     }
 
     public static RoundingMode getRoundingMode(int RM, ProgramStatement statement) throws SimulationException {
@@ -19,8 +19,19 @@ public abstract class FusedDouble extends BasicInstruction {
 
     public void simulate(ProgramStatement statement) throws SimulationException {
         int[] operands = statement.getOperands();
-        Environment e = new Environment();
-        e.mode = Floating.getRoundingMode(operands[4],statement);
+        if (Floating.isNearestEven(operands[4])) {
+            double f1 = java.lang.Double.longBitsToDouble(FloatingPointRegisterFile.getValueLong(operands[1]));
+            double f2 = java.lang.Double.longBitsToDouble(FloatingPointRegisterFile.getValueLong(operands[2]));
+            double f3 = java.lang.Double.longBitsToDouble(FloatingPointRegisterFile.getValueLong(operands[3]));
+            double result = computeNative(f1, f2, f3);
+            int flags = nativeFlags(f1, f2, f3, result);
+            if (flags >= 0) {
+                Floating.raiseFlags(flags);
+                FloatingPointRegisterFile.updateRegisterLong(operands[0], java.lang.Double.doubleToRawLongBits(result));
+                return;
+            }
+        }
+        Environment e = Floating.environment(operands[4], statement);
         Float64 result = compute(new Float64(FloatingPointRegisterFile.getValueLong(operands[1])),
                 new Float64(FloatingPointRegisterFile.getValueLong(operands[2])),
                 new Float64(FloatingPointRegisterFile.getValueLong(operands[3])),e);
@@ -28,6 +39,40 @@ public abstract class FusedDouble extends BasicInstruction {
         FloatingPointRegisterFile.updateRegisterLong(operands[0],result.bits);
     }
 
+    /**
+     * Computes the operation with Java arithmetic, which rounds to nearest even.  Only used when
+     * {@link #nativeFlags(double, double, double, double)} accepts the result.
+     */
+    protected abstract double computeNative(double f1, double f2, double f3);
+
+    /**
+     * Checks a result of {@link #computeNative(double, double, double)}.
+     *
+     * @return the fflags the operation raises, or -1 if the result must be computed with softfloat
+     */
+    protected abstract int nativeFlags(double f1, double f2, double f3, double result);
+
+    /**
+     * Flags of r = fma(a, b, c).  Both a * b (TwoProduct) and r - c (TwoSum) are split exactly into
+     * a rounded value and its error; r is exact when the two splits are the same.
+     */
+    static int fusedFlags(double a, double b, double c, double r) {
+        double ph = a * b, pl = 0;
+        if (a != 0 && b != 0) {
+            if (Math.getExponent(a) + Math.getExponent(b) < Double.MIN_EXACT_EXPONENT || java.lang.Double.isInfinite(ph)) {
+                return -1;
+            }
+            pl = Math.fma(a, b, -ph);
+        }
+        double d = r - c;
+        if (java.lang.Double.isInfinite(d)) {
+            return -1;
+        }
+        double bb = d - r;
+        double ed = (r - (d - bb)) + (-c - bb);
+        return Double.resultFlags(r, ph == d && pl == ed);
+    }
+
     /**
      * @param r1 The first register
      * @param r2 The second register
@@ -21,8 +21,19 @@ public abstract class FusedFloat extends BasicInstruction {
 
     public void simulate(ProgramStatement statement) throws SimulationException {
         int[] operands = statement.getOperands();
-        Environment e = new Environment();
-        e.mode = Floating.getRoundingMode(operands[4],statement);
+        if (Floating.isNearestEven(operands[4])) {
+            float f1 = Float.intBitsToFloat(FloatingPointRegisterFile.getValue(operands[1]));
+            float f2 = Float.intBitsToFloat(FloatingPointRegisterFile.getValue(operands[2]));
+            float f3 = Float.intBitsToFloat(FloatingPointRegisterFile.getValue(operands[3]));
+            float result = computeNative(f1, f2, f3);
+            int flags = nativeFlags(f1, f2, f3, result);
+            if (flags >= 0) {
+                Floating.raiseFlags(flags);
+                FloatingPointRegisterFile.updateRegister(operands[0], Float.floatToRawIntBits(result));
+                return;
+            }
+        }
+        Environment e = Floating.environment(operands[4], statement);
         Float32 result = compute(new Float32(FloatingPointRegisterFile.getValue(operands[1])),
                 new Float32(FloatingPointRegisterFile.getValue(operands[2])),
                 new Float32(FloatingPointRegisterFile.getValue(operands[3])),e);
@@ -37,6 +48,32 @@ public abstract class FusedFloat extends BasicInstruction {
             e.mode = RoundingMode.max;
         }
     }
+    /**
+     * Computes the operation with Java arithmetic, which rounds to nearest even.  Only used when
+     * {@link #nativeFlags(float, float, float, float)} accepts the result.
+     */
+    protected abstract float computeNative(float f1, float f2, float f3);
+
+    /**
+     * Checks a result of {@link #computeNative(float, float, float)}.
+     *
+     * @return the fflags the operation raises, or -1 if the result must be computed with softfloat
+     */
+    protected abstract int nativeFlags(float f1, float f2, float f3, float result);
+
+    /**
+     * Flags of r = fma(a, b, c).  The product of two floats is exact as a double, and the rounding
+     * error of adding c to it is exact (TwoSum), so r is exact when that error is zero and the
+     * double sum converts to r unchanged.
+     */
+    static int fusedFlags(float a, float b, float c, float r) {
+        double p = (double) a * (double) b;
+        double s = p + c;
+        double bb = s - p;
+        double err = (p - (s - bb)) + (c - bb);
+        return Floating.resultFlags(r, err == 0 && s == r);
+    }
+
     /**
      * @param r1 The first register
      * @param r2 The second register
@@ -16,6 +16,6 @@ public class JAL extends BasicInstruction {
     public void simulate(ProgramStatement statement) {
         int[] operands = statement.getOperands();
         InstructionSet.processReturnAddress(operands[0]);
-        InstructionSet.processJump(RegisterFile.getProgramCounter() - Instruction.INSTRUCTION_LENGTH + operands[1]);
+        InstructionSet.processJump(RegisterFile.getProgramCounter() - RegisterFile.getInstructionLength() + operands[1]);
     }
 }
\ No newline at end of file
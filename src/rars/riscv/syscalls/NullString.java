@@ -7,7 +7,6 @@ import rars.riscv.hardware.AddressErrorException;
 import rars.riscv.hardware.RegisterFile;
 
 import java.nio.charset.StandardCharsets;
-import java.util.ArrayList;
 
 /**
  * Small helper class to wrap getting null terminated strings from memory
@@ -30,24 +29,16 @@ public class NullString {
      */
     public static String get(ProgramStatement statement, String reg) throws ExitingException {
         int byteAddress = RegisterFile.getValue(reg);
-        ArrayList<Byte> utf8BytesList = new ArrayList<>(); // Need an array to hold bytes
+        byte[] utf8Bytes;
         try {
-            utf8BytesList.add((byte) Globals.memory.getByte(byteAddress));
-            while (utf8BytesList.get(utf8BytesList.size() - 1) != 0) // until null terminator
-            {
-                byteAddress++;
-                utf8BytesList.add((byte) Globals.memory.getByte(byteAddress));
-            }
+            int size = Globals.memory.strlen(byteAddress);
+            // Read the null terminator as well, so tools see the whole string being read
+            utf8Bytes = new byte[size + 1];
+            Globals.memory.readBytes(byteAddress, utf8Bytes, 0, size + 1);
         } catch (AddressErrorException e) {
             throw new ExitingException(statement, e);
         }
 
-        int size = utf8BytesList.size() - 1;    //size - 1 so we dont include the null terminator in the utf8Bytes array
-        byte[] utf8Bytes = new byte[size];  
-        for (int i = 0; i < size; i++){ 
-            utf8Bytes[i] = utf8BytesList.get(i);
-        }
-
-        return new String(utf8Bytes, StandardCharsets.UTF_8);
+        return new String(utf8Bytes, 0, utf8Bytes.length - 1, StandardCharsets.UTF_8);
     }
 }
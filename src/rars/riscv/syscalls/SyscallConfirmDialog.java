@@ -4,6 +4,7 @@ import rars.ExitingException;
 import rars.ProgramStatement;
 import rars.riscv.AbstractSyscall;
 import rars.riscv.hardware.RegisterFile;
+import rars.simulator.TimeTravel;
 
 import javax.swing.*;
 
@@ -14,9 +15,13 @@ public class SyscallConfirmDialog extends AbstractSyscall {
                 "a0 = Yes (0), No (1), or Cancel(2)");
     }
 
+    public int getCapabilities() {
+        return READS_INPUT | MAY_BLOCK;
+    }
+
     public void simulate(ProgramStatement statement) throws ExitingException {
         String message = NullString.get(statement);
-        int result = JOptionPane.showConfirmDialog(null, message);
+        int result = TimeTravel.input(() -> JOptionPane.showConfirmDialog(null, message));
         if (result == JOptionPane.CLOSED_OPTION) {
             result = JOptionPane.CANCEL_OPTION;
         }
@@ -7,6 +7,7 @@ import rars.riscv.hardware.AddressErrorException;
 import rars.riscv.hardware.FloatingPointRegisterFile;
 import rars.riscv.hardware.RegisterFile;
 import rars.riscv.AbstractSyscall;
+import rars.simulator.TimeTravel;
 
 import javax.swing.*;
 
@@ -22,6 +23,10 @@ public class SyscallInputDialogDouble extends AbstractSyscall {
         super("InputDialogDouble");
     }
 
+    public int getCapabilities() {
+        return READS_INPUT | MAY_BLOCK;
+    }
+
     /**
      * System call to input data.
      */
@@ -55,8 +60,9 @@ public class SyscallInputDialogDouble extends AbstractSyscall {
         // A null return value means that "Cancel" was chosen rather than OK.
         // An empty string returned (that is, inputValue.length() of zero)
         // means that OK was chosen but no string was input.
+        String prompt = message;
         String inputValue = null;
-        inputValue = JOptionPane.showInputDialog(message);
+        inputValue = TimeTravel.input(() -> JOptionPane.showInputDialog(prompt));
 
         try {
             FloatingPointRegisterFile.updateRegisterLong(0, 0); // set $f0 to zero
@@ -5,6 +5,7 @@ import rars.ProgramStatement;
 import rars.riscv.hardware.FloatingPointRegisterFile;
 import rars.riscv.hardware.RegisterFile;
 import rars.riscv.AbstractSyscall;
+import rars.simulator.TimeTravel;
 
 import javax.swing.*;
 
@@ -26,6 +27,10 @@ public class SyscallInputDialogFloat extends AbstractSyscall {
         super("InputDialogFloat");
     }
 
+    public int getCapabilities() {
+        return READS_INPUT | MAY_BLOCK;
+    }
+
     public void simulate(ProgramStatement statement) throws ExitingException {
         String message = NullString.get(statement);
 
@@ -34,7 +39,7 @@ public class SyscallInputDialogFloat extends AbstractSyscall {
         // An empty string returned (that is, inputValue.length() of zero)
         // means that OK was chosen but no string was input.
         String inputValue = null;
-        inputValue = JOptionPane.showInputDialog(message);
+        inputValue = TimeTravel.input(() -> JOptionPane.showInputDialog(message));
 
         try {
             FloatingPointRegisterFile.setRegisterToFloat(0, (float) 0.0);  // set f0 to zero
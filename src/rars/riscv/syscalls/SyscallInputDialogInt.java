@@ -4,6 +4,7 @@ import rars.ExitingException;
 import rars.ProgramStatement;
 import rars.riscv.hardware.RegisterFile;
 import rars.riscv.AbstractSyscall;
+import rars.simulator.TimeTravel;
 
 import javax.swing.*;
 
@@ -25,6 +26,10 @@ public class SyscallInputDialogInt extends AbstractSyscall {
         super("InputDialogInt");
     }
 
+    public int getCapabilities() {
+        return READS_INPUT | MAY_BLOCK;
+    }
+
     public void simulate(ProgramStatement statement) throws ExitingException {
         String message = NullString.get(statement);
 
@@ -33,7 +38,7 @@ public class SyscallInputDialogInt extends AbstractSyscall {
         // An empty string returned (that is, inputValue.length() of zero)
         // means that OK was chosen but no string was input.
         String inputValue = null;
-        inputValue = JOptionPane.showInputDialog(message);
+        inputValue = TimeTravel.input(() -> JOptionPane.showInputDialog(message));
         if (inputValue == null)  // Cancel was chosen
         {
             RegisterFile.updateRegister("a0", 0);
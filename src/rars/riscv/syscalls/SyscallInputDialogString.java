@@ -6,6 +6,7 @@ import rars.ProgramStatement;
 import rars.riscv.hardware.AddressErrorException;
 import rars.riscv.hardware.RegisterFile;
 import rars.riscv.AbstractSyscall;
+import rars.simulator.TimeTravel;
 
 import javax.swing.*;
 import java.nio.charset.StandardCharsets;
@@ -34,6 +35,10 @@ public class SyscallInputDialogString extends AbstractSyscall {
                         "-3: OK was chosen but no data had been input into field. No change to buffer.<br>-4: length of the input string exceeded the specified maximum. Buffer contains the maximum allowable input string terminated with null.");
     }
 
+    public int getCapabilities() {
+        return READS_INPUT | MAY_BLOCK;
+    }
+
     public void simulate(ProgramStatement statement) throws ExitingException {
         String message = NullString.get(statement);
 
@@ -42,7 +47,7 @@ public class SyscallInputDialogString extends AbstractSyscall {
         // An empty string returned (that is, inputString.length() of zero)
         // means that OK was chosen but no string was input.
         String inputString = null;
-        inputString = JOptionPane.showInputDialog(message);
+        inputString = TimeTravel.input(() -> JOptionPane.showInputDialog(message));
         int byteAddress = RegisterFile.getValue("a1"); // byteAddress of string is in a1
         int maxLength = RegisterFile.getValue("a2"); // input buffer size for input string is in a2
 
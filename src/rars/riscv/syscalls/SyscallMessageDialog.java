@@ -4,6 +4,7 @@ import rars.ExitingException;
 import rars.ProgramStatement;
 import rars.riscv.AbstractSyscall;
 import rars.riscv.hardware.RegisterFile;
+import rars.simulator.TimeTravel;
 
 import javax.swing.*;
 
@@ -15,11 +16,17 @@ public class SyscallMessageDialog extends AbstractSyscall {
                         "0: error message <br>1: information message <br>2: warning message <br>3: question message <br>other: plain message", "N/A");
     }
 
+    public int getCapabilities() {
+        return MAY_BLOCK;
+    }
+
     public void simulate(ProgramStatement statement) throws ExitingException {
         // Display the dialog.
         int msgType = RegisterFile.getValue("a1");
         if (msgType < 0 || msgType > 3)
             msgType = -1; // See values in http://java.sun.com/j2se/1.5.0/docs/api/constant-values.html
-        JOptionPane.showMessageDialog(null, NullString.get(statement), null, msgType);
+        if (!TimeTravel.isReplaying()) {
+            JOptionPane.showMessageDialog(null, NullString.get(statement), null, msgType);
+        }
     }
 }
@@ -7,6 +7,7 @@ import rars.riscv.hardware.AddressErrorException;
 import rars.riscv.hardware.FloatingPointRegisterFile;
 import rars.riscv.hardware.RegisterFile;
 import rars.riscv.AbstractSyscall;
+import rars.simulator.TimeTravel;
 
 import javax.swing.*;
 
@@ -23,6 +24,10 @@ public class SyscallMessageDialogDouble extends AbstractSyscall {
                 "a0 = address of null-terminated string that is the message to user <br> fa0 = the double","N/A");
     }
 
+    public int getCapabilities() {
+        return MAY_BLOCK;
+    }
+
     /**
      * System call to display a message to user.
      */
@@ -43,9 +48,11 @@ public class SyscallMessageDialogDouble extends AbstractSyscall {
             throw new ExitingException(statement, e);
         }
 
-        JOptionPane.showMessageDialog(null,
-                message + Double.longBitsToDouble(FloatingPointRegisterFile.getValueLong(10)),
-                null,
-                JOptionPane.INFORMATION_MESSAGE);
+        if (!TimeTravel.isReplaying()) {
+            JOptionPane.showMessageDialog(null,
+                    message + Double.longBitsToDouble(FloatingPointRegisterFile.getValueLong(10)),
+                    null,
+                    JOptionPane.INFORMATION_MESSAGE);
+        }
     }
 }
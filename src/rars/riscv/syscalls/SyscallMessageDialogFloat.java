@@ -4,6 +4,7 @@ import rars.ExitingException;
 import rars.ProgramStatement;
 import rars.riscv.AbstractSyscall;
 import rars.riscv.hardware.FloatingPointRegisterFile;
+import rars.simulator.TimeTravel;
 
 import javax.swing.*;
 
@@ -14,13 +15,19 @@ public class SyscallMessageDialogFloat extends AbstractSyscall {
                         "fa1 = the float to display", "N/A");
     }
 
+    public int getCapabilities() {
+        return MAY_BLOCK;
+    }
+
     public void simulate(ProgramStatement statement) throws ExitingException {
         String message = NullString.get(statement);
 
         // Display the dialog.
-        JOptionPane.showMessageDialog(null,
-                message + Float.toString(FloatingPointRegisterFile.getFloatFromRegister("fa1")),
-                null,
-                JOptionPane.INFORMATION_MESSAGE);
+        if (!TimeTravel.isReplaying()) {
+            JOptionPane.showMessageDialog(null,
+                    message + Float.toString(FloatingPointRegisterFile.getFloatFromRegister("fa1")),
+                    null,
+                    JOptionPane.INFORMATION_MESSAGE);
+        }
     }
 }
@@ -3,6 +3,7 @@ package rars.riscv.syscalls;
 import rars.ExitingException;
 import rars.ProgramStatement;
 import rars.riscv.AbstractSyscall;
+import rars.simulator.TimeTravel;
 
 import javax.swing.*;
 
@@ -13,11 +14,17 @@ public class SyscallMessageDialogString extends AbstractSyscall {
                         "a1 = address of the second string to display", "N/A");
     }
 
+    public int getCapabilities() {
+        return MAY_BLOCK;
+    }
+
     public void simulate(ProgramStatement statement) throws ExitingException {
         // Display the dialog.
-        JOptionPane.showMessageDialog(null,
-                NullString.get(statement) + NullString.get(statement, "a1"),
-                null,
-                JOptionPane.INFORMATION_MESSAGE);
+        if (!TimeTravel.isReplaying()) {
+            JOptionPane.showMessageDialog(null,
+                    NullString.get(statement) + NullString.get(statement, "a1"),
+                    null,
+                    JOptionPane.INFORMATION_MESSAGE);
+        }
     }
 }
@@ -3,6 +3,7 @@ package rars.riscv.syscalls;
 import rars.ProgramStatement;
 import rars.riscv.AbstractSyscall;
 import rars.riscv.hardware.RegisterFile;
+import rars.simulator.TimeTravel;
 
 public class SyscallMidiOut extends AbstractSyscall {
     // Endpoints of ranges for the three "byte" parameters.  The duration
@@ -29,6 +30,9 @@ public class SyscallMidiOut extends AbstractSyscall {
      * use the range 1-128.
      */
     public void simulate(ProgramStatement statement) {
+        if (TimeTravel.isReplaying()) {
+            return;
+        }
         int pitch = RegisterFile.getValue("a0");
         int duration = RegisterFile.getValue("a1");
         int instrument = RegisterFile.getValue("a2");
@@ -3,6 +3,7 @@ package rars.riscv.syscalls;
 import rars.ProgramStatement;
 import rars.riscv.AbstractSyscall;
 import rars.riscv.hardware.RegisterFile;
+import rars.simulator.TimeTravel;
 
 public class SyscallMidiOutSync extends AbstractSyscall {
 
@@ -15,6 +16,10 @@ public class SyscallMidiOutSync extends AbstractSyscall {
         super("MidiOutSync", "Outputs simulated MIDI tone to sound card, then waits until the sound finishes playing.", "See MIDI note below", "N/A");
     }
 
+    public int getCapabilities() {
+        return MAY_BLOCK;
+    }
+
     /**
      * Arguments:
      * a0 - pitch (note).  Integer value from 0 to 127, with 60 being middle-C on a piano.<br>
@@ -30,6 +35,9 @@ public class SyscallMidiOutSync extends AbstractSyscall {
      * use the range 1-128.
      */
     public void simulate(ProgramStatement statement) {
+        if (TimeTravel.isReplaying()) {
+            return;
+        }
         int pitch = RegisterFile.getValue("a0");
         int duration = RegisterFile.getValue("a1");
         int instrument = RegisterFile.getValue("a2");
@@ -8,9 +8,10 @@ import rars.util.SystemIO;
 
 public class SyscallOpen extends AbstractSyscall {
     public SyscallOpen() {
-        super("Open", "Opens a file from a path <br>Only supported flags (a1) are read-only (0), write-only (1) and" +
-                        " write-append (9). write-only flag creates file if it does not exist, so it is technically" +
-                        " write-create.  write-append will start writing at end of existing file.",
+        super("Open", "Opens a file from a path <br>Supported flags (a1) are read-only (0), write-only (1) and" +
+                        " read-write (2), optionally plus append (8), create (0x200), truncate (0x400) and" +
+                        " exclusive (0x800). Writing creates the file if it does not exist, and write-only empties" +
+                        " it unless appending.  Appending always writes at the end of the file.",
                 "a0 = Null terminated string for the path <br>a1 = flags", "a0 = the file decriptor or -1 if an error occurred");
     }
 
@@ -13,6 +13,10 @@ public class SyscallPrintChar extends AbstractSyscall {
                 "a0 = character to print (only lowest byte is considered)", "N/A");
     }
 
+    public int getCapabilities() {
+        return WRITES_OUTPUT;
+    }
+
     public void simulate(ProgramStatement statement) {
         byte[] t = new byte[1];
         t[0] = (byte) RegisterFile.getValue("a0");
@@ -16,6 +16,10 @@ public class SyscallPrintDouble extends AbstractSyscall {
         super("PrintDouble","Prints a double precision floating point number","fa0 = double to print","N/A");
     }
 
+    public int getCapabilities() {
+        return WRITES_OUTPUT;
+    }
+
     /**
      * Performs syscall function to print double whose bits are stored in fa0
      */
@@ -10,6 +10,10 @@ public class SyscallPrintFloat extends AbstractSyscall {
         super("PrintFloat", "Prints a floating point number", "fa0 = float to print", "N/A");
     }
 
+    public int getCapabilities() {
+        return WRITES_OUTPUT;
+    }
+
     public void simulate(ProgramStatement statement) {
         SystemIO.printString(Float.toString(Float.intBitsToFloat(
                 FloatingPointRegisterFile.getValue("fa0"))));
@@ -10,6 +10,10 @@ public class SyscallPrintInt extends AbstractSyscall {
         super("PrintInt", "Prints an integer", "a0 = integer to print", "N/A");
     }
 
+    public int getCapabilities() {
+        return WRITES_OUTPUT;
+    }
+
     public void simulate(ProgramStatement statement) {
         SystemIO.printString(Long.toString(RegisterFile.getValueLong("a0")));
     }
@@ -12,6 +12,10 @@ public class SyscallPrintIntBinary extends AbstractSyscall {
         super("PrintIntBinary", "Prints an integer (in binary format left-padded with zeroes) ", "a0 = integer to print", "N/A");
     }
 
+    public int getCapabilities() {
+        return WRITES_OUTPUT;
+    }
+
     public void simulate(ProgramStatement statement) {
         if (InstructionSet.rv64) {
             SystemIO.printString(Binary.longToBinaryString(RegisterFile.getValueLong("a0")));
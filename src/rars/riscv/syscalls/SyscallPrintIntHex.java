@@ -12,6 +12,10 @@ public class SyscallPrintIntHex extends AbstractSyscall {
         super("PrintIntHex", "Prints an integer (in hexdecimal format left-padded with zeroes)", "a0 = integer to print", "N/A");
     }
 
+    public int getCapabilities() {
+        return WRITES_OUTPUT;
+    }
+
     public void simulate(ProgramStatement statement) {
         if (InstructionSet.rv64) {
             SystemIO.printString(Binary.longToHexString(RegisterFile.getValueLong("a0")));
@@ -12,6 +12,10 @@ public class SyscallPrintIntUnsigned extends AbstractSyscall {
         super("PrintIntUnsigned", "Prints an integer (unsigned)", "a0 = integer to print", "N/A");
     }
 
+    public int getCapabilities() {
+        return WRITES_OUTPUT;
+    }
+
     public void simulate(ProgramStatement statement) {
         if (InstructionSet.rv64) {
             SystemIO.printString(Long.toUnsignedString(RegisterFile.getValueLong("a0")));
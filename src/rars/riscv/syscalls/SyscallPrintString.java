@@ -11,6 +11,10 @@ public class SyscallPrintString extends AbstractSyscall {
                 "a0 = the address of the string", "N/A");
     }
 
+    public int getCapabilities() {
+        return WRITES_OUTPUT;
+    }
+
     public void simulate(ProgramStatement statement) throws ExitingException {
         SystemIO.printString(NullString.get(statement));
     }
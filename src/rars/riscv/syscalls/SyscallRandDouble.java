@@ -5,6 +5,7 @@ import rars.ProgramStatement;
 import rars.riscv.hardware.FloatingPointRegisterFile;
 import rars.riscv.hardware.RegisterFile;
 import rars.riscv.AbstractSyscall;
+import rars.simulator.TimeTravel;
 
 import java.util.Random;
 
@@ -27,6 +28,6 @@ public class SyscallRandDouble extends AbstractSyscall {
             stream = new Random(); // create a non-seeded stream
             RandomStreams.randomStreams.put(index, stream);
         }
-        FloatingPointRegisterFile.updateRegisterLong(10, Double.doubleToRawLongBits(stream.nextDouble()));
+        FloatingPointRegisterFile.updateRegisterLong(10, Double.doubleToRawLongBits(TimeTravel.input(stream::nextDouble)));
     }
 }
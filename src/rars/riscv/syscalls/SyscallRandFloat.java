@@ -3,6 +3,7 @@ package rars.riscv.syscalls;
 import rars.ProgramStatement;
 import rars.riscv.AbstractSyscall;
 import rars.riscv.hardware.FloatingPointRegisterFile;
+import rars.simulator.TimeTravel;
 
 import java.util.Random;
 
@@ -14,6 +15,6 @@ public class SyscallRandFloat extends AbstractSyscall {
 
     public void simulate(ProgramStatement statement) {
         Random stream = RandomStreams.get("a0");
-        FloatingPointRegisterFile.setRegisterToFloat(10, stream.nextFloat());// TODO: make this a string method fa0
+        FloatingPointRegisterFile.setRegisterToFloat(10, TimeTravel.input(stream::nextFloat));// TODO: make this a string method fa0
     }
 }
\ No newline at end of file
@@ -3,6 +3,7 @@ package rars.riscv.syscalls;
 import rars.ProgramStatement;
 import rars.riscv.AbstractSyscall;
 import rars.riscv.hardware.RegisterFile;
+import rars.simulator.TimeTravel;
 
 import java.util.Random;
 
@@ -13,7 +14,7 @@ public class SyscallRandInt extends AbstractSyscall {
 
     public void simulate(ProgramStatement statement) {
         Random stream = RandomStreams.get("a0");
-        RegisterFile.updateRegister("a0", stream.nextInt());
+        RegisterFile.updateRegister("a0", TimeTravel.input(stream::nextInt));
     }
 }
 
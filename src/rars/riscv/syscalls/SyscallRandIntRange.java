@@ -4,6 +4,7 @@ import rars.ExitingException;
 import rars.ProgramStatement;
 import rars.riscv.AbstractSyscall;
 import rars.riscv.hardware.RegisterFile;
+import rars.simulator.TimeTravel;
 
 import java.util.Random;
 
@@ -15,11 +16,11 @@ public class SyscallRandIntRange extends AbstractSyscall {
 
     public void simulate(ProgramStatement statement) throws ExitingException {
         Random stream = RandomStreams.get("a0");
-        try {
-            RegisterFile.updateRegister("a0", stream.nextInt(RegisterFile.getValue("a1")));
-        } catch (IllegalArgumentException iae) {
+        int bound = RegisterFile.getValue("a1");
+        if (bound <= 0) {
             throw new ExitingException(statement,
                     "Upper bound of range cannot be negative (syscall " + this.getNumber() + ")");
         }
+        RegisterFile.updateRegister("a0", TimeTravel.input(() -> stream.nextInt(bound)));
     }
 }
@@ -3,6 +3,7 @@ package rars.riscv.syscalls;
 import rars.ProgramStatement;
 import rars.riscv.AbstractSyscall;
 import rars.riscv.hardware.RegisterFile;
+import rars.simulator.TimeTravel;
 
 import java.util.Random;
 
@@ -13,6 +14,9 @@ public class SyscallRandSeed extends AbstractSyscall {
     }
 
     public void simulate(ProgramStatement statement) {
+        if (TimeTravel.isReplaying()) {
+            return; // replayed draws come from the recording, not the stream
+        }
         Integer index = RegisterFile.getValue("a0");
         Random stream = RandomStreams.randomStreams.get(index);
         if (stream == null) {
@@ -15,9 +15,12 @@ public class SyscallRead extends AbstractSyscall {
                 "a0 = the length read or -1 if error");
     }
 
+    public int getCapabilities() {
+        return READS_INPUT | MAY_BLOCK;
+    }
+
     public void simulate(ProgramStatement statement) throws ExitingException {
         int byteAddress = RegisterFile.getValue("a1"); // destination of characters read from file
-        int index = 0;
         int length = RegisterFile.getValue("a2");
         byte myBuffer[] = new byte[length]; // specified length
         // Call to SystemIO.xxxx.read(xxx,xxx,xxx)  returns actual length
@@ -29,10 +32,7 @@ public class SyscallRead extends AbstractSyscall {
 
         // copy bytes from returned buffer into memory
         try {
-            while (index < retLength) {
-                Globals.memory.setByte(byteAddress++,
-                        myBuffer[index++]);
-            }
+            Globals.memory.writeBytes(byteAddress, myBuffer, 0, retLength);
         } catch (AddressErrorException e) {
             throw new ExitingException(statement, e);
         }
@@ -10,6 +10,10 @@ public class SyscallReadChar extends AbstractSyscall {
         super("ReadChar", "Reads a character from input console", "N/A", "a0 = the character or -1 if end of input.");
     }
 
+    public int getCapabilities() {
+        return READS_INPUT | MAY_BLOCK;
+    }
+
     public void simulate(ProgramStatement statement) throws SimulationException {
         int character = SystemIO.readChar(this.getNumber());
         if (character == SystemIO.NOTASCII) {
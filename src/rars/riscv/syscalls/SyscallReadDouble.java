@@ -21,6 +21,10 @@ public class SyscallReadDouble extends AbstractSyscall {
         super("ReadDouble","Reads a double from input console", "N/A","fa0 = the double");
     }
 
+    public int getCapabilities() {
+        return READS_INPUT | MAY_BLOCK;
+    }
+
     /**
      * Performs syscall function to read the bits of input double into $f0 and $f1.
      */
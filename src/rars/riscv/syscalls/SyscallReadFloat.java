@@ -12,6 +12,10 @@ public class SyscallReadFloat extends AbstractSyscall {
         super("ReadFloat", "Reads a float from input console", "N/A", "fa0 = the float");
     }
 
+    public int getCapabilities() {
+        return READS_INPUT | MAY_BLOCK;
+    }
+
     public void simulate(ProgramStatement statement) throws SimulationException {
         float floatValue;
         try {
@@ -11,6 +11,10 @@ public class SyscallReadInt extends AbstractSyscall {
         super("ReadInt", "Reads an int from input console", "N/A", "a0 = the int");
     }
 
+    public int getCapabilities() {
+        return READS_INPUT | MAY_BLOCK;
+    }
+
     public void simulate(ProgramStatement statement) throws SimulationException {
         try {
             if (InstructionSet.rv64) {
@@ -7,6 +7,7 @@ import rars.riscv.hardware.RegisterFile;
 import rars.util.SystemIO;
 
 import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
 
 /**
  * Service to read console input string into buffer starting at address in a0 for a1-1 bytes.
@@ -22,6 +23,10 @@ public class SyscallReadString extends AbstractSyscall {
                 "a0 = address of input buffer<br>a1 = size of the buffer", "N/A");
     }
 
+    public int getCapabilities() {
+        return READS_INPUT | MAY_BLOCK;
+    }
+
     public void simulate(ProgramStatement statement) throws SimulationException {
         String inputString = "";
         int buf = RegisterFile.getValue("a0"); // buf addr
@@ -37,16 +42,14 @@ public class SyscallReadString extends AbstractSyscall {
         byte[] utf8BytesList = inputString.getBytes(StandardCharsets.UTF_8);
         // TODO: allow for utf-8 encoded strings
         int stringLength = Math.min(maxLength, utf8BytesList.length);
+        // The string, a newline if it fits, and the null byte, stored in one go
+        byte[] stored = Arrays.copyOf(utf8BytesList, stringLength + 2);
+        if (stringLength < maxLength) {
+            stored[stringLength++] = '\n';
+        }
+        if (addNullByte) stored[stringLength++] = 0;
         try {
-            for (int index = 0; index < stringLength; index++) {
-                Globals.memory.setByte(buf + index,
-                        utf8BytesList[index]);
-            }
-            if (stringLength < maxLength) {
-                Globals.memory.setByte(buf + stringLength, '\n');
-                stringLength++;
-            }
-            if (addNullByte) Globals.memory.setByte(buf + stringLength, 0);
+            Globals.memory.writeBytes(buf, stored, 0, stringLength);
         } catch (AddressErrorException e) {
             throw new ExitingException(statement, e);
         }
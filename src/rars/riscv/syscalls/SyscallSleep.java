@@ -3,13 +3,21 @@ package rars.riscv.syscalls;
 import rars.ProgramStatement;
 import rars.riscv.AbstractSyscall;
 import rars.riscv.hardware.RegisterFile;
+import rars.simulator.TimeTravel;
 
 public class SyscallSleep extends AbstractSyscall {
     public SyscallSleep() {
         super("Sleep", "Set the current thread to sleep for a time (not precise)", "a0 = time to sleep in milliseconds", "N/A");
     }
 
+    public int getCapabilities() {
+        return MAY_BLOCK;
+    }
+
     public void simulate(ProgramStatement statement) {
+        if (TimeTravel.isReplaying()) {
+            return;
+        }
         try {
             Thread.sleep(RegisterFile.getValue("a0")); // units of milliseconds  1000 millisec = 1 sec.
         } catch (InterruptedException e) {
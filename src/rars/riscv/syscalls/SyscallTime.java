@@ -4,6 +4,7 @@ import rars.ProgramStatement;
 import rars.riscv.AbstractSyscall;
 import rars.riscv.hardware.RegisterFile;
 import rars.util.Binary;
+import rars.simulator.TimeTravel;
 
 public class SyscallTime extends AbstractSyscall {
     public SyscallTime() {
@@ -11,7 +12,7 @@ public class SyscallTime extends AbstractSyscall {
     }
 
     public void simulate(ProgramStatement statement) {
-        long value = new java.util.Date().getTime();
+        long value = TimeTravel.input(() -> new java.util.Date().getTime());
         RegisterFile.updateRegister("a0", Binary.lowOrderLongToInt(value));
         RegisterFile.updateRegister("a1", Binary.highOrderLongToInt(value));
     }
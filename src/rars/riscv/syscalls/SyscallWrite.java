@@ -20,6 +20,10 @@ public class SyscallWrite extends AbstractSyscall {
                 "a0 = the number of charcters written");
     }
 
+    public int getCapabilities() {
+        return WRITES_OUTPUT;
+    }
+
     public void simulate(ProgramStatement statement) throws ExitingException {
         int byteAddress = RegisterFile.getValue("a1"); // source of characters to write to file
         int reqLength = RegisterFile.getValue("a2"); // user-requested length
@@ -27,16 +31,10 @@ public class SyscallWrite extends AbstractSyscall {
             RegisterFile.updateRegister("a0", -1);
             return;
         }
-        int index = 0;
         byte myBuffer[] = new byte[reqLength];
         try {
-            byte b = (byte) Globals.memory.getByte(byteAddress);
-            while (index < reqLength) // Stop at requested length. Null bytes are included.
-            {
-                myBuffer[index++] = b;
-                byteAddress++;
-                b = (byte) Globals.memory.getByte(byteAddress);
-            }
+            // Stop at requested length. Null bytes are included.
+            Globals.memory.readBytes(byteAddress, myBuffer, 0, reqLength);
         } catch (AddressErrorException e) {
             throw new ExitingException(statement, e);
         }
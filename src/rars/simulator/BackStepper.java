@@ -21,6 +21,7 @@ public class BackStepper {
         MEMORY_RESTORE_WORD,
         MEMORY_RESTORE_HALF,
         MEMORY_RESTORE_BYTE,
+        MEMORY_RESTORE_BYTES,
         REGISTER_RESTORE,
         PC_RESTORE,
         CONTROL_AND_STATUS_REGISTER_RESTORE,
@@ -81,9 +82,18 @@ public class BackStepper {
         return backSteps.empty();
     }
 
+    /**
+     * Discard all recorded steps, for instance after execution has jumped elsewhere in time.
+     */
+    public void clear() {
+        backSteps.clear();
+    }
+
     /**
      * Carry out a "back step", which will undo the latest execution step.
      * Does nothing if backstepping not enabled or if there are no steps to undo.
+     * While time travel is active the step is undone by seeking back one instruction
+     * instead, so that its position stays in agreement with the machine state.
      */
 
     // Note that there may be more than one "step" in an instruction execution; for
@@ -93,6 +103,13 @@ public class BackStepper {
     // together and carry out all of them here.
     // Use a do-while loop based on the backstep's program statement reference.
     public void backStep() {
+        TimeTravel history = TimeTravel.getActive();
+        if (history != null) {
+            if (engaged && history.getPosition() > 0) {
+                history.seek(history.getPosition() - 1);
+            }
+            return;
+        }
         if (engaged && !backSteps.empty()) {
             ProgramStatement statement = backSteps.peek().ps;
             engaged = false; // GOTTA DO THIS SO METHOD CALL IN SWITCH WILL NOT RESULT IN NEW ACTION ON STACK!
@@ -123,6 +140,9 @@ public class BackStepper {
                         case MEMORY_RESTORE_BYTE:
                             Globals.memory.setByte(step.param1, (int)step.param2);
                             break;
+                        case MEMORY_RESTORE_BYTES:
+                            Globals.memory.writeBytes(step.param1, step.bytes, 0, step.bytes.length);
+                            break;
                         case REGISTER_RESTORE:
                             RegisterFile.updateRegister(step.param1, step.param2);
                             break;
@@ -158,7 +178,7 @@ public class BackStepper {
 
     private int pc() {
         // PC incremented prior to instruction simulation, so need to adjust for that.
-        return RegisterFile.getProgramCounter() - Instruction.INSTRUCTION_LENGTH;
+        return RegisterFile.getProgramCounter() - RegisterFile.getInstructionLength();
     }
 
     /**
@@ -218,6 +238,17 @@ public class BackStepper {
         return value;
     }
 
+    /**
+     * Add a new "back step" (the undo action) to the stack.  The action here
+     * is to restore consecutive memory bytes, as overwritten by a bulk write.
+     *
+     * @param address The address of the first affected byte.
+     * @param values  The "restore" values to be stored there; kept, not copied.
+     */
+    public void addMemoryRestoreBytes(int address, byte[] values) {
+        backSteps.push(Action.MEMORY_RESTORE_BYTES, pc(), address, values);
+    }
+
     /**
      * Add a new "back step" (the undo action) to the stack.  The action here
      * is to restore a register file register value.
@@ -240,7 +271,7 @@ public class BackStepper {
      */
     public int addPCRestore(int value) {
         // adjust for value reflecting incremented PC.
-        value -= Instruction.INSTRUCTION_LENGTH;
+        value -= RegisterFile.getInstructionLength();
         // Use "value" insead of "pc()" for second arg because RegisterFile.getProgramCounter()
         // returns branch target address at this point.
         backSteps.push(Action.PC_RESTORE, value, value);
@@ -308,6 +339,7 @@ public class BackStepper {
         private ProgramStatement ps;   // statement whose action is being "undone" here
         private int param1;  // first parameter required by that action
         private long param2;  // optional second parameter required by that action
+        private byte[] bytes; // saved bytes for MEMORY_RESTORE_BYTES, otherwise null
 
         // it is critical that BackStep object get its values by calling this method
         // rather than assigning to individual members, because of the technique used
@@ -331,6 +363,7 @@ public class BackStepper {
             }
             param1 = parm1;
             param2 = parm2;
+            bytes = null;
          /*				
             System.out.println("backstep PUSH: action "+action+" pc "+rars.util.Binary.intToHexString(pc)+
          		                   " source "+((ps==null)? "none":ps.getSource())+
@@ -372,6 +405,11 @@ public class BackStepper {
             }
         }
 
+        private synchronized void clear() {
+            size = 0;
+            top = -1;
+        }
+
         private synchronized boolean empty() {
             return size == 0;
         }
@@ -391,6 +429,11 @@ public class BackStepper {
             stack[top].assign(act, programCounter, parm1, parm2);
         }
 
+        private synchronized void push(Action act, int programCounter, int parm1, byte[] bytes) {
+            push(act, programCounter, parm1, 0);
+            stack[top].bytes = bytes;
+        }
+
         private synchronized void push(Action act, int programCounter, int parm1) {
             push(act, programCounter, parm1, 0);
         }
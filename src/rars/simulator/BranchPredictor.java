@@ -0,0 +1,207 @@
+package rars.simulator;
+
+import java.util.Locale;
+
+/**
+ * Predicts the direction of conditional branches.  {@link BranchUnit} asks for a prediction
+ * as each branch executes and then reports the outcome.
+ * <p>
+ * Predictors are created from a specification such as {@code gshare:4096:12}:
+ * <ul>
+ * <li>{@code taken}, {@code nottaken} or {@code btfn} (backward taken, forward not taken)
+ * <li>{@code bimodal:<entries>} 2-bit counters indexed by address
+ * <li>{@code gshare:<entries>:<history bits>} 2-bit counters indexed by address xor global history
+ * <li>{@code tournament:<entries>:<history bits>} bimodal and gshare with a per-address chooser
+ * </ul>
+ * Entry counts must be powers of two.
+ */
+public interface BranchPredictor {
+    /**
+     * @param pc     address of the branch
+     * @param target address it jumps to if taken
+     * @return true to predict taken
+     */
+    boolean predict(int pc, int target);
+
+    /**
+     * Learns the outcome of the branch most recently predicted.
+     */
+    void update(int pc, int target, boolean taken);
+
+    /**
+     * @return the specification this predictor was created from
+     */
+    String getName();
+
+    /**
+     * Builds a predictor from a specification as described above.
+     *
+     * @throws IllegalArgumentException if the specification is not valid
+     */
+    static BranchPredictor parse(String spec) {
+        String[] fields = spec.toLowerCase(Locale.ROOT).split(":");
+        try {
+            switch (fields[0]) {
+                case "taken":
+                case "nottaken":
+                case "btfn":
+                    if (fields.length == 1) return new Static(fields[0]);
+                    break;
+                case "bimodal":
+                    if (fields.length == 2) return new Bimodal(Integer.parseInt(fields[1]));
+                    break;
+                case "gshare":
+                    if (fields.length == 3) return new GShare(Integer.parseInt(fields[1]), Integer.parseInt(fields[2]));
+                    break;
+                case "tournament":
+                    if (fields.length == 3) return new Tournament(Integer.parseInt(fields[1]), Integer.parseInt(fields[2]));
+                    break;
+                default:
+                    throw new IllegalArgumentException("unknown predictor " + fields[0]);
+            }
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("invalid number in " + spec);
+        }
+        throw new IllegalArgumentException("wrong number of parameters for " + fields[0]);
+    }
+
+    /**
+     * Always taken, never taken, or taken only for backward branches.
+     */
+    final class Static implements BranchPredictor {
+        private final String kind;
+
+        public Static(String kind) {
+            this.kind = kind;
+        }
+
+        public boolean predict(int pc, int target) {
+            switch (kind) {
+                case "taken":
+                    return true;
+                case "btfn":
+                    return Integer.compareUnsigned(target, pc) <= 0;
+                default:
+                    return false;
+            }
+        }
+
+        public void update(int pc, int target, boolean taken) {
+        }
+
+        public String getName() {
+            return kind;
+        }
+    }
+
+    /**
+     * A table of 2-bit saturating counters indexed by branch address.
+     */
+    final class Bimodal implements BranchPredictor {
+        private final byte[] counters;
+
+        public Bimodal(int entries) {
+            counters = counters(entries);
+        }
+
+        public boolean predict(int pc, int target) {
+            return counters[index(pc, counters)] >= 2;
+        }
+
+        public void update(int pc, int target, boolean taken) {
+            train(counters, index(pc, counters), taken);
+        }
+
+        public String getName() {
+            return "bimodal:" + counters.length;
+        }
+    }
+
+    /**
+     * 2-bit counters indexed by branch address exclusive-or the outcomes of the most recent branches.
+     */
+    final class GShare implements BranchPredictor {
+        private final byte[] counters;
+        private final int historyMask;
+        private int history;
+
+        public GShare(int entries, int historyBits) {
+            if (historyBits < 0 || historyBits > 30) {
+                throw new IllegalArgumentException("history bits must be between 0 and 30");
+            }
+            counters = counters(entries);
+            historyMask = (1 << historyBits) - 1;
+        }
+
+        public boolean predict(int pc, int target) {
+            return counters[(index(pc, counters) ^ history) & (counters.length - 1)] >= 2;
+        }
+
+        public void update(int pc, int target, boolean taken) {
+            train(counters, (index(pc, counters) ^ history) & (counters.length - 1), taken);
+            history = ((history << 1) | (taken ? 1 : 0)) & historyMask;
+        }
+
+        public String getName() {
+            return "gshare:" + counters.length + ":" + Integer.bitCount(historyMask);
+        }
+    }
+
+    /**
+     * Bimodal and gshare side by side; per-address 2-bit counters choose which one to believe,
+     * trained toward whichever was right when they disagree.
+     */
+    final class Tournament implements BranchPredictor {
+        private final Bimodal local;
+        private final GShare global;
+        private final byte[] chooser;
+        private boolean localPrediction, globalPrediction;
+
+        public Tournament(int entries, int historyBits) {
+            local = new Bimodal(entries);
+            global = new GShare(entries, historyBits);
+            chooser = counters(entries);
+        }
+
+        public boolean predict(int pc, int target) {
+            localPrediction = local.predict(pc, target);
+            globalPrediction = global.predict(pc, target);
+            return chooser[index(pc, chooser)] >= 2 ? globalPrediction : localPrediction;
+        }
+
+        public void update(int pc, int target, boolean taken) {
+            if (localPrediction != globalPrediction) {
+                train(chooser, index(pc, chooser), globalPrediction == taken);
+            }
+            local.update(pc, target, taken);
+            global.update(pc, target, taken);
+        }
+
+        public String getName() {
+            return "tournament:" + chooser.length + ":" + global.getName().substring(global.getName().lastIndexOf(':') + 1);
+        }
+    }
+
+    // 2-bit counters start weakly not taken
+    private static byte[] counters(int entries) {
+        if (entries <= 0 || Integer.bitCount(entries) != 1) {
+            throw new IllegalArgumentException("number of entries must be a positive power of 2");
+        }
+        byte[] counters = new byte[entries];
+        java.util.Arrays.fill(counters, (byte) 1);
+        return counters;
+    }
+
+    private static int index(int pc, byte[] table) {
+        return (pc >>> 2) & (table.length - 1);
+    }
+
+    private static void train(byte[] counters, int index, boolean taken) {
+        byte counter = counters[index];
+        if (taken) {
+            if (counter < 3) counters[index] = (byte) (counter + 1);
+        } else if (counter > 0) {
+            counters[index] = (byte) (counter - 1);
+        }
+    }
+}
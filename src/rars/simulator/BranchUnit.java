@@ -0,0 +1,264 @@
+package rars.simulator;
+
+import rars.ProgramStatement;
+import rars.riscv.Instruction;
+import rars.riscv.hardware.Memory;
+import rars.riscv.hardware.RegisterFile;
+import rars.riscv.instructions.Branch;
+import rars.riscv.instructions.JAL;
+import rars.riscv.instructions.JALR;
+import rars.util.Binary;
+
+import java.io.File;
+import java.io.PrintStream;
+import java.util.*;
+
+/**
+ * Models the branch prediction of a processor front end, driven directly by the simulator
+ * with the outcome of every branch and jump.
+ * <p>
+ * Conditional branches go to a {@link BranchPredictor}.  Jumps are predicted the way hardware
+ * does it: returns ({@code jalr x0} through {@code ra} or {@code t0}) from a return address
+ * stack that calls ({@code jal}/{@code jalr} linking through those registers) push on, and
+ * every other jump from a direct-mapped branch target buffer.  Each branch or jump is counted
+ * separately so the worst predicted sites can be reported.
+ */
+public class BranchUnit {
+    /**
+     * Kinds of control transfer, as counted in the report.
+     */
+    public enum Kind {
+        BRANCH("conditional branches"), JUMP("direct jumps"), INDIRECT("indirect jumps"), RETURN("returns");
+
+        private final String description;
+
+        Kind(String description) {
+            this.description = description;
+        }
+    }
+
+    private static volatile BranchUnit active = null;
+
+    private static final int RA = 1, T0 = 5;
+    public static final int DEFAULT_BTB_ENTRIES = 512;
+    public static final int DEFAULT_RAS_DEPTH = 16;
+
+    private final BranchPredictor predictor;
+    private final int[] btbTags, btbTargets;
+    private final int[] ras;
+    private int rasTop, rasCount;
+
+    private final int textBase;
+    private Site[] sites = new Site[1024];
+    // branches outside the array's range, e.g. in kernel text
+    private final HashMap<Integer, Site> otherSites = new HashMap<>();
+    private final long[] executed = new long[Kind.values().length];
+    private final long[] mispredicted = new long[Kind.values().length];
+
+    /**
+     * One branch or jump instruction and how well it was predicted.
+     */
+    public static final class Site {
+        public final int address;
+        public final Kind kind;
+        public final ProgramStatement statement;
+        long executed, taken, mispredicted;
+
+        Site(int address, Kind kind, ProgramStatement statement) {
+            this.address = address;
+            this.kind = kind;
+            this.statement = statement;
+        }
+
+        public long getExecuted() {
+            return executed;
+        }
+
+        /**
+         * @return for conditional branches, how often the branch was taken
+         */
+        public long getTaken() {
+            return taken;
+        }
+
+        public long getMispredicted() {
+            return mispredicted;
+        }
+    }
+
+    /**
+     * @param predictor  conditional branch predictor
+     * @param btbEntries entries in the branch target buffer, a power of two
+     * @param rasDepth   entries in the return address stack
+     */
+    public BranchUnit(BranchPredictor predictor, int btbEntries, int rasDepth) {
+        if (btbEntries <= 0 || Integer.bitCount(btbEntries) != 1 || rasDepth <= 0) {
+            throw new IllegalArgumentException("BTB entries must be a power of 2 and the stack depth positive");
+        }
+        this.predictor = predictor;
+        btbTags = new int[btbEntries];
+        btbTargets = new int[btbEntries];
+        Arrays.fill(btbTags, -1);
+        ras = new int[rasDepth];
+        textBase = Memory.textBaseAddress;
+    }
+
+    public BranchUnit(BranchPredictor predictor) {
+        this(predictor, DEFAULT_BTB_ENTRIES, DEFAULT_RAS_DEPTH);
+    }
+
+    /**
+     * @return the unit the simulator reports to, or null if branch prediction is not modelled
+     */
+    public static BranchUnit getActive() {
+        return active;
+    }
+
+    /**
+     * Starts modelling branch prediction with the given unit, or stops with null.
+     */
+    public static void setActive(BranchUnit unit) {
+        active = unit;
+    }
+
+    public BranchPredictor getPredictor() {
+        return predictor;
+    }
+
+    public long getExecuted(Kind kind) {
+        return executed[kind.ordinal()];
+    }
+
+    public long getMispredicted(Kind kind) {
+        return mispredicted[kind.ordinal()];
+    }
+
+    /**
+     * @param address address of a branch or jump
+     * @return its counts, or null if it has not executed
+     */
+    public Site getSite(int address) {
+        int index = index(address);
+        return (index < sites.length) ? sites[index] : otherSites.get(address);
+    }
+
+    // Called by the simulator after the instruction at pc has executed without trapping
+    void executed(int pc, ProgramStatement statement) {
+        Instruction instruction = statement.getInstruction();
+        if (!(instruction instanceof Branch || instruction instanceof JAL || instruction instanceof JALR)) {
+            return;
+        }
+        int next = RegisterFile.getProgramCounter();
+        int word = statement.getBinaryStatement();
+        int rd = (word >>> 7) & 0x1F;
+        boolean correct;
+        Kind kind;
+        if (instruction instanceof Branch) {
+            kind = Kind.BRANCH;
+            int target = pc + branchOffset(word);
+            boolean taken = next != pc + statement.getInstructionLength();
+            correct = predictor.predict(pc, target) == taken;
+            predictor.update(pc, target, taken);
+            site(pc, kind, statement).taken += taken ? 1 : 0;
+        } else {
+            int rs1 = (word >>> 15) & 0x1F;
+            if (instruction instanceof JALR && rd == 0 && (rs1 == RA || rs1 == T0)) {
+                kind = Kind.RETURN;
+                correct = rasCount > 0 && ras[rasTop] == next;
+                if (rasCount > 0) {
+                    rasTop = (rasTop + ras.length - 1) % ras.length;
+                    rasCount--;
+                }
+            } else {
+                kind = (instruction instanceof JAL) ? Kind.JUMP : Kind.INDIRECT;
+                int slot = (pc >>> 2) & (btbTags.length - 1);
+                correct = btbTags[slot] == pc && btbTargets[slot] == next;
+                btbTags[slot] = pc;
+                btbTargets[slot] = next;
+            }
+            if (rd == RA || rd == T0) {
+                // Overwrites the oldest return address once the stack is full
+                rasTop = (rasTop + 1) % ras.length;
+                ras[rasTop] = pc + statement.getInstructionLength();
+                rasCount = Math.min(rasCount + 1, ras.length);
+            }
+        }
+        Site site = site(pc, kind, statement);
+        site.executed++;
+        executed[kind.ordinal()]++;
+        if (!correct) {
+            site.mispredicted++;
+            mispredicted[kind.ordinal()]++;
+        }
+    }
+
+    private Site site(int pc, Kind kind, ProgramStatement statement) {
+        int index = index(pc);
+        if (index >= (1 << 24)) {
+            Site site = otherSites.get(pc);
+            if (site == null) otherSites.put(pc, site = new Site(pc, kind, statement));
+            return site;
+        }
+        if (index >= sites.length) {
+            int size = sites.length;
+            while (size <= index) size *= 2;
+            sites = Arrays.copyOf(sites, size);
+        }
+        Site site = sites[index];
+        if (site == null) sites[index] = site = new Site(pc, kind, statement);
+        return site;
+    }
+
+    // By halfword, as compressed instructions may start at any even address.  Unsigned, so
+    // addresses below the text segment land out of range rather than negative.
+    private int index(int address) {
+        return (address - textBase) >>> 1;
+    }
+
+    private static int branchOffset(int word) {
+        return ((word >> 31) << 12) | (((word >>> 7) & 1) << 11) | (((word >>> 25) & 0x3F) << 5) | (((word >>> 8) & 0xF) << 1);
+    }
+
+    /**
+     * @param limit maximum number to return
+     * @return the branches and jumps with the most mispredictions, worst first
+     */
+    public List<Site> getWorstSites(int limit) {
+        ArrayList<Site> list = new ArrayList<>(otherSites.values());
+        for (Site site : sites) {
+            if (site != null) list.add(site);
+        }
+        list.removeIf(site -> site.mispredicted == 0);
+        list.sort((a, b) -> Long.compare(b.mispredicted, a.mispredicted));
+        return list.subList(0, Math.min(limit, list.size()));
+    }
+
+    /**
+     * Writes prediction accuracy by kind of branch and the worst predicted sites.
+     *
+     * @param out   where to write
+     * @param limit maximum number of sites listed
+     */
+    public void writeReport(PrintStream out, int limit) {
+        out.println("Branch prediction (" + predictor.getName() + ", " + btbTags.length + " entry BTB, "
+                + ras.length + " entry return stack):");
+        for (Kind kind : Kind.values()) {
+            long n = executed[kind.ordinal()], wrong = mispredicted[kind.ordinal()];
+            out.printf(Locale.ROOT, "%12d %-22s %10d mispredicted %6.2f%% accuracy%n", n, kind.description, wrong,
+                    n == 0 ? 0.0 : 100.0 * (n - wrong) / n);
+        }
+        List<Site> worst = getWorstSites(limit);
+        if (worst.isEmpty()) return;
+        out.println();
+        out.println("Most mispredicted (mispredicted, executed, taken):");
+        for (Site site : worst) {
+            ProgramStatement statement = site.statement;
+            String where = statement.getSourceFile() == null ? "" :
+                    new File(statement.getSourceFile()).getName() + ":" + statement.getSourceLine() + "  ";
+            String source = statement.getSource() == null || statement.getSource().trim().isEmpty()
+                    ? statement.getPrintableBasicAssemblyStatement() : statement.getSource().trim();
+            out.printf(Locale.ROOT, "%10d %10d %10s  %s  %s%s%n", site.mispredicted, site.executed,
+                    site.kind == Kind.BRANCH ? Long.toString(site.taken) : "-", Binary.intToHexString(site.address), where, source);
+        }
+    }
+}
@@ -0,0 +1,348 @@
+package rars.simulator;
+
+import java.io.PrintStream;
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * One level of a cache hierarchy, modelling only which blocks are present, not their contents.
+ * <p>
+ * State is kept in flat arrays indexed by set and way, so an access allocates nothing and
+ * a lookup scans only the ways of one set.  Misses, write-backs of dirty blocks and
+ * write-through traffic are passed to the next level, or counted as memory traffic at
+ * the last level.
+ */
+public class Cache {
+    /**
+     * Which block of a full set is replaced on a miss.
+     */
+    public enum Replacement {
+        /**
+         * least recently used
+         */
+        LRU,
+        /**
+         * first in, first out: the block filled longest ago
+         */
+        FIFO,
+        /**
+         * a pseudo-random block
+         */
+        RANDOM,
+        /**
+         * tree pseudo-LRU, as commonly built in hardware
+         */
+        PLRU
+    }
+
+    private static final long INVALID = -1;
+
+    private final String name;
+    private final int blockBytes, ways, sets, offsetBits, setBits;
+    private Replacement replacement;
+    private final boolean writeBack, writeAllocate;
+    private final Cache next;
+
+    private final long[] tags;    // tag of the block in each way, INVALID if empty
+    private final boolean[] dirty;
+    private final long[] stamps;  // last use (LRU) or fill (FIFO) time of each way
+    private final long[] trees;   // PLRU tree bits; node i of a set is bit set * ways + i, the root is node 1
+    private long time;
+    private long random = 0x2545F4914F6CDD1DL;
+    private int lastBlock;
+
+    private long reads, readMisses, writes, writeMisses, writeBacks, memoryReads, memoryWrites;
+
+    /**
+     * Creates an empty cache.
+     *
+     * @param name          name used in reports, such as "L1D"
+     * @param sizeBytes     total capacity in bytes
+     * @param blockBytes    bytes per block, a power of two of at least 4
+     * @param ways          blocks per set, a power of two; equal to the number of blocks for a fully associative cache
+     * @param replacement   replacement policy
+     * @param writeBack     true to write dirty blocks back when replaced, false to write through
+     * @param writeAllocate true to fill the block on a write miss, false to pass the write on
+     * @param next          the next level, or null if this level is backed by memory
+     */
+    public Cache(String name, int sizeBytes, int blockBytes, int ways, Replacement replacement,
+                 boolean writeBack, boolean writeAllocate, Cache next) {
+        if (Integer.bitCount(blockBytes) != 1 || blockBytes < 4 || Integer.bitCount(ways) != 1
+                || Integer.bitCount(sizeBytes) != 1 || sizeBytes < blockBytes * ways) {
+            throw new IllegalArgumentException(name + ": size, block size and ways must be powers of two, " +
+                    "and the size at least one set");
+        }
+        this.name = name;
+        this.blockBytes = blockBytes;
+        this.ways = ways;
+        this.sets = sizeBytes / blockBytes / ways;
+        this.offsetBits = Integer.numberOfTrailingZeros(blockBytes);
+        this.setBits = Integer.numberOfTrailingZeros(sets);
+        this.replacement = replacement;
+        this.writeBack = writeBack;
+        this.writeAllocate = writeAllocate;
+        this.next = next;
+        tags = new long[sets * ways];
+        dirty = new boolean[sets * ways];
+        stamps = new long[sets * ways];
+        trees = new long[(sets * ways + 63) / 64];
+        reset();
+    }
+
+    /**
+     * Empties the cache and clears its counts.
+     */
+    public void reset() {
+        Arrays.fill(tags, INVALID);
+        Arrays.fill(dirty, false);
+        Arrays.fill(stamps, 0);
+        Arrays.fill(trees, 0);
+        time = 0;
+        lastBlock = 0;
+        reads = readMisses = writes = writeMisses = writeBacks = memoryReads = memoryWrites = 0;
+    }
+
+    /**
+     * Reads the block holding an address.
+     *
+     * @return true on a hit
+     */
+    public boolean read(int address) {
+        reads++;
+        if (lookup(address) >= 0) {
+            return true;
+        }
+        readMisses++;
+        fill(address);
+        return false;
+    }
+
+    /**
+     * Writes to the block holding an address.
+     *
+     * @return true on a hit
+     */
+    public boolean write(int address) {
+        writes++;
+        int block = lookup(address);
+        boolean hit = block >= 0;
+        if (!hit) {
+            writeMisses++;
+            if (!writeAllocate) {
+                writeNext(address);
+                return false;
+            }
+            block = fill(address);
+        }
+        if (writeBack) {
+            dirty[block] = true;
+        } else {
+            writeNext(address);
+        }
+        return hit;
+    }
+
+    /**
+     * Changes the replacement policy from now on, keeping the cache contents.
+     */
+    public void setReplacement(Replacement replacement) {
+        this.replacement = replacement;
+    }
+
+    /**
+     * @return the block (set * ways + way) used by the last access, for animating the cache
+     */
+    public int getLastBlock() {
+        return lastBlock;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public Cache getNext() {
+        return next;
+    }
+
+    public int getSizeBytes() {
+        return sets * ways * blockBytes;
+    }
+
+    public int getBlockBytes() {
+        return blockBytes;
+    }
+
+    public int getWays() {
+        return ways;
+    }
+
+    public int getSets() {
+        return sets;
+    }
+
+    public long getReads() {
+        return reads;
+    }
+
+    public long getReadMisses() {
+        return readMisses;
+    }
+
+    public long getWrites() {
+        return writes;
+    }
+
+    public long getWriteMisses() {
+        return writeMisses;
+    }
+
+    /**
+     * @return the number of dirty blocks written back when replaced
+     */
+    public long getWriteBacks() {
+        return writeBacks;
+    }
+
+    /**
+     * @return accesses this level passed to memory (only counted at the last level)
+     */
+    public long getMemoryReads() {
+        return memoryReads;
+    }
+
+    public long getMemoryWrites() {
+        return memoryWrites;
+    }
+
+    public long getAccesses() {
+        return reads + writes;
+    }
+
+    public long getMisses() {
+        return readMisses + writeMisses;
+    }
+
+    /**
+     * @return fraction of accesses that hit, 0 if there were none
+     */
+    public double getHitRate() {
+        long accesses = getAccesses();
+        return accesses == 0 ? 0 : (accesses - getMisses()) / (double) accesses;
+    }
+
+    /**
+     * Writes one line summarising the configuration and counts.
+     */
+    public void writeSummary(PrintStream out) {
+        out.printf(Locale.ROOT, "%-4s %7s %4dB %3d-way %-6s %-2s %-3s  accesses %12d  misses %12d  hit rate %6.2f%%  write-backs %d%n",
+                name, sizeString(getSizeBytes()), blockBytes, ways, replacement, writeBack ? "wb" : "wt",
+                writeAllocate ? "wa" : "nwa", getAccesses(), getMisses(), 100 * getHitRate(), writeBacks);
+    }
+
+    static String sizeString(int bytes) {
+        if (bytes % (1 << 20) == 0) return (bytes >> 20) + "M";
+        if (bytes % (1 << 10) == 0) return (bytes >> 10) + "K";
+        return bytes + "B";
+    }
+
+    // Returns the block holding address, updating replacement state, or -1 on a miss
+    private int lookup(int address) {
+        time++;
+        long tag = tag(address);
+        int base = set(address) * ways;
+        for (int block = base; block < base + ways; block++) {
+            if (tags[block] == tag) {
+                touch(block, base);
+                lastBlock = block;
+                return block;
+            }
+        }
+        return -1;
+    }
+
+    // Brings the block holding address in from the next level, replacing one if the set is full
+    private int fill(int address) {
+        int base = set(address) * ways;
+        int block = victim(base);
+        if (tags[block] != INVALID && dirty[block]) {
+            writeBacks++;
+            writeNext((int) ((tags[block] << (offsetBits + setBits)) | ((long) (block / ways) << offsetBits)));
+        }
+        if (next != null) {
+            next.read(address);
+        } else {
+            memoryReads++;
+        }
+        tags[block] = tag(address);
+        dirty[block] = false;
+        stamps[block] = time;
+        touch(block, base);
+        lastBlock = block;
+        return block;
+    }
+
+    private void writeNext(int address) {
+        if (next != null) {
+            next.write(address);
+        } else {
+            memoryWrites++;
+        }
+    }
+
+    private int victim(int base) {
+        for (int block = base; block < base + ways; block++) {
+            if (tags[block] == INVALID) return block;
+        }
+        switch (replacement) {
+            case RANDOM:
+                random ^= random << 13;
+                random ^= random >>> 7;
+                random ^= random << 17;
+                return base + (int) (random & (ways - 1));
+            case PLRU:
+                // Follow the tree away from the recently used halves
+                int node = 1;
+                while (node < ways) {
+                    node = 2 * node + (int) ((trees[(base + node) >>> 6] >>> (base + node)) & 1);
+                }
+                return base + node - ways;
+            default: // LRU and FIFO both replace the oldest stamp
+                int oldest = base;
+                for (int block = base + 1; block < base + ways; block++) {
+                    if (stamps[block] < stamps[oldest]) oldest = block;
+                }
+                return oldest;
+        }
+    }
+
+    private void touch(int block, int base) {
+        switch (replacement) {
+            case LRU:
+                stamps[block] = time;
+                break;
+            case PLRU:
+                // Point every node on the path at the other half
+                int node = ways + block - base;
+                while (node > 1) {
+                    int bit = base + (node >>> 1);
+                    if ((node & 1) == 0) {
+                        trees[bit >>> 6] |= 1L << bit;
+                    } else {
+                        trees[bit >>> 6] &= ~(1L << bit);
+                    }
+                    node >>>= 1;
+                }
+                break;
+            default:
+                break;
+        }
+    }
+
+    private int set(int address) {
+        return (address >>> offsetBits) & (sets - 1);
+    }
+
+    private long tag(int address) {
+        return (address & 0xFFFFFFFFL) >>> (offsetBits + setBits);
+    }
+}
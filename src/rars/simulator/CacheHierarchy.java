@@ -0,0 +1,288 @@
+package rars.simulator;
+
+import rars.Globals;
+import rars.riscv.hardware.AccessNotice;
+import rars.riscv.hardware.Memory;
+import rars.riscv.hardware.MemoryAccessNotice;
+import rars.riscv.hardware.TransientNoticeObserver;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Observable;
+
+/**
+ * Instruction and data caches, optionally backed by shared lower levels, driven either
+ * live by the simulator or by replaying a recorded trace.
+ * <p>
+ * Live, every instruction fetch goes to the instruction cache and every memory access the
+ * instruction makes goes to the data cache.  Caches are described by a specification of
+ * comma separated levels, each {@code name=size:block:ways[:policy][:wb|wt][:wa|nwa]}, for example
+ * <pre>
+ * l1i=16K:64:4,l1d=16K:64:4:plru:wb:wa,l2=256K:64:8:lru
+ * </pre>
+ * Names are l1i, l1d, l1 (unified), l2 and l3; sizes may end in K or M; policies are
+ * lru, fifo, random and plru.  Defaults are LRU, write-back and write-allocate.
+ */
+public class CacheHierarchy {
+    /**
+     * Configuration used for the specification "default"
+     */
+    public static final String DEFAULT = "l1i=16K:64:4,l1d=16K:64:4,l2=256K:64:8";
+
+    private static volatile CacheHierarchy active = null;
+
+    private final Cache instruction, data;
+    private final List<Cache> levels = new ArrayList<>();
+    private long instructions;
+
+    private Thread executing;
+    private Memory observed;
+    private final TransientNoticeObserver watcher = new TransientNoticeObserver() {
+        public void update(Observable o, Object notice) {
+            if (Thread.currentThread() != executing) return;
+            MemoryAccessNotice access = (MemoryAccessNotice) notice;
+            boolean read = access.getAccessType() == AccessNotice.READ;
+            // A system call copying a buffer sends one notice for all of it; touch every block
+            int address = access.getAddress(), last = address + Math.max(access.getLength(), 1) - 1;
+            int mask = -data.getBlockBytes();
+            for (int block = address & mask; ; block += data.getBlockBytes()) {
+                if (read) {
+                    data.read(Math.max(block, address));
+                } else {
+                    data.write(Math.max(block, address));
+                }
+                if (block == (last & mask)) break;
+            }
+        }
+    };
+
+    /**
+     * @param instruction cache receiving instruction fetches, or null to ignore them
+     * @param data        cache receiving loads and stores; may be the same as instruction for a unified cache
+     */
+    public CacheHierarchy(Cache instruction, Cache data) {
+        this.instruction = instruction;
+        this.data = data;
+        for (Cache level : new Cache[]{instruction, data}) {
+            for (; level != null; level = level.getNext()) {
+                if (!levels.contains(level)) levels.add(level);
+            }
+        }
+        levels.sort((a, b) -> a.getName().compareToIgnoreCase(b.getName()));
+    }
+
+    /**
+     * Builds caches from a specification as described above.
+     *
+     * @param spec the specification, or "default"
+     * @return the hierarchy
+     * @throws IllegalArgumentException if the specification is not valid
+     */
+    public static CacheHierarchy parse(String spec) {
+        if (spec.equalsIgnoreCase("default")) spec = DEFAULT;
+        String[] names = {"l3", "l2", "l1", "l1i", "l1d"};
+        String[] levelSpecs = new String[names.length];
+        for (String level : spec.toLowerCase(Locale.ROOT).split(",")) {
+            String[] parts = level.split("=", 2);
+            int index = Arrays.asList(names).indexOf(parts[0].trim());
+            if (parts.length != 2 || index < 0) {
+                throw new IllegalArgumentException("unknown cache level '" + level + "'");
+            }
+            levelSpecs[index] = parts[1].trim();
+        }
+        if (levelSpecs[2] != null && (levelSpecs[3] != null || levelSpecs[4] != null)) {
+            throw new IllegalArgumentException("a unified l1 cannot be combined with l1i or l1d");
+        }
+        if (levelSpecs[2] == null && levelSpecs[4] == null) {
+            throw new IllegalArgumentException("a data cache (l1d or l1) is required");
+        }
+        Cache next = level("L3", levelSpecs[0], null);
+        next = level("L2", levelSpecs[1], next);
+        if (levelSpecs[2] != null) {
+            Cache unified = level("L1", levelSpecs[2], next);
+            return new CacheHierarchy(unified, unified);
+        }
+        return new CacheHierarchy(level("L1I", levelSpecs[3], next), level("L1D", levelSpecs[4], next));
+    }
+
+    // Builds one level, or returns next if the level is not specified
+    private static Cache level(String name, String spec, Cache next) {
+        if (spec == null) {
+            return next;
+        }
+        String[] fields = spec.split(":");
+        if (fields.length < 3) {
+            throw new IllegalArgumentException(name + ": expected size:block:ways");
+        }
+        try {
+            int size = size(fields[0]), block = size(fields[1]), ways = Integer.parseInt(fields[2]);
+            Cache.Replacement replacement = Cache.Replacement.LRU;
+            boolean writeBack = true, writeAllocate = true;
+            for (int i = 3; i < fields.length; i++) {
+                switch (fields[i]) {
+                    case "wb": writeBack = true; break;
+                    case "wt": writeBack = false; break;
+                    case "wa": writeAllocate = true; break;
+                    case "nwa": writeAllocate = false; break;
+                    default: replacement = Cache.Replacement.valueOf(fields[i].toUpperCase(Locale.ROOT));
+                }
+            }
+            return new Cache(name, size, block, ways, replacement, writeBack, writeAllocate, next);
+        } catch (IllegalArgumentException e) { // includes NumberFormatException
+            throw new IllegalArgumentException(name + ": " + e.getMessage());
+        }
+    }
+
+    private static int size(String text) {
+        text = text.trim().toLowerCase(Locale.ROOT);
+        int scale = 1;
+        if (text.endsWith("k")) scale = 1 << 10;
+        if (text.endsWith("m")) scale = 1 << 20;
+        if (scale > 1) text = text.substring(0, text.length() - 1);
+        if (text.endsWith("b")) text = text.substring(0, text.length() - 1);
+        return Integer.parseInt(text) * scale;
+    }
+
+    /**
+     * @return the hierarchy the simulator reports to, or null if none
+     */
+    public static CacheHierarchy getActive() {
+        return active;
+    }
+
+    /**
+     * Starts or, with null, stops modelling caches as the program runs.
+     */
+    public static void setActive(CacheHierarchy caches) {
+        active = caches;
+    }
+
+    public Cache getInstructionCache() {
+        return instruction;
+    }
+
+    public Cache getDataCache() {
+        return data;
+    }
+
+    /**
+     * @return every cache in the hierarchy, first level first
+     */
+    public List<Cache> getLevels() {
+        return levels;
+    }
+
+    /**
+     * Empties every cache and clears the counts.
+     */
+    public void reset() {
+        for (Cache level : levels) level.reset();
+        instructions = 0;
+    }
+
+    /**
+     * Stops observing memory; needed only if the hierarchy was active.
+     */
+    public void detach() {
+        if (active == this) active = null;
+        if (observed != null) {
+            observed.deleteObserver(watcher);
+            observed = null;
+        }
+    }
+
+    /**
+     * Runs every instruction and data access of a recorded trace through the caches.
+     *
+     * @param trace the trace, positioned at its start
+     * @throws IOException if reading the trace fails
+     */
+    public void replay(TraceReader trace) throws IOException {
+        while (trace.next()) {
+            instructions++;
+            fetch(trace.getProgramCounter(), trace.getInstructionLength());
+            if (trace.isRead()) {
+                data.read(trace.getAddress());
+            } else if (trace.isWrite()) {
+                data.write(trace.getAddress());
+            }
+        }
+    }
+
+    // Called by the simulator just before the instruction at pc executes.  An instruction that
+    // is not aligned to its length (compressed code) may span two blocks.
+    void starting(int pc, int length) {
+        instructions++;
+        fetch(pc, length);
+        executing = Thread.currentThread();
+        if (observed != Globals.memory) {
+            if (observed != null) observed.deleteObserver(watcher);
+            observed = Globals.memory;
+            observed.addObserver(watcher);
+        }
+    }
+
+    private void fetch(int pc, int length) {
+        if (instruction != null) {
+            instruction.read(pc);
+            int last = pc + length - 1;
+            if ((last ^ pc) >>> Integer.numberOfTrailingZeros(instruction.getBlockBytes()) != 0) {
+                instruction.read(last);
+            }
+        }
+    }
+
+    // Called by the simulator once the instruction has executed or trapped
+    void executed() {
+        executing = null;
+    }
+
+    /**
+     * Writes one line per cache and the resulting memory traffic.
+     */
+    public void writeReport(PrintStream out) {
+        out.println("Caches after " + instructions + " instructions:");
+        long memoryReads = 0, memoryWrites = 0;
+        for (Cache level : levels) {
+            level.writeSummary(out);
+            memoryReads += level.getMemoryReads();
+            memoryWrites += level.getMemoryWrites();
+        }
+        out.println("Memory: " + memoryReads + " block reads, " + memoryWrites + " writes");
+    }
+
+    /**
+     * Replays traces through a cache hierarchy and prints the summary.  Usage:
+     * <pre>
+     * java rars.simulator.CacheHierarchy &lt;spec&gt; &lt;trace&gt;...
+     * </pre>
+     */
+    public static void main(String[] args) {
+        if (args.length < 2) {
+            System.err.println("Usage: java rars.simulator.CacheHierarchy <spec>|default <trace>...");
+            System.exit(1);
+        }
+        CacheHierarchy caches;
+        try {
+            caches = parse(args[0]);
+        } catch (IllegalArgumentException e) {
+            System.err.println("Invalid cache specification: " + e.getMessage());
+            System.exit(1);
+            return;
+        }
+        for (int i = 1; i < args.length; i++) {
+            try (TraceReader trace = new TraceReader(new File(args[i]))) {
+                caches.replay(trace);
+            } catch (IOException e) {
+                System.err.println(args[i] + ": " + e.getMessage());
+                System.exit(1);
+            }
+        }
+        caches.writeReport(System.out);
+    }
+}
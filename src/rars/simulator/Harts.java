@@ -0,0 +1,412 @@
+package rars.simulator;
+
+import rars.Globals;
+import rars.riscv.hardware.*;
+import rars.util.Binary;
+
+import java.io.PrintStream;
+import java.util.Locale;
+import java.util.Random;
+
+/**
+ * Runs a program on several harts (hardware threads) sharing one memory.  Each hart has its
+ * own integer, floating point and control and status registers and program counter; the
+ * {@code mhartid} CSR tells them apart.  All harts start at the same address, as on reset,
+ * with their stacks {@code stack} bytes apart below the initial stack pointer.
+ * <p>
+ * Harts take turns on the simulator thread: the one running executes {@code quantum}
+ * instructions, then its registers are saved and the next hart's restored.  The next hart is
+ * chosen round robin, or at random from a seed, so either way every run of a program
+ * interleaves the same.  Memory sees one instruction at a time, which is sequentially
+ * consistent, one of the executions RVWMO allows, so FENCE needs no effect.  WFI ends the
+ * hart's turn rather than waiting, and the exit call ends the whole program.
+ * <p>
+ * With focus on one hart, stepping counts only that hart's instructions and breakpoints stop
+ * only that hart; the others run in between.  Back-stepping does not go back past a switch
+ * between harts, and time travel is off while several harts run.
+ * <p>
+ * The simulator calls {@link #executed(boolean)} after every instruction, which is a count
+ * until the end of the turn.
+ */
+public class Harts {
+    private static volatile Harts active = null;
+
+    private static final int DEFAULT_STACK_BYTES = 0x10000;
+    private static final Register[][] BLOCKS = {RegisterFile.getRegisters(),
+            FloatingPointRegisterFile.getRegisters(), ControlAndStatusRegisterFile.getRegisters()};
+    // Registers a hart has its own value of: not linked registers, which are views of another
+    // register, nor time, which all harts share
+    private static final boolean[][] OWN = new boolean[BLOCKS.length][];
+
+    static {
+        Register time = ControlAndStatusRegisterFile.getRegister("time");
+        for (int b = 0; b < BLOCKS.length; b++) {
+            OWN[b] = new boolean[BLOCKS[b].length];
+            for (int i = 0; i < BLOCKS[b].length; i++) {
+                OWN[b][i] = !(BLOCKS[b][i] instanceof LinkedRegister) && BLOCKS[b][i] != time;
+            }
+        }
+    }
+
+    private final int count;
+    private int quantum = 1;
+    private boolean random;
+    private long seed;
+    private int stackBytes = 0;
+    private final Context[] harts;
+
+    private Random order;
+    private boolean started;
+    private int current;
+    private int remaining;
+    private volatile int focus = -1;
+    private long instructions;
+    // Host time spent running, for instructions per second
+    private long nanoseconds, resumedAt;
+
+    // A hart's registers while it is not the one running.  The change counts taken when they
+    // were restored tell which ones it has written since, so a switch copies only those out,
+    // and only values that differ between the two harts back in.
+    private static class Context {
+        private final long[][] values = new long[BLOCKS.length][];
+        private final int[][] changes = new int[BLOCKS.length][];
+        private long pc;
+        private long instructions;
+    }
+
+    /**
+     * @param count the number of harts; at least 1
+     */
+    public Harts(int count) {
+        if (count < 1 || count > 1024) {
+            throw new IllegalArgumentException("there must be between 1 and 1024 harts");
+        }
+        this.count = count;
+        harts = new Context[count];
+    }
+
+    /**
+     * Builds harts from a specification: the number of harts, optionally followed by
+     * settings, e.g. <tt>4</tt> or <tt>4,quantum=100,random=7,stack=0x1000</tt>.
+     * <tt>random</tt> without a seed takes one from the host clock.
+     *
+     * @throws IllegalArgumentException if the specification is not valid
+     */
+    public static Harts parse(String spec) {
+        String[] settings = spec.toLowerCase(Locale.ROOT).split(",");
+        Harts harts;
+        try {
+            harts = new Harts(Integer.parseInt(settings[0].trim()));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("expected a number of harts");
+        }
+        for (int i = 1; i < settings.length; i++) {
+            String[] pair = settings[i].trim().split("=");
+            if (pair[0].equals("random") && pair.length == 1) {
+                harts.setRandom(System.nanoTime());
+                continue;
+            }
+            long value;
+            try {
+                value = pair.length == 2 ? Long.decode(pair[1]) : -1;
+            } catch (NumberFormatException e) {
+                value = -1;
+            }
+            if (value < 0) {
+                throw new IllegalArgumentException("invalid setting " + settings[i]);
+            }
+            switch (pair[0]) {
+                case "quantum": harts.setQuantum((int) Math.min(value, Integer.MAX_VALUE)); break;
+                case "random": harts.setRandom(value); break;
+                case "stack": harts.setStackBytes((int) Math.min(value, Integer.MAX_VALUE)); break;
+                default: throw new IllegalArgumentException("unknown setting " + pair[0]);
+            }
+        }
+        return harts;
+    }
+
+    /**
+     * @return the harts the simulator runs, or null for a single hart
+     */
+    public static Harts getActive() {
+        return active;
+    }
+
+    /**
+     * Runs programs on the given harts from their next start, or on a single hart with null.
+     */
+    public static void setActive(Harts harts) {
+        active = harts;
+    }
+
+    /**
+     * @param quantum instructions a hart executes per turn; at least 1
+     */
+    public void setQuantum(int quantum) {
+        if (quantum < 1) {
+            throw new IllegalArgumentException("a turn must be at least one instruction");
+        }
+        this.quantum = quantum;
+    }
+
+    public int getQuantum() {
+        return quantum;
+    }
+
+    /**
+     * Picks the next hart at random rather than round robin.
+     *
+     * @param seed the seed, which makes the order the same on every run
+     */
+    public void setRandom(long seed) {
+        this.random = true;
+        this.seed = seed;
+    }
+
+    public boolean isRandom() {
+        return random;
+    }
+
+    public long getSeed() {
+        return seed;
+    }
+
+    /**
+     * @param stackBytes bytes between the stacks of neighbouring harts, or 0 to have them 64KB
+     *                   apart, or less if the stack segment is smaller
+     */
+    public void setStackBytes(int stackBytes) {
+        if (stackBytes < 0 || stackBytes % 16 != 0) {
+            throw new IllegalArgumentException("stacks must be a multiple of 16 bytes apart");
+        }
+        this.stackBytes = stackBytes;
+    }
+
+    public int getCount() {
+        return count;
+    }
+
+    /**
+     * @return the hart whose registers are in the register files
+     */
+    public int getCurrent() {
+        return current;
+    }
+
+    /**
+     * Makes stepping and breakpoints apply to one hart.
+     *
+     * @param hart the hart, or -1 for all of them
+     */
+    public void setFocus(int hart) {
+        if (hart < -1 || hart >= count) {
+            throw new IllegalArgumentException("no hart " + hart);
+        }
+        focus = hart;
+    }
+
+    public int getFocus() {
+        return focus;
+    }
+
+    /**
+     * @return true if stepping and breakpoints apply to the hart running
+     */
+    public boolean isFocused() {
+        return focus < 0 || focus == current;
+    }
+
+    /**
+     * @return instructions executed by all harts since the program started
+     */
+    public long getInstructions() {
+        return instructions;
+    }
+
+    /**
+     * @return instructions executed by one hart since the program started
+     */
+    public long getInstructions(int hart) {
+        return (harts[hart] == null) ? 0 : harts[hart].instructions;
+    }
+
+    /**
+     * @return the program counter of a hart
+     */
+    public int getProgramCounter(int hart) {
+        if (hart == current || harts[hart] == null) {
+            return RegisterFile.getProgramCounter();
+        }
+        return (int) harts[hart].pc;
+    }
+
+    /**
+     * @return instructions executed by all harts per second of host time spent running
+     */
+    public double getInstructionsPerSecond() {
+        long running = nanoseconds + (resumedAt == 0 ? 0 : System.nanoTime() - resumedAt);
+        return (running == 0) ? 0 : instructions * 1e9 / running;
+    }
+
+    /**
+     * Forgets the harts' registers and counts, for a program that starts again.  The
+     * registers are taken from the register files when it next runs.
+     */
+    public void reset() {
+        started = false;
+        current = 0;
+        instructions = 0;
+        nanoseconds = 0;
+        resumedAt = 0;
+        for (int i = 0; i < count; i++) {
+            harts[i] = null;
+        }
+    }
+
+    /**
+     * Called by the simulator when it starts running.  The first time after a reset, every
+     * hart gets a copy of the registers, with its own stack pointer and mhartid.
+     */
+    public void resumed() {
+        if (!started) {
+            start();
+        }
+        resumedAt = System.nanoTime();
+    }
+
+    /**
+     * Called by the simulator when it stops running.
+     */
+    public void paused() {
+        if (resumedAt != 0) {
+            nanoseconds += System.nanoTime() - resumedAt;
+            resumedAt = 0;
+        }
+    }
+
+    private void start() {
+        Register stackPointer = RegisterFile.getRegisters()[RegisterFile.STACK_POINTER_REGISTER];
+        Register hartId = ControlAndStatusRegisterFile.getRegister("mhartid");
+        long sp = stackPointer.getValueNoNotify();
+        int spacing = stackBytes;
+        if (spacing == 0) {
+            long room = sp - Math.max(Memory.heapBaseAddress, Memory.stackLimitAddress);
+            spacing = (int) Math.max(16, Math.min(DEFAULT_STACK_BYTES, room / count) & ~0xF);
+        }
+        for (int i = count - 1; i >= 0; i--) {
+            stackPointer.setValueBackdoor(sp - (long) i * spacing);
+            hartId.setValueBackdoor(i);
+            harts[i] = new Context();
+            save(harts[i]);
+        }
+        order = random ? new Random(seed) : null;
+        current = 0;
+        remaining = quantum;
+        started = true;
+    }
+
+    /**
+     * Counts an instruction executed by the hart running and, at the end of its turn, switches
+     * to the next.
+     *
+     * @param canSwitch false if the hart must keep running for now, e.g. to take a trap
+     * @return true if another hart is now running
+     */
+    public boolean executed(boolean canSwitch) {
+        instructions++;
+        harts[current].instructions++;
+        if (--remaining > 0 || !canSwitch || count == 1) {
+            return false;
+        }
+        int next = (order == null) ? (current + 1) % count : order.nextInt(count);
+        remaining = quantum;
+        if (next == current) {
+            return false;
+        }
+        switchTo(next);
+        return true;
+    }
+
+    /**
+     * Ends the turn of the hart running at its next instruction boundary.
+     */
+    public void endTurn() {
+        remaining = 1;
+    }
+
+    /**
+     * Makes a hart the one running, e.g. to show its registers.  Use only while the simulator
+     * is not running.
+     */
+    public void select(int hart) {
+        if (hart < 0 || hart >= count) {
+            throw new IllegalArgumentException("no hart " + hart);
+        }
+        if (!started) {
+            start();
+        }
+        if (hart != current) {
+            switchTo(hart);
+            remaining = quantum;
+        }
+    }
+
+    private void switchTo(int next) {
+        save(harts[current]);
+        restore(harts[current], harts[next]);
+        current = next;
+        // Undoing would restore the previous hart's registers into this one
+        if (Globals.getSettings().getBackSteppingEnabled()) {
+            Globals.program.getBackStepper().clear();
+        }
+    }
+
+    private static void save(Context hart) {
+        for (int b = 0; b < BLOCKS.length; b++) {
+            Register[] registers = BLOCKS[b];
+            int[] changes = hart.changes[b];
+            if (hart.values[b] == null) {
+                hart.values[b] = new long[registers.length];
+            }
+            for (int i = 0; i < registers.length; i++) {
+                if (changes == null || registers[i].getChangeCount() != changes[i]) {
+                    hart.values[b][i] = registers[i].getValueNoNotify();
+                }
+            }
+        }
+        hart.pc = RegisterFile.getProgramCounterRegister().getValueNoNotify();
+    }
+
+    // The registers hold the values saved for the previous hart
+    private static void restore(Context previous, Context hart) {
+        for (int b = 0; b < BLOCKS.length; b++) {
+            Register[] registers = BLOCKS[b];
+            long[] values = hart.values[b], old = previous.values[b];
+            if (hart.changes[b] == null) {
+                hart.changes[b] = new int[registers.length];
+            }
+            for (int i = 0; i < registers.length; i++) {
+                if (OWN[b][i] && values[i] != old[i]) {
+                    registers[i].setValueBackdoor(values[i]);
+                }
+                hart.changes[b][i] = registers[i].getChangeCount();
+            }
+        }
+        RegisterFile.getProgramCounterRegister().setValueBackdoor(hart.pc);
+    }
+
+    /**
+     * Writes the instructions executed by each hart and by all of them per second.
+     */
+    public void writeReport(PrintStream out) {
+        out.printf(Locale.ROOT, "Harts: %d, %s, %d instruction%s per turn%n", count,
+                random ? "random order (seed " + seed + ")" : "round robin", quantum, quantum == 1 ? "" : "s");
+        for (int i = 0; i < count; i++) {
+            out.printf(Locale.ROOT, "%6d %12d instructions  pc %s%n", i, getInstructions(i),
+                    Binary.intToHexString(getProgramCounter(i)));
+        }
+        double seconds = (nanoseconds + (resumedAt == 0 ? 0 : System.nanoTime() - resumedAt)) / 1e9;
+        out.printf(Locale.ROOT, " total %12d instructions in %.3f s, %.0f instructions per second%n", instructions,
+                seconds, getInstructionsPerSecond());
+    }
+}
@@ -0,0 +1,397 @@
+package rars.simulator;
+
+import rars.ProgramStatement;
+import rars.riscv.Instruction;
+import rars.riscv.hardware.Memory;
+import rars.riscv.hardware.RegisterFile;
+import rars.util.Binary;
+
+import java.io.File;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Cycle-approximate timing of a classic in-order five stage pipeline (fetch, decode, execute,
+ * memory, write back), computed alongside execution.
+ * <p>
+ * Nothing is simulated stage by stage.  For each instruction the model works out the cycle it
+ * can enter the execute stage: one after the previous instruction, later if a source register
+ * is not ready yet, if a multi-cycle unit is still busy, after a mispredicted branch, or after
+ * a cache miss.  Register readiness is one array lookup per operand, so the cost per
+ * instruction is a short decode of the instruction word.
+ * <p>
+ * When active, the cycle CSR advances by the modelled cycles instead of one per instruction.
+ * Branch penalties use the active {@link BranchUnit} if there is one (otherwise branches are
+ * predicted not taken), and miss penalties the active {@link CacheHierarchy} if there is one.
+ * <p>
+ * The public fields are the timing parameters; set them before the program runs.
+ */
+public class PipelineModel {
+    /**
+     * Why an instruction waited before executing.
+     */
+    public enum Stall {
+        DATA("data hazard"), LOAD_USE("load-use"), STRUCTURAL("busy unit"), CONTROL("branch"),
+        FETCH("instruction cache"), MEMORY("data cache");
+
+        private final String description;
+
+        Stall(String description) {
+            this.description = description;
+        }
+    }
+
+    private static volatile PipelineModel active = null;
+
+    /**
+     * Whether results are forwarded to the execute stage; without it they are read back from
+     * the register file after write back.
+     */
+    public boolean forwarding = true;
+    /**
+     * Cycles lost after a mispredicted branch or indirect jump, resolved in execute.
+     */
+    public int branchPenalty = 2;
+    /**
+     * Cycles lost after a mispredicted direct jump, resolved in decode.
+     */
+    public int jumpPenalty = 1;
+    public int mulLatency = 3, divLatency = 34;
+    public int fpAddLatency = 4, fpMulLatency = 5, fpDivLatency = 20;
+    /**
+     * Extra cycles for each first level cache miss, and for each read reaching memory.
+     */
+    public int missPenalty = 10, memoryPenalty = 100;
+
+    private static final int FP = 32; // floating point registers follow the integer ones in ready
+    private static final int ALU = 0, LOAD = 1, MUL = 2, DIV = 3, FP_ADD = 4, FP_MUL = 5, FP_DIV = 6;
+
+    private final long[] ready = new long[64]; // first cycle each register's new value can be used in execute
+    private final int textBase;
+    private long execute = 1;   // cycle the last instruction entered execute; the first enters at 2
+    private long unitFree;      // first cycle a multi-cycle unit can take another instruction
+    private long reported;      // cycles already passed on to the cycle CSR
+    private long instructions;
+    private final boolean[] loaded = new boolean[64]; // whether each register's pending value comes from a load
+    private long lastFetchMisses, lastDataMisses, lastMemory, lastMispredicted;
+    private final long[] totals = new long[Stall.values().length];
+    private long[][] stalls = new long[Stall.values().length][1024]; // per instruction, by offset in text
+    private ProgramStatement[] statements = new ProgramStatement[1024];
+
+    public PipelineModel() {
+        textBase = Memory.textBaseAddress;
+    }
+
+    /**
+     * Builds a model from comma separated settings, each a name=value pair or the word
+     * "noforward", e.g. {@code noforward,branch=3,div=20}.  Names are branch, jump, mul, div,
+     * fpadd, fpmul, fpdiv, miss and memory.  "default" keeps every default.
+     *
+     * @throws IllegalArgumentException if a setting is not recognised
+     */
+    public static PipelineModel parse(String spec) {
+        PipelineModel model = new PipelineModel();
+        if (spec.equalsIgnoreCase("default")) {
+            return model;
+        }
+        for (String setting : spec.toLowerCase(Locale.ROOT).split(",")) {
+            if (setting.equals("noforward")) {
+                model.forwarding = false;
+                continue;
+            }
+            String[] pair = setting.split("=");
+            int value;
+            try {
+                value = Integer.parseInt(pair[pair.length - 1]);
+            } catch (NumberFormatException e) {
+                value = -1;
+            }
+            if (pair.length != 2 || value < 0) {
+                throw new IllegalArgumentException("invalid setting " + setting);
+            }
+            switch (pair[0]) {
+                case "branch": model.branchPenalty = value; break;
+                case "jump": model.jumpPenalty = value; break;
+                case "mul": model.mulLatency = value; break;
+                case "div": model.divLatency = value; break;
+                case "fpadd": model.fpAddLatency = value; break;
+                case "fpmul": model.fpMulLatency = value; break;
+                case "fpdiv": model.fpDivLatency = value; break;
+                case "miss": model.missPenalty = value; break;
+                case "memory": model.memoryPenalty = value; break;
+                default: throw new IllegalArgumentException("unknown setting " + pair[0]);
+            }
+        }
+        return model;
+    }
+
+    /**
+     * @return the model the simulator reports to, or null if timing is not modelled
+     */
+    public static PipelineModel getActive() {
+        return active;
+    }
+
+    /**
+     * Starts timing with the given model, or stops with null.
+     */
+    public static void setActive(PipelineModel model) {
+        active = model;
+    }
+
+    /**
+     * @return cycles until the last instruction modelled has written back
+     */
+    public long getCycles() {
+        return instructions == 0 ? 0 : execute + 3;
+    }
+
+    public long getInstructions() {
+        return instructions;
+    }
+
+    /**
+     * @return total cycles lost for the given reason
+     */
+    public long getStalls(Stall reason) {
+        return totals[reason.ordinal()];
+    }
+
+    /**
+     * @return cycles instruction at address lost for the given reason
+     */
+    public long getStalls(Stall reason, int address) {
+        int index = index(address);
+        return index < statements.length ? stalls[reason.ordinal()][index] : 0;
+    }
+
+    // Cycles modelled since the last call; the simulator adds them to the cycle CSR
+    long takeCycles() {
+        long cycles = getCycles() - reported;
+        reported += cycles;
+        return cycles;
+    }
+
+    // Called by the simulator after the instruction at pc has executed without trapping
+    void executed(int pc, ProgramStatement statement) {
+        int word = statement.getBinaryStatement();
+        int opcode = word & 0x7F, rd = (word >>> 7) & 0x1F, rs1 = (word >>> 15) & 0x1F, rs2 = (word >>> 20) & 0x1F;
+        int funct3 = (word >>> 12) & 7;
+        // Decode which registers are read and written (-1 for none) and the unit used
+        int src1 = -1, src2 = -1, src3 = -1, dest = rd, unit = ALU;
+        switch (opcode) {
+            case 0x33: case 0x3B: // register arithmetic
+                src1 = rs1;
+                src2 = rs2;
+                if ((word >>> 25) == 1) unit = (funct3 < 4) ? MUL : DIV;
+                break;
+            case 0x13: case 0x1B: case 0x67: // immediate arithmetic, jalr
+                src1 = rs1;
+                break;
+            case 0x03: // loads
+                src1 = rs1;
+                unit = LOAD;
+                break;
+            case 0x07: // floating point loads
+                src1 = rs1;
+                dest = FP + rd;
+                unit = LOAD;
+                break;
+            case 0x23: case 0x63: // stores, branches
+                src1 = rs1;
+                src2 = rs2;
+                dest = -1;
+                break;
+            case 0x27: // floating point stores
+                src1 = rs1;
+                src2 = FP + rs2;
+                dest = -1;
+                break;
+            case 0x73: // system: csr register forms read rs1
+                if (funct3 >= 1 && funct3 <= 3) src1 = rs1;
+                break;
+            case 0x43: case 0x47: case 0x4B: case 0x4F: // fused multiply-add
+                src1 = FP + rs1;
+                src2 = FP + rs2;
+                src3 = FP + (word >>> 27);
+                dest = FP + rd;
+                unit = FP_MUL;
+                break;
+            case 0x53: // floating point arithmetic
+                int funct5 = word >>> 27;
+                src1 = (funct5 == 0x1A || funct5 == 0x1E) ? rs1 : FP + rs1;
+                if (funct5 <= 0x05 || funct5 == 0x14) src2 = FP + rs2;
+                dest = (funct5 == 0x14 || funct5 == 0x18 || funct5 == 0x1C) ? rd : FP + rd;
+                unit = (funct5 <= 0x01 || funct5 == 0x08 || funct5 == 0x14 || funct5 == 0x18 || funct5 == 0x1A) ? FP_ADD
+                        : (funct5 == 0x02) ? FP_MUL : (funct5 == 0x03 || funct5 == 0x0B) ? FP_DIV : ALU;
+                break;
+            case 0x0F: // fence
+                dest = -1;
+                break;
+            default: // lui, auipc, jal
+                break;
+        }
+        if (dest == 0) dest = -1; // x0 is never written
+
+        int index = index(pc);
+        if (index < (1 << 24) && index >= statements.length) grow(index);
+        boolean tracked = index < statements.length;
+        if (tracked && statements[index] == null) statements[index] = statement;
+
+        // Cache misses this instruction caused, charged to its fetch or to its load or store
+        long earliest = execute + 1, fetchPenalty = 0, memoryStall = 0;
+        CacheHierarchy caches = CacheHierarchy.getActive();
+        if (caches != null) {
+            Cache fetch = caches.getInstructionCache(), data = caches.getDataCache();
+            long fetchMisses = fetch == null ? 0 : fetch.getMisses();
+            long dataMisses = data == null || data == fetch ? 0 : data.getMisses();
+            long memory = 0;
+            for (Cache level : caches.getLevels()) memory += level.getMemoryReads();
+            fetchMisses -= lastFetchMisses;
+            dataMisses -= lastDataMisses;
+            memory -= lastMemory;
+            lastFetchMisses += fetchMisses;
+            lastDataMisses += dataMisses;
+            lastMemory += memory;
+            boolean access = unit == LOAD || opcode == 0x23 || opcode == 0x27;
+            if (data == fetch && access) {
+                // Unified cache: assume the miss was the data access
+                dataMisses = fetchMisses;
+                fetchMisses = 0;
+            }
+            fetchPenalty = fetchMisses * missPenalty;
+            memoryStall = dataMisses * missPenalty;
+            if (dataMisses > 0) {
+                memoryStall += memory * memoryPenalty;
+            } else {
+                fetchPenalty += memory * memoryPenalty;
+            }
+        }
+        earliest += fetchPenalty;
+        charge(Stall.FETCH, fetchPenalty, index, tracked);
+
+        // Wait for operands and for a busy multi-cycle unit
+        long start = earliest;
+        boolean loadUse = false;
+        for (int source : new int[]{src1, src2, src3}) {
+            if (source > 0 && ready[source] > start) {
+                start = ready[source];
+                loadUse = loaded[source];
+            }
+        }
+        if (start > earliest) charge(loadUse ? Stall.LOAD_USE : Stall.DATA, start - earliest, index, tracked);
+        if ((unit >= MUL) && unitFree > start) {
+            charge(Stall.STRUCTURAL, unitFree - start, index, tracked);
+            start = unitFree;
+        }
+        execute = start;
+
+        int latency;
+        switch (unit) {
+            case MUL: latency = mulLatency; break;
+            case DIV: latency = divLatency; break;
+            case FP_ADD: latency = fpAddLatency; break;
+            case FP_MUL: latency = fpMulLatency; break;
+            case FP_DIV: latency = fpDivLatency; break;
+            default: latency = 1;
+        }
+        if (unit >= MUL) {
+            // Unpipelined units: nothing else can use one until it finishes
+            unitFree = start + latency;
+        }
+        if (dest > 0) {
+            // Forwarded from the end of execute (or memory for loads), otherwise read after write back
+            ready[dest] = start + latency + memoryStall + (forwarding ? (unit == LOAD ? 1 : 0) : 2);
+            loaded[dest] = unit == LOAD;
+        }
+        if (memoryStall > 0) {
+            execute += memoryStall;
+            charge(Stall.MEMORY, memoryStall, index, tracked);
+        }
+
+        // Control hazards
+        int next = RegisterFile.getProgramCounter();
+        boolean jump = opcode == 0x6F;
+        if (opcode == 0x63 || opcode == 0x67 || jump) {
+            BranchUnit branches = BranchUnit.getActive();
+            boolean mispredicted;
+            if (branches != null) {
+                long wrong = 0;
+                for (BranchUnit.Kind kind : BranchUnit.Kind.values()) wrong += branches.getMispredicted(kind);
+                mispredicted = wrong != lastMispredicted;
+                lastMispredicted = wrong;
+            } else {
+                mispredicted = next != pc + statement.getInstructionLength(); // predict not taken
+            }
+            if (mispredicted) {
+                long penalty = jump ? jumpPenalty : branchPenalty;
+                execute += penalty;
+                charge(Stall.CONTROL, penalty, index, tracked);
+            }
+        }
+        instructions++;
+    }
+
+    private void charge(Stall reason, long cycles, int index, boolean tracked) {
+        if (cycles <= 0) return;
+        totals[reason.ordinal()] += cycles;
+        if (tracked) stalls[reason.ordinal()][index] += cycles;
+    }
+
+    // By halfword, as compressed instructions may start at any even address.  Unsigned, so
+    // addresses below the text segment land out of range rather than negative.
+    private int index(int address) {
+        return (address - textBase) >>> 1;
+    }
+
+    private void grow(int index) {
+        int size = statements.length;
+        while (size <= index) size *= 2;
+        statements = Arrays.copyOf(statements, size);
+        for (int i = 0; i < stalls.length; i++) {
+            stalls[i] = Arrays.copyOf(stalls[i], size);
+        }
+    }
+
+    /**
+     * Writes cycles, CPI, stalls by reason and the instructions that stalled the most.
+     *
+     * @param out   where to write
+     * @param limit maximum number of instructions listed
+     */
+    public void writeReport(PrintStream out, int limit) {
+        long cycles = getCycles();
+        out.printf(Locale.ROOT, "Pipeline: %d cycles, %d instructions, CPI %.3f (%s)%n", cycles, instructions,
+                instructions == 0 ? 0.0 : cycles / (double) instructions, forwarding ? "forwarding" : "no forwarding");
+        for (Stall reason : Stall.values()) {
+            out.printf(Locale.ROOT, "%12d cycles stalled on %s%n", totals[reason.ordinal()], reason.description);
+        }
+        List<Integer> worst = new ArrayList<>();
+        for (int i = 0; i < statements.length; i++) {
+            if (statements[i] != null && stalled(i) > 0) worst.add(i);
+        }
+        if (worst.isEmpty()) return;
+        worst.sort((a, b) -> Long.compare(stalled(b), stalled(a)));
+        out.println();
+        out.print("Most stalled instructions (total");
+        for (Stall reason : Stall.values()) out.print(", " + reason.description);
+        out.println("):");
+        for (int i : worst.subList(0, Math.min(limit, worst.size()))) {
+            ProgramStatement statement = statements[i];
+            out.printf("%10d", stalled(i));
+            for (Stall reason : Stall.values()) out.printf(" %6d", stalls[reason.ordinal()][i]);
+            String where = statement.getSourceFile() == null ? "" :
+                    new File(statement.getSourceFile()).getName() + ":" + statement.getSourceLine() + "  ";
+            out.println("  " + Binary.intToHexString(textBase + 2 * i) + "  " + where + statement.getPrintableBasicAssemblyStatement());
+        }
+    }
+
+    private long stalled(int index) {
+        long sum = 0;
+        for (long[] reason : stalls) sum += reason[index];
+        return sum;
+    }
+}
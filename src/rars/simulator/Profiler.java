@@ -0,0 +1,417 @@
+package rars.simulator;
+
+import rars.Globals;
+import rars.ProgramStatement;
+import rars.assembler.Symbol;
+import rars.riscv.Instruction;
+import rars.riscv.hardware.Memory;
+import rars.riscv.hardware.RegisterFile;
+import rars.riscv.instructions.Branch;
+import rars.riscv.instructions.JAL;
+import rars.riscv.instructions.JALR;
+import rars.util.Binary;
+
+import java.io.File;
+import java.io.PrintStream;
+import java.util.*;
+
+/**
+ * Execution profiler driven directly by the simulator loop.
+ * <p>
+ * For every instruction executed it bumps a counter in an array indexed by the instruction's
+ * offset in the text segment, and charges the instruction to the current node of a call-stack
+ * trie.  Calls and returns are recognised the way the calling convention defines them: a
+ * {@code jal} or {@code jalr} that links through {@code ra} (or the alternate link register
+ * {@code t0}) is a call, and a {@code jalr x0} through one of those registers is a return.
+ * Taken backward branches are counted per branch so loops can be reported.
+ * <p>
+ * None of this goes through memory or register observers; the per-instruction cost is a
+ * couple of array increments and a type check, with more work only for jumps and branches.
+ * Names come from the symbol tables when the report is produced, not while running.
+ */
+public class Profiler {
+    private static volatile Profiler active = null;
+
+    // Deeper recursion than this is charged to the deepest frame
+    private static final int MAX_DEPTH = 512;
+    private static final int RA = 1, T0 = 5;
+
+    private final int textBase;
+    private long[] counts = new long[1024];
+    private ProgramStatement[] statements = new ProgramStatement[1024]; // as first executed, for reports
+    private long[] backEdges = new long[1024];
+    private int[] backTargets = new int[1024];
+    // instructions executed outside the array's range, e.g. in kernel text
+    private final HashMap<Integer, long[]> otherCounts = new HashMap<>();
+
+    private Frame root, current;
+    private int overflow; // calls made beyond MAX_DEPTH that have not returned yet
+    private long total;
+    private int start; // address of the first instruction counted
+
+    public Profiler() {
+        textBase = Memory.textBaseAddress;
+        reset();
+    }
+
+    /**
+     * @return the profiler the simulator reports to, or null if profiling is off
+     */
+    public static Profiler getActive() {
+        return active;
+    }
+
+    /**
+     * Turns profiling on with the given profiler, or off with null.  Takes effect at the next
+     * instruction.
+     */
+    public static void setActive(Profiler profiler) {
+        active = profiler;
+    }
+
+    /**
+     * Forgets everything counted so far.
+     */
+    public synchronized void reset() {
+        Arrays.fill(counts, 0);
+        Arrays.fill(statements, null);
+        Arrays.fill(backEdges, 0);
+        otherCounts.clear();
+        root = new Frame(0, null);
+        current = root;
+        overflow = 0;
+        total = 0;
+    }
+
+    /**
+     * @return the number of instructions counted
+     */
+    public synchronized long getTotal() {
+        return total;
+    }
+
+    /**
+     * @param address address of an instruction
+     * @return how many times it has been executed
+     */
+    public synchronized long getCount(int address) {
+        int index = index(address);
+        if (index < counts.length) {
+            return counts[index];
+        }
+        long[] other = otherCounts.get(address);
+        return (other == null) ? 0 : other[0];
+    }
+
+    // Called by the simulator after the instruction at pc has executed without trapping.  Not
+    // synchronized, to keep the per-instruction cost down; reports taken while the program is
+    // running may be slightly out of date.
+    void executed(int pc, ProgramStatement statement) {
+        if (total++ == 0) {
+            start = pc;
+        }
+        current.self++;
+        int index = index(pc);
+        if (index < (1 << 24)) {
+            if (index >= counts.length) {
+                grow(index);
+            }
+            if (counts[index]++ == 0) {
+                statements[index] = statement;
+            }
+        } else {
+            otherCounts.computeIfAbsent(pc, k -> new long[1])[0]++;
+        }
+        Instruction instruction = statement.getInstruction();
+        if (!(instruction instanceof Branch || instruction instanceof JAL || instruction instanceof JALR)) {
+            return;
+        }
+        int next = RegisterFile.getProgramCounter();
+        if (next == pc + statement.getInstructionLength()) {
+            return;
+        }
+        int[] operands = statement.getOperands();
+        boolean link = operands.length > 0 && (operands[0] == RA || operands[0] == T0);
+        if ((instruction instanceof JAL || instruction instanceof JALR) && link) {
+            call(next);
+        } else if (instruction instanceof JALR && operands[0] == 0 && (operands[1] == RA || operands[1] == T0)) {
+            ret();
+        } else if (next <= pc && index < counts.length) {
+            backEdges[index]++;
+            backTargets[index] = next;
+        }
+    }
+
+    private void call(int target) {
+        if (current.depth >= MAX_DEPTH) {
+            overflow++;
+            return;
+        }
+        Frame child = current.child(target);
+        child.calls++;
+        current = child;
+    }
+
+    private void ret() {
+        if (overflow > 0) {
+            overflow--;
+        } else if (current.parent != null) {
+            current = current.parent;
+        }
+    }
+
+    // By halfword, as compressed instructions may start at any even address.  Unsigned, so
+    // addresses below the text segment land out of range rather than negative.
+    private int index(int address) {
+        return (address - textBase) >>> 1;
+    }
+
+    private void grow(int index) {
+        int size = counts.length;
+        while (size <= index) size *= 2;
+        counts = Arrays.copyOf(counts, size);
+        statements = Arrays.copyOf(statements, size);
+        backEdges = Arrays.copyOf(backEdges, size);
+        backTargets = Arrays.copyOf(backTargets, size);
+    }
+
+    /*  ******************  Reports  ******************/
+
+    /**
+     * Writes the call stacks in the collapsed format used by flame graph tools: one line per
+     * distinct stack, frames separated by semicolons from the outermost in, followed by the
+     * number of instructions executed with exactly that stack.
+     *
+     * @param out where to write
+     */
+    public synchronized void writeCollapsedStacks(PrintStream out) {
+        Names names = new Names();
+        collapse(root, names.function(entryOf(root)), names, out);
+    }
+
+    private void collapse(Frame frame, String stack, Names names, PrintStream out) {
+        if (frame.self > 0) {
+            out.println(stack + " " + frame.self);
+        }
+        for (int i = 0; i < frame.childCount; i++) {
+            Frame child = frame.children[i];
+            collapse(child, stack + ";" + names.function(child.entry), names, out);
+        }
+    }
+
+    /**
+     * Writes a summary: the functions with the most instructions executed in their own body,
+     * the busiest source lines, and the loops that executed the most instructions.
+     *
+     * @param out   where to write
+     * @param limit maximum number of entries in each section
+     */
+    public synchronized void writeReport(PrintStream out, int limit) {
+        out.println("Instructions executed: " + total);
+        if (total == 0) return;
+        out.println();
+        out.println("Functions (self instructions, calls):");
+        for (Function f : getFunctions(limit)) {
+            out.printf("%10d %5.1f%% %10d  %s%n", f.self, percent(f.self), f.calls, f.name);
+        }
+        out.println();
+        out.println("Source lines:");
+        for (Line line : getLines(limit)) {
+            out.printf("%10d %5.1f%%  %s:%d  %s%n", line.count, percent(line.count), line.file, line.line, line.source);
+        }
+        out.println();
+        out.println("Loops (instructions in body, iterations):");
+        for (Loop loop : getLoops(limit)) {
+            out.printf("%10d %5.1f%% %10d  %s - %s%n", loop.count, percent(loop.count), loop.iterations, loop.head, loop.tail);
+        }
+    }
+
+    private double percent(long count) {
+        return 100.0 * count / total;
+    }
+
+    /**
+     * Instructions executed per function, summed over every stack the function appears in.
+     */
+    public static final class Function {
+        public final String name;
+        public final int entry;
+        public final long self, calls;
+
+        Function(String name, int entry, long self, long calls) {
+            this.name = name;
+            this.entry = entry;
+            this.self = self;
+            this.calls = calls;
+        }
+    }
+
+    /**
+     * Instructions executed for one line of source, including every instruction a pseudo-instruction
+     * expanded to.
+     */
+    public static final class Line {
+        public final String file, source;
+        public final int line;
+        public final long count;
+
+        Line(String file, int line, String source, long count) {
+            this.file = file;
+            this.line = line;
+            this.source = source;
+            this.count = count;
+        }
+    }
+
+    /**
+     * A loop found from a taken backward branch: the instructions between its target (head) and
+     * the branch (tail), how often the branch was taken and how many instructions ran in between.
+     */
+    public static final class Loop {
+        public final String head, tail;
+        public final long iterations, count;
+
+        Loop(String head, String tail, long iterations, long count) {
+            this.head = head;
+            this.tail = tail;
+            this.iterations = iterations;
+            this.count = count;
+        }
+    }
+
+    /**
+     * @param limit maximum number to return
+     * @return functions by decreasing self count
+     */
+    public synchronized List<Function> getFunctions(int limit) {
+        HashMap<Integer, long[]> byEntry = new HashMap<>();
+        sum(root, byEntry);
+        Names names = new Names();
+        ArrayList<Function> list = new ArrayList<>();
+        for (Map.Entry<Integer, long[]> e : byEntry.entrySet()) {
+            list.add(new Function(names.function(e.getKey()), e.getKey(), e.getValue()[0], e.getValue()[1]));
+        }
+        list.sort((a, b) -> Long.compare(b.self, a.self));
+        return list.subList(0, Math.min(limit, list.size()));
+    }
+
+    private void sum(Frame frame, HashMap<Integer, long[]> byEntry) {
+        long[] sums = byEntry.computeIfAbsent(entryOf(frame), k -> new long[2]);
+        sums[0] += frame.self;
+        sums[1] += frame.calls;
+        for (int i = 0; i < frame.childCount; i++) {
+            sum(frame.children[i], byEntry);
+        }
+    }
+
+    /**
+     * @param limit maximum number to return
+     * @return source lines by decreasing count
+     */
+    public synchronized List<Line> getLines(int limit) {
+        LinkedHashMap<String, Line> byLine = new LinkedHashMap<>();
+        for (int i = 0; i < counts.length; i++) {
+            if (counts[i] == 0) continue;
+            ProgramStatement statement = statements[i];
+            String file = (statement == null || statement.getSourceFile() == null) ? "?" : new File(statement.getSourceFile()).getName();
+            int line = (statement == null) ? 0 : statement.getSourceLine();
+            String key = file + ":" + line;
+            Line previous = byLine.get(key);
+            String source = (statement == null) ? "" : (statement.getSource() == null ? statement.getPrintableBasicAssemblyStatement() : statement.getSource().trim());
+            byLine.put(key, new Line(file, line, source, counts[i] + (previous == null ? 0 : previous.count)));
+        }
+        ArrayList<Line> list = new ArrayList<>(byLine.values());
+        list.sort((a, b) -> Long.compare(b.count, a.count));
+        return list.subList(0, Math.min(limit, list.size()));
+    }
+
+    /**
+     * @param limit maximum number to return
+     * @return loops by decreasing number of instructions executed inside them
+     */
+    public synchronized List<Loop> getLoops(int limit) {
+        Names names = new Names();
+        ArrayList<Loop> list = new ArrayList<>();
+        for (int i = 0; i < backEdges.length; i++) {
+            if (backEdges[i] == 0) continue;
+            int head = index(backTargets[i]);
+            long body = 0;
+            for (int j = Math.max(head, 0); j <= i; j++) {
+                body += counts[j];
+            }
+            list.add(new Loop(names.location(backTargets[i]), names.location(textBase + 2 * i), backEdges[i], body));
+        }
+        list.sort((a, b) -> Long.compare(b.count, a.count));
+        return list.subList(0, Math.min(limit, list.size()));
+    }
+
+    // The root frame stands for wherever execution started
+    private int entryOf(Frame frame) {
+        return (frame.parent != null) ? frame.entry : start;
+    }
+
+    // Maps addresses to labels; global labels win over local ones at the same address.
+    private final class Names {
+        private final TreeMap<Integer, String> labels = new TreeMap<>(Integer::compareUnsigned);
+
+        Names() {
+            HashSet<Object> seen = new HashSet<>();
+            for (int i = 0; i < counts.length; i++) {
+                if (counts[i] == 0) continue;
+                ProgramStatement statement = statements[i];
+                if (statement != null && statement.getSourceProgram() != null && seen.add(statement.getSourceProgram())) {
+                    add(statement.getSourceProgram().getLocalSymbolTable().getTextSymbols());
+                }
+            }
+            if (Globals.symbolTable != null) {
+                add(Globals.symbolTable.getTextSymbols());
+            }
+        }
+
+        private void add(List<Symbol> symbols) {
+            for (Symbol symbol : symbols) {
+                labels.put(symbol.getAddress(), symbol.getName());
+            }
+        }
+
+        String function(int address) {
+            String label = labels.get(address);
+            return (label != null) ? label : Binary.intToHexString(address);
+        }
+
+        String location(int address) {
+            Map.Entry<Integer, String> label = labels.floorEntry(address);
+            if (label == null) return Binary.intToHexString(address);
+            int offset = address - label.getKey();
+            return (offset == 0) ? label.getValue() : label.getValue() + "+" + offset;
+        }
+    }
+
+    // Node of the call-stack trie
+    private static final class Frame {
+        final int entry;
+        final Frame parent;
+        final int depth;
+        long self, calls;
+        Frame[] children = null;
+        int childCount = 0;
+
+        Frame(int entry, Frame parent) {
+            this.entry = entry;
+            this.parent = parent;
+            this.depth = (parent == null) ? 0 : parent.depth + 1;
+        }
+
+        Frame child(int target) {
+            for (int i = 0; i < childCount; i++) {
+                if (children[i].entry == target) return children[i];
+            }
+            if (children == null) {
+                children = new Frame[2];
+            } else if (childCount == children.length) {
+                children = Arrays.copyOf(children, childCount * 2);
+            }
+            return children[childCount++] = new Frame(target, this);
+        }
+    }
+}
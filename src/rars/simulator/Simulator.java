@@ -174,6 +174,8 @@ public class Simulator extends Observable {
         private SimulationException pe;
         private volatile boolean stop = false;
         private Reason constructReturnReason;
+        private final TimeTravel history;
+        private final Harts harts;
 
         /**
          * SimThread constructor.  Receives all the information it needs to simulate execution.
@@ -188,6 +190,9 @@ public class Simulator extends Observable {
             this.breakPoints = breakPoints;
             this.done = false;
             this.pe = null;
+            this.harts = Harts.getActive();
+            // Checkpoints hold the registers of one hart
+            this.history = (harts == null) ? TimeTravel.getActive() : null;
         }
 
         /**
@@ -212,6 +217,7 @@ public class Simulator extends Observable {
         private void stopExecution(boolean done, Reason reason) {
             this.done = done;
             this.constructReturnReason = reason;
+            if (harts != null) harts.paused();
             SystemIO.flush(true);
             if (done) SystemIO.resetFiles(); // close any files opened in the process of simulating
             Simulator.getInstance().notifyObserversOfExecution(new SimulatorNotice(SimulatorNotice.SIMULATOR_STOP,
@@ -223,6 +229,20 @@ public class Simulator extends Observable {
             notify();
         }
 
+        private int claimExternal(boolean replay) {
+            if (replay) return history.claimExternal();
+            int value = InterruptController.claimExternal();
+            if (history != null) history.recordExternal(value);
+            return value;
+        }
+
+        private int claimTimer(boolean replay) {
+            if (replay) return history.claimTimer();
+            int value = InterruptController.claimTimer();
+            if (history != null) history.recordTimer(value);
+            return value;
+        }
+
         private boolean handleTrap(SimulationException se, int pc) {
             assert se.cause() != -1 : "Unhandlable exception not thrown through ExitingEception";
             assert se.cause() >= 0 : "Interrupts cannot be handled by the trap handler";
@@ -351,7 +371,9 @@ public class Simulator extends Observable {
             // This is noticeable in stepped mode.
             // *********************************************************************
 
+            if (history != null) history.attach();
             RegisterFile.initializeProgramCounter(pc);
+            if (harts != null) harts.resumed();
             ProgramStatement statement = null;
             int steps = 0;
             boolean ebreak = false, waiting = false;
@@ -359,25 +381,27 @@ public class Simulator extends Observable {
             // Volatile variable initialized false but can be set true by the main thread.
             // Used to stop or pause a running program.  See stopSimulation() above.
             while (!stop) {
-                SystemIO.flush(false);
                 // Perform the RISCV instruction in synchronized block.  If external threads agree
                 // to access memory and registers only through synchronized blocks on same
                 // lock variable, then full (albeit heavy-handed) protection of memory and
                 // registers is assured.  Not as critical for reading from those resources.
                 Globals.memoryAndRegistersLock.lock();
                 try {
+                    if (history != null) history.boundary(RegisterFile.getProgramCounter());
                     // Handle pending interupts and traps first
                     long uip = ControlAndStatusRegisterFile.getValueNoNotify("uip"), uie = ControlAndStatusRegisterFile.getValueNoNotify("uie");
                     boolean IE = (ControlAndStatusRegisterFile.getValueNoNotify("ustatus") & ControlAndStatusRegisterFile.INTERRUPT_ENABLE) != 0;
                     // make sure no interrupts sneak in while we are processing them
                     pc = RegisterFile.getProgramCounter();
                     synchronized (InterruptController.lock) {
-                        boolean pendingExternal = InterruptController.externalPending(),
-                                pendingTimer = InterruptController.timerPending(),
+                        // Interrupts that arrived in recorded history are replayed, not taken from the controller
+                        boolean replay = history != null && history.replayingNext();
+                        boolean pendingExternal = replay ? history.externalPending() : InterruptController.externalPending(),
+                                pendingTimer = replay ? history.timerPending() : InterruptController.timerPending(),
                                 pendingTrap = InterruptController.trapPending();
                         // This is the explicit (in the spec) order that interrupts should be serviced
                         if (IE && pendingExternal && (uie & ControlAndStatusRegisterFile.EXTERNAL_INTERRUPT) != 0) {
-                            if (handleInterrupt(InterruptController.claimExternal(), SimulationException.EXTERNAL_INTERRUPT, pc)) {
+                            if (handleInterrupt(claimExternal(replay), SimulationException.EXTERNAL_INTERRUPT, pc)) {
                                 pendingExternal = false;
                                 uip &= ~0x100;
                             } else {
@@ -390,19 +414,22 @@ public class Simulator extends Observable {
                                 return; // if the interrupt can't be handled, but the interrupt enable bit is high, thats an error
                             }
                         } else if (IE && pendingTimer && (uie & ControlAndStatusRegisterFile.TIMER_INTERRUPT) != 0) {
-                            if (handleInterrupt(InterruptController.claimTimer(), SimulationException.TIMER_INTERRUPT, pc)) {
+                            if (handleInterrupt(claimTimer(replay), SimulationException.TIMER_INTERRUPT, pc)) {
                                 pendingTimer = false;
                                 uip &= ~0x10;
                             } else {
                                 return; // if the interrupt can't be handled, but the interrupt enable bit is high, thats an error
                             }
                         } else if (pendingTrap) { // if we have a pending trap and aren't handling an interrupt it must be handled
-                            if (handleTrap(InterruptController.claimTrap(), pc - Instruction.INSTRUCTION_LENGTH)) { // account for that the PC has already been incremented
+                            if (handleTrap(InterruptController.claimTrap(), pc - RegisterFile.getInstructionLength())) { // account for that the PC has already been incremented
                             } else {
                                 return;
                             }
                         }
                         uip |= (pendingExternal ? ControlAndStatusRegisterFile.EXTERNAL_INTERRUPT : 0) | (pendingTimer ? ControlAndStatusRegisterFile.TIMER_INTERRUPT : 0);
+                        if (history != null && !replay) {
+                            history.recordPending((int) uip & (ControlAndStatusRegisterFile.EXTERNAL_INTERRUPT | ControlAndStatusRegisterFile.TIMER_INTERRUPT));
+                        }
                     }
                     if (uip != ControlAndStatusRegisterFile.getValueNoNotify("uip")) {
                         ControlAndStatusRegisterFile.updateRegister("uip", uip);
@@ -410,13 +437,14 @@ public class Simulator extends Observable {
 
                     // always handle interrupts and traps before quiting
                     // Check number of instructions executed.  Return if at limit (-1 is no limit).
-                    if (maxSteps > 0) {
+                    if (maxSteps > 0 && (harts == null || harts.isFocused())) {
                         steps++;
                         if (steps > maxSteps) {
                             stopExecution(false, Reason.MAX_STEPS);
                             return;
                         }
                     }
+                    if (history != null) history.executing();
 
                     pc = RegisterFile.getProgramCounter();
                     RegisterFile.incrementPC();
@@ -443,6 +471,9 @@ public class Simulator extends Observable {
                         stopExecution(true, Reason.CLIFF_TERMINATION);
                         return;
                     }
+                    if (statement.isCompressed()) {
+                        RegisterFile.setInstructionLength(statement.getInstructionLength());
+                    }
 
                     try {
                         BasicInstruction instruction = (BasicInstruction) statement.getInstruction();
@@ -452,8 +483,33 @@ public class Simulator extends Observable {
                                     "undefined instruction (" + Binary.intToHexString(statement.getBinaryStatement()) + ")",
                                     SimulationException.ILLEGAL_INSTRUCTION);
                         }
+                        TraceRecorder trace = TraceRecorder.getActive();
+                        CacheHierarchy caches = CacheHierarchy.getActive();
+                        if (history != null && history.isSeeking()) {
+                            trace = null;
+                            caches = null;
+                        }
+                        if (trace != null) trace.starting();
+                        if (caches != null) caches.starting(pc, statement.getInstructionLength());
                         // THIS IS WHERE THE INSTRUCTION EXECUTION IS ACTUALLY SIMULATED!
-                        instruction.simulate(statement);
+                        try {
+                            instruction.simulate(statement);
+                        } finally {
+                            if (caches != null) caches.executed();
+                        }
+                        if (trace != null) trace.executed(pc, statement);
+                        Profiler profiler = Profiler.getActive();
+                        if (profiler != null && (history == null || !history.isSeeking())) {
+                            profiler.executed(pc, statement);
+                        }
+                        BranchUnit branches = BranchUnit.getActive();
+                        if (branches != null && (history == null || !history.isSeeking())) {
+                            branches.executed(pc, statement);
+                        }
+                        PipelineModel pipeline = PipelineModel.getActive();
+                        if (pipeline != null && (history == null || !history.isSeeking())) {
+                            pipeline.executed(pc, statement);
+                        }
 
                         // IF statement added 7/26/06 (explanation above)
                         if (Globals.getSettings().getBackSteppingEnabled()) {
@@ -500,21 +556,44 @@ public class Simulator extends Observable {
                 // Update cycle(h) and instret(h)
                 long cycle = ControlAndStatusRegisterFile.getValueNoNotify("cycle"),
                          instret = ControlAndStatusRegisterFile.getValueNoNotify("instret"),
-                         time = System.currentTimeMillis();;
-                ControlAndStatusRegisterFile.updateRegisterBackdoor("cycle",cycle+1);
+                         time;
+                // A virtual clock counts instructions, so time needs neither the host clock nor recording
+                VirtualClock clock = VirtualClock.getActive();
+                if (clock != null) {
+                    clock.executed((harts == null ? instret : harts.getInstructions()) + 1,
+                            history != null && history.replayingNext());
+                    time = clock.getTime();
+                } else {
+                    time = (history != null) ? history.time() : System.currentTimeMillis();
+                }
+                // With a pipeline model, cycle counts modelled cycles rather than one per instruction
+                PipelineModel pipeline = PipelineModel.getActive();
+                long cycles = (pipeline == null || (history != null && history.isSeeking())) ? 1 : pipeline.takeCycles();
+                ControlAndStatusRegisterFile.updateRegisterBackdoor("cycle",cycle+cycles);
                 ControlAndStatusRegisterFile.updateRegisterBackdoor("instret",instret+1);
                 ControlAndStatusRegisterFile.updateRegisterBackdoor("time",time);
 
+                // Move on to the next hart at the end of this one's turn, unless it stops here or has
+                // a trap to take.  WFI gives up the rest of the turn rather than holding up the others.
+                if (harts != null) {
+                    if (waiting) {
+                        harts.endTurn();
+                        waiting = false;
+                    }
+                    harts.executed(!ebreak && !InterruptController.trapPending());
+                }
+
                 //     Return if we've reached a breakpoint.
-                if (ebreak || (breakPoints != null) &&
+                if (ebreak || (breakPoints != null) && (harts == null || harts.isFocused()) &&
                         (Arrays.binarySearch(breakPoints, RegisterFile.getProgramCounter()) >= 0)) {
                     stopExecution(false, Reason.BREAKPOINT);
                     return;
                 }
 
-                // Wait if WFI ran
+                // Wait if WFI ran (unless replaying; the interrupt that ended the wait is in the recording)
                 if (waiting) {
-                    if (!(InterruptController.externalPending() || InterruptController.timerPending())) {
+                    if (!(InterruptController.externalPending() || InterruptController.timerPending())
+                            && (history == null || !history.replayingNext())) {
                         synchronized (this) {
                             try {
                                 wait();
@@ -529,6 +608,9 @@ public class Simulator extends Observable {
                 // schedule GUI update only if: there is in fact a GUI! AND
                 //                              using Run,  not Step (maxSteps != 1) AND
                 //                              running slowly enough for GUI to keep up
+                if (history != null && history.isSeeking()) {
+                    continue; // no need to show or pace steps while travelling through history
+                }
                 if (interactiveGUIUpdater != null && maxSteps != 1 &&
                         RunSpeedPanel.getInstance().getRunSpeed() < RunSpeedPanel.UNLIMITED_SPEED) {
                     SwingUtilities.invokeLater(interactiveGUIUpdater);
@@ -552,11 +634,11 @@ public class Simulator extends Observable {
         public void run() {
             if (Globals.getGui().getRegistersPane().getSelectedComponent() ==
                     Globals.getGui().getMainPane().getExecutePane().getRegistersWindow()) {
-                Globals.getGui().getMainPane().getExecutePane().getRegistersWindow().updateRegisters();
+                Globals.getGui().getMainPane().getExecutePane().getRegistersWindow().refreshChangedRegisters();
             } else {
-                Globals.getGui().getMainPane().getExecutePane().getFloatingPointWindow().updateRegisters();
+                Globals.getGui().getMainPane().getExecutePane().getFloatingPointWindow().refreshChangedRegisters();
             }
-            Globals.getGui().getMainPane().getExecutePane().getDataSegmentWindow().updateValues();
+            Globals.getGui().getMainPane().getExecutePane().getDataSegmentWindow().refreshChangedValues();
             Globals.getGui().getMainPane().getExecutePane().getTextSegmentWindow().setCodeHighlighting(true);
             Globals.getGui().getMainPane().getExecutePane().getTextSegmentWindow().highlightStepAtPC();
         }
@@ -0,0 +1,365 @@
+package rars.simulator;
+
+import rars.AssemblyException;
+import rars.SimulationException;
+import rars.api.Options;
+import rars.api.Program;
+import rars.tools.BHTableModel;
+
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Evaluates a grid of cache and branch history table configurations against one run of a program.
+ * <p>
+ * The program is executed once while a {@link TraceRecorder} writes its trace to a temporary
+ * file.  The configurations are then split across threads; each thread reads the trace once and
+ * feeds every configuration it was given.  Caches are modelled by {@link Cache}; branch history
+ * tables by the BHT simulator tool's own {@link BHTableModel}, so the results match that tool.
+ * <p>
+ * Usage:
+ * <pre>
+ * java rars.simulator.Sweep [options] &lt;program.s&gt;...
+ *   -cache &lt;sizes&gt;:&lt;blocks&gt;:&lt;ways&gt;[:&lt;policies&gt;]   e.g. 1K,4K,16K:16,64:1,2,4:lru,plru
+ *   -bht &lt;entries&gt;:&lt;history&gt;[:&lt;initial&gt;]          e.g. 8,16,32:1,2:nt,t
+ *   -trace &lt;file&gt;   use a recorded trace instead of running the program
+ *   -steps &lt;n&gt;      stop the program after n instructions
+ *   -threads &lt;n&gt;    threads to use, the number of processors by default
+ *   -o &lt;file&gt;       write the table to a file; .json for JSON, anything else for CSV
+ *   -json          write JSON to standard output instead of CSV
+ * </pre>
+ * Each cache configuration is evaluated as both an instruction and a data cache.  Without
+ * -cache or -bht a small default grid of each is used.
+ */
+public class Sweep {
+    private static final String DEFAULT_CACHE = "1K,4K,16K:16,32,64:1,2,4:lru";
+    private static final String DEFAULT_BHT = "8,16,32,64:1,2:nt";
+    private static final String[] COLUMNS = {"model", "size", "block", "ways", "policy", "entries", "history",
+            "initial", "events", "misses", "rate"};
+
+    // One configuration being evaluated; called for every record of the trace
+    static abstract class Model {
+        void instruction(int pc, int length) {
+        }
+
+        void data(boolean write, int address) {
+        }
+
+        void branch(int pc, boolean taken) {
+        }
+
+        // The row for the results table, keyed by column name
+        abstract Map<String, Object> result();
+    }
+
+    private static class CacheModel extends Model {
+        private final Cache cache;
+        private final boolean instructions;
+        private final Cache.Replacement replacement;
+
+        CacheModel(boolean instructions, int size, int block, int ways, Cache.Replacement replacement) {
+            this.instructions = instructions;
+            this.replacement = replacement;
+            this.cache = new Cache(instructions ? "L1I" : "L1D", size, block, ways, replacement, true, true, null);
+        }
+
+        void instruction(int pc, int length) {
+            if (!instructions) return;
+            cache.read(pc);
+            // A compressed instruction may leave a 32 bit one straddling two blocks
+            int last = pc + length - 1;
+            if ((last ^ pc) >>> Integer.numberOfTrailingZeros(cache.getBlockBytes()) != 0) {
+                cache.read(last);
+            }
+        }
+
+        void data(boolean write, int address) {
+            if (instructions) return;
+            if (write) {
+                cache.write(address);
+            } else {
+                cache.read(address);
+            }
+        }
+
+        Map<String, Object> result() {
+            Map<String, Object> row = new LinkedHashMap<>();
+            row.put("model", instructions ? "icache" : "dcache");
+            row.put("size", cache.getSizeBytes());
+            row.put("block", cache.getBlockBytes());
+            row.put("ways", cache.getWays());
+            row.put("policy", replacement.toString().toLowerCase(Locale.ROOT));
+            row.put("events", cache.getAccesses());
+            row.put("misses", cache.getMisses());
+            row.put("rate", cache.getHitRate());
+            return row;
+        }
+    }
+
+    private static class BhtModel extends Model {
+        private final BHTableModel table;
+        private final int entries, history;
+        private final boolean initial;
+        private long branches, mispredictions;
+
+        BhtModel(int entries, int history, boolean initial) {
+            this.table = new BHTableModel(entries, history, initial);
+            this.entries = entries;
+            this.history = history;
+            this.initial = initial;
+        }
+
+        void branch(int pc, boolean taken) {
+            int index = table.getIdxForAddress(pc & 0x7FFFFFFF);
+            if (table.getPredictionAtIdx(index) != taken) mispredictions++;
+            branches++;
+            table.updatePredictionAtIdx(index, taken);
+        }
+
+        Map<String, Object> result() {
+            Map<String, Object> row = new LinkedHashMap<>();
+            row.put("model", "bht");
+            row.put("entries", entries);
+            row.put("history", history);
+            row.put("initial", initial ? "t" : "nt");
+            row.put("events", branches);
+            row.put("misses", mispredictions);
+            row.put("rate", branches == 0 ? 0.0 : (branches - mispredictions) / (double) branches);
+            return row;
+        }
+    }
+
+    /**
+     * Builds the cache configurations of a grid such as "1K,4K:16,64:1,2:lru,plru", each as
+     * both an instruction and a data cache.  Combinations too small to hold one set are skipped.
+     */
+    static void addCaches(List<Model> models, String grid) {
+        String[] fields = grid.split(":");
+        if (fields.length < 3 || fields.length > 4) {
+            throw new IllegalArgumentException("cache grid must be sizes:blocks:ways[:policies]");
+        }
+        String[] policies = fields.length == 4 ? fields[3].split(",") : new String[]{"lru"};
+        for (boolean instructions : new boolean[]{true, false}) {
+            for (String size : fields[0].split(",")) {
+                for (String block : fields[1].split(",")) {
+                    for (String ways : fields[2].split(",")) {
+                        for (String policy : policies) {
+                            int bytes = bytes(size), blockBytes = bytes(block), n = Integer.parseInt(ways.trim());
+                            if ((long) blockBytes * n > bytes) continue;
+                            models.add(new CacheModel(instructions, bytes, blockBytes, n,
+                                    Cache.Replacement.valueOf(policy.trim().toUpperCase(Locale.ROOT))));
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    static void addTables(List<Model> models, String grid) {
+        String[] fields = grid.split(":");
+        if (fields.length < 2 || fields.length > 3) {
+            throw new IllegalArgumentException("bht grid must be entries:history[:initial]");
+        }
+        String[] initials = fields.length == 3 ? fields[2].split(",") : new String[]{"nt"};
+        for (String entries : fields[0].split(",")) {
+            for (String history : fields[1].split(",")) {
+                for (String initial : initials) {
+                    String taken = initial.trim().toLowerCase(Locale.ROOT);
+                    if (!taken.equals("t") && !taken.equals("nt")) {
+                        throw new IllegalArgumentException("initial prediction must be t or nt");
+                    }
+                    models.add(new BhtModel(Integer.parseInt(entries.trim()), Integer.parseInt(history.trim()),
+                            taken.equals("t")));
+                }
+            }
+        }
+    }
+
+    private static int bytes(String text) {
+        text = text.trim().toUpperCase(Locale.ROOT);
+        if (text.endsWith("K")) return Integer.parseInt(text.substring(0, text.length() - 1)) << 10;
+        if (text.endsWith("M")) return Integer.parseInt(text.substring(0, text.length() - 1)) << 20;
+        return Integer.parseInt(text);
+    }
+
+    /**
+     * Feeds every record of a trace to the given models.  Branch outcomes come from the
+     * following record, so a branch that is the last instruction of the trace is not counted.
+     */
+    static void replay(File file, List<Model> models) throws IOException {
+        Model[] group = models.toArray(new Model[0]);
+        try (TraceReader trace = new TraceReader(file)) {
+            int branchPc = 0, branchLength = 4;
+            boolean branch = false;
+            while (trace.next()) {
+                int pc = trace.getProgramCounter();
+                if (branch) {
+                    boolean taken = pc != branchPc + branchLength;
+                    for (Model model : group) model.branch(branchPc, taken);
+                }
+                int length = trace.getInstructionLength();
+                for (Model model : group) model.instruction(pc, length);
+                if (trace.isRead() || trace.isWrite()) {
+                    boolean write = trace.isWrite();
+                    int address = trace.getAddress();
+                    for (Model model : group) model.data(write, address);
+                }
+                branch = (trace.getInstruction() & 0x7F) == 0x63;
+                branchPc = pc;
+                branchLength = length;
+            }
+        }
+    }
+
+    /**
+     * Evaluates the models in parallel, each thread replaying the trace once for its share.
+     */
+    static void evaluate(File trace, List<Model> models, int threads) throws IOException, InterruptedException {
+        threads = Math.max(1, Math.min(threads, models.size()));
+        List<List<Model>> groups = new ArrayList<>();
+        for (int i = 0; i < threads; i++) groups.add(new ArrayList<>());
+        for (int i = 0; i < models.size(); i++) groups.get(i % threads).add(models.get(i));
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<?>> done = new ArrayList<>();
+            for (List<Model> group : groups) {
+                done.add(pool.submit(() -> {
+                    replay(trace, group);
+                    return null;
+                }));
+            }
+            for (Future<?> future : done) {
+                try {
+                    future.get();
+                } catch (java.util.concurrent.ExecutionException e) {
+                    if (e.getCause() instanceof IOException) throw (IOException) e.getCause();
+                    throw new RuntimeException(e.getCause());
+                }
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    static void writeCsv(PrintStream out, List<Model> models) {
+        out.println(String.join(",", COLUMNS));
+        for (Model model : models) {
+            Map<String, Object> row = model.result();
+            StringJoiner line = new StringJoiner(",");
+            for (String column : COLUMNS) {
+                Object value = row.get(column);
+                line.add(value == null ? "" : format(value));
+            }
+            out.println(line);
+        }
+    }
+
+    static void writeJson(PrintStream out, List<Model> models) {
+        out.println("[");
+        for (int i = 0; i < models.size(); i++) {
+            StringJoiner object = new StringJoiner(", ", "  {", i < models.size() - 1 ? "}," : "}");
+            for (Map.Entry<String, Object> field : models.get(i).result().entrySet()) {
+                Object value = field.getValue();
+                object.add("\"" + field.getKey() + "\": " + (value instanceof String ? "\"" + value + "\"" : format(value)));
+            }
+            out.println(object);
+        }
+        out.println("]");
+    }
+
+    private static String format(Object value) {
+        return value instanceof Double ? String.format(Locale.ROOT, "%.6f", (Double) value) : value.toString();
+    }
+
+    public static void main(String[] args) {
+        String cacheGrid = null, bhtGrid = null, traceName = null, output = null;
+        boolean json = false;
+        int threads = Runtime.getRuntime().availableProcessors(), steps = -1;
+        ArrayList<String> files = new ArrayList<>();
+        try {
+            for (int i = 0; i < args.length; i++) {
+                switch (args[i]) {
+                    case "-cache": cacheGrid = args[++i]; break;
+                    case "-bht": bhtGrid = args[++i]; break;
+                    case "-trace": traceName = args[++i]; break;
+                    case "-steps": steps = Integer.parseInt(args[++i]); break;
+                    case "-threads": threads = Integer.parseInt(args[++i]); break;
+                    case "-o": output = args[++i]; break;
+                    case "-json": json = true; break;
+                    default: files.add(args[i]);
+                }
+            }
+            if (files.isEmpty() == (traceName == null)) throw new IllegalArgumentException();
+        } catch (RuntimeException e) {
+            System.err.println("Usage: java rars.simulator.Sweep [-cache <sizes>:<blocks>:<ways>[:<policies>]]" +
+                    " [-bht <entries>:<history>[:<initial>]] [-steps <n>] [-threads <n>] [-o <file>] [-json]" +
+                    " <program.s>... | -trace <file>");
+            System.exit(1);
+        }
+
+        List<Model> models = new ArrayList<>();
+        try {
+            if (cacheGrid == null && bhtGrid == null) {
+                cacheGrid = DEFAULT_CACHE;
+                bhtGrid = DEFAULT_BHT;
+            }
+            if (cacheGrid != null) addCaches(models, cacheGrid);
+            if (bhtGrid != null) addTables(models, bhtGrid);
+        } catch (IllegalArgumentException e) {
+            System.err.println("Invalid grid: " + e.getMessage());
+            System.exit(1);
+        }
+
+        File trace = null;
+        try {
+            if (traceName != null) {
+                trace = new File(traceName);
+            } else {
+                trace = File.createTempFile("rars", ".trace");
+                trace.deleteOnExit();
+                record(files, steps, trace);
+            }
+            evaluate(trace, models, threads);
+            if (output == null) {
+                if (json) writeJson(System.out, models); else writeCsv(System.out, models);
+            } else {
+                try (PrintStream out = new PrintStream(new FileOutputStream(output), false, "UTF-8")) {
+                    if (output.endsWith(".json")) writeJson(out, models); else writeCsv(out, models);
+                }
+            }
+        } catch (AssemblyException e) {
+            System.err.println(e.errors().generateErrorAndWarningReport());
+            System.exit(1);
+        } catch (SimulationException e) {
+            System.err.println(e.error().generateReport());
+            System.exit(1);
+        } catch (IOException | InterruptedException e) {
+            System.err.println("Sweep failed: " + e.getMessage());
+            System.exit(1);
+        } finally {
+            if (trace != null && traceName == null) trace.delete();
+        }
+    }
+
+    // Runs the program once, recording its trace
+    private static void record(ArrayList<String> files, int steps, File trace)
+            throws AssemblyException, SimulationException, IOException {
+        Options options = new Options();
+        options.maxSteps = steps;
+        Program program = new Program(options);
+        program.assemble(files, files.get(0));
+        program.setup(null, null);
+        TraceRecorder recorder = TraceRecorder.toFile(trace);
+        TraceRecorder.setActive(recorder);
+        try {
+            while (program.simulate() == Simulator.Reason.BREAKPOINT) {
+                // keep going; ebreak has no meaning here
+            }
+        } finally {
+            recorder.close();
+        }
+    }
+}
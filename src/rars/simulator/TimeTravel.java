@@ -0,0 +1,532 @@
+package rars.simulator;
+
+import rars.Globals;
+import rars.SimulationException;
+import rars.riscv.hardware.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Observable;
+import java.util.Observer;
+
+/**
+ * Reverse execution through periodic checkpoints and deterministic replay.
+ * <p>
+ * Every {@code interval} instructions the machine state (registers, program counter and
+ * memory) is captured.  Memory is shared copy-on-write with the running program, so a
+ * checkpoint only costs the blocks that are written after it.  Everything the program sees
+ * that does not follow from that state -- console and file input, dialogs, random numbers,
+ * the clock, interrupts and MMIO writes made by tools -- is recorded as it happens.
+ * <p>
+ * To go back to instruction <i>n</i> the nearest checkpoint at or before <i>n</i> is restored
+ * and the program is executed forward again, consuming the recorded inputs instead of live
+ * ones.  The cost of any jump is therefore bounded by the checkpoint interval, not by the
+ * distance travelled.  While already recorded history is being replayed, output is suppressed
+ * and the program sees exactly what it saw the first time.  Once execution passes the furthest
+ * point reached so far it is live again and recording resumes.
+ * <p>
+ * Files on the host are not rewound; replay relies on the recorded results of file operations
+ * instead.  If the machine state is changed by hand while in the past, call
+ * {@link #discardFuture()} so that the recorded future is not replayed against it.
+ *
+ * @see BackStepper
+ */
+public class TimeTravel {
+    private static volatile TimeTravel active = null;
+
+    // Once this many checkpoints exist the interval is doubled and every other one dropped,
+    // so memory use stays bounded for long runs.
+    private static final int MAX_CHECKPOINTS = 256;
+
+    private static final int TAKEN_EXTERNAL = 1;
+    private static final int TAKEN_TIMER = 2;
+    private static final int PENDING = 3;
+
+    private int interval;
+    private final ArrayList<Checkpoint> checkpoints = new ArrayList<>();
+
+    // Instructions executed so far, and the furthest point execution has ever reached.
+    private long executed, frontier;
+    private boolean replaying, seeking;
+    private Thread simulatorThread;
+
+    // Values read from outside the machine, in the order the program consumed them.
+    private final ArrayList<Object> inputs = new ArrayList<>();
+    private int inputCursor;
+
+    // Asynchronous events, keyed by the instruction count at which the simulator saw them.
+    private final EventChannel clock = new EventChannel();
+    private final EventChannel interrupts = new EventChannel();
+    private final EventChannel mmio = new EventChannel();
+
+    // Replayed (or last recorded) state of the asynchronous sources.
+    private long time;
+    private int pendingBits;
+    private boolean injectedExternal, injectedTimer;
+    private int injectedExternalValue, injectedTimerValue;
+
+    // Reverse-continue scan state
+    private int[] scanBreakpoints;
+    private long scanLimit, lastHit;
+
+    /**
+     * Create a time-travel engine that checkpoints every {@code interval} instructions.
+     * It has no effect until made active with {@link #setActive(TimeTravel)}.
+     *
+     * @param interval number of instructions between checkpoints; must be positive
+     */
+    public TimeTravel(int interval) {
+        if (interval <= 0) {
+            throw new IllegalArgumentException("checkpoint interval must be positive");
+        }
+        this.interval = interval;
+    }
+
+    /**
+     * @return the engine recording the current simulation, or null if time travel is off
+     */
+    public static TimeTravel getActive() {
+        return active;
+    }
+
+    /**
+     * Make an engine the one recording subsequent simulation.  Pass null to turn time travel off.
+     *
+     * @param history the engine to use; it should be fresh, as execution starts at instruction 0
+     */
+    public static void setActive(TimeTravel history) {
+        active = history;
+    }
+
+    /**
+     * Determine whether the instruction currently executing is being replayed from recorded
+     * history.  Syscalls use this to skip side effects that already happened, such as output.
+     *
+     * @return true if replaying, false if live or time travel is off
+     */
+    public static boolean isReplaying() {
+        TimeTravel history = active;
+        return history != null && history.replaying && Thread.currentThread() == history.simulatorThread;
+    }
+
+    /**
+     * A value that comes from outside the simulated machine.
+     */
+    public interface Input<T, E extends Exception> {
+        T read() throws E;
+    }
+
+    /**
+     * Read a value from outside the machine through the active engine.  While live the value
+     * is read from {@code source} and recorded; while replaying the recorded value is returned
+     * and {@code source} is not consulted.  Without an active engine this just reads the source.
+     *
+     * @param source where the value comes from when live
+     * @return the value the program should see
+     */
+    public static <T, E extends Exception> T input(Input<T, E> source) throws E {
+        TimeTravel history = active;
+        if (history == null || Thread.currentThread() != history.simulatorThread) {
+            return source.read();
+        }
+        return history.record(source);
+    }
+
+    /**
+     * Called by memory when a memory-mapped I/O location is written.  Writes made by other
+     * threads (tools) are recorded so they can be repeated at the same point on replay.
+     *
+     * @param address the address written
+     * @param value   the value written
+     * @param length  number of bytes written, or 0 for a raw word
+     */
+    public static void memoryMappedWrite(int address, int value, int length) {
+        TimeTravel history = active;
+        if (history != null && history.simulatorThread != null && Thread.currentThread() != history.simulatorThread
+                && history.executed >= history.frontier) {
+            history.mmio.add(history.executed, address, length, value);
+        }
+    }
+
+    /**
+     * @return the number of instructions executed so far
+     */
+    public long getPosition() {
+        return executed;
+    }
+
+    /**
+     * @return the furthest instruction count execution has reached
+     */
+    public long getFrontier() {
+        return frontier;
+    }
+
+    /**
+     * @return the number of instructions between checkpoints; grows as history gets long
+     */
+    public int getInterval() {
+        return interval;
+    }
+
+    /**
+     * Move execution to just after the given number of instructions have executed.  Going
+     * back restores the nearest earlier checkpoint and replays from there; going forward
+     * simply continues.  Seeking past the end of the program stops at the end.
+     *
+     * @param target instruction count to move to
+     * @return the reason execution stopped; MAX_STEPS if the target was reached
+     */
+    public Simulator.Reason seek(long target) {
+        target = Math.max(target, 0);
+        if (target < executed || (target > executed && checkpointBefore(target).executed > executed)) {
+            restore(checkpointBefore(target));
+        }
+        return runTo(target);
+    }
+
+    /**
+     * Run backward to the most recent point at which the program counter was at one of the
+     * breakpoints, or just after one of the watched words was written.  If neither happened
+     * execution goes back to the beginning.
+     *
+     * @param breakPoints instruction addresses to stop at, or null
+     * @param watchPoints word addresses whose writes stop execution, or null
+     * @return BREAKPOINT if a hit was found, otherwise the reason seeking to the start stopped
+     */
+    public Simulator.Reason reverseContinue(int[] breakPoints, int[] watchPoints) {
+        long origin = executed;
+        long target = -1;
+        Observer watcher = new TransientNoticeObserver() {
+            public void update(Observable o, Object notice) {
+                if (((AccessNotice) notice).getAccessType() == AccessNotice.WRITE && executed < scanLimit) {
+                    lastHit = executed;
+                }
+            }
+        };
+        if (breakPoints != null && breakPoints.length > 0) {
+            scanBreakpoints = breakPoints.clone();
+            Arrays.sort(scanBreakpoints);
+        }
+        scanLimit = origin;
+        try {
+            if (watchPoints != null) {
+                for (int address : watchPoints) {
+                    Globals.memory.addObserver(watcher, address);
+                }
+            }
+            for (int i = indexBefore(origin - 1); i >= 0 && target < 0; i--) {
+                long end = (i + 1 < checkpoints.size()) ? Math.min(checkpoints.get(i + 1).executed, origin) : origin;
+                lastHit = -1;
+                restore(checkpoints.get(i));
+                runTo(end);
+                target = lastHit;
+            }
+        } catch (AddressErrorException aee) {
+            // misaligned watch point; nothing sensible to scan for
+        } finally {
+            Globals.memory.deleteObserver(watcher);
+            scanBreakpoints = null;
+        }
+        if (target < 0) {
+            seek(0);
+            return Simulator.Reason.MAX_STEPS;
+        }
+        seek(target);
+        return Simulator.Reason.BREAKPOINT;
+    }
+
+    /**
+     * Forget everything recorded after the current position.  Execution from here on is live.
+     */
+    public void discardFuture() {
+        frontier = executed;
+        replaying = false;
+        inputs.subList(inputCursor, inputs.size()).clear();
+        clock.truncate();
+        interrupts.truncate();
+        mmio.truncate();
+        while (checkpoints.size() > 0 && checkpoints.get(checkpoints.size() - 1).executed > executed) {
+            checkpoints.remove(checkpoints.size() - 1);
+        }
+    }
+
+    /*  ******************  Hooks called by the simulator thread  ******************/
+
+    void attach() {
+        simulatorThread = Thread.currentThread();
+    }
+
+    boolean isSeeking() {
+        return seeking;
+    }
+
+    /**
+     * @return true if the next instruction to execute has been executed before
+     */
+    boolean replayingNext() {
+        return executed < frontier;
+    }
+
+    // Called at the top of each simulation step, before interrupts are considered.
+    void boundary(int pc) {
+        if (checkpoints.isEmpty() || executed >= checkpoints.get(checkpoints.size() - 1).executed + interval) {
+            takeCheckpoint(pc);
+        }
+        while (interrupts.cursor < interrupts.size && interrupts.keys[interrupts.cursor] <= executed) {
+            int i = interrupts.cursor++;
+            switch (interrupts.a[i]) {
+                case TAKEN_EXTERNAL:
+                    injectedExternal = true;
+                    injectedExternalValue = interrupts.c[i];
+                    break;
+                case TAKEN_TIMER:
+                    injectedTimer = true;
+                    injectedTimerValue = interrupts.c[i];
+                    break;
+                default:
+                    pendingBits = interrupts.c[i];
+            }
+        }
+        while (mmio.cursor < mmio.size && mmio.keys[mmio.cursor] <= executed) {
+            int i = mmio.cursor++;
+            try {
+                if (mmio.b[i] == 0) {
+                    Globals.memory.setRawWord(mmio.a[i], mmio.c[i]);
+                } else {
+                    Globals.memory.set(mmio.a[i], mmio.c[i], mmio.b[i]);
+                }
+            } catch (AddressErrorException aee) {
+                // It was a valid MMIO address when it was recorded
+            }
+        }
+        if (scanBreakpoints != null && executed < scanLimit && Arrays.binarySearch(scanBreakpoints, pc) >= 0) {
+            lastHit = executed;
+        }
+    }
+
+    // Called once per step, just before the instruction is fetched and executed.
+    void executing() {
+        executed++;
+        replaying = executed <= frontier;
+        if (!replaying) {
+            frontier = executed;
+        }
+    }
+
+    long time() {
+        if (replaying) {
+            while (clock.cursor < clock.size && clock.keys[clock.cursor] <= executed) {
+                time = clock.values[clock.cursor++];
+            }
+        } else {
+            long now = System.currentTimeMillis();
+            if (now != time) {
+                clock.add(executed, now);
+                time = now;
+            }
+        }
+        return time;
+    }
+
+    boolean externalPending() {
+        return injectedExternal || (pendingBits & ControlAndStatusRegisterFile.EXTERNAL_INTERRUPT) != 0;
+    }
+
+    boolean timerPending() {
+        return injectedTimer || (pendingBits & ControlAndStatusRegisterFile.TIMER_INTERRUPT) != 0;
+    }
+
+    int claimExternal() {
+        injectedExternal = false;
+        pendingBits &= ~ControlAndStatusRegisterFile.EXTERNAL_INTERRUPT;
+        return injectedExternalValue;
+    }
+
+    int claimTimer() {
+        injectedTimer = false;
+        pendingBits &= ~ControlAndStatusRegisterFile.TIMER_INTERRUPT;
+        return injectedTimerValue;
+    }
+
+    void recordExternal(int value) {
+        interrupts.add(executed, TAKEN_EXTERNAL, 0, value);
+    }
+
+    void recordTimer(int value) {
+        interrupts.add(executed, TAKEN_TIMER, 0, value);
+    }
+
+    void recordPending(int bits) {
+        if (bits != pendingBits) {
+            pendingBits = bits;
+            interrupts.add(executed, PENDING, 0, bits);
+        }
+    }
+
+    /*  ******************************  Internals  ******************************/
+
+    @SuppressWarnings("unchecked")
+    private <T, E extends Exception> T record(Input<T, E> source) throws E {
+        if (replaying) {
+            if (inputCursor < inputs.size()) {
+                return (T) inputs.get(inputCursor++);
+            }
+            // The recording has run out, so this execution is no longer the recorded one.
+            discardFuture();
+        }
+        T value = source.read();
+        inputs.add(value);
+        inputCursor++;
+        return value;
+    }
+
+    private Simulator.Reason runTo(long target) {
+        Simulator.Reason reason = Simulator.Reason.MAX_STEPS;
+        seeking = true;
+        try {
+            while (executed < target) {
+                int steps = (int) Math.min(target - executed, Integer.MAX_VALUE);
+                reason = Simulator.getInstance().simulate(RegisterFile.getProgramCounter(), steps, null);
+                if (reason != Simulator.Reason.MAX_STEPS && reason != Simulator.Reason.BREAKPOINT) {
+                    break;
+                }
+            }
+        } catch (SimulationException se) {
+            reason = Simulator.Reason.EXCEPTION;
+        } finally {
+            seeking = false;
+        }
+        return reason;
+    }
+
+    private int indexBefore(long position) {
+        int i = checkpoints.size() - 1;
+        while (i > 0 && checkpoints.get(i).executed > position) {
+            i--;
+        }
+        return i;
+    }
+
+    private Checkpoint checkpointBefore(long position) {
+        return checkpoints.get(indexBefore(position));
+    }
+
+    private void takeCheckpoint(int pc) {
+        if (checkpoints.size() >= MAX_CHECKPOINTS) {
+            for (int i = checkpoints.size() - 1; i > 0; i--) {
+                if (i % 2 == 1) checkpoints.remove(i);
+            }
+            interval *= 2;
+        }
+        checkpoints.add(new Checkpoint(pc));
+    }
+
+    private void restore(Checkpoint checkpoint) {
+        Globals.memoryAndRegistersLock.lock();
+        try {
+            Globals.memory.restore(checkpoint.memory);
+            restoreValues(RegisterFile.getRegisters(), checkpoint.registers);
+            restoreValues(FloatingPointRegisterFile.getRegisters(), checkpoint.floatingPoint);
+            restoreValues(ControlAndStatusRegisterFile.getRegisters(), checkpoint.controlAndStatus);
+            RegisterFile.getProgramCounterRegister().setValueBackdoor(checkpoint.pc);
+        } finally {
+            Globals.memoryAndRegistersLock.unlock();
+        }
+        executed = checkpoint.executed;
+        replaying = executed < frontier;
+        inputCursor = checkpoint.inputCursor;
+        clock.cursor = checkpoint.clockCursor;
+        interrupts.cursor = checkpoint.interruptCursor;
+        mmio.cursor = checkpoint.mmioCursor;
+        time = checkpoint.time;
+        pendingBits = checkpoint.pendingBits;
+        injectedExternal = injectedTimer = false;
+        // Undo records describe the future we just left.
+        if (Globals.program != null && Globals.getSettings().getBackSteppingEnabled()) {
+            Globals.program.getBackStepper().clear();
+        }
+    }
+
+    private static long[] values(Register[] registers) {
+        long[] values = new long[registers.length];
+        for (int i = 0; i < registers.length; i++) {
+            values[i] = registers[i].getValueNoNotify();
+        }
+        return values;
+    }
+
+    private static void restoreValues(Register[] registers, long[] values) {
+        for (int i = 0; i < registers.length; i++) {
+            // Linked registers are views of another register, which is restored itself
+            if (!(registers[i] instanceof LinkedRegister)) {
+                registers[i].setValueBackdoor(values[i]);
+            }
+        }
+    }
+
+    // Machine state after a given number of instructions, plus where each recording stood.
+    private class Checkpoint {
+        private final long executed;
+        private final int pc;
+        private final long[] registers, floatingPoint, controlAndStatus;
+        private final Memory.Checkpoint memory;
+        private final int inputCursor, clockCursor, interruptCursor, mmioCursor;
+        private final long time;
+        private final int pendingBits;
+
+        private Checkpoint(int pc) {
+            this.executed = TimeTravel.this.executed;
+            this.pc = pc;
+            this.registers = values(RegisterFile.getRegisters());
+            this.floatingPoint = values(FloatingPointRegisterFile.getRegisters());
+            this.controlAndStatus = values(ControlAndStatusRegisterFile.getRegisters());
+            this.memory = Globals.memory.checkpoint();
+            this.inputCursor = TimeTravel.this.inputCursor;
+            this.clockCursor = clock.cursor;
+            this.interruptCursor = interrupts.cursor;
+            this.mmioCursor = mmio.cursor;
+            this.time = TimeTravel.this.time;
+            this.pendingBits = TimeTravel.this.pendingBits;
+        }
+    }
+
+    // Append-only list of small primitive records with a replay cursor.
+    private static class EventChannel {
+        private long[] keys = new long[16];
+        private int[] a = new int[16], b = new int[16], c = new int[16];
+        private long[] values = new long[16];
+        private int size, cursor;
+
+        private void add(long key, long value) {
+            grow();
+            keys[size] = key;
+            values[size] = value;
+            cursor = ++size;
+        }
+
+        private void add(long key, int a, int b, int c) {
+            grow();
+            keys[size] = key;
+            this.a[size] = a;
+            this.b[size] = b;
+            this.c[size] = c;
+            cursor = ++size;
+        }
+
+        private void truncate() {
+            size = cursor;
+        }
+
+        private void grow() {
+            if (size == keys.length) {
+                int length = size * 2;
+                keys = Arrays.copyOf(keys, length);
+                values = Arrays.copyOf(values, length);
+                a = Arrays.copyOf(a, length);
+                b = Arrays.copyOf(b, length);
+                c = Arrays.copyOf(c, length);
+            }
+        }
+    }
+}
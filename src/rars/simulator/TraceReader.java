@@ -0,0 +1,325 @@
+package rars.simulator;
+
+import rars.util.Binary;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Reads traces written by {@link TraceRecorder}, one record at a time.
+ * <p>
+ * The reader is its own record: after {@link #next()} returns true the getters describe the
+ * current instruction, so a trace of any length can be scanned without allocating.  This is
+ * the way to feed recorded traces to cache or branch prediction models offline:
+ * <pre>
+ * try (TraceReader trace = new TraceReader(file)) {
+ *     while (trace.next()) {
+ *         if (trace.isRead()) cache.read(trace.getAddress(), trace.getLength());
+ *     }
+ * }
+ * </pre>
+ * Run as a program it converts a trace to text, optionally filtered by instruction address
+ * or to only the instructions that access memory, or writes the filtered records as a new
+ * binary trace.
+ */
+public class TraceReader implements Closeable {
+    private final InputStream in;
+    private final byte[] bytes = new byte[TraceRecorder.RECORD_BYTES];
+    private final ByteBuffer record = ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN);
+    private final boolean rv64;
+    private long remaining; // records left according to the header, -1 to read until the end
+    private long position = -1;
+
+    /**
+     * Opens a trace file, compressed or not.
+     *
+     * @param file the trace
+     * @throws IOException if the file cannot be read or is not a trace
+     */
+    public TraceReader(File file) throws IOException {
+        this(new FileInputStream(file));
+    }
+
+    /**
+     * Reads a trace from a stream, which is closed when the reader is.  Compressed traces are
+     * recognised and decompressed.
+     *
+     * @param stream the trace
+     * @throws IOException if the stream cannot be read or is not a trace
+     */
+    public TraceReader(InputStream stream) throws IOException {
+        BufferedInputStream buffered = new BufferedInputStream(stream, 64 * 1024);
+        buffered.mark(2);
+        boolean compressed = buffered.read() == 0x1f && buffered.read() == 0x8b;
+        buffered.reset();
+        in = compressed ? new BufferedInputStream(new GZIPInputStream(buffered, 64 * 1024), 64 * 1024) : buffered;
+
+        byte[] header = new byte[TraceRecorder.HEADER_BYTES];
+        if (!readFully(header) || !Arrays.equals(Arrays.copyOf(header, TraceRecorder.MAGIC.length), TraceRecorder.MAGIC)) {
+            in.close();
+            throw new IOException("not an execution trace");
+        }
+        ByteBuffer fields = ByteBuffer.wrap(header).order(ByteOrder.LITTLE_ENDIAN);
+        if (fields.getInt(8) != TraceRecorder.RECORD_BYTES) {
+            in.close();
+            throw new IOException("unsupported trace record size " + fields.getInt(8));
+        }
+        rv64 = (fields.getInt(12) & TraceRecorder.RV64) != 0;
+        remaining = fields.getLong(16);
+    }
+
+    /**
+     * Moves to the next record.
+     *
+     * @return false at the end of the trace
+     * @throws IOException if reading fails or the trace is cut short
+     */
+    public boolean next() throws IOException {
+        if (remaining == 0 || !readFully(bytes)) {
+            return false;
+        }
+        if (remaining > 0) remaining--;
+        position++;
+        return true;
+    }
+
+    /**
+     * @return true if the trace was recorded in 64 bit mode
+     */
+    public boolean isRV64() {
+        return rv64;
+    }
+
+    /**
+     * @return the index of the current record, counting from 0
+     */
+    public long getPosition() {
+        return position;
+    }
+
+    /**
+     * @return address of the instruction
+     */
+    public int getProgramCounter() {
+        return record.getInt(0);
+    }
+
+    /**
+     * @return the 32 bit instruction word
+     */
+    public int getInstruction() {
+        return record.getInt(4);
+    }
+
+    /**
+     * @return the length in bytes of the instruction, 2 if it was compressed
+     */
+    public int getInstructionLength() {
+        return bytes[11] == 0 ? 4 : bytes[11]; // traces from before lengths were recorded
+    }
+
+    /**
+     * @return the TraceRecorder flags set for this instruction
+     */
+    public int getFlags() {
+        return bytes[8];
+    }
+
+    /**
+     * @return true if the instruction read memory
+     */
+    public boolean isRead() {
+        return (bytes[8] & TraceRecorder.READ) != 0;
+    }
+
+    /**
+     * @return true if the instruction wrote memory
+     */
+    public boolean isWrite() {
+        return (bytes[8] & TraceRecorder.WRITE) != 0;
+    }
+
+    /**
+     * @return true if the instruction made more memory accesses than the one recorded
+     */
+    public boolean hasMoreAccesses() {
+        return (bytes[8] & TraceRecorder.MORE_ACCESSES) != 0;
+    }
+
+    /**
+     * @return the length in bytes of the memory access, 0 if none
+     */
+    public int getLength() {
+        return bytes[9];
+    }
+
+    /**
+     * @return the memory address accessed
+     */
+    public int getAddress() {
+        return record.getInt(12);
+    }
+
+    /**
+     * @return the value read from or written to memory
+     */
+    public int getValue() {
+        return record.getInt(16);
+    }
+
+    /**
+     * @return true if the instruction writes an integer or floating point register
+     */
+    public boolean hasRegisterWrite() {
+        return (bytes[8] & (TraceRecorder.INT_REGISTER | TraceRecorder.FP_REGISTER)) != 0;
+    }
+
+    /**
+     * @return true if the register written is a floating point register
+     */
+    public boolean isFloatingPoint() {
+        return (bytes[8] & TraceRecorder.FP_REGISTER) != 0;
+    }
+
+    /**
+     * @return the number of the register written
+     */
+    public int getRegister() {
+        return bytes[10];
+    }
+
+    /**
+     * @return the value written to the register
+     */
+    public long getRegisterValue() {
+        return record.getLong(24);
+    }
+
+    /**
+     * Writes the current record unchanged, for filtering traces.
+     *
+     * @param out where to write
+     * @throws IOException if writing fails
+     */
+    public void writeRecord(OutputStream out) throws IOException {
+        out.write(bytes);
+    }
+
+    /**
+     * @return the current record as a line of text
+     */
+    public String toString() {
+        StringBuilder line = new StringBuilder();
+        line.append(Binary.intToHexString(getProgramCounter())).append(' ').append(Binary.intToHexString(getInstruction()));
+        if (isRead() || isWrite()) {
+            line.append(isRead() ? "  read " : "  write ").append(getLength())
+                    .append(" @ ").append(Binary.intToHexString(getAddress()))
+                    .append(" = ").append(Binary.intToHexString(getValue()));
+            if (hasMoreAccesses()) line.append(" ...");
+        }
+        if (hasRegisterWrite()) {
+            line.append(isFloatingPoint() ? "  f" : "  x").append(getRegister()).append(" = ")
+                    .append(rv64 || isFloatingPoint() ? Binary.longToHexString(getRegisterValue())
+                            : Binary.intToHexString((int) getRegisterValue()));
+        }
+        return line.toString();
+    }
+
+    public void close() throws IOException {
+        in.close();
+    }
+
+    private boolean readFully(byte[] buffer) throws IOException {
+        int n = 0;
+        while (n < buffer.length) {
+            int read = in.read(buffer, n, buffer.length - n);
+            if (read < 0) {
+                if (n == 0) return false;
+                throw new EOFException("trace ends in the middle of a record");
+            }
+            n += read;
+        }
+        return true;
+    }
+
+    /**
+     * Converts or filters a trace.  Usage:
+     * <pre>
+     * java rars.simulator.TraceReader [-pc &lt;low&gt;-&lt;high&gt;] [-mem] [-n &lt;count&gt;] [-o &lt;file&gt;] &lt;trace&gt;
+     * </pre>
+     * -pc keeps instructions in the address range, -mem keeps only instructions that access
+     * memory, -n stops after that many records are written and -o writes a binary trace
+     * (compressed if the name ends in .gz) instead of text to standard output.
+     */
+    public static void main(String[] args) {
+        int low = 0, high = -1;
+        boolean memoryOnly = false;
+        long limit = Long.MAX_VALUE;
+        String output = null, input = null;
+        try {
+            for (int i = 0; i < args.length; i++) {
+                switch (args[i]) {
+                    case "-pc":
+                        String[] range = args[++i].split("-");
+                        low = Binary.stringToInt(range[0]);
+                        high = Binary.stringToInt(range[range.length - 1]);
+                        break;
+                    case "-mem":
+                        memoryOnly = true;
+                        break;
+                    case "-n":
+                        limit = Long.parseLong(args[++i]);
+                        break;
+                    case "-o":
+                        output = args[++i];
+                        break;
+                    default:
+                        input = args[i];
+                }
+            }
+        } catch (RuntimeException e) {
+            input = null;
+        }
+        if (input == null) {
+            System.err.println("Usage: java rars.simulator.TraceReader [-pc <low>-<high>] [-mem] [-n <count>] [-o <file>] <trace>");
+            System.exit(1);
+        }
+        try (TraceReader trace = new TraceReader(new File(input))) {
+            OutputStream selected = null;
+            PrintStream text = null;
+            if (output != null) {
+                selected = new BufferedOutputStream(new FileOutputStream(output), 64 * 1024);
+                if (output.endsWith(".gz")) {
+                    selected = new GZIPOutputStream(selected, 64 * 1024);
+                }
+                selected.write(TraceRecorder.header(-1, trace.rv64).array());
+            } else {
+                text = new PrintStream(new BufferedOutputStream(System.out, 64 * 1024), false);
+            }
+            long written = 0;
+            while (written < limit && trace.next()) {
+                int pc = trace.getProgramCounter();
+                if (Integer.compareUnsigned(pc, low) < 0 || Integer.compareUnsigned(pc, high) > 0) continue;
+                if (memoryOnly && !trace.isRead() && !trace.isWrite()) continue;
+                if (selected != null) {
+                    trace.writeRecord(selected);
+                } else {
+                    text.println(trace);
+                }
+                written++;
+            }
+            if (selected != null) {
+                selected.close();
+            } else {
+                text.flush();
+            }
+        } catch (IOException e) {
+            System.err.println(input + ": " + e.getMessage());
+            System.exit(1);
+        }
+    }
+}
@@ -0,0 +1,331 @@
+package rars.simulator;
+
+import rars.Globals;
+import rars.ProgramStatement;
+import rars.riscv.hardware.*;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.Observable;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Records every executed instruction as a fixed-width binary record.
+ * <p>
+ * A trace starts with a {@value #HEADER_BYTES} byte header (the magic string {@code RVTRACE1},
+ * the record size, flags and the number of records, or -1 if that was not known when the header
+ * was written) followed by {@value #RECORD_BYTES} byte little-endian records:
+ * <pre>
+ *  0  int   address of the instruction
+ *  4  int   instruction word
+ *  8  byte  flags: READ, WRITE, INT_REGISTER, FP_REGISTER, MORE_ACCESSES
+ *  9  byte  length in bytes of the memory access, at most 255
+ * 10  byte  destination register number
+ * 11  byte  length in bytes of the instruction, 2 if compressed
+ * 12  int   memory address accessed
+ * 16  int   memory value read or written
+ * 20  int   reserved
+ * 24  long  value written to the destination register
+ * </pre>
+ * The instruction word of a compressed instruction is its 32 bit expansion.
+ * Only the first data access of an instruction is kept; system calls that touch several
+ * locations set MORE_ACCESSES.  The instruction that ends the program is not recorded.
+ * <p>
+ * Records go to a memory-mapped file, to a (possibly gzip-compressed) stream, or to an
+ * in-memory ring buffer that keeps only the most recent instructions.  Nothing is formatted
+ * while the program runs; {@link TraceReader} turns traces into text or filters them later.
+ */
+public class TraceRecorder implements Closeable {
+    public static final int HEADER_BYTES = 32;
+    public static final int RECORD_BYTES = 32;
+    static final byte[] MAGIC = {'R', 'V', 'T', 'R', 'A', 'C', 'E', '1'};
+
+    public static final int READ = 1;
+    public static final int WRITE = 2;
+    public static final int INT_REGISTER = 4;
+    public static final int FP_REGISTER = 8;
+    public static final int MORE_ACCESSES = 16;
+    /**
+     * Header flag: the trace was recorded in 64 bit mode
+     */
+    public static final int RV64 = 1;
+
+    private static final int STREAM_BUFFER_BYTES = 64 * 1024;
+    private static final long MAP_CHUNK_BYTES = 32L * 1024 * 1024;
+
+    private static volatile TraceRecorder active = null;
+
+    // Where records go.  next() is called with the full buffer and returns one with room.
+    private interface Sink {
+        ByteBuffer next(ByteBuffer full) throws IOException;
+
+        void close(ByteBuffer last, long count) throws IOException;
+    }
+
+    private final Sink sink;
+    private final boolean ring;
+    private ByteBuffer buffer;
+    private long count;
+    private boolean wrapped;
+    private IOException failure;
+
+    // Data access made by the instruction being executed
+    private int accessFlags, accessLength, accessAddress, accessValue;
+    private Thread executing;
+    private Memory observed;
+    private final TransientNoticeObserver watcher = new TransientNoticeObserver() {
+        public void update(Observable o, Object notice) {
+            if (Thread.currentThread() != executing) return;
+            MemoryAccessNotice access = (MemoryAccessNotice) notice;
+            if (accessFlags != 0) {
+                accessFlags |= MORE_ACCESSES;
+                return;
+            }
+            accessFlags = (access.getAccessType() == AccessNotice.READ) ? READ : WRITE;
+            accessLength = Math.min(access.getLength(), 255); // bulk system call copies can be longer
+            accessAddress = access.getAddress();
+            accessValue = access.getValue();
+        }
+    };
+
+    private TraceRecorder(Sink sink, ByteBuffer buffer, boolean ring) {
+        this.sink = sink;
+        this.buffer = buffer.order(ByteOrder.LITTLE_ENDIAN);
+        this.ring = ring;
+    }
+
+    /**
+     * Records into a file.  Names ending in ".gz" are compressed; others are memory-mapped.
+     *
+     * @param file where to write the trace
+     * @return the recorder; make it active with {@link #setActive}
+     * @throws IOException if the file cannot be created
+     */
+    public static TraceRecorder toFile(File file) throws IOException {
+        if (file.getName().endsWith(".gz")) {
+            return toStream(new GZIPOutputStream(new FileOutputStream(file), STREAM_BUFFER_BYTES));
+        }
+        FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        long[] mapped = {HEADER_BYTES}; // file offset of the current chunk
+        Sink sink = new Sink() {
+            public ByteBuffer next(ByteBuffer full) throws IOException {
+                mapped[0] += full.position();
+                return channel.map(FileChannel.MapMode.READ_WRITE, mapped[0], MAP_CHUNK_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+            }
+
+            public void close(ByteBuffer last, long count) throws IOException {
+                long length = mapped[0] + last.position();
+                ((MappedByteBuffer) last).force();
+                channel.write(header(count), 0);
+                try {
+                    channel.truncate(length);
+                } catch (IOException e) {
+                    // Some platforms refuse while the last chunk is mapped; the count in the header still holds
+                }
+                channel.close();
+            }
+        };
+        return new TraceRecorder(sink, channel.map(FileChannel.MapMode.READ_WRITE, HEADER_BYTES, MAP_CHUNK_BYTES), false);
+    }
+
+    /**
+     * Records into a stream, which is closed when the recorder is.
+     *
+     * @param out where to write the trace
+     * @return the recorder; make it active with {@link #setActive}
+     * @throws IOException if the header cannot be written
+     */
+    public static TraceRecorder toStream(OutputStream out) throws IOException {
+        out.write(header(-1).array());
+        Sink sink = new Sink() {
+            public ByteBuffer next(ByteBuffer full) throws IOException {
+                out.write(full.array(), 0, full.position());
+                full.clear();
+                return full;
+            }
+
+            public void close(ByteBuffer last, long count) throws IOException {
+                next(last);
+                out.close();
+            }
+        };
+        return new TraceRecorder(sink, ByteBuffer.allocate(STREAM_BUFFER_BYTES), false);
+    }
+
+    /**
+     * Records into memory, keeping only the most recent instructions.  Use {@link #writeRing}
+     * to save them.
+     *
+     * @param records how many instructions to keep
+     * @return the recorder; make it active with {@link #setActive}
+     */
+    public static TraceRecorder toRing(int records) {
+        if (records <= 0 || records > Integer.MAX_VALUE / RECORD_BYTES) {
+            throw new IllegalArgumentException("ring size out of range: " + records);
+        }
+        Sink sink = new Sink() {
+            public ByteBuffer next(ByteBuffer full) {
+                full.clear();
+                return full;
+            }
+
+            public void close(ByteBuffer last, long count) {
+            }
+        };
+        return new TraceRecorder(sink, ByteBuffer.allocate(records * RECORD_BYTES), true);
+    }
+
+    /**
+     * @return the recorder the simulator reports to, or null if tracing is off
+     */
+    public static TraceRecorder getActive() {
+        return active;
+    }
+
+    /**
+     * Turns tracing on with the given recorder, or off with null.
+     */
+    public static void setActive(TraceRecorder recorder) {
+        active = recorder;
+    }
+
+    /**
+     * @return the number of instructions recorded, including any a ring buffer no longer holds
+     */
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * Writes what a ring buffer holds, oldest first, as a complete trace.
+     *
+     * @param out where to write; not closed
+     * @throws IOException if writing fails
+     */
+    public void writeRing(OutputStream out) throws IOException {
+        if (!ring) {
+            throw new IllegalStateException("not a ring buffer");
+        }
+        byte[] data = buffer.array();
+        int end = buffer.position();
+        out.write(header(wrapped ? data.length / RECORD_BYTES : end / RECORD_BYTES).array());
+        if (wrapped) {
+            out.write(data, end, data.length - end);
+        }
+        out.write(data, 0, end);
+    }
+
+    /**
+     * Stops recording and completes the file or stream.
+     *
+     * @throws IOException if writing failed at any point while recording
+     */
+    public void close() throws IOException {
+        if (active == this) {
+            active = null;
+        }
+        if (observed != null) {
+            observed.deleteObserver(watcher);
+            observed = null;
+        }
+        if (failure == null) {
+            try {
+                sink.close(buffer, count);
+            } catch (IOException e) {
+                failure = e;
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    // Called by the simulator just before an instruction executes
+    void starting() {
+        executing = Thread.currentThread();
+        accessFlags = 0;
+        if (observed != Globals.memory) {
+            if (observed != null) observed.deleteObserver(watcher);
+            observed = Globals.memory;
+            observed.addObserver(watcher);
+        }
+    }
+
+    // Called by the simulator after the instruction at pc has executed without trapping
+    void executed(int pc, ProgramStatement statement) {
+        executing = null;
+        if (failure != null) {
+            return;
+        }
+        if (buffer.remaining() < RECORD_BYTES) {
+            try {
+                buffer = sink.next(buffer).order(ByteOrder.LITTLE_ENDIAN);
+            } catch (IOException e) {
+                failure = e;
+                return;
+            }
+            wrapped |= ring;
+        }
+        int word = statement.getBinaryStatement();
+        int rd = (word >>> 7) & 0x1F;
+        int destination = destination(word);
+        long value = 0;
+        if (destination == INT_REGISTER && rd != 0) {
+            value = RegisterFile.getRegisters()[rd].getValueNoNotify();
+        } else if (destination == FP_REGISTER) {
+            value = FloatingPointRegisterFile.getRegisters()[rd].getValueNoNotify();
+        } else {
+            destination = 0;
+        }
+        buffer.putInt(pc);
+        buffer.putInt(word);
+        buffer.put((byte) (accessFlags | destination));
+        buffer.put((byte) accessLength);
+        buffer.put((byte) (destination == 0 ? 0 : rd));
+        buffer.put((byte) statement.getInstructionLength());
+        buffer.putInt(accessFlags == 0 ? 0 : accessAddress);
+        buffer.putInt(accessFlags == 0 ? 0 : accessValue);
+        buffer.putInt(0);
+        buffer.putLong(value);
+        count++;
+    }
+
+    // Which register file the instruction's rd field names, or 0 if the format has no rd
+    private static int destination(int word) {
+        switch (word & 0x7F) {
+            case 0x23: // stores
+            case 0x27: // floating point stores
+            case 0x63: // branches
+            case 0x0F: // fence
+                return 0;
+            case 0x07: // floating point loads
+            case 0x43: case 0x47: case 0x4B: case 0x4F: // fused multiply-add
+                return FP_REGISTER;
+            case 0x53: // floating point arithmetic; compares, classify, moves and conversions to integer write x
+                int funct5 = word >>> 27;
+                return (funct5 == 0x14 || funct5 == 0x18 || funct5 == 0x1C) ? INT_REGISTER : FP_REGISTER;
+            default:
+                return INT_REGISTER;
+        }
+    }
+
+    private static ByteBuffer header(long count) {
+        return header(count, Globals.getSettings().getBooleanSetting(rars.Settings.Bool.RV64_ENABLED));
+    }
+
+    static ByteBuffer header(long count, boolean rv64) {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        header.put(MAGIC);
+        header.putInt(RECORD_BYTES);
+        header.putInt(rv64 ? RV64 : 0);
+        header.putLong(count);
+        header.putLong(0);
+        header.flip();
+        return header;
+    }
+}
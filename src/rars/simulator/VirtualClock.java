@@ -0,0 +1,198 @@
+package rars.simulator;
+
+import rars.Globals;
+import rars.riscv.hardware.*;
+
+import java.util.Locale;
+import java.util.Observable;
+
+/**
+ * A timer device whose time is counted in executed instructions rather than read from the
+ * host clock, so timer-driven programs run at full speed and behave the same on every run.
+ * <p>
+ * Time advances by one tick every {@code instructionsPerTick} instructions.  It is shown in
+ * the {@code time} CSR and as a 64 bit value in memory-mapped I/O at {@link #getTimeAddress()};
+ * writing the 64 bit {@code timecmp} value at {@link #getTimeCompareAddress()} arms a timer
+ * interrupt for when time reaches it (compared unsigned).  As with the Timer Tool, the interrupt
+ * goes off once and is rearmed by the next write to {@code timecmp}.
+ * <p>
+ * The simulator calls {@link #executed(long, boolean)} after every instruction, which is a
+ * single comparison until the next tick is due.  Time is derived from the {@code instret}
+ * CSR, so it goes back with time travel, which restores {@code instret}.  Backstepping
+ * without time travel does not undo {@code instret}, so it leaves time where it was.
+ */
+public class VirtualClock {
+    private static volatile VirtualClock active = null;
+
+    private final long instructionsPerTick;
+    private volatile boolean paused;
+
+    // Instructions executed while paused, which do not count towards time
+    private long pausedInstructions;
+    // instret at the last tick handled and at the next one due
+    private long lastEvent, nextEvent;
+    private volatile long time = -1;
+    private volatile long compare;
+    private volatile boolean armed;
+
+    private Memory observed;
+    private final TransientNoticeObserver watcher = new TransientNoticeObserver() {
+        public void update(Observable o, Object notice) {
+            if (((MemoryAccessNotice) notice).getAccessType() == AccessNotice.WRITE) {
+                compare = readCompare();
+                armed = true;
+                nextEvent = Long.MIN_VALUE; // check at the next instruction
+            }
+        }
+    };
+
+    /**
+     * @param instructionsPerTick instructions executed per tick of time; at least 1
+     */
+    public VirtualClock(long instructionsPerTick) {
+        if (instructionsPerTick < 1) {
+            throw new IllegalArgumentException("a tick must be at least one instruction");
+        }
+        this.instructionsPerTick = instructionsPerTick;
+    }
+
+    /**
+     * Builds a clock from a specification: either a number of instructions per tick, or the
+     * frequency of the simulated processor ({@code <n>hz}, {@code <n>khz} or {@code <n>mhz},
+     * one instruction per cycle) with ticks of one millisecond.
+     *
+     * @throws IllegalArgumentException if the specification is not valid
+     */
+    public static VirtualClock parse(String spec) {
+        String s = spec.toLowerCase(Locale.ROOT).trim();
+        long scale = 0;
+        if (s.endsWith("mhz")) {
+            scale = 1000;
+        } else if (s.endsWith("khz")) {
+            scale = 1;
+        } else if (s.endsWith("hz")) {
+            scale = -1;
+        }
+        try {
+            if (scale == 0) {
+                return new VirtualClock(Long.parseLong(s));
+            }
+            long number = Long.parseLong(s.substring(0, s.length() - (scale < 0 ? 2 : 3)));
+            return new VirtualClock(scale < 0 ? number / 1000 : number * scale);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("expected instructions per tick or a frequency such as 10mhz");
+        }
+    }
+
+    public static VirtualClock getActive() {
+        return active;
+    }
+
+    /**
+     * Makes the clock drive the time CSR and timer interrupts, or goes back to the host clock
+     * with null.
+     */
+    public static void setActive(VirtualClock clock) {
+        VirtualClock previous = active;
+        active = clock;
+        if (previous != null && previous != clock) previous.detach();
+    }
+
+    public long getInstructionsPerTick() {
+        return instructionsPerTick;
+    }
+
+    /**
+     * @return the current time in ticks
+     */
+    public long getTime() {
+        return Math.max(time, 0);
+    }
+
+    /**
+     * Stops or restarts time; instructions executed while paused do not count.
+     */
+    public void setPaused(boolean paused) {
+        this.paused = paused;
+    }
+
+    public boolean isPaused() {
+        return paused;
+    }
+
+    public static int getTimeAddress() {
+        return Memory.memoryMapBaseAddress + 0x18;
+    }
+
+    public static int getTimeCompareAddress() {
+        return Memory.memoryMapBaseAddress + 0x20;
+    }
+
+    /**
+     * Stops watching memory for writes to timecmp.
+     */
+    public void detach() {
+        if (observed != null) {
+            observed.deleteObserver(watcher);
+            observed = null;
+        }
+    }
+
+    // Called by the simulator after each instruction, with instret counting it.  An interrupt
+    // that comes due while history is being replayed is not raised again; the recording has it.
+    void executed(long instret, boolean replaying) {
+        if (paused) {
+            pausedInstructions++;
+            return;
+        }
+        if (instret < nextEvent && instret >= lastEvent) {
+            return;
+        }
+        if (observed != Globals.memory) {
+            detach();
+            observed = Globals.memory;
+            try {
+                observed.addObserver(watcher, getTimeCompareAddress(), getTimeCompareAddress() + 4);
+            } catch (AddressErrorException e) {
+                // The memory configuration has no memory-mapped I/O; time is still in the CSR
+            }
+            compare = readCompare();
+        }
+        if (instret < lastEvent) {
+            // Reset or travelled back: start again from what memory says now
+            pausedInstructions = Math.min(pausedInstructions, instret);
+            time = -1;
+            compare = readCompare();
+            armed = Long.compareUnsigned(compare, (instret - pausedInstructions) / instructionsPerTick) > 0;
+        }
+        long counted = instret - pausedInstructions;
+        long now = counted / instructionsPerTick;
+        if (now != time) {
+            time = now;
+            try {
+                // Not an access by the program, so nothing to notify or to undo
+                observed.setDeviceWord(getTimeAddress(), (int) now);
+                observed.setDeviceWord(getTimeAddress() + 4, (int) (now >> 32));
+            } catch (AddressErrorException e) {
+                // As above
+            }
+        }
+        if (armed && Long.compareUnsigned(now, compare) >= 0) {
+            armed = false;
+            if (!replaying) {
+                InterruptController.registerTimerInterrupt(ControlAndStatusRegisterFile.TIMER_INTERRUPT);
+            }
+        }
+        lastEvent = instret;
+        nextEvent = instret - counted % instructionsPerTick + instructionsPerTick;
+    }
+
+    private long readCompare() {
+        try {
+            return (observed.getWordNoNotify(getTimeCompareAddress()) & 0xFFFFFFFFL)
+                    | ((long) observed.getWordNoNotify(getTimeCompareAddress() + 4) << 32);
+        } catch (AddressErrorException e) {
+            return Long.MAX_VALUE;
+        }
+    }
+}
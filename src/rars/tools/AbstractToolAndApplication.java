@@ -54,6 +54,8 @@ public abstract class AbstractToolAndApplication extends JFrame implements Tool,
     // For Tool, is set true when "Connect" clicked, false when "Disconnect" clicked.
     // For app, is set true when "Assemble and Run" clicked, false when program terminates.
     private volatile boolean observing = false;
+    // Memory observer used instead of this when getBatchDelivery() is overridden
+    private AccessStream accessStream = null;
 
     // Several structures required for stand-alone use only (not Tool use)
     private File mostRecentlyOpenedFile = null;
@@ -458,6 +460,27 @@ public abstract class AbstractToolAndApplication extends JFrame implements Tool,
     protected void processRISCVUpdate(Observable resource, AccessNotice notice) {
     }
 
+    /**
+     * Override this method to receive memory accesses in batches on a separate thread rather
+     * than one processRISCVUpdate() call per access on the simulator thread.  The simulator then
+     * only copies each access into a buffer, so a tool that redraws itself no longer slows the
+     * program down.  Return LOSSLESS to see every access (the simulator waits when the tool falls
+     * behind) or LOSSY to let accesses be dropped instead.  By default it returns null, which keeps
+     * the synchronous notices.  Register observers are always synchronous.
+     */
+    protected AccessStream.Delivery getBatchDelivery() {
+        return null;
+    }
+
+    /**
+     * Override this method to process a batch of memory accesses made by the running program when
+     * getBatchDelivery() is not null.  Called on the stream's own thread, so it must not take
+     * Globals.memoryAndRegistersLock.  The batch is only valid during the call.  By default it does
+     * nothing. After this method is complete, the updateDisplay() method will be invoked automatically.
+     */
+    protected void processRISCVBatch(AccessStream.Batch batch) {
+    }
+
     /**
      * This method is called when tool/app is exited either through the close/exit button or the window's X box.
      * Override it to perform any special housecleaning needed.  By default it does nothing.
@@ -498,7 +521,18 @@ public abstract class AbstractToolAndApplication extends JFrame implements Tool,
     protected void addAsObserver(int lowEnd, int highEnd) {
         String errorMessage = "Error connecting to memory";
         try {
-            Globals.memory.addObserver(this, lowEnd, highEnd);
+            AccessStream.Delivery delivery = getBatchDelivery();
+            if (delivery == null) {
+                Globals.memory.addObserver(this, lowEnd, highEnd);
+            } else {
+                if (accessStream == null) {
+                    accessStream = new AccessStream(title, delivery, batch -> {
+                        processRISCVBatch(batch);
+                        updateDisplay();
+                    });
+                }
+                Globals.memory.addObserver(accessStream, lowEnd, highEnd);
+            }
         } catch (AddressErrorException aee) {
             if (this.isBeingUsedAsATool) {
                 headingLabel.setText(errorMessage);
@@ -529,6 +563,11 @@ public abstract class AbstractToolAndApplication extends JFrame implements Tool,
 
     protected void deleteAsObserver() {
         Globals.memory.deleteObserver(this);
+        if (accessStream != null) {
+            Globals.memory.deleteObserver(accessStream);
+            accessStream.close();
+            accessStream = null;
+        }
     }
 
     /**
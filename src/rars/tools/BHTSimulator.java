@@ -25,7 +25,7 @@ import java.util.Observable;
  *
  * @author ingo.kofler@itec.uni-klu.ac.at
  */
-public class BHTSimulator extends AbstractToolAndApplication implements ActionListener {
+public class BHTSimulator extends AbstractToolAndApplication implements ActionListener, TransientNoticeObserver {
     /**
      * constant for the default size of the BHT
      */
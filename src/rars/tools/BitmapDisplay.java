@@ -1,8 +1,10 @@
 package rars.tools;
 
+import rars.Globals;
 import rars.riscv.hardware.AccessNotice;
 import rars.riscv.hardware.Memory;
 import rars.riscv.hardware.MemoryAccessNotice;
+import rars.riscv.hardware.TransientNoticeObserver;
 
 import javax.swing.*;
 import javax.swing.border.EmptyBorder;
@@ -16,17 +18,20 @@ import java.util.Observable;
  * access to the rars package, or through RARS as an item in its Tools menu.  It makes
  * maximum use of methods inherited from its abstract superclass AbstractToolAndApplication.
  * Pete Sanderson, verison 1.0, 23 December 2010.
+ * <p>
+ * The display is a {@link Framebuffer}: stores only mark it dirty, and a timer copies the dirty
+ * part from memory and repaints it at most 60 times a second, however fast the program stores.
  */
-public class BitmapDisplay extends AbstractToolAndApplication {
+public class BitmapDisplay extends AbstractToolAndApplication implements TransientNoticeObserver {
 
-    private static String version = "Version 1.0";
+    private static String version = "Version 1.1";
     private static String heading = "Bitmap Display";
 
     // Major GUI components
     private JComboBox<String> visualizationUnitPixelWidthSelector, visualizationUnitPixelHeightSelector,
             visualizationPixelWidthSelector, visualizationPixelHeightSelector, displayBaseAddressSelector;
-    private Graphics drawingArea;
     private JPanel canvas;
+    private Timer frameTimer;
     private JPanel results;
 
     // Some GUI settings
@@ -43,6 +48,7 @@ public class BitmapDisplay extends AbstractToolAndApplication {
     private static final int defaultDisplayWidthIndex = 3;
     private static final String[] displayAreaPixelHeightChoices = {"64", "128", "256", "512", "1024"};
     private static final int defaultDisplayHeightIndex = 2;
+    private static final int framesPerSecond = 60;
 
     // Values for display canvas.  Note their initialization uses the identifiers just above.
 
@@ -58,7 +64,7 @@ public class BitmapDisplay extends AbstractToolAndApplication {
     private int defaultBaseAddressIndex;
     private int baseAddress;
 
-    private Grid theGrid;
+    private volatile Framebuffer framebuffer;
 
     /**
      * Simple constructor, likely used to run a stand-alone bitmap display tool.
@@ -104,7 +110,7 @@ public class BitmapDisplay extends AbstractToolAndApplication {
      * "Assemble and Run" button on a Rars-based app.
      */
     protected void addAsObserver() {
-        int highAddress = baseAddress + theGrid.getRows() * theGrid.getColumns() * Memory.WORD_LENGTH_BYTES;
+        int highAddress = baseAddress + framebuffer.getWidth() * framebuffer.getHeight() * Memory.WORD_LENGTH_BYTES;
         // Special case: baseAddress<0 means we're in kernel memory (0x80000000 and up) and most likely
         // in memory map address space (0xffff0000 and up).  In this case, we need to make sure the high address
         // does not drop off the high end of 32 bit address space.  Highest allowable word address is 0xfffffffc,
@@ -138,14 +144,16 @@ public class BitmapDisplay extends AbstractToolAndApplication {
     //////////////////////////////////////////////////////////////////////////////////////
 
     /**
-     * Update display when the connected program accesses (data) memory.
+     * Mark the stored words dirty when the connected program writes (data) memory.  They are
+     * read back from memory and redrawn at the next frame.
      *
      * @param memory       the attached memory
      * @param accessNotice information provided by memory in MemoryAccessNotice object
      */
     protected void processRISCVUpdate(Observable memory, AccessNotice accessNotice) {
         if (accessNotice.getAccessType() == AccessNotice.WRITE) {
-            updateColorForAddress((MemoryAccessNotice) accessNotice);
+            MemoryAccessNotice notice = (MemoryAccessNotice) accessNotice;
+            framebuffer.markDirty(notice.getAddress(), notice.getLength());
         }
     }
 
@@ -156,40 +164,41 @@ public class BitmapDisplay extends AbstractToolAndApplication {
      */
     protected void initializePreGUI() {
         initializeDisplayBaseChoices();
-        // NOTE: Can't call "createNewGrid()" here because it uses settings from
-        //       several combo boxes that have not been created yet.  But a default grid
+        // NOTE: Can't call "createNewFramebuffer()" here because it uses settings from
+        //       several combo boxes that have not been created yet.  But a default framebuffer
         //       needs to be allocated for initial canvas display.
-        theGrid = new Grid(displayAreaHeightInPixels / unitPixelHeight,
-                displayAreaWidthInPixels / unitPixelWidth);
+        framebuffer = new Framebuffer(baseAddress, displayAreaWidthInPixels / unitPixelWidth,
+                displayAreaHeightInPixels / unitPixelHeight);
     }
 
 
     /**
-     * The only post-GUI initialization is to create the initial Grid object based on the default settings
-     * of the various combo boxes. Overrides inherited method that does nothing.
+     * Post-GUI initialization creates the initial Framebuffer based on the default settings
+     * of the various combo boxes and starts the timer that repaints it. Overrides inherited
+     * method that does nothing.
      */
 
     protected void initializePostGUI() {
-        theGrid = createNewGrid();
         updateBaseAddress();
+        framebuffer = createNewFramebuffer();
+        frameTimer = new Timer(1000 / framesPerSecond, e -> repaintDirtyRegion());
+        frameTimer.start();
     }
 
-
     /**
-     * Method to reset counters and display when the Reset button selected.
-     * Overrides inherited method that does nothing.
+     * Stops the repaint timer.  Overrides inherited method that does nothing.
      */
-    protected void reset() {
-        resetCounts();
-        updateDisplay();
+    protected void performSpecialClosingDuties() {
+        frameTimer.stop();
     }
 
+
     /**
-     * Updates display immediately after each update (AccessNotice) is processed, after
-     * display configuration changes as needed, and after each execution step when Rars
-     * is running in timed mode.  Overrides inherited method that does nothing.
+     * Method to reset counters and display when the Reset button selected.
+     * Overrides inherited method that does nothing.
      */
-    protected void updateDisplay() {
+    protected void reset() {
+        framebuffer.clear();
         canvas.repaint();
     }
 
@@ -215,9 +224,9 @@ public class BitmapDisplay extends AbstractToolAndApplication {
                         "by the program, its position in the display will be rendered in the\n" +
                         "color that its value represents.\n" +
                         "\n" +
-                        "Version 1.0 is very basic and was constructed from the Memory\n" +
-                        "Reference Visualization tool's code.  Feel free to improve it and\n" +
-                        "send your code for consideration in the next release.\n" +
+                        "The display is redrawn at most " + framesPerSecond + " times a second, so a program\n" +
+                        "may store many times between two redraws.  To save the display as\n" +
+                        "PNG images without the GUI, use the 'bitmap' command line option.\n" +
                         "\n";
         JButton help = new JButton("Help");
         help.addActionListener(
@@ -245,8 +254,8 @@ public class BitmapDisplay extends AbstractToolAndApplication {
                 new ActionListener() {
                     public void actionPerformed(ActionEvent e) {
                         unitPixelWidth = getIntComboBoxSelection(visualizationUnitPixelWidthSelector);
-                        theGrid = createNewGrid();
-                        updateDisplay();
+                        framebuffer = createNewFramebuffer();
+                        canvas.repaint();
                     }
                 });
         visualizationUnitPixelHeightSelector = new JComboBox<>(visualizationUnitPixelHeightChoices);
@@ -257,8 +266,8 @@ public class BitmapDisplay extends AbstractToolAndApplication {
                 new ActionListener() {
                     public void actionPerformed(ActionEvent e) {
                         unitPixelHeight = getIntComboBoxSelection(visualizationUnitPixelHeightSelector);
-                        theGrid = createNewGrid();
-                        updateDisplay();
+                        framebuffer = createNewFramebuffer();
+                        canvas.repaint();
                     }
                 });
         visualizationPixelWidthSelector = new JComboBox<>(displayAreaPixelWidthChoices);
@@ -271,8 +280,8 @@ public class BitmapDisplay extends AbstractToolAndApplication {
                         displayAreaWidthInPixels = getIntComboBoxSelection(visualizationPixelWidthSelector);
                         canvas.setPreferredSize(getDisplayAreaDimension());
                         canvas.setSize(getDisplayAreaDimension());
-                        theGrid = createNewGrid();
-                        updateDisplay();
+                        framebuffer = createNewFramebuffer();
+                        canvas.repaint();
                     }
                 });
         visualizationPixelHeightSelector = new JComboBox<>(displayAreaPixelHeightChoices);
@@ -285,8 +294,8 @@ public class BitmapDisplay extends AbstractToolAndApplication {
                         displayAreaHeightInPixels = getIntComboBoxSelection(visualizationPixelHeightSelector);
                         canvas.setPreferredSize(getDisplayAreaDimension());
                         canvas.setSize(getDisplayAreaDimension());
-                        theGrid = createNewGrid();
-                        updateDisplay();
+                        framebuffer = createNewFramebuffer();
+                        canvas.repaint();
                     }
                 });
         displayBaseAddressSelector = new JComboBox<>(displayBaseAddressChoices);
@@ -309,8 +318,8 @@ public class BitmapDisplay extends AbstractToolAndApplication {
                             deleteAsObserver();
                             addAsObserver();
                         }
-                        theGrid = createNewGrid();
-                        updateDisplay();
+                        framebuffer = createNewFramebuffer();
+                        canvas.repaint();
                     }
                 });
 
@@ -396,11 +405,6 @@ public class BitmapDisplay extends AbstractToolAndApplication {
         return new Dimension(displayAreaWidthInPixels, displayAreaHeightInPixels);
     }
 
-    // reset all counters in the Grid.
-    private void resetCounts() {
-        theGrid.reset();
-    }
-
     // Will return int equivalent of specified combo box's current selection.
     // The selection must be a String that parses to an int.
     private int getIntComboBoxSelection(JComboBox<String> comboBox) {
@@ -418,24 +422,24 @@ public class BitmapDisplay extends AbstractToolAndApplication {
         return new JPanel(new BorderLayout(2, 2));
     }
 
-    // Method to determine grid dimensions based on current control settings.
-    // Each grid element corresponds to one visualization unit.
-    private Grid createNewGrid() {
+    // Method to determine framebuffer dimensions based on current control settings.
+    // Each pixel of the framebuffer corresponds to one visualization unit.  It starts
+    // out showing what is already in memory.
+    private Framebuffer createNewFramebuffer() {
         int rows = displayAreaHeightInPixels / unitPixelHeight;
         int columns = displayAreaWidthInPixels / unitPixelWidth;
-        return new Grid(rows, columns);
+        Framebuffer created = new Framebuffer(baseAddress, columns, rows);
+        created.markAllDirty();
+        return created;
     }
 
-    // Given memory address, update color for the corresponding grid element.
-    private void updateColorForAddress(MemoryAccessNotice notice) {
-        int address = notice.getAddress();
-        int offset = (address - baseAddress) / Memory.WORD_LENGTH_BYTES;
-
-        try {
-            theGrid.setElement(offset / theGrid.getColumns(), offset % theGrid.getColumns(),
-                    Memory.getInstance().getWord(address / Memory.WORD_LENGTH_BYTES * Memory.WORD_LENGTH_BYTES));
-        } catch (Exception e) {
-            // If address is out of range for display, do nothing.
+    // Called by the frame timer: bring the image up to date with memory, then repaint
+    // only the part that changed.
+    private void repaintDirtyRegion() {
+        Rectangle dirty = framebuffer.refresh(Globals.memory);
+        if (dirty != null) {
+            canvas.repaint(dirty.x * unitPixelWidth, dirty.y * unitPixelHeight,
+                    dirty.width * unitPixelWidth, dirty.height * unitPixelHeight);
         }
     }
 
@@ -451,80 +455,23 @@ public class BitmapDisplay extends AbstractToolAndApplication {
     private class GraphicsPanel extends JPanel {
 
         // override default paint method to assure display updated correctly every time
-        // the panel is repainted.
+        // the panel is repainted.  Only the pixels inside the clip are scaled and drawn.
         public void paint(Graphics g) {
-            paintGrid(g, theGrid);
-        }
-
-        // Paint the color codes.
-        private void paintGrid(Graphics g, Grid grid) {
-            int upperLeftX = 0, upperLeftY = 0;
-            for (int i = 0; i < grid.getRows(); i++) {
-                for (int j = 0; j < grid.getColumns(); j++) {
-                    g.setColor(grid.getElementFast(i, j));
-                    g.fillRect(upperLeftX, upperLeftY, unitPixelWidth, unitPixelHeight);
-                    upperLeftX += unitPixelWidth;   // faster than multiplying
-                }
-                // get ready for next row...
-                upperLeftX = 0;
-                upperLeftY += unitPixelHeight;     // faster than multiplying
+            Framebuffer frame = framebuffer;
+            Rectangle clip = g.getClipBounds();
+            if (clip == null) {
+                clip = new Rectangle(0, 0, getWidth(), getHeight());
             }
-        }
-    }
-
-
-    ////////////////////////////////////////////////////////////////////////
-    // Represents grid of colors
-    private class Grid {
-
-        Color[][] grid;
-        int rows, columns;
-
-        private Grid(int rows, int columns) {
-            grid = new Color[rows][columns];
-            this.rows = rows;
-            this.columns = columns;
-            reset();
-        }
-
-        private int getRows() {
-            return rows;
-        }
-
-        private int getColumns() {
-            return columns;
-        }
-
-        // Returns value in given grid element; null if row or column is out of range.
-        private Color getElement(int row, int column) {
-            return (row >= 0 && row <= rows && column >= 0 && column <= columns) ? grid[row][column] : null;
-        }
-
-        // Returns value in given grid element without doing any row/column index checking.
-        // Is faster than getElement but will throw array index out of bounds exception if
-        // parameter values are outside the bounds of the grid.
-        private Color getElementFast(int row, int column) {
-            return grid[row][column];
-        }
-
-        // Set the grid element.
-        private void setElement(int row, int column, int color) {
-            grid[row][column] = new Color(color);
-        }
-
-        // Set the grid element.
-        private void setElement(int row, int column, Color color) {
-            grid[row][column] = color;
-        }
-
-        // Just set all grid elements to black.
-        private void reset() {
-            for (int i = 0; i < rows; i++) {
-                for (int j = 0; j < columns; j++) {
-                    grid[i][j] = Color.BLACK;
-                }
+            int firstColumn = clip.x / unitPixelWidth, firstRow = clip.y / unitPixelHeight;
+            int lastColumn = Math.min(frame.getWidth(), (clip.x + clip.width + unitPixelWidth - 1) / unitPixelWidth);
+            int lastRow = Math.min(frame.getHeight(), (clip.y + clip.height + unitPixelHeight - 1) / unitPixelHeight);
+            if (firstColumn < lastColumn && firstRow < lastRow) {
+                g.drawImage(frame.getImage(),
+                        firstColumn * unitPixelWidth, firstRow * unitPixelHeight,
+                        lastColumn * unitPixelWidth, lastRow * unitPixelHeight,
+                        firstColumn, firstRow, lastColumn, lastRow, null);
             }
         }
     }
 
-}
\ No newline at end of file
+}
@@ -3,6 +3,8 @@ package rars.tools;
 import rars.riscv.hardware.AccessNotice;
 import rars.riscv.hardware.Memory;
 import rars.riscv.hardware.MemoryAccessNotice;
+import rars.riscv.hardware.TransientNoticeObserver;
+import rars.simulator.Cache;
 import rars.util.Binary;
 
 import javax.swing.*;
@@ -14,7 +16,6 @@ import java.awt.event.ActionListener;
 import java.awt.event.ItemEvent;
 import java.awt.event.ItemListener;
 import java.util.Observable;
-import java.util.Random;
 
 /**
  * A data cache simulator.  It can be run either as a stand-alone Java application having
@@ -25,7 +26,7 @@ import java.util.Random;
  * animating the block of initial access (first block of set).  Now it animates the block
  * of final access (where address found or stored).  Also added log display to GUI (previously System.out).</p>
  */
-public class CacheSimulator extends AbstractToolAndApplication {
+public class CacheSimulator extends AbstractToolAndApplication implements TransientNoticeObserver {
     private static boolean debug = false; // controls display of debugging info
     private static final String version = "Version 1.2";
     private static final String heading = "Simulate and illustrate data cache performance";
@@ -54,8 +55,10 @@ public class CacheSimulator extends AbstractToolAndApplication {
     private static final String[] cacheBlockCountChoices = {"1", "2", "4", "8", "16", "32", "64", "128", "256", "512", "1024", "2048"};
     private static final String[] placementPolicyChoices = {"Direct Mapping", "Fully Associative", "N-way Set Associative"};
     private static final int DIRECT = 0, FULL = 1, SET = 2; // NOTE: these have to match placementPolicyChoices order!
-    private static final String[] replacementPolicyChoices = {"LRU", "Random"};
-    private static final int LRU = 0, RANDOM = 1; // NOTE: these have to match replacementPolicyChoices order!
+    private static final String[] replacementPolicyChoices = {"LRU", "Random", "FIFO", "Pseudo-LRU"};
+    private static final int LRU = 0, RANDOM = 1, FIFO = 2, PLRU = 3; // NOTE: these have to match replacementPolicyChoices order!
+    private static final Cache.Replacement[] replacementPolicies = {Cache.Replacement.LRU, Cache.Replacement.RANDOM,
+            Cache.Replacement.FIFO, Cache.Replacement.PLRU};
     private String[] cacheSetSizeChoices; // will change dynamically based on the other selections
     private static final int defaultCacheBlockSizeIndex = 2;
     private static final int defaultCacheBlockCountIndex = 3;
@@ -64,13 +67,10 @@ public class CacheSimulator extends AbstractToolAndApplication {
     private static final int defaultCacheSetSizeIndex = 0;
 
     // Cache-related data structures
-    private AbstractCache theCache;
+    private Cache theCache;
     private int memoryAccessCount, cacheHitCount, cacheMissCount;
     private double cacheHitRate;
 
-    // RNG used for random replacement policy.  For testing, set seed for reproducible stream
-    private Random randu = new Random(0);
-
     /**
      * Simple constructor, likely used to run a stand-alone cache simulator.
      *
@@ -168,6 +168,14 @@ public class CacheSimulator extends AbstractToolAndApplication {
         cacheReplacementSelector = new JComboBox<>(replacementPolicyChoices);
         cacheReplacementSelector.setEditable(false);
         cacheReplacementSelector.setSelectedIndex(defaultReplacementPolicyIndex);
+        cacheReplacementSelector.addActionListener(
+                new ActionListener() {
+                    public void actionPerformed(ActionEvent e) {
+                        if (theCache != null) {
+                            theCache.setReplacement(replacementPolicies[cacheReplacementSelector.getSelectedIndex()]);
+                        }
+                    }
+                });
 
         cacheBlockSizeSelector = new JComboBox<>(cacheBlockSizeChoices);
         cacheBlockSizeSelector.setEditable(false);
@@ -382,14 +390,26 @@ public class CacheSimulator extends AbstractToolAndApplication {
      */
     protected void processRISCVUpdate(Observable memory, AccessNotice accessNotice) {
         MemoryAccessNotice notice = (MemoryAccessNotice) accessNotice;
-        memoryAccessCount++;
-        CacheAccessResult cacheAccessResult = theCache.isItAHitThenReadOnMiss(notice.getAddress());
-        if (cacheAccessResult.isHit()) {
-            cacheHitCount++;
-            animations.showHit(cacheAccessResult.getBlock());
-        } else {
-            cacheMissCount++;
-            animations.showMiss(cacheAccessResult.getBlock());
+        boolean write = notice.getAccessType() == AccessNotice.WRITE;
+        // A system call copying a buffer sends one notice for all of it; access every block
+        int address = notice.getAddress(), last = address + Math.max(notice.getLength(), 1) - 1;
+        int mask = -theCache.getBlockBytes();
+        for (int start = address & mask; ; start += theCache.getBlockBytes()) {
+            int accessed = Math.max(start, address);
+            memoryAccessCount++;
+            boolean hit = write ? theCache.write(accessed) : theCache.read(accessed);
+            int block = theCache.getLastBlock();
+            if (debug)
+                writeLog("(" + memoryAccessCount + ") address: " + Binary.intToHexString(accessed) +
+                        " block " + block + (hit ? " -- HIT\n" : " -- MISS\n"));
+            if (hit) {
+                cacheHitCount++;
+                animations.showHit(block);
+            } else {
+                cacheMissCount++;
+                animations.showMiss(block);
+            }
+            if (start == (last & mask)) break;
         }
         cacheHitRate = cacheHitCount / (double) memoryAccessCount;
     }
@@ -493,18 +513,16 @@ public class CacheSimulator extends AbstractToolAndApplication {
     }
 
     // create and return a new cache object based on current specs
-    private AbstractCache createNewCache() {
-        AbstractCache theNewCache;
+    private Cache createNewCache() {
         int setSize = 1;
         try {
             setSize = Integer.parseInt((String) cacheSetSizeSelector.getSelectedItem());
         } catch (NumberFormatException nfe) { // if this happens its my fault!
         }
-        theNewCache = new AnyCache(
-                cacheBlockCountChoicesInt[cacheBlockCountSelector.getSelectedIndex()],
-                cacheBlockSizeChoicesInt[cacheBlockSizeSelector.getSelectedIndex()],
-                setSize);
-        return theNewCache;
+        int blockBytes = cacheBlockSizeChoicesInt[cacheBlockSizeSelector.getSelectedIndex()] * Memory.WORD_LENGTH_BYTES;
+        // Write-back with write-allocate, so writes hit and miss exactly like reads
+        return new Cache("Data", cacheBlockCountChoicesInt[cacheBlockCountSelector.getSelectedIndex()] * blockBytes,
+                blockBytes, setSize, replacementPolicies[cacheReplacementSelector.getSelectedIndex()], true, true, null);
     }
 
     private void resetCounts() {
@@ -553,258 +571,9 @@ public class CacheSimulator extends AbstractToolAndApplication {
 
 
     //////////////////////////////////////////////////////////////////////////////////////
-    //  Specialized inner classes for cache modeling and animation.
+    //  Specialized inner class for cache animation.  The cache itself is modelled by rars.simulator.Cache.
     //////////////////////////////////////////////////////////////////////////////////////
 
-    /////////////////////////////////////////////////////////////////////////
-    // Represents a block in the cache.  Since we are only simulating
-    // cache performance, there's no need to actually store memory contents.
-    private class CacheBlock {
-        private boolean valid;
-        private int tag;
-        private int sizeInWords;
-        private int mostRecentAccessTime;
-
-        public CacheBlock(int sizeInWords) {
-            this.valid = false;
-            this.tag = 0;
-            this.sizeInWords = sizeInWords;
-            this.mostRecentAccessTime = -1;
-        }
-    }
-
-    /////////////////////////////////////////////////////////////////////////
-    // Represents the outcome of a cache access.  There are two parts:
-    // whether it was a hit or not, and in which block is the value stored.
-    // In the case of a hit, the block associated with address.  In the case of
-    // a miss, the block where new association is made.	DPS 23-Dec-2010
-    private class CacheAccessResult {
-        private final boolean hitOrMiss;
-        private final int blockNumber;
-
-        public CacheAccessResult(boolean hitOrMiss, int blockNumber) {
-            this.hitOrMiss = hitOrMiss;
-            this.blockNumber = blockNumber;
-        }
-
-        public boolean isHit() {
-            return hitOrMiss;
-        }
-
-        public int getBlock() {
-            return blockNumber;
-        }
-    }
-
-    //////////////////////////////////////////////////////////////////////
-    // Abstract Cache class.  Subclasses will implement specific policies.
-    private abstract class AbstractCache {
-        private final int numberOfBlocks, blockSizeInWords, setSizeInBlocks, numberOfSets;
-        protected CacheBlock[] blocks;
-
-        protected AbstractCache(int numberOfBlocks, int blockSizeInWords, int setSizeInBlocks) {
-            this.numberOfBlocks = numberOfBlocks;
-            this.blockSizeInWords = blockSizeInWords;
-            this.setSizeInBlocks = setSizeInBlocks;
-            this.numberOfSets = numberOfBlocks / setSizeInBlocks;
-            this.blocks = new CacheBlock[numberOfBlocks];
-            this.reset();
-        }
-
-        public int getNumberOfBlocks() {
-            return this.numberOfBlocks;
-        }
-
-        public int getNumberOfSets() {
-            return this.numberOfSets;
-        }
-
-        public int getSetSizeInBlocks() {
-            return this.setSizeInBlocks;
-        }
-
-        public int getBlockSizeInWords() {
-            return this.blockSizeInWords;
-        }
-
-        public int getCacheSizeInWords() {
-            return this.numberOfBlocks * this.blockSizeInWords;
-        }
-
-        public int getCacheSizeInBytes() {
-            return this.numberOfBlocks * this.blockSizeInWords * Memory.WORD_LENGTH_BYTES;
-        }
-
-
-        // This will work regardless of placement. 
-        // For direct map, #sets==#blocks
-        // For full assoc, #sets==1 so anything % #sets == 0
-        // For n-way assoc, it extracts the set bits in address.
-        public int getSetNumber(int address) {
-            return address / Memory.WORD_LENGTH_BYTES / this.blockSizeInWords % this.numberOfSets;
-        }
-
-        // This will work regardless of placement policy (direct map, n-way or full assoc)
-        public int getTag(int address) {
-            return address / Memory.WORD_LENGTH_BYTES / this.blockSizeInWords / this.numberOfSets;
-        }
-
-        // This will work regardless of placement policy (direct map, n-way or full assoc)
-        // Returns absolute block offset into the cache.
-        public int getFirstBlockToSearch(int address) {
-            return this.getSetNumber(address) * this.setSizeInBlocks;
-        }
-
-        // This will work regardless of placement policy (direct map, n-way or full assoc)
-        // Returns absolute block offset into the cache.
-        public int getLastBlockToSearch(int address) {
-            return this.getFirstBlockToSearch(address) + this.setSizeInBlocks - 1;
-        }
-
-        /* Reset the cache contents. */
-        public void reset() {
-            for (int i = 0; i < numberOfBlocks; i++) {
-                this.blocks[i] = new CacheBlock(blockSizeInWords);
-            }
-            System.gc(); // scoop 'em up now
-        }
-
-        // Subclass must implement this according to its policies
-        public abstract CacheAccessResult isItAHitThenReadOnMiss(int address);
-    }
-
-
-    //////////////////////////////////////////////////////////////////////////////
-    // Implements any of the well-known cache organizations.  Physical memory
-    // address is partitioned depending on organization:
-    //    Direct Mapping:    [ tag | block | word | byte ]
-    //    Fully Associative: [ tag | word | byte ]
-    //    Set Associative:   [ tag | set | word | byte ]
-    //
-    // Bit lengths of each part are determined as follows:
-    // Direct Mapping:
-    //   byte  = log2 of #bytes in a word (typically 4)
-    //   word  = log2 of #words in a block
-    //   block = log2 of #blocks in the cache
-    //   tag   = #bytes in address - (byte+word+block)
-    // Fully Associative:
-    //   byte  = log2 of #bytes in a word (typically 4)
-    //   word  = log2 of #words in a block
-    //   tag   = #bytes in address - (byte+word)
-    // Set Associative:
-    //   byte  = log2 of #bytes in a word (typically 4)
-    //   word  = log2 of #words in a block
-    //   set   = log2 of #sets in the cache
-    //   tag   = #bytes in address - (byte+word+set)
-    //
-    // Direct Mapping (1 way set associative):
-    // The block value for a given address identifies its block index into the cache.
-    // That's why its called "direct mapped."  This is the only cache block it can
-    // occupy.  If that cache block is empty or if it is occupied by a different tag,
-    // this is a MISS.  If that cache block is occupied by the same tag, this is a HIT.
-    // There is no replacement policy: upon a cache miss of an occupied block, the old
-    // block is written out (unless write-through) and the new one read in.
-    // Those actions are not simulated here.
-    //
-    // Fully Associative:
-    // There is one set, and very tag has to be searched before determining hit or miss.
-    // If tag is matched, it is a hit.  If tag is not matched and there is at least one
-    // empty block, it is a miss and the new tag will occupy it.  If tag is not matched
-    // and every block is occupied, it is a miss and one of the occupied blocks will be
-    // selected for removal and the new tag will replace it.
-    //
-    // n-way Set Associative:
-    // Each set consists of n blocks, and the number of sets in the cache is total number
-    // of blocks divided by n.  The set bits in the address will identify which set to
-    // search, and every tag in that set has to be searched before determining hit or miss.
-    // If tag is matched, it is a hit.  If tag is not matched and there is at least one
-    // empty block, it is a miss and the new tag will occupy it.  If tag is not matched
-    // and every block is occupied, it is a miss and one of the occupied blocks will be
-    // selected for removal and the new tag will replace it.
-    //
-    private class AnyCache extends AbstractCache {
-        public AnyCache(int numberOfBlocks, int blockSizeInWords, int setSizeInBlocks) {
-            super(numberOfBlocks, blockSizeInWords, setSizeInBlocks);
-        }
-
-        private final int SET_FULL = 0, HIT = 1, MISS = 2;
-
-        // This method works for any of the placement policies:
-        // direct mapped, full associative or n-way set associative.
-        public CacheAccessResult isItAHitThenReadOnMiss(int address) {
-            int result = SET_FULL;
-            int firstBlock = getFirstBlockToSearch(address);
-            int lastBlock = getLastBlockToSearch(address);
-            if (debug) //System.out.print
-                writeLog("(" + memoryAccessCount + ") address: " + Binary.intToHexString(address) + " (tag " + Binary.intToHexString(getTag(address)) + ") " + " block range: " + firstBlock + "-" + lastBlock + "\n");
-            CacheBlock block;
-            int blockNumber;
-            // Will do a sequential instead of associative search!
-            for (blockNumber = firstBlock; blockNumber <= lastBlock; blockNumber++) {
-                block = blocks[blockNumber];
-                if (debug) //System.out.print
-                    writeLog("   trying block " + blockNumber + ((block.valid) ? " tag " + Binary.intToHexString(block.tag) : " empty"));
-                if (block.valid && block.tag == getTag(address)) {//  it's a hit!
-                    if (debug) //System.out.print
-                        writeLog(" -- HIT\n");
-                    result = HIT;
-                    block.mostRecentAccessTime = memoryAccessCount;
-                    break;
-                }
-                if (!block.valid) {// it's a miss but I got it now because it is empty!
-                    if (debug) //System.out.print
-                        writeLog(" -- MISS\n");
-                    result = MISS;
-                    block.valid = true;
-                    block.tag = getTag(address);
-                    block.mostRecentAccessTime = memoryAccessCount;
-                    break;
-                }
-                if (debug) //System.out.print
-                    writeLog(" -- OCCUPIED\n");
-            }
-            if (result == SET_FULL) {
-                //select one to replace and replace it...
-                if (debug) //System.out.print
-                    writeLog("   MISS due to FULL SET");
-                int blockToReplace = selectBlockToReplace(firstBlock, lastBlock);
-                block = blocks[blockToReplace];
-                block.tag = getTag(address);
-                block.mostRecentAccessTime = memoryAccessCount;
-                blockNumber = blockToReplace;
-            }
-            return new CacheAccessResult(result == HIT, blockNumber);
-        }
-
-        // call this if all blocks in the set are full.  If the set contains more than one block,
-        // It will pick on to replace based on selected replacement policy.
-        private int selectBlockToReplace(int first, int last) {
-            int replaceBlock = first;
-            if (first != last) {
-                switch (cacheReplacementSelector.getSelectedIndex()) {
-                    case RANDOM:
-                        replaceBlock = first + randu.nextInt(last - first + 1);
-                        if (debug) //System.out.print
-                            writeLog(" -- Random replace block " + replaceBlock + "\n");
-                        break;
-                    case LRU:
-                    default:
-                        int leastRecentAccessTime = memoryAccessCount; // all of them have to be less than this
-                        for (int block = first; block <= last; block++) {
-                            if (blocks[block].mostRecentAccessTime < leastRecentAccessTime) {
-                                leastRecentAccessTime = blocks[block].mostRecentAccessTime;
-                                replaceBlock = block;
-                            }
-                        }
-                        if (debug) //System.out.print
-                            writeLog(" -- LRU replace block " + replaceBlock + "; unused since (" + leastRecentAccessTime + ")\n");
-                        break;
-                }
-            }
-            return replaceBlock;
-        }
-    }
-
     //////////////////////////////////////////////////////////////
     //  Class to display animated cache
     //
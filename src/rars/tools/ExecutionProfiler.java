@@ -0,0 +1,158 @@
+package rars.tools;
+
+import rars.simulator.Profiler;
+
+import javax.swing.*;
+import java.awt.*;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Shows where the program spends its time: the functions, source lines and loops that
+ * executed the most instructions.  Call stacks can be saved in collapsed format for
+ * flame graph tools.
+ * <p>
+ * Unlike the other tools this does not observe memory; while connected it switches on the
+ * simulator's built-in {@link Profiler}, which costs far less per instruction.
+ */
+public class ExecutionProfiler extends AbstractToolAndApplication {
+    private static String name = "Execution Profiler";
+    private static String version = "Version 1.0";
+    private static String heading = "Where the program spends its time";
+
+    private static final int REPORT_ENTRIES = 15;
+    private static final int REFRESH_MILLIS = 500;
+
+    private Profiler profiler = null; // created on first connect, once the memory configuration is settled
+    private JTextArea report;
+    private Timer refresher;
+
+    /**
+     * Simple constructor, likely used to run a stand-alone profiler.
+     *
+     * @param title   String containing title for title bar
+     * @param heading String containing text for heading shown in upper part of window.
+     */
+    public ExecutionProfiler(String title, String heading) {
+        super(title, heading);
+    }
+
+    /**
+     * Simple construction, likely used by the RARS Tools menu mechanism.
+     */
+    public ExecutionProfiler() {
+        super(name + ", " + version, heading);
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    protected JComponent buildMainDisplayArea() {
+        JPanel panel = new JPanel(new BorderLayout());
+        report = new JTextArea(24, 80);
+        report.setEditable(false);
+        report.setFont(new Font(Font.MONOSPACED, Font.PLAIN, 12));
+        panel.add(new JScrollPane(report), BorderLayout.CENTER);
+
+        JButton save = new JButton("Save call stacks...");
+        save.setToolTipText("Save call stacks in collapsed format, for flame graph tools");
+        save.addActionListener(e -> saveCollapsedStacks());
+        JPanel buttons = new JPanel(new FlowLayout(FlowLayout.LEFT));
+        buttons.add(save);
+        panel.add(buttons, BorderLayout.SOUTH);
+
+        refresher = new Timer(REFRESH_MILLIS, e -> updateDisplay());
+        return panel;
+    }
+
+    // Nothing to observe; counting is done by the simulator itself.
+    @Override
+    protected void addAsObserver() {
+        if (profiler == null) {
+            profiler = new Profiler();
+        }
+        Profiler.setActive(profiler);
+        refresher.start();
+    }
+
+    @Override
+    protected void deleteAsObserver() {
+        if (profiler != null && Profiler.getActive() == profiler) {
+            Profiler.setActive(null);
+        }
+        if (refresher != null) {
+            refresher.stop();
+            updateDisplay();
+        }
+    }
+
+    @Override
+    protected void reset() {
+        profiler = new Profiler();
+        if (isObserving()) {
+            Profiler.setActive(profiler);
+        }
+        updateDisplay();
+    }
+
+    @Override
+    protected void updateDisplay() {
+        if (profiler == null || report == null) {
+            return;
+        }
+        ByteArrayOutputStream text = new ByteArrayOutputStream();
+        profiler.writeReport(new PrintStream(text, true), REPORT_ENTRIES);
+        String updated = new String(text.toByteArray(), StandardCharsets.UTF_8);
+        if (!updated.equals(report.getText())) {
+            report.setText(updated);
+            report.setCaretPosition(0);
+        }
+    }
+
+    @Override
+    protected void performSpecialClosingDuties() {
+        deleteAsObserver();
+    }
+
+    @Override
+    protected JComponent getHelpComponent() {
+        final String helpContent =
+                "Counts every instruction the program executes while the tool is connected.\n\n" +
+                "Functions: instructions executed in each function's own body, and how often it was called.\n" +
+                "A call is a jal or jalr that saves the return address in ra (or t0); a return is jalr x0\n" +
+                "through one of those registers.\n\n" +
+                "Source lines: instructions executed for each line, including every instruction a\n" +
+                "pseudo-instruction expands to.\n\n" +
+                "Loops: found from branches and jumps taken backward; the instructions executed between\n" +
+                "the target and the branch, and how often the branch was taken.\n\n" +
+                "Save call stacks writes one line per distinct call stack with the number of instructions\n" +
+                "executed in it, the collapsed format read by flame graph tools.  From the command line,\n" +
+                "use the 'prof <file>' option.";
+        JButton help = new JButton("Help");
+        help.addActionListener(e -> JOptionPane.showMessageDialog(theWindow, helpContent));
+        return help;
+    }
+
+    private void saveCollapsedStacks() {
+        if (profiler == null) {
+            return;
+        }
+        JFileChooser chooser = new JFileChooser();
+        chooser.setSelectedFile(new File("stacks.txt"));
+        if (chooser.showSaveDialog(theWindow) != JFileChooser.APPROVE_OPTION) {
+            return;
+        }
+        try (PrintStream out = new PrintStream(new FileOutputStream(chooser.getSelectedFile()), false, "UTF-8")) {
+            profiler.writeCollapsedStacks(out);
+        } catch (IOException e) {
+            JOptionPane.showMessageDialog(theWindow, "Unable to save call stacks: " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,192 @@
+package rars.tools;
+
+import rars.riscv.hardware.AddressErrorException;
+import rars.riscv.hardware.Memory;
+
+import javax.imageio.ImageIO;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * An image mirroring a region of memory, one pixel per word in row-major order, each word
+ * read as a 24-bit RGB color.
+ * <p>
+ * The pixels are the raster of a {@link BufferedImage}, so copying from memory is a block
+ * copy and drawing is a single image draw.  Stores are only recorded as a dirty rectangle,
+ * which costs a few comparisons on the simulator thread; {@link #refresh(Memory)} later copies
+ * just that rectangle from memory, however many stores it took to dirty it.
+ * <p>
+ * Used by {@link BitmapDisplay} and, without any GUI, to save frames as PNG images.
+ */
+public class Framebuffer {
+    private final int baseAddress, width, height;
+    private final BufferedImage image;
+    private final int[] pixels;
+    // Dirty rectangle in pixels, empty when minX > maxX
+    private int minX, minY, maxX, maxY;
+
+    /**
+     * @param baseAddress address of the upper left pixel, on a word boundary
+     * @param width       pixels per row
+     * @param height      rows
+     */
+    public Framebuffer(int baseAddress, int width, int height) {
+        if (width <= 0 || height <= 0 || baseAddress % Memory.WORD_LENGTH_BYTES != 0) {
+            throw new IllegalArgumentException("size must be positive and the base address word aligned");
+        }
+        this.baseAddress = baseAddress;
+        this.width = width;
+        this.height = height;
+        image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        pixels = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+        clean();
+    }
+
+    /**
+     * Builds a framebuffer from a specification {@code <width>x<height>[@<base address>]}, e.g.
+     * {@code 512x256} or {@code 64x64@0x10040000}.  The default base address is the static data
+     * segment.
+     *
+     * @throws IllegalArgumentException if the specification is not valid
+     */
+    public static Framebuffer parse(String spec) {
+        String[] parts = spec.toLowerCase(Locale.ROOT).split("@");
+        String[] size = parts[0].split("x");
+        if (parts.length > 2 || size.length != 2) {
+            throw new IllegalArgumentException("expected <width>x<height>[@<base address>]");
+        }
+        try {
+            int base = parts.length == 2 ? Integer.decode(parts[1]) : Memory.dataBaseAddress;
+            return new Framebuffer(base, Integer.parseInt(size[0]), Integer.parseInt(size[1]));
+        } catch (NumberFormatException e) {
+            // Integer.decode rejects the upper half of the address space, so try again as unsigned
+            if (parts.length == 2 && parts[1].startsWith("0x")) {
+                try {
+                    int base = Integer.parseUnsignedInt(parts[1].substring(2), 16);
+                    return new Framebuffer(base, Integer.parseInt(size[0]), Integer.parseInt(size[1]));
+                } catch (NumberFormatException ignored) {
+                }
+            }
+            throw new IllegalArgumentException("invalid number in " + spec);
+        }
+    }
+
+    public int getBaseAddress() {
+        return baseAddress;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    /**
+     * @return address of the last word displayed
+     */
+    public int getLastAddress() {
+        return baseAddress + (width * height - 1) * Memory.WORD_LENGTH_BYTES;
+    }
+
+    /**
+     * @return the image; its pixels change whenever the framebuffer is refreshed
+     */
+    public BufferedImage getImage() {
+        return image;
+    }
+
+    /**
+     * Records a store, so the words it touched are copied at the next refresh.  Addresses
+     * outside the framebuffer are ignored.
+     *
+     * @param address address stored to
+     * @param length  bytes stored
+     */
+    public synchronized void markDirty(int address, int length) {
+        // Unsigned, so addresses below the base land out of range rather than negative
+        long first = Integer.toUnsignedLong(address - baseAddress) >>> 2;
+        long last = Integer.toUnsignedLong(address + length - 1 - baseAddress) >>> 2;
+        long size = (long) width * height;
+        if (first >= size && last >= size) {
+            return;
+        }
+        first = first >= size ? 0 : first;
+        last = Math.min(last, size - 1);
+        int firstRow = (int) (first / width), lastRow = (int) (last / width);
+        int firstColumn = firstRow == lastRow ? (int) (first % width) : 0;
+        int lastColumn = firstRow == lastRow ? (int) (last % width) : width - 1;
+        minX = Math.min(minX, firstColumn);
+        maxX = Math.max(maxX, lastColumn);
+        minY = Math.min(minY, firstRow);
+        maxY = Math.max(maxY, lastRow);
+    }
+
+    /**
+     * Marks every pixel dirty, so the next refresh copies the whole region.
+     */
+    public synchronized void markAllDirty() {
+        minX = 0;
+        minY = 0;
+        maxX = width - 1;
+        maxY = height - 1;
+    }
+
+    /**
+     * Sets every pixel black without reading memory.
+     */
+    public synchronized void clear() {
+        Arrays.fill(pixels, 0);
+        clean();
+    }
+
+    /**
+     * Copies the dirty rectangle from memory into the image.
+     *
+     * @param memory the memory to read, without notifying its observers
+     * @return the rectangle of pixels that changed, or null if nothing was dirty
+     */
+    public Rectangle refresh(Memory memory) {
+        Rectangle dirty;
+        synchronized (this) {
+            if (minX > maxX) {
+                return null;
+            }
+            dirty = new Rectangle(minX, minY, maxX - minX + 1, maxY - minY + 1);
+            clean();
+        }
+        for (int row = dirty.y; row < dirty.y + dirty.height; row++) {
+            int offset = row * width + dirty.x;
+            try {
+                memory.getWordsNoNotify(baseAddress + offset * Memory.WORD_LENGTH_BYTES, pixels, offset, dirty.width);
+            } catch (AddressErrorException e) {
+                // Off the end of addressable memory; those pixels stay as they are
+            }
+        }
+        return dirty;
+    }
+
+    /**
+     * Refreshes the whole image from memory and writes it as a PNG file.
+     *
+     * @throws IOException if the file could not be written
+     */
+    public void writePng(Memory memory, File file) throws IOException {
+        markAllDirty();
+        refresh(memory);
+        if (!ImageIO.write(image, "png", file)) {
+            throw new IOException("no PNG writer available");
+        }
+    }
+
+    private void clean() {
+        minX = minY = Integer.MAX_VALUE;
+        maxX = maxY = -1;
+    }
+}
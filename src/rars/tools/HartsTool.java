@@ -0,0 +1,248 @@
+package rars.tools;
+
+import rars.Globals;
+import rars.simulator.Harts;
+import rars.util.Binary;
+import rars.venus.ExecutePane;
+import rars.venus.FileStatus;
+
+import javax.swing.*;
+import javax.swing.table.AbstractTableModel;
+import java.awt.*;
+import java.util.Locale;
+
+/**
+ * A RARS tool that runs the program on several harts (hardware threads) sharing memory.
+ * <p>
+ * While the tool is connected it installs {@link Harts}: each hart has its own registers
+ * and reads its number from the {@code mhartid} CSR, and they take turns executing a few
+ * instructions at a time, in the same order on every run.  The register windows show the
+ * hart running; while the program is paused, any hart can be brought up to look at or
+ * step.  Stepping and breakpoints apply to every hart, or to the one chosen.
+ */
+public class HartsTool extends AbstractToolAndApplication {
+    private static String name = "Harts";
+    private static String version = "Version 1.0";
+    private static String heading = "Run the program on several harts";
+
+    // Settings, used when connecting
+    private JSpinner hartCount, quantum, seed;
+    private JCheckBox random;
+
+    private JComboBox<String> focus;
+    private JTable table;
+    private HartTableModel model;
+    private JLabel speed;
+    private JButton show;
+    private Timer display; // refreshes the table, on the GUI thread
+
+    // The harts installed while connected
+    private Harts harts = null;
+
+    public HartsTool(String title, String heading) {
+        super(title, heading);
+    }
+
+    public HartsTool() {
+        super(name + ", " + version, heading);
+    }
+
+    public static void main(String[] args) {
+        new HartsTool(name + " stand-alone, " + version, heading).go();
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    protected JComponent buildMainDisplayArea() {
+        JPanel panel = new JPanel(new BorderLayout(0, 5));
+
+        JPanel settings = new JPanel(new FlowLayout(FlowLayout.LEFT));
+        hartCount = new JSpinner(new SpinnerNumberModel(2, 1, 64, 1));
+        hartCount.setToolTipText("Number of harts; set while disconnected");
+        quantum = new JSpinner(new SpinnerNumberModel(1, 1, 1000000, 1));
+        quantum.setToolTipText("Instructions a hart executes before the next one runs; set while disconnected");
+        random = new JCheckBox("Random order, seed");
+        random.setToolTipText("Run the harts in an order chosen at random, the same for every run with the same seed");
+        seed = new JSpinner(new SpinnerNumberModel(1, 0, Integer.MAX_VALUE, 1));
+        settings.add(new JLabel("Harts"));
+        settings.add(hartCount);
+        settings.add(new JLabel("Instructions per turn"));
+        settings.add(quantum);
+        settings.add(random);
+        settings.add(seed);
+        panel.add(settings, BorderLayout.NORTH);
+
+        model = new HartTableModel();
+        table = new JTable(model);
+        table.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
+        table.setPreferredScrollableViewportSize(new Dimension(360, 160));
+        panel.add(new JScrollPane(table), BorderLayout.CENTER);
+
+        JPanel controls = new JPanel(new FlowLayout(FlowLayout.LEFT));
+        focus = new JComboBox<>(new String[]{"All harts"});
+        focus.setToolTipText("The hart that stepping counts instructions of and breakpoints stop");
+        focus.addActionListener(e -> {
+            if (harts != null && focus.getSelectedIndex() >= 0) {
+                harts.setFocus(focus.getSelectedIndex() - 1);
+            }
+        });
+        show = new JButton("Show Registers");
+        show.setToolTipText("Switch to the selected hart, to look at or step it; only while paused");
+        show.addActionListener(e -> showSelected());
+        speed = new JLabel();
+        controls.add(new JLabel("Step and break on"));
+        controls.add(focus);
+        controls.add(show);
+        controls.add(speed);
+        panel.add(controls, BorderLayout.SOUTH);
+        return panel;
+    }
+
+    // Starts refreshing the table
+    protected void initializePostGUI() {
+        display = new Timer(250, e -> refresh());
+        display.start();
+        refresh();
+    }
+
+    // Install harts with the chosen settings
+    protected void addAsObserver() {
+        harts = new Harts(((Number) hartCount.getValue()).intValue());
+        harts.setQuantum(((Number) quantum.getValue()).intValue());
+        if (random.isSelected()) {
+            harts.setRandom(((Number) seed.getValue()).longValue());
+        }
+        Harts.setActive(harts);
+        String[] choices = new String[harts.getCount() + 1];
+        choices[0] = "All harts";
+        for (int i = 0; i < harts.getCount(); i++) {
+            choices[i + 1] = "Hart " + i;
+        }
+        focus.setModel(new DefaultComboBoxModel<>(choices));
+        setSettingsEnabled(false);
+        model.fireTableStructureChanged();
+    }
+
+    // Go back to a single hart
+    protected void deleteAsObserver() {
+        if (harts != null && Harts.getActive() == harts) {
+            Harts.setActive(null);
+        }
+        harts = null;
+        if (focus != null) {
+            focus.setModel(new DefaultComboBoxModel<>(new String[]{"All harts"}));
+            setSettingsEnabled(true);
+            model.fireTableStructureChanged();
+        }
+    }
+
+    private void setSettingsEnabled(boolean enabled) {
+        hartCount.setEnabled(enabled);
+        quantum.setEnabled(enabled);
+        random.setEnabled(enabled);
+        seed.setEnabled(enabled);
+    }
+
+    // Overwrites the empty parent method, called when the tool is closed
+    protected void performSpecialClosingDuties() {
+        if (display != null) display.stop();
+    }
+
+    protected void reset() {
+        if (harts != null) {
+            harts.setFocus(-1);
+            focus.setSelectedIndex(0);
+        }
+        refresh();
+    }
+
+    private void refresh() {
+        if (model.getRowCount() > 0) model.fireTableRowsUpdated(0, model.getRowCount() - 1);
+        speed.setText(harts == null ? "" : String.format(Locale.ROOT, "%,.0f instructions/s",
+                harts.getInstructionsPerSecond()));
+        show.setEnabled(harts != null && FileStatus.get() != FileStatus.RUNNING);
+    }
+
+    // Brings the selected hart's registers into the register windows
+    private void showSelected() {
+        int row = table.getSelectedRow();
+        if (harts == null || row < 0 || FileStatus.get() == FileStatus.RUNNING) {
+            return;
+        }
+        Globals.memoryAndRegistersLock.lock();
+        try {
+            harts.select(row);
+        } finally {
+            Globals.memoryAndRegistersLock.unlock();
+        }
+        if (Globals.getGui() != null) {
+            ExecutePane executePane = Globals.getGui().getMainPane().getExecutePane();
+            executePane.getRegistersWindow().updateRegisters();
+            executePane.getFloatingPointWindow().updateRegisters();
+            executePane.getControlAndStatusWindow().updateRegisters();
+            executePane.getTextSegmentWindow().highlightStepAtPC();
+        }
+        refresh();
+    }
+
+    // One row per hart: whether it is running, its number, program counter and instructions executed
+    private class HartTableModel extends AbstractTableModel {
+        private final String[] columns = {"", "Hart", "PC", "Instructions"};
+
+        public int getRowCount() {
+            return (harts == null) ? 0 : harts.getCount();
+        }
+
+        public int getColumnCount() {
+            return columns.length;
+        }
+
+        public String getColumnName(int column) {
+            return columns[column];
+        }
+
+        public Object getValueAt(int row, int column) {
+            if (harts == null || row >= harts.getCount()) {
+                return "";
+            }
+            switch (column) {
+                case 0:
+                    return (row == harts.getCurrent()) ? ">" : "";
+                case 1:
+                    return row;
+                case 2:
+                    return Binary.intToHexString(harts.getProgramCounter(row));
+                default:
+                    return harts.getInstructions(row);
+            }
+        }
+    }
+
+    protected JComponent getHelpComponent() {
+        final String helpContent =
+                "Use this tool to run the program on several harts (hardware threads) that share memory, for parallel programs.\n\n" +
+                "While the tool is connected, every hart starts at the same address with its own registers. " +
+                "A hart finds its number, from 0, with csrr t0, mhartid. Each hart's stack pointer starts 64KB below the previous hart's (less in a small memory configuration).\n\n" +
+                "The harts take turns: one executes the set number of instructions, then the next, round robin or in a random order from the seed. " +
+                "Either way every run interleaves the same, so results can be reproduced. " +
+                "Memory sees one instruction at a time, so it is sequentially consistent, which RISC-V's memory model allows.\n\n" +
+                "The register windows show the hart marked > in the table. While the program is paused, select a hart and press Show Registers to switch to it. " +
+                "Stepping and breakpoints apply to all harts, or to the one chosen: stepping then runs the others until that hart has executed an instruction.\n\n" +
+                "WFI ends a hart's turn, and the exit call ends the whole program. Back-stepping does not go back past a switch between harts, and time travel is off. " +
+                "The same harts are available without the GUI through the 'harts' command line option.";
+        JButton help = new JButton("Help");
+        help.addActionListener(e -> {
+            JTextArea ja = new JTextArea(helpContent);
+            ja.setRows(20);
+            ja.setColumns(60);
+            ja.setLineWrap(true);
+            ja.setWrapStyleWord(true);
+            JOptionPane.showMessageDialog(theWindow, new JScrollPane(ja),
+                    "Running several harts", JOptionPane.INFORMATION_MESSAGE);
+        });
+        return help;
+    }
+}
@@ -5,6 +5,7 @@ import rars.riscv.hardware.AccessNotice;
 import rars.riscv.hardware.AddressErrorException;
 import rars.riscv.hardware.Memory;
 import rars.riscv.hardware.MemoryAccessNotice;
+import rars.riscv.hardware.TransientNoticeObserver;
 import rars.riscv.BasicInstruction;
 import rars.riscv.BasicInstructionFormat;
 
@@ -20,7 +21,7 @@ import java.util.Observable;
  *
  * @author Felipe Lessa <felipe.lessa@gmail.com>
  */
-public class InstructionCounter extends AbstractToolAndApplication {
+public class InstructionCounter extends AbstractToolAndApplication implements TransientNoticeObserver {
     private static String name = "Instruction Counter";
     private static String version = "Version 1.0 (Felipe Lessa)";
     private static String heading = "Counting the number of instructions executed";
@@ -36,6 +36,7 @@ import rars.riscv.hardware.AccessNotice;
 import rars.riscv.hardware.AddressErrorException;
 import rars.riscv.hardware.Memory;
 import rars.riscv.hardware.MemoryAccessNotice;
+import rars.riscv.hardware.TransientNoticeObserver;
 import rars.riscv.BasicInstruction;
 import rars.riscv.BasicInstructionFormat;
 
@@ -58,7 +59,7 @@ import java.io.IOException;
  *
  * @author John Owens <jowens@ece.ucdavis.edu>
  */
-public class InstructionMemoryDump extends AbstractToolAndApplication {
+public class InstructionMemoryDump extends AbstractToolAndApplication implements TransientNoticeObserver {
     private static String name = "Instruction/Memory Dump";
     private static String version = "Version 1.0 (John Owens)";
     private static String heading = "Dumps every executed instruction and data memory access to a file";
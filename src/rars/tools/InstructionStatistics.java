@@ -6,6 +6,7 @@ import rars.riscv.hardware.AccessNotice;
 import rars.riscv.hardware.AddressErrorException;
 import rars.riscv.hardware.Memory;
 import rars.riscv.hardware.MemoryAccessNotice;
+import rars.riscv.hardware.TransientNoticeObserver;
 import rars.riscv.instructions.*;
 
 import javax.swing.*;
@@ -14,13 +15,15 @@ import java.util.Observable;
 
 
 /**
- * A RARS tool for obtaining instruction statistics by instruction category.
+ * A RARS tool for obtaining instruction statistics by instruction category.  It also shows
+ * how many of the instructions were compressed (16-bit) ones and the bytes of code fetched
+ * for them, a measure of code density.
  * <p>
  * The code of this tools is initially based on the Instruction counter tool by Felipe Lassa.
  *
  * @author Ingo Kofler <ingo.kofler@itec.uni-klu.ac.at>
  */
-public class InstructionStatistics extends AbstractToolAndApplication {
+public class InstructionStatistics extends AbstractToolAndApplication implements TransientNoticeObserver {
 
     /**
      * name of the tool
@@ -84,6 +87,17 @@ public class InstructionStatistics extends AbstractToolAndApplication {
      */
     private JProgressBar[] m_pbCounters;
 
+    /**
+     * text field and progress bar for the compressed instruction count
+     */
+    private JTextField m_tfCompressedCounter;
+    private JProgressBar m_pbCompressedCounter;
+
+    /**
+     * text field for the bytes of code fetched
+     */
+    private JTextField m_tfFetchedBytes;
+
 
     /**
      * counter for the total number of instructions processed
@@ -95,6 +109,16 @@ public class InstructionStatistics extends AbstractToolAndApplication {
      */
     private int[] m_counters = new int[MAX_CATEGORY];
 
+    /**
+     * counter for the compressed instructions among them
+     */
+    private int m_compressedCounter = 0;
+
+    /**
+     * bytes of code fetched for the instructions processed
+     */
+    private long m_fetchedBytes = 0;
+
     /**
      * names of the instruction categories as array
      */
@@ -158,6 +182,12 @@ public class InstructionStatistics extends AbstractToolAndApplication {
             m_pbCounters[i] = new JProgressBar(JProgressBar.HORIZONTAL);
             m_pbCounters[i].setStringPainted(true);
         }
+        m_tfCompressedCounter = new JTextField("0", 10);
+        m_tfCompressedCounter.setEditable(false);
+        m_pbCompressedCounter = new JProgressBar(JProgressBar.HORIZONTAL);
+        m_pbCompressedCounter.setStringPainted(true);
+        m_tfFetchedBytes = new JTextField("0", 20);
+        m_tfFetchedBytes.setEditable(false);
 
         GridBagConstraints c = new GridBagConstraints();
         c.anchor = GridBagConstraints.LINE_START;
@@ -184,6 +214,22 @@ public class InstructionStatistics extends AbstractToolAndApplication {
             panel.add(m_pbCounters[i], c);
         }
 
+        // code density
+        c.gridy++;
+        c.gridx = 2;
+        c.insets = new Insets(17, 3, 3, 3);
+        panel.add(new JLabel("Compressed:   "), c);
+        c.gridx = 3;
+        panel.add(m_tfCompressedCounter, c);
+        c.gridx = 4;
+        panel.add(m_pbCompressedCounter, c);
+        c.gridy++;
+        c.gridx = 2;
+        c.insets = new Insets(3, 3, 3, 3);
+        panel.add(new JLabel("Bytes fetched:   "), c);
+        c.gridx = 3;
+        panel.add(m_tfFetchedBytes, c);
+
         return panel;
     }
 
@@ -275,6 +321,8 @@ public class InstructionStatistics extends AbstractToolAndApplication {
 
                     m_totalCounter++;
                     m_counters[category]++;
+                    if (stmt.isCompressed()) m_compressedCounter++;
+                    m_fetchedBytes += stmt.getInstructionLength();
                     updateDisplay();
                 }
             } catch (AddressErrorException e) {
@@ -289,6 +337,8 @@ public class InstructionStatistics extends AbstractToolAndApplication {
      */
     protected void initializePreGUI() {
         m_totalCounter = 0;
+        m_compressedCounter = 0;
+        m_fetchedBytes = 0;
         lastAddress = -1; // from Felipe Lessa's instruction counter tool
         for (int i = 0; i < InstructionStatistics.MAX_CATEGORY; i++)
             m_counters[i] = 0;
@@ -300,6 +350,8 @@ public class InstructionStatistics extends AbstractToolAndApplication {
      */
     protected void reset() {
         m_totalCounter = 0;
+        m_compressedCounter = 0;
+        m_fetchedBytes = 0;
         lastAddress = -1; // from Felipe Lessa's instruction counter tool
         for (int i = 0; i < InstructionStatistics.MAX_CATEGORY; i++)
             m_counters[i] = 0;
@@ -318,5 +370,10 @@ public class InstructionStatistics extends AbstractToolAndApplication {
             m_pbCounters[i].setMaximum(m_totalCounter);
             m_pbCounters[i].setValue(m_counters[i]);
         }
+        m_tfCompressedCounter.setText(String.valueOf(m_compressedCounter));
+        m_pbCompressedCounter.setMaximum(m_totalCounter);
+        m_pbCompressedCounter.setValue(m_compressedCounter);
+        m_tfFetchedBytes.setText(m_totalCounter == 0 ? "0"
+                : String.format("%d (%.2f per instruction)", m_fetchedBytes, (double) m_fetchedBytes / m_totalCounter));
     }
 }
@@ -2,8 +2,10 @@ package rars.tools;
 
 import rars.*;
 import rars.riscv.hardware.AccessNotice;
+import rars.riscv.hardware.AccessStream;
 import rars.riscv.hardware.Memory;
 import rars.riscv.hardware.MemoryAccessNotice;
+import rars.riscv.hardware.TransientNoticeObserver;
 
 import javax.swing.*;
 import javax.swing.border.EmptyBorder;
@@ -21,7 +23,7 @@ import java.util.Observable;
  * maximum use of methods inherited from its abstract superclass AbstractToolAndApplication.
  * Pete Sanderson, verison 1.0, 14 November 2006.
  */
-public class MemoryReferenceVisualization extends AbstractToolAndApplication {
+public class MemoryReferenceVisualization extends AbstractToolAndApplication implements TransientNoticeObserver {
 
     private static String version = "Version 1.0";
     private static String heading = "Visualizing memory reference patterns";
@@ -176,6 +178,19 @@ public class MemoryReferenceVisualization extends AbstractToolAndApplication {
         incrementReferenceCountForAddress(((MemoryAccessNotice) accessNotice).getAddress());
     }
 
+    // Counting and repainting happen off the simulator thread; every reference still counts.
+    @Override
+    protected AccessStream.Delivery getBatchDelivery() {
+        return AccessStream.Delivery.LOSSLESS;
+    }
+
+    @Override
+    protected void processRISCVBatch(AccessStream.Batch batch) {
+        for (int i = 0; i < batch.size(); i++) {
+            incrementReferenceCountForAddress(batch.getAddress(i));
+        }
+    }
+
 
     /**
      * Initialize all JComboBox choice structures not already initialized at declaration.
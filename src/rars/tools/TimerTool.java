@@ -1,17 +1,7 @@
 package rars.tools;
 
-import rars.Globals;
-import rars.riscv.hardware.AccessNotice;
-import rars.riscv.hardware.MemoryAccessNotice;
-import rars.riscv.hardware.Memory;
-import rars.riscv.hardware.InterruptController;
-import rars.riscv.hardware.ControlAndStatusRegisterFile;
-import rars.riscv.hardware.AddressErrorException;
+import rars.simulator.VirtualClock;
 
-import java.util.Observable;
-import java.util.Observer;
-import java.util.Timer;
-import java.util.TimerTask;
 import java.awt.GridLayout;
 import java.awt.FlowLayout;
 import java.awt.event.ActionEvent;
@@ -21,39 +11,32 @@ import javax.swing.*;
 
 /**
  * A RARS tool used to implement a timing module and timer inturrpts.
+ * <p>
+ * Time is virtual: while the tool is connected it installs a {@link VirtualClock}, which
+ * advances the time MMIO by one millisecond every so many executed instructions and raises
+ * the timer interrupt when it reaches timecmp.  Nothing runs on another thread, so timer
+ * programs behave the same on every run whatever the speed of the simulation.
  **/
 public class TimerTool extends AbstractToolAndApplication {
     private static String heading = "Timer Tool";
-    private static String version = "Version 1.0 (Zachary Selk)";
-    private static final int TIME_ADDRESS = Memory.memoryMapBaseAddress + 0x18;
-    private static final int TIME_CMP_ADDRESS = Memory.memoryMapBaseAddress + 0x20;
+    private static String version = "Version 1.1 (Zachary Selk)";
+    private static final int DEFAULT_INSTRUCTIONS_PER_MILLISECOND = 1000;
 
     // GUI window sections
-    private static JPanel panelTools;
     private TimePanel timePanel;
+    private JSpinner rate;
+    private Timer display; // refreshes the time shown, on the GUI thread
 
-    // Internal time values
-    private static long time = 0L;      // The current time of the program (starting from 0)
-    private static long startTime = 0L; // Tmp unix time used to keep track of how much time has passed
-    private static long savedTime = 0L; // Accumulates time as we pause/play the timer
-
-    // Timing threads
-    private static TimeCmpDaemon timeCmp = null; // Watches for changes made to timecmp
-    private Timer timer = new Timer();
-    private Tick tick = new Tick(); // Runs every millisecond to decide if a timer inturrupt should be raised
-
-    // Internal timing flags
-    private static boolean updateTime = false;    // Controls when time progresses (for pausing)
-    private static boolean running = false;       // true while tick thread is running
+    // The clock installed while connected, and whether time is running
+    private VirtualClock clock = null;
+    private boolean playing = false;
 
     public TimerTool() {
         super(heading + ", " + version, heading);
-        startTimeCmpDaemon();
     }
 
     public TimerTool(String title, String heading) {
         super(title, heading);
-        startTimeCmpDaemon();
     }
 
     public static void main(String[] args) {
@@ -92,177 +75,71 @@ public class TimerTool extends AbstractToolAndApplication {
                      });
         pauseButton.addKeyListener(new EnterKeyListener(pauseButton));
 
+        rate = new JSpinner(new SpinnerNumberModel(DEFAULT_INSTRUCTIONS_PER_MILLISECOND, 1, Integer.MAX_VALUE, 100));
+        rate.setToolTipText("Instructions executed per millisecond of time; set while disconnected");
+        JPanel ratePanel = new JPanel(new FlowLayout());
+        ratePanel.add(new JLabel("Instructions per ms"));
+        ratePanel.add(rate);
+
         timePanel.add(playButton);
         timePanel.add(pauseButton);
         panelTools.add(timePanel);
+        panelTools.add(ratePanel);
         return panelTools;
     }
 
-    // A daemon that watches the timecmp MMIO for any changes
-    private void startTimeCmpDaemon() {
-        if (timeCmp == null) {
-            timeCmp = new TimeCmpDaemon();
+    // Starts refreshing the time shown
+    protected void initializePostGUI() {
+        display = new Timer(100, e -> timePanel.updateTime());
+        display.start();
+    }
+
+    // Install a clock running at the chosen rate
+    protected void addAsObserver() {
+        clock = new VirtualClock(((Number) rate.getValue()).longValue());
+        clock.setPaused(!playing);
+        VirtualClock.setActive(clock);
+        rate.setEnabled(false);
+    }
+
+    // Go back to the host clock
+    protected void deleteAsObserver() {
+        if (clock != null && VirtualClock.getActive() == clock) {
+            VirtualClock.setActive(null);
         }
+        clock = null;
+        if (rate != null) rate.setEnabled(true);
     }
 
     // Overwrites the empty parent method, called when the tool is closed
     protected void performSpecialClosingDuties() {
         stop();
+        if (display != null) display.stop();
     }
 
 
     /***************************  Timer controls  *****************************/
 
-    public void start() {
-        if (!running) {
-            // Start a timer that checks to see if a timer interupt needs to be raised
-            // every millisecond
-            timer.schedule(tick, 0, 1);
-            running = true;
-        }
-    }
-
     public void play() {
-        // Gaurd against multiple plays
-        if (!updateTime) {
-            updateTime = true;
-            startTime = System.currentTimeMillis();
-        }
-
+        playing = true;
+        if (clock != null) clock.setPaused(false);
     }
 
     public void pause() {
-        // Gaurd against multiple pauses
-        if (updateTime) {
-            updateTime = false;
-            time = savedTime + System.currentTimeMillis() - startTime;
-            savedTime = time;
-        }
+        playing = false;
+        if (clock != null) clock.setPaused(true);
     }
 
-    // Reset all of our counters to their default values
+    // Time itself restarts from 0 when the program is reset
     protected void reset() {
-        time = 0L;
-        savedTime = 0L;
-        startTime = System.currentTimeMillis();
-        tick.updateTimecmp = true;
+        pause();
         timePanel.updateTime();
-        tick.reset();
     }
 
-    // Shutdown the timer (note that we keep the TimeCmpDaemon running)
+    // Shutdown the timer
     public void stop() {
-        updateTime = false;
-        timer.cancel();
-        running = false;
-        reset();
-    }
-
-
-    /*****************************  Timer Classes  *****************************/
-
-    // Watches for changes made to the timecmp MMIO
-    public class TimeCmpDaemon implements Observer {
-        public boolean postInterrupt = false;
-        public long value = 0L; // Holds the most recent value of timecmp writen to the MMIO
-
-        public TimeCmpDaemon() {
-            addAsObserver();
-        }
-
-        public void addAsObserver() {
-            try {
-                Globals.memory.addObserver(this, TIME_CMP_ADDRESS, TIME_CMP_ADDRESS+8);
-            } catch (AddressErrorException aee) {
-                System.out.println("Error while adding observer in Timer Tool");
-                System.exit(0);
-            }
-        }
-
-        public void update(Observable ressource, Object accessNotice) {
-            MemoryAccessNotice notice = (MemoryAccessNotice) accessNotice;
-            int accessType = ((AccessNotice)accessNotice).getAccessType();
-            // If is was a WRITE operation
-            if (accessType == 1) {
-                int address = notice.getAddress();
-                int value = notice.getValue();
-
-                // Check what word was changed, then update the corrisponding information
-                if (address == TIME_CMP_ADDRESS) {
-                    this.value = ((this.value >> 32) << 32) + value;
-                    postInterrupt = true; // timecmp was writen to
-                }
-                else if (address == TIME_CMP_ADDRESS+4) {
-                    this.value = (this.value & 0xFFFFFFFF) + (((long)value) << 32);
-                    postInterrupt = true; // timecmp was writen to
-                }
-            }
-        }
-    }
-
-    // Runs every millisecond to decide if a timer inturrupt should be raised
-    private class Tick extends TimerTask {
-        public volatile boolean updateTimecmp = true;
-
-        public void run() {
-            // Check to see if the tool is connected
-            // Note: "connectButton != null" short circuits the expression when null
-            if (connectButton != null && connectButton.isConnected()) {
-                // If the tool is not paused
-                if (updateTime) {
-                    // time is the difference between the last time we started the time and now, plus
-                    // our time accumulator
-                    time = savedTime + System.currentTimeMillis() - startTime;
-
-                    // Write the lower and upper words of the time MMIO respectivly
-                    updateMMIOControlAndData(TIME_ADDRESS, (int)(time & 0xFFFFFFFF));
-                    updateMMIOControlAndData(TIME_ADDRESS+4, (int)(time >> 32));
-
-                    // The logic for if a timer interrupt should be raised
-                    // Note: if either the UTIP bit in the uie CSR or the UIE bit in the ustatus CSR
-                    //      are zero then this interrupt will be stopped further on in the pipeline
-                    if (time >= timeCmp.value && timeCmp.postInterrupt && bitsEnabled()) {
-                        InterruptController.registerTimerInterrupt(ControlAndStatusRegisterFile.TIMER_INTERRUPT);
-                        timeCmp.postInterrupt = false; // Wait for timecmp to be writen to again
-                    }
-                    timePanel.updateTime();
-                }
-            }
-            // Otherwise we keep track of the last time the tool was not connected
-            else {
-                time = savedTime + System.currentTimeMillis() - startTime;
-                startTime = System.currentTimeMillis();
-            }
-        }
-
-        // Checks the control bits to see if user-level timer inturrupts are enabled
-        private boolean bitsEnabled() {
-            boolean utip = (ControlAndStatusRegisterFile.getValue("uie") & 0x10) == 0x10;
-            boolean uie = (ControlAndStatusRegisterFile.getValue("ustatus") & 0x1) == 0x1;
-
-            return (utip && uie);
-        }
-
-        // Set time MMIO to zero
-        public void reset() {
-            updateMMIOControlAndData(TIME_ADDRESS, 0);
-            updateMMIOControlAndData(TIME_ADDRESS+4, 0);
-        }
-    }
-
-    // Writes a word to a virtual memory address
-    private synchronized void updateMMIOControlAndData(int dataAddr, int dataValue) {
-        Globals.memoryAndRegistersLock.lock();
-        try {
-            try {
-                Globals.memory.setRawWord(dataAddr, dataValue);
-            } catch (AddressErrorException aee) {
-                System.out.println("Tool author specified incorrect MMIO address!" + aee);
-                System.exit(0);
-            }
-        } finally {
-            Globals.memoryAndRegistersLock.unlock();
-        }
+        pause();
+        deleteAsObserver();
     }
 
 
@@ -276,11 +153,11 @@ public class TimerTool extends AbstractToolAndApplication {
             this.setLayout(fl);
             this.add(currentTime);
             updateTime();
-            start();
         }
 
         public void updateTime() {
-            currentTime.setText(String.format("%02d:%02d.%02d", time/60000, (time/1000)%60, time%100));
+            long time = (clock == null) ? 0 : clock.getTime();
+            currentTime.setText(String.format("%02d:%02d.%02d", time/60000, (time/1000)%60, (time%1000)/10));
         }
     }
 
@@ -288,7 +165,10 @@ public class TimerTool extends AbstractToolAndApplication {
     protected JComponent getHelpComponent() {
         final String helpContent =
             "Use this tool to simulate the Memory Mapped IO (MMIO) for a timing device allowing the program to utalize timer interupts. " +
-            "While this tool is connected to the program it runs a clock (starting from time 0), storing the time in milliseconds. " +
+            "While this tool is connected to the program and playing it runs a clock (starting from time 0 when the program is reset), storing the time in milliseconds. " +
+            "The clock is virtual: a millisecond passes every time the program executes the number of instructions set in the tool, " +
+            "so the program sees the same times and interrupts on every run, however fast or slow it is simulated. " +
+            "The same clock is available without the GUI through the 'timer' command line option.\n\n" +
             "The time is stored as a 64 bit integer and can be accessed (using a lw instruction) at 0xFFFF0018 for the lower 32 bits and 0xFFFF001B for the upper 32 bits.\n\n" +
             "Three things must be done before an interrupt can be set:\n" +
             " The address of your interrupt handler must be stored in the utvec CSR\n" +
@@ -4,10 +4,18 @@ import rars.CancelException;
 import rars.Globals;
 import rars.Settings;
 import rars.SimulationException;
+import rars.simulator.TimeTravel;
 
 import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
 import java.nio.channels.FileChannel;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.OpenOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
 
 /**
  * Provides standard i/o services needed to simulate the RISCV syscall
@@ -25,9 +33,16 @@ public class SystemIO {
      */
     public static final int SYSCALL_BUFSIZE = 128;
     /**
-     * Maximum number of files that can be open
+     * Default maximum number of files that can be open
      */
     public static final int SYSCALL_MAXFILES = 32;
+    /**
+     * Default size from which files opened read-only are memory-mapped
+     */
+    public static final long SYSCALL_MAPSIZE = 16 * 1024 * 1024;
+
+    private static int maxFiles = SYSCALL_MAXFILES;
+    private static long mapSize = SYSCALL_MAPSIZE;
     /**
      * String used for description of file error
      */
@@ -40,6 +55,7 @@ public class SystemIO {
     private static final int O_CREAT = 0x00000200; // 512
     private static final int O_TRUNC = 0x00000400; // 1024
     private static final int O_EXCL = 0x00000800; // 2048
+    private static final int O_ACCMODE = 0x00000003;
 
     private static final int SEEK_SET = 0;
     private static final int SEEK_CUR = 1;
@@ -79,29 +95,32 @@ public class SystemIO {
     }
 
     private static String readStringInternal(String init, String prompt, int maxlength) throws CancelException {
-        String input = init;
-        if (Globals.getGui() == null) {
-            try {
-                input = getInputReader().readLine();
-                if (input == null)
-                    input = "";
-            } catch (IOException e) {
-            }
-        } else {
-            if (Globals.getSettings().getBooleanSetting(Settings.Bool.POPUP_SYSCALL_INPUT)) {
-                input = Globals.getGui().getMessagesPane().getInputString(prompt);
-            } else if (!Globals.getGui().getMessagesPane().isInteractiveMode()) {
+        // Recorded so that time-travel replay sees the same input
+        return TimeTravel.input(() -> {
+            String input = init;
+            if (Globals.getGui() == null) {
                 try {
-                    input = getInputReaderFromGui().readLine();
+                    input = getInputReader().readLine();
                     if (input == null)
                         input = "";
-                } catch (IOException e) {   // as above
+                } catch (IOException e) {
                 }
             } else {
-                input = Globals.getGui().getMessagesPane().getInputString(maxlength);
+                if (Globals.getSettings().getBooleanSetting(Settings.Bool.POPUP_SYSCALL_INPUT)) {
+                    input = Globals.getGui().getMessagesPane().getInputString(prompt);
+                } else if (!Globals.getGui().getMessagesPane().isInteractiveMode()) {
+                    try {
+                        input = getInputReaderFromGui().readLine();
+                        if (input == null)
+                            input = "";
+                    } catch (IOException e) {   // as above
+                    }
+                } else {
+                    input = Globals.getGui().getMessagesPane().getInputString(maxlength);
+                }
             }
-        }
-        return input;
+            return input;
+        });
     }
 
     /**
@@ -134,14 +153,17 @@ public class SystemIO {
      * Implements syscall having 4 in $v0, to print a string.
      */
     public static void printString(String string) {
+        if (TimeTravel.isReplaying()) {
+            return; // already printed the first time through
+        }
         if (Globals.getGui() == null) {
+            // Buffered; flushed before a syscall that reads input or may block, see flush()
             try {
                 SystemIO.getOutputWriter().write(string);
-                SystemIO.getOutputWriter().flush();
             } catch (IOException e){
             }
         } else {
-            print2Gui(string);
+            Globals.getGui().getMessagesPane().postOutput(string);
         }
     }
 
@@ -179,14 +201,15 @@ public class SystemIO {
         int returnValue;
 
         if (Globals.getGui() == null) {
-            try {
-                //Read the next char from the buffered input reader
-                returnValue = getInputReader().read();
-                if (returnValue == -1)
-                    returnValue = EOF;
-            } catch (IOException e) {
-                returnValue = EOF;
-            }
+            returnValue = TimeTravel.input(() -> {
+                try {
+                    //Read the next char from the buffered input reader
+                    int c = getInputReader().read();
+                    return (c == -1) ? EOF : c;
+                } catch (IOException e) {
+                    return EOF;
+                }
+            });
         } else if (Globals.getSettings().getBooleanSetting(Settings.Bool.POPUP_SYSCALL_INPUT)) {
             // Need a popup?
             String input = readStringInternal("0", "Enter a character value (syscall " + serviceNumber + ")", 1);
@@ -222,11 +245,16 @@ public class SystemIO {
      */
 
     public static int writeToFile(int fd, byte[] myBuffer, int lengthRequested) {
+        // On time-travel replay the write is not repeated, only its result
+        return TimeTravel.input(() -> write(fd, myBuffer, lengthRequested));
+    }
+
+    private static int write(int fd, byte[] myBuffer, int lengthRequested) {
         /////////////// DPS 8-Jan-2013  ////////////////////////////////////////////////////
         /// Write to STDOUT or STDERR file descriptor while using IDE - write to Messages pane.
         if ((fd == STDOUT || fd == STDERR) && Globals.getGui() != null) {
             String data = new String(myBuffer, StandardCharsets.UTF_8); //decode the bytes using UTF-8 charset
-            print2Gui(data);
+            Globals.getGui().getMessagesPane().postOutput(data);
             return myBuffer.length; // data.length would not count multi-byte characters
         }
         ///////////////////////////////////////////////////////////////////////////////////
@@ -237,25 +265,17 @@ public class SystemIO {
             fileErrorString = "File descriptor " + fd + " is not open for writing";
             return -1;
         }
-        // retrieve FileOutputStream from storage
-        OutputStream outputStream = (OutputStream) FileIOData.getStreamInUse(fd);
+        Closeable stream = FileIOData.getStreamInUse(fd);
         try {
-            // Oct. 9 2005 Ken Vollmar
-            // Observation: made a call to outputStream.write(myBuffer, 0, lengthRequested)
-            //     with myBuffer containing 6(ten) 32-bit-words <---> 24(ten) bytes, where the
-            //     words are MIPS integers with values such that many of the bytes are ZEROES.
-            //     The effect is apparently that the write stops after encountering a zero-valued
-            //     byte. (The method write does not return a value and so this can't be verified
-            //     by the return value.)
-            // Writes up to lengthRequested bytes of data to this output stream from an array of bytes.
-            // outputStream.write(myBuffer, 0, lengthRequested); // write is a void method -- no verification value returned
-
-            // Oct. 9 2005 Ken Vollmar  Force the write statement to write exactly
-            // the number of bytes requested, even though those bytes include many ZERO values.
-            for (int ii = 0; ii < lengthRequested; ii++) {
-                outputStream.write(myBuffer[ii]);
+            if (stream instanceof OpenFile) {
+                // Writes exactly lengthRequested bytes, zero bytes included
+                ((OpenFile) stream).write(myBuffer, lengthRequested);
+            } else {
+                // Keep the order of text already printed through the writer.  Standard output
+                // is otherwise only flushed before a syscall that reads input or may block, see flush().
+                (fd == STDOUT ? getOutputWriter() : getErrorWriter()).flush();
+                ((OutputStream) stream).write(myBuffer, 0, lengthRequested);
             }
-            outputStream.flush();// DPS 7-Jan-2013
         } catch (IOException e) {
             fileErrorString = "IO Exception on write of file with fd " + fd;
             return -1;
@@ -292,6 +312,19 @@ public class SystemIO {
      * @return number of bytes read, 0 on EOF, or -1 on error
      */
     public static int readFromFile(int fd, byte[] myBuffer, int lengthRequested) {
+        // Recorded so that time-travel replay sees the same data
+        byte[] data = TimeTravel.input(() -> {
+            int length = read(fd, myBuffer, lengthRequested);
+            return (length < 0) ? null : Arrays.copyOf(myBuffer, length);
+        });
+        if (data == null) {
+            return -1;
+        }
+        System.arraycopy(data, 0, myBuffer, 0, data.length);
+        return data.length;
+    }
+
+    private static int read(int fd, byte[] myBuffer, int lengthRequested) {
         int retValue = -1;
         /////////////// DPS 8-Jan-2013  //////////////////////////////////////////////////
         /// Read from STDIN file descriptor while using IDE - get input from Messages pane.
@@ -322,11 +355,11 @@ public class SystemIO {
             fileErrorString = "File descriptor " + fd + " is not open for reading";
             return -1;
         }
-        // retrieve FileInputStream from storage
-        InputStream InputStream = (InputStream) FileIOData.getStreamInUse(fd);
+        Closeable stream = FileIOData.getStreamInUse(fd);
         try {
-            // Reads up to lengthRequested bytes of data from this Input stream into an array of bytes.
-            retValue = InputStream.read(myBuffer, 0, lengthRequested);
+            // Reads up to lengthRequested bytes of data into an array of bytes.
+            retValue = (stream instanceof OpenFile) ? ((OpenFile) stream).read(myBuffer, lengthRequested)
+                    : ((InputStream) stream).read(myBuffer, 0, lengthRequested);
             // This method will return -1 upon EOF, but our spec says that negative
             // value represents an error, so we return 0 for EOF.  DPS 10-July-2008.
             if (retValue == -1) {
@@ -345,73 +378,71 @@ public class SystemIO {
 
 
     /**
-     * Read bytes from file.
+     * Set the position in a file.
      *
      * @param fd     file descriptor
      * @param offset where in the file to seek to
      * @param base   the point to reference 0 for start of file, 1 for current position, 2 for end of the file
-     * @return -1 on error
+     * @return the new position from the start of the file, or -1 on error
      */
     public static int seek(int fd, int offset, int base) {
-        if (!FileIOData.fdInUse(fd, 0)) // Check the existence of the "read" fd
-        {
-            fileErrorString = "File descriptor " + fd + " is not open for reading";
+        return TimeTravel.input(() -> position(fd, offset, base));
+    }
+
+    private static int position(int fd, int offset, int base) {
+        if (!FileIOData.fdInUse(fd, O_RDONLY) && !FileIOData.fdInUse(fd, O_WRONLY)) {
+            fileErrorString = "File descriptor " + fd + " is not open";
+            return -1;
+        }
+        Closeable stream = FileIOData.getStreamInUse(fd);
+        if (!(stream instanceof OpenFile)) {
+            fileErrorString = "File descriptor " + fd + " is not seekable";
             return -1;
         }
-        if (fd < 0 || fd >= SYSCALL_MAXFILES) return -1;
-        Object stream = FileIOData.getStreamInUse(fd);
-        if (stream == null) return -1;
-        FileChannel channel;
+        OpenFile file = (OpenFile) stream;
         try {
-            if (stream instanceof FileInputStream) {
-                channel = ((FileInputStream) stream).getChannel();
-            } else if (stream instanceof FileOutputStream) {
-                channel = ((FileOutputStream) stream).getChannel();
-            } else {
-                return -1;
-            }
-
+            long position;
             if (base == SEEK_SET) {
-                offset += 0;
+                position = offset;
             } else if (base == SEEK_CUR) {
-                offset += channel.position();
+                position = file.position + offset;
             } else if (base == SEEK_END) {
-                offset += channel.size();
+                position = file.channel.size() + offset;
             } else {
                 return -1;
             }
-            if (offset < 0) {
+            // The result has to fit in a register
+            if (position < 0 || position > Integer.MAX_VALUE) {
                 return -1;
             }
-            channel.position(offset);
-            return offset;
+            file.position = position;
+            return (int) position;
         } catch (IOException io) {
             return -1;
         }
     }
 
     /**
-     * Open a file for either reading or writing. Note that read/write flag is NOT
-     * IMPLEMENTED.  Also note that file permission modes are also NOT IMPLEMENTED.
+     * Open a file.  File permission modes are NOT IMPLEMENTED.
      *
      * @param filename string containing filename
-     * @param flags    0 for read, 1 for write
-     * @return file descriptor in the range 0 to SYSCALL_MAXFILES-1, or -1 if error
+     * @param flags    0 for read, 1 for write, 2 for read and write; optionally combined with
+     *                 append (8), create (0x200, implied when writing), truncate (0x400, implied
+     *                 when only writing without append) and exclusive (0x800)
+     * @return file descriptor in the range 0 to the descriptor limit - 1, or -1 if error
      * @author Ken Vollmar
      */
     public static int openFile(String filename, int flags) {
+        return TimeTravel.input(() -> open(filename, flags));
+    }
+
+    private static int open(String filename, int flags) {
         // Internally, a "file descriptor" is an index into a table
-        // of the filename, flag, and the File???putStream associated with
+        // of the filename, flag, and the OpenFile associated with
         // that file descriptor.
 
-        int retValue = -1;
-        FileInputStream inputStream;
-        FileOutputStream outputStream;
-        int fdToUse;
-
         // Check internal plausibility of opening this file
-        fdToUse = FileIOData.nowOpening(filename, flags);
-        retValue = fdToUse; // return value is the fd
+        int fdToUse = FileIOData.nowOpening(filename, flags);
         if (fdToUse < 0) {
             return -1;
         }   // fileErrorString would have been set
@@ -422,29 +453,61 @@ public class SystemIO {
             String parent = new File(Globals.program.getFilename()).getParent();
             filepath = new File(parent, filename);
         }
-        if (flags == O_RDONLY) // Open for reading only
-        {
-            try {
-                // Set up input stream from disk file
-                inputStream = new FileInputStream(filepath);
-                FileIOData.setStreamInUse(fdToUse, inputStream); // Save stream for later use
-            } catch (FileNotFoundException e) {
-                fileErrorString = "File " + filename + " not found, open for input.";
-                retValue = -1;
-            }
-        } else if ((flags & O_WRONLY) != 0) // Open for writing only
-        {
-            // Set up output stream to disk file
-            try {
-                outputStream = new FileOutputStream(filepath, ((flags & O_APPEND) != 0));
-                FileIOData.setStreamInUse(fdToUse, outputStream); // Save stream for later use
-            } catch (FileNotFoundException e) {
-                fileErrorString = "File " + filename + " not found, open for output.";
-                retValue = -1;
+        int mode = flags & O_ACCMODE;
+        ArrayList<OpenOption> options = new ArrayList<>();
+        if (mode != O_WRONLY) {
+            options.add(StandardOpenOption.READ);
+        }
+        if (mode != O_RDONLY) {
+            options.add(StandardOpenOption.WRITE);
+            options.add(((flags & O_EXCL) != 0) ? StandardOpenOption.CREATE_NEW : StandardOpenOption.CREATE);
+            // Writing only starts the file afresh, as it always has, unless appending
+            if ((flags & O_TRUNC) != 0 || (mode == O_WRONLY && (flags & O_APPEND) == 0)) {
+                options.add(StandardOpenOption.TRUNCATE_EXISTING);
             }
         }
-        return retValue; // return the "file descriptor"
+        try {
+            FileChannel channel = FileChannel.open(filepath.toPath(), options.toArray(new OpenOption[0]));
+            FileIOData.setStreamInUse(fdToUse, new OpenFile(channel, mode == O_RDONLY, (flags & O_APPEND) != 0));
+        } catch (NoSuchFileException e) {
+            fileErrorString = "File " + filename + " not found, open for input.";
+            FileIOData.close(fdToUse);
+            return -1;
+        } catch (IOException | UnsupportedOperationException e) {
+            fileErrorString = "File " + filename + " could not be opened: " + e.getMessage();
+            FileIOData.close(fdToUse);
+            return -1;
+        }
+        return fdToUse; // return the "file descriptor"
+
+    }
+
+    /**
+     * Sets the maximum number of files a program can have open at once, standard input
+     * and output included.  Applies to files opened from now on.
+     *
+     * @param limit the number of file descriptors, at least 3
+     */
+    public static void setMaxFiles(int limit) {
+        if (limit <= STDERR) {
+            throw new IllegalArgumentException("at least " + (STDERR + 1) + " files are always open");
+        }
+        maxFiles = limit;
+    }
 
+    public static int getMaxFiles() {
+        return maxFiles;
+    }
+
+    /**
+     * Sets the size from which files opened read-only are memory-mapped rather than read
+     * through a channel.  Mapping saves a copy per read for large inputs but costs address
+     * space and set up time for small ones.
+     *
+     * @param size the size in bytes; Long.MAX_VALUE never maps
+     */
+    public static void setMapSize(long size) {
+        mapSize = size;
     }
 
     /**
@@ -453,6 +516,9 @@ public class SystemIO {
      * @param fd the file descriptor of an open file
      */
     public static void closeFile(int fd) {
+        if (TimeTravel.isReplaying()) {
+            return; // the file was never opened on replay
+        }
         FileIOData.close(fd);
     }
 
@@ -504,30 +570,38 @@ public class SystemIO {
         return FileIOData.outputWriter;
     }
 
-    // The GUI doesn't handle lots of small messages well so I added this hacky way of buffering
-    // Currently it checks to flush every instruction run
-    private static String buffer = "";
-    private static long lasttime = 0;
-    private static void print2Gui(String output){
-        long time = System.currentTimeMillis();
-        if (time > lasttime) {
-            Globals.getGui().getMessagesPane().postOutput(buffer+output);
-            buffer = "";
-            lasttime = time + 100;
-        } else {
-            buffer += output;
+    private static BufferedWriter getErrorWriter(){
+        if (FileIOData.errorWriter==null){
+            FileIOData.errorWriter=new BufferedWriter(new OutputStreamWriter(System.err));
         }
+        return FileIOData.errorWriter;
     }
+
     /**
-     * Flush stdout cache
-     * Makes sure that messages don't get stuck in the print2Gui buffer for too long.
+     * Flush program output.  Output is buffered between syscalls: in the GUI it is queued
+     * for the messages pane, from the command line it is held by a buffered writer.  The
+     * simulator flushes before every syscall whose capabilities include
+     * {@link rars.riscv.AbstractSyscall#READS_INPUT} or {@link rars.riscv.AbstractSyscall#MAY_BLOCK}
+     * (so prompts appear before input is read or the program waits) and when execution stops.
+     *
+     * @param force false only asks for output to be shown eventually, which always happens
+     *              in the GUI and is left to the next such syscall from the command line
      */
     public static void flush(boolean force) {
-        long time = System.currentTimeMillis();
-        if (buffer != "" && (force || time > lasttime)){
-            Globals.getGui().getMessagesPane().postOutput(buffer);
-            buffer = "";
-            lasttime = time + 100;
+        if (!force) {
+            return;
+        }
+        if (Globals.getGui() != null) {
+            Globals.getGui().getMessagesPane().flushOutput();
+            return;
+        }
+        try {
+            if (FileIOData.outputWriter != null) FileIOData.outputWriter.flush();
+            if (FileIOData.errorWriter != null) FileIOData.errorWriter.flush();
+            for (int fd : new int[]{STDOUT, STDERR}) {
+                if (FileIOData.streams[fd] instanceof Flushable) ((Flushable) FileIOData.streams[fd]).flush();
+            }
+        } catch (IOException e) {
         }
     }
 
@@ -550,7 +624,7 @@ public class SystemIO {
 
     public static class Data {
         private String[] fileNames; // The filenames in use. Null if file descriptor i is not in use.
-        private int[] fileFlags; // The flags of this file, 0=READ, 1=WRITE. Invalid if this file descriptor is not in use.
+        private int[] fileFlags; // The flags of this file, 0=READ, 1=WRITE, 2=both. Invalid if this file descriptor is not in use.
         public Closeable[] streams;
         public BufferedReader inputReader;
         public BufferedWriter outputWriter;
@@ -589,30 +663,32 @@ public class SystemIO {
 
     private static class FileIOData {
         private static String[] fileNames = new String[SYSCALL_MAXFILES]; // The filenames in use. Null if file descriptor i is not in use.
-        private static int[] fileFlags = new int[SYSCALL_MAXFILES]; // The flags of this file, 0=READ, 1=WRITE. Invalid if this file descriptor is not in use.
-        private static Closeable[] streams = new Closeable[SYSCALL_MAXFILES]; // The streams in use, associated with the filenames
+        private static int[] fileFlags = new int[SYSCALL_MAXFILES]; // The flags of this file, 0=READ, 1=WRITE, 2=both. Invalid if this file descriptor is not in use.
+        private static Closeable[] streams = new Closeable[SYSCALL_MAXFILES]; // The streams in use: stdio streams, or OpenFiles
+        // The tables grow as files are opened, up to maxFiles
         public static BufferedReader inputReader;
         public static BufferedWriter outputWriter;
         public static BufferedWriter errorWriter;
 
         // Reset all file information. Closes any open files and resets the arrays
         private static void resetFiles() {
-            for (int i = 0; i < SYSCALL_MAXFILES; i++) {
+            for (int i = 0; i < fileNames.length; i++) {
                 close(i);
             }
+            // The writers wrap System.out and System.err, which must stay open for whoever runs RARS
             if (outputWriter!=null){
                 try {
-                    outputWriter.close();
-                    outputWriter=null;
+                    outputWriter.flush();
                 } catch (IOException e){
                 }
+                outputWriter=null;
             }
             if (errorWriter!=null){
                 try {
-                    errorWriter.close();
-                    errorWriter=null;
+                    errorWriter.flush();
                 } catch (IOException e){
                 }
+                errorWriter=null;
             }
             setupStdio();
         }
@@ -646,7 +722,7 @@ public class SystemIO {
 
         // Determine whether a given filename is already in use.
         private static boolean filenameInUse(String requestedFilename) {
-            for (int i = 0; i < SYSCALL_MAXFILES; i++) {
+            for (int i = 0; i < fileNames.length; i++) {
                 if (fileNames[i] != null
                         && fileNames[i].equals(requestedFilename)) {
                     return true;
@@ -657,38 +733,30 @@ public class SystemIO {
 
         }
 
-        // Determine whether a given fd is already in use with the given flag.
+        // Determine whether a given fd is open for reading (flag O_RDONLY) or writing (flag O_WRONLY).
         private static boolean fdInUse(int fd, int flag) {
-            if (fd < 0 || fd >= SYSCALL_MAXFILES) {
+            if (fd < 0 || fd >= fileNames.length || fileNames[fd] == null) {
                 return false;
-            } else if (fileNames[fd] != null && fileFlags[fd] == 0 && flag == 0) {  // O_RDONLY read-only
-                return true;
-            } else if (fileNames[fd] != null && ((fileFlags[fd] & flag & O_WRONLY) == O_WRONLY)) {  // O_WRONLY write-only
-                return true;
             }
-            return false;
-
+            int mode = fileFlags[fd] & O_ACCMODE;
+            return mode == O_RDWR || mode == flag;
         }
 
         // Close the file with file descriptor fd. No errors are recoverable -- if the user's
         // made an error in the call, it will come back to him.
         private static void close(int fd) {
             // Can't close STDIN, STDOUT, STDERR, or invalid fd
-            if (fd <= STDERR || fd >= SYSCALL_MAXFILES)
+            if (fd <= STDERR || fd >= fileNames.length)
                 return;
 
             fileNames[fd] = null;
             // All this code will be executed only if the descriptor is open.
             if (streams[fd] != null) {
-                int keepFlag = fileFlags[fd];
-                Object keepStream = streams[fd];
+                Closeable keepStream = streams[fd];
                 fileFlags[fd] = -1;
                 streams[fd] = null;
                 try {
-                    if (keepFlag == O_RDONLY)
-                        ((FileInputStream) keepStream).close();
-                    else
-                        ((FileOutputStream) keepStream).close();
+                    keepStream.close();
                 } catch (IOException ioe) {
                     // not concerned with this exception
                 }
@@ -699,7 +767,7 @@ public class SystemIO {
 
         // Attempt to open a new file with the given flag, using the lowest available file descriptor.
         // Check that filename is not in use, flag is reasonable, and there is an available file descriptor.
-        // Return: file descriptor in 0...(SYSCALL_MAXFILES-1), or -1 if error
+        // Return: file descriptor in 0...(maxFiles-1), or -1 if error
         private static int nowOpening(String filename, int flag) {
             int i = 0;
             if (filenameInUse(filename)) {
@@ -707,21 +775,26 @@ public class SystemIO {
                 return -1;
             }
 
-            if (flag != O_RDONLY && flag != O_WRONLY && flag != (O_WRONLY | O_APPEND)) // Only read and write are implemented
-            {
+            if ((flag & O_ACCMODE) == O_ACCMODE || (flag & ~(O_ACCMODE | O_APPEND | O_CREAT | O_TRUNC | O_EXCL)) != 0) {
                 fileErrorString = "File name " + filename + " has unknown requested opening flag";
                 return -1;
             }
 
-            while (fileNames[i] != null && i < SYSCALL_MAXFILES) {
+            while (i < fileNames.length && fileNames[i] != null) {
                 i++;
             } // Attempt to find available file descriptor
 
-            if (i >= SYSCALL_MAXFILES) // no available file descriptors
+            if (i >= maxFiles) // no available file descriptors
             {
-                fileErrorString = "File name " + filename + " exceeds maximum open file limit of " + SYSCALL_MAXFILES;
+                fileErrorString = "File name " + filename + " exceeds maximum open file limit of " + maxFiles;
                 return -1;
             }
+            if (i >= fileNames.length) {
+                int length = Math.min(maxFiles, 2 * fileNames.length);
+                fileNames = Arrays.copyOf(fileNames, length);
+                fileFlags = Arrays.copyOf(fileFlags, length);
+                streams = Arrays.copyOf(streams, length);
+            }
 
             // Must be OK -- put filename in table
             fileNames[i] = new String(filename); // our table has its own copy of filename
@@ -732,6 +805,60 @@ public class SystemIO {
 
     } // end private class FileIOData
 
+    /**
+     * A file opened by the program.  Reads and writes are positional on the channel, so
+     * nothing is buffered in between and lseek is just a change of position.  Large files
+     * opened read-only are memory-mapped and read by copying from the mapping.
+     */
+    private static class OpenFile implements Closeable {
+        private final FileChannel channel;
+        private final boolean append;
+        private final MappedByteBuffer mapped;
+        private long position;
+
+        private OpenFile(FileChannel channel, boolean readOnly, boolean append) throws IOException {
+            this.channel = channel;
+            this.append = append;
+            long size = channel.size();
+            mapped = (readOnly && size >= mapSize && size <= Integer.MAX_VALUE)
+                    ? channel.map(FileChannel.MapMode.READ_ONLY, 0, size) : null;
+        }
+
+        // Returns -1 at the end of the file, like a stream
+        private int read(byte[] buffer, int length) throws IOException {
+            int count;
+            if (mapped != null) {
+                if (position >= mapped.limit()) {
+                    return -1;
+                }
+                count = (int) Math.min(length, mapped.limit() - position);
+                mapped.position((int) position);
+                mapped.get(buffer, 0, count);
+            } else {
+                count = channel.read(ByteBuffer.wrap(buffer, 0, length), position);
+                if (count < 0) {
+                    return -1;
+                }
+            }
+            position += count;
+            return count;
+        }
+
+        private void write(byte[] buffer, int length) throws IOException {
+            if (append) {
+                position = channel.size();
+            }
+            ByteBuffer bytes = ByteBuffer.wrap(buffer, 0, length);
+            while (bytes.hasRemaining()) {
+                position += channel.write(bytes, position);
+            }
+        }
+
+        public void close() throws IOException {
+            channel.close();
+        }
+    }
+
     /**
      * Maintain information on input from input window of GUI
      */
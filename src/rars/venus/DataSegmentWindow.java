@@ -61,6 +61,13 @@ public class DataSegmentWindow extends JInternalFrame implements Observer {
 
     private int firstAddress;
     private int homeAddress;
+
+    // What the table shows: the raw value of each cell, the address of its first row and the
+    // number base, so that while a program runs only cells in changed pages are reformatted
+    private long[][] shownData;
+    private int shownFirstAddress, shownValueBase;
+    private final DirtyPages dirtyPages = new DirtyPages();
+    private Memory dirtyPagesMemory;
     private boolean userOrKernelMode;
 
     // The combo box replaced the row of buttons when number of buttons expanded to 7!
@@ -232,6 +239,20 @@ public class DataSegmentWindow extends JInternalFrame implements Observer {
      * @param address data segment address of word to be selected.
      */
     public void highlightCellForAddress(int address) {
+        int offset = address - firstAddress;
+        if (Integer.compareUnsigned(offset, memoryChunkSize) < 0 && shownFirstAddress == firstAddress
+                && tablePanel.getComponentCount() != 0) {
+            // Already on display: just move the highlight
+            int previousRow = addressRow;
+            addressRow = offset / bytesPerRow;
+            addressColumn = dataTable.convertColumnIndexToView(offset % bytesPerRow / bytesPerValue + 1);
+            addressRowFirstAddress = firstAddress + addressRow * bytesPerRow;
+            if (previousRow >= 0 && previousRow < dataData.length && previousRow != addressRow) {
+                dataTable.tableChanged(new TableModelEvent(dataTable.getModel(), previousRow));
+            }
+            dataTable.tableChanged(new TableModelEvent(dataTable.getModel(), addressRow));
+            return;
+        }
         Point rowColumn = displayCellForAddress(address);
         if (rowColumn == null || rowColumn.x < 0 || rowColumn.y < 0) {
             return;
@@ -501,11 +522,15 @@ public class DataSegmentWindow extends JInternalFrame implements Observer {
         int addressBase = Globals.getGui().getMainPane().getExecutePane().getAddressDisplayBase();
         int address = firstAddr;
         DataTableModel dataModel = (DataTableModel) dataTable.getModel();
+        shownData = new long[numberOfRows][numberOfColumns];
+        shownFirstAddress = firstAddr;
+        shownValueBase = valueBase;
         for (int row = 0; row < numberOfRows; row++) {
             dataModel.setDisplayAndModelValueAt(NumberDisplayBaseChooser.formatUnsignedInteger(address, addressBase), row, ADDRESS_COLUMN);
             for (int column = 1; column < numberOfColumns; column++) {
                 try {
                     long datum = Globals.memory.getRaw(address, bytesPerValue);
+                    shownData[row][column] = datum;
                     dataModel.setDisplayAndModelValueAt(NumberDisplayBaseChooser.formatNumber(datum, valueBase, bytesPerValue), row, column);
                 } catch (AddressErrorException aee) {
                     // Bug Fix: the following line of code disappeared during the release 4.4 mods, but is essential to
@@ -566,6 +591,42 @@ public class DataSegmentWindow extends JInternalFrame implements Observer {
         updateModelForMemoryRange(this.firstAddress);
     }
 
+    /**
+     * Update data display to show the values that changed since it was last updated.  Used
+     * while the program runs; only rows in pages written since then are read and only cells
+     * whose value differs are reformatted.
+     */
+    public void refreshChangedValues() {
+        if (tablePanel.getComponentCount() == 0)
+            return; // ignore if no content to change
+        if (dirtyPagesMemory == null || shownData == null || shownFirstAddress != firstAddress
+                || shownValueBase != getValueDisplayFormat() || shownData[0].length != numberOfColumns) {
+            updateValues();
+            return;
+        }
+        dirtyPages.take();
+        DataTableModel dataModel = (DataTableModel) dataTable.getModel();
+        int address = firstAddress;
+        for (int row = 0; row < numberOfRows; row++, address += bytesPerRow) {
+            if (!dirtyPages.wasWritten(address, bytesPerRow)) {
+                continue;
+            }
+            for (int column = 1; column < numberOfColumns; column++) {
+                int cellAddress = address + (column - 1) * bytesPerValue;
+                long datum;
+                try {
+                    datum = Globals.memory.getRaw(cellAddress, bytesPerValue);
+                } catch (AddressErrorException aee) {
+                    datum = 0; // as in updateModelForMemoryRange
+                }
+                if (datum != shownData[row][column]) {
+                    shownData[row][column] = datum;
+                    dataModel.setDisplayAndModelValueAt(NumberDisplayBaseChooser.formatNumber(datum, shownValueBase, bytesPerValue), row, column);
+                }
+            }
+        }
+    }
+
     /**
      * Reset range of memory addresses to base address of currently selected segment and update display.
      */
@@ -792,11 +853,17 @@ public class DataSegmentWindow extends JInternalFrame implements Observer {
                 // or stepped mode.
                 if (notice.getRunSpeed() != RunSpeedPanel.UNLIMITED_SPEED || notice.getMaxSteps() == 1) {
                     Memory.getInstance().addObserver(this);
+                    dirtyPagesMemory = Memory.getInstance();
+                    dirtyPagesMemory.addDirtyPages(dirtyPages);
                     addressHighlighting = true;
                 }
             } else {
                 // Simulated MIPS execution stops.  Stop responding.
                 Memory.getInstance().deleteObserver(this);
+                if (dirtyPagesMemory != null) {
+                    dirtyPagesMemory.removeDirtyPages(dirtyPages);
+                    dirtyPagesMemory = null;
+                }
             }
         } else if (observable == settings) {
             // Suspended work in progress. Intended to disable combobox item for text segment. DPS 9-July-2013.
@@ -996,7 +1063,7 @@ public class DataSegmentWindow extends JInternalFrame implements Observer {
                     isSelected, hasFocus, row, column);
 
             cell.setHorizontalAlignment(SwingConstants.RIGHT);
-            int rowFirstAddress = Binary.stringToInt(table.getValueAt(row, ADDRESS_COLUMN).toString());
+            int rowFirstAddress = shownFirstAddress + row * bytesPerRow;
             if (settings.getBooleanSetting(Settings.Bool.EXPLICIT_WRITE_HIGHLIGHTING) && addressHighlighting &&
                     rowFirstAddress == addressRowFirstAddress && column == addressColumn && writingHighlight) {
                 cell.setBackground(settings.getColorSettingByPosition(Settings.EXPLICIT_WRITE_HIGHLIGHT_BACKGROUND));
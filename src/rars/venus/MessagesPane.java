@@ -12,6 +12,7 @@ import javax.swing.*;
 import javax.swing.event.DocumentEvent;
 import javax.swing.event.DocumentListener;
 import javax.swing.text.BadLocationException;
+import javax.swing.text.Document;
 import javax.swing.text.NavigationFilter;
 import javax.swing.text.Position.Bias;
 import javax.swing.undo.UndoableEdit;
@@ -49,6 +50,14 @@ public class MessagesPane extends JPanel {
     public static final int MAXIMUM_SCROLLED_CHARACTERS = Globals.maximumMessageCharacters;
     public static final int NUMBER_OF_CHARACTERS_TO_CUT = Globals.maximumMessageCharacters / 10; // 10%
 
+    // Program output is queued here by the simulator thread and moved to the text areas by
+    // outputTimer on the GUI thread, so a program printing in a loop costs one append per
+    // timer tick rather than one per print.  Only the last MAXIMUM_SCROLLED_CHARACTERS could
+    // ever be shown, so the queue is bounded by that and drops the oldest text when full.
+    private static final int OUTPUT_DELAY_MILLISECONDS = 50;
+    private final OutputQueue pendingOutput = new OutputQueue(MAXIMUM_SCROLLED_CHARACTERS);
+    private final Timer outputTimer;
+
     /**
      * Constructor for the class, sets up two fresh tabbed text areas for program feedback.
      **/
@@ -56,6 +65,8 @@ public class MessagesPane extends JPanel {
     public MessagesPane() {
         super();
         this.setMinimumSize(new Dimension(0, 0));
+        outputTimer = new Timer(OUTPUT_DELAY_MILLISECONDS, e -> drainOutput());
+        outputTimer.setRepeats(false);
         leftPane = new JTabbedPane();
         assemble = new JTextArea();
         run = new JTextArea();
@@ -386,18 +397,34 @@ public class MessagesPane extends JPanel {
 
     /** Append a message to a textarea and garbage collect very old text if needed. */
     private void append(JTextArea area, String string) {
-        area.append(string);
-        // can do some crude cutting here.  If the document gets "very large",
-        // let's cut off the oldest text. This will limit scrolling but the limit
-        // can be set reasonably high.
-        if (area.getDocument().getLength() > MAXIMUM_SCROLLED_CHARACTERS) {
-            try {
-                area.getDocument().remove(0, NUMBER_OF_CHARACTERS_TO_CUT);
-            } catch (BadLocationException ble) {
-                // only if NUMBER_OF_CHARACTERS_TO_CUT > MAXIMUM_SCROLLED_CHARACTERS
+        // can do some crude cutting here.  If the document would get "very large",
+        // cut off the oldest text first, at least NUMBER_OF_CHARACTERS_TO_CUT at a
+        // time so it is not cut on every append.  This will limit scrolling but the
+        // limit can be set reasonably high.
+        Document document = area.getDocument();
+        try {
+            if (string.length() >= MAXIMUM_SCROLLED_CHARACTERS) {
+                area.setText(string.substring(string.length() - MAXIMUM_SCROLLED_CHARACTERS + NUMBER_OF_CHARACTERS_TO_CUT));
+            } else {
+                int excess = document.getLength() + string.length() - MAXIMUM_SCROLLED_CHARACTERS;
+                if (excess > 0) {
+                    document.remove(0, Math.min(document.getLength(), Math.max(excess, NUMBER_OF_CHARACTERS_TO_CUT)));
+                }
+                document.insertString(document.getLength(), string, null);
             }
+        } catch (BadLocationException ble) {
+            // cannot happen, the offsets are within the document
+        }
+        area.setCaretPosition(document.getLength());
+    }
+
+    // Moves queued program output into the text areas.  Must be called on the GUI thread.
+    private void drainOutput() {
+        String pending = pendingOutput.take();
+        if (pending != null) {
+            append(run, pending);
+            append(output, pending);
         }
-        area.setCaretPosition(area.getDocument().getLength());
     }
 
     /**
@@ -426,6 +453,7 @@ public class MessagesPane extends JPanel {
         SwingUtilities.invokeLater(
                 new Runnable() {
                     public void run() {
+                        drainOutput(); // keep run messages after the output that preceded them
                         selectRunMessageTab();
                         append(run, mess);
                         append(output, mess);
@@ -434,19 +462,24 @@ public class MessagesPane extends JPanel {
     }
 
     /**
-     * Post a message to the output display
+     * Post a message to the output display.  It is queued and shown within
+     * OUTPUT_DELAY_MILLISECONDS together with any other output posted meanwhile.
+     * Never blocks, so it can be called from the simulator thread.
      *
      * @param message String to append to output display text
      */
     public void postOutput(String message) {
-        final String mess = message;
-        SwingUtilities.invokeLater(
-                new Runnable() {
-                    public void run() {
-                        append(run, mess);
-                        append(output, mess);
-                    }
-                });
+        if (pendingOutput.add(message) && !outputTimer.isRunning()) {
+            outputTimer.start();
+        }
+    }
+
+    /**
+     * Show queued output as soon as possible rather than at the next timer tick,
+     * e.g. before the program asks for input.
+     */
+    public void flushOutput() {
+        SwingUtilities.invokeLater(this::drainOutput);
     }
 
     /**
@@ -615,6 +648,7 @@ public class MessagesPane extends JPanel {
                 };
 
         public void run() { // must be invoked from the GUI thread
+            drainOutput(); // the prompt must appear before the input
             selectRunMessageTab();
             run.setEditable(true);
             run.requestFocusInWindow();
@@ -661,4 +695,50 @@ public class MessagesPane extends JPanel {
         }
     }  // Asker class
     ////////////////////////////////////////////////////////////////////////////
-}
\ No newline at end of file
+
+    ////////////////////////////////////////////////////////////////////////////
+    // Bounded character ring written by the simulator thread and emptied by the GUI thread.
+    private static final class OutputQueue {
+        private final char[] ring;
+        private int start, length;
+
+        OutputQueue(int capacity) {
+            ring = new char[capacity];
+        }
+
+        // Returns true if the queue was empty before, so a drain needs scheduling
+        synchronized boolean add(String text) {
+            boolean wasEmpty = length == 0;
+            int count = text.length(), from = 0;
+            if (count >= ring.length) {
+                // Only the end could survive; drop everything queued so far
+                from = count - ring.length;
+                start = 0;
+                length = 0;
+            } else if (length + count > ring.length) {
+                int dropped = length + count - ring.length;
+                start = (start + dropped) % ring.length;
+                length -= dropped;
+            }
+            int end = (start + length) % ring.length;
+            int first = Math.min(count - from, ring.length - end);
+            text.getChars(from, from + first, ring, end);
+            text.getChars(from + first, count, ring, 0);
+            length += count - from;
+            return wasEmpty;
+        }
+
+        // Returns and removes everything queued, or null if nothing is
+        synchronized String take() {
+            if (length == 0) {
+                return null;
+            }
+            int first = Math.min(length, ring.length - start);
+            StringBuilder text = new StringBuilder(length);
+            text.append(ring, start, first).append(ring, 0, length - first);
+            start = 0;
+            length = 0;
+            return text.toString();
+        }
+    }
+}
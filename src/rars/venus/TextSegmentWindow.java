@@ -24,16 +24,27 @@ import java.util.*;
 public class TextSegmentWindow extends JInternalFrame implements Observer {
     private JTable table;
     private JScrollPane tableScroller;
-    private Object[][] data;
+    /* Rows are made from the program's statements when the table first asks for them, so a
+     * large program does not format every row before the window can be shown.  A row's
+     * values are kept once made, so the Code, Basic and Source columns can be changed by
+     * self-modifying code.  The breakpoint column is not stored in the rows.
+     */
+    private ArrayList<ProgramStatement> statements;
+    private Object[][] data;         // index is table model row, null until the row is shown
+    private BitSet breakpoints;      // table model rows with a breakpoint set
+    private int sourceLineDigits;
     /* Maintain an int array of code addresses in parallel with ADDRESS_COLUMN,
-     * to speed model-row -> text-address mapping.  Maintain a Hashtable of
-     * (text-address, model-row) pairs to speed text-address -> model-row mapping.
+     * to speed model-row -> text-address mapping.  Maintain the distinct addresses sorted,
+     * with the row of each, to find the row of an address by binary search;
+     * this takes one entry per row however far apart the addresses are, and finds
+     * compressed instructions at halfword addresses too.
      * The former is used for breakpoints and changing display base (e.g. base 10
      * to 16); the latter is used for highlighting.  Both structures will remain
      * consistent once set up, since address column is not editable.
      */
     private int[] intAddresses;      // index is table model row, value is text address
-    private Hashtable<Integer, Integer> addressRows;   // key is text address, value is table model row
+    private int[] sortedAddresses;   // distinct addresses of the rows, in increasing (signed) order
+    private int[] sortedAddressRows; // index as sortedAddresses, value is table model row
     private Hashtable<Integer, ModifiedCode> executeMods;   // key is table model row, value is original code, basic, source.
     private Container contentPane;
     private TextTableModel tableModel;
@@ -41,6 +52,7 @@ public class TextSegmentWindow extends JInternalFrame implements Observer {
     private boolean codeHighlighting;
     private boolean breakpointsEnabled;  // Added 31 Dec 2009
     private int highlightAddress;
+    private int highlightRow = -1;
     private TableModelListener tableModelListener;
 
     private static String[] columnNames = {"Bkpt", "Address", "Code", "Basic", "Source"};
@@ -75,14 +87,14 @@ public class TextSegmentWindow extends JInternalFrame implements Observer {
     public void setupTable() {
         codeHighlighting = true;
         breakpointsEnabled = true;
-        ArrayList<ProgramStatement> sourceStatementList = Globals.program.getTextSegmentLines();
-        data = new Object[sourceStatementList.size()][columnNames.length];
-        intAddresses = new int[data.length];
-        addressRows = new Hashtable<>(data.length);
-        executeMods = new Hashtable<>(data.length);
-        addRows(sourceStatementList);
+        statements = Globals.program.getTextSegmentLines();
+        data = new Object[statements.size()][];
+        breakpoints = new BitSet(data.length);
+        executeMods = new Hashtable<>();
+        sourceLineDigits = ("" + getMaxSourceLineNumber(statements)).length();
+        indexAddresses(statements);
         contentPane.removeAll();
-        tableModel = new TextTableModel(data);
+        tableModel = new TextTableModel();
         if (tableModelListener != null) {
             tableModel.addTableModelListener(tableModelListener);
             tableModel.fireTableDataChanged();// initialize listener
@@ -121,47 +133,75 @@ public class TextSegmentWindow extends JInternalFrame implements Observer {
     }
 
     /**
-     * Add rows in the data array from the information in the sourceStatementList.
+     * Fill in the address of each row, and the index from text address to row.
      *
      * @param sourceStatementList contains the statements from de source code (comments, .eqv, instructions, ...)
      *                            and the linked information (address, code, basic instruction, source code, ...)
      */
-    private void addRows(ArrayList<ProgramStatement> sourceStatementList) {
-        int maxSourceLineNumber = getMaxSourceLineNumber(sourceStatementList);
-        int addressBase = Globals.getGui().getMainPane().getExecutePane().getAddressDisplayBase();
-        int sourceLineDigits = ("" + maxSourceLineNumber).length();
-        int leadingSpaces = 0;
-        int lastLine = -1;
-
-        for (int i = 0; i < sourceStatementList.size(); i++) {
-            ProgramStatement statement = sourceStatementList.get(i);
-            intAddresses[i] = statement.getAddress();
-            addressRows.put(intAddresses[i], i);
-            data[i][BREAK_COLUMN] = false;
-            String address = "";
-            String code = "";
-            String basicInstruction = "";
-            String sourceString = "";
-            if (statement.getInstruction() != null) {
-                address = NumberDisplayBaseChooser.formatUnsignedInteger(statement.getAddress(), addressBase);
-                code = NumberDisplayBaseChooser.formatNumber(statement.getBinaryStatement(), 16, 4);
-                basicInstruction = statement.getPrintableBasicAssemblyStatement();
-            }
-            if (!statement.getSource().equals("")) {
-                leadingSpaces = sourceLineDigits - ("" + statement.getSourceLine()).length();
-                String lineNumber = "          ".substring(0, leadingSpaces)
-                        + statement.getSourceLine() + ": ";
-                if (statement.getSourceLine() == lastLine)
-                    lineNumber = "          ".substring(0, sourceLineDigits) + "  ";
-                sourceString = lineNumber
-                        + rars.util.EditorFont.substituteSpacesForTabs(statement.getSource());
+    private void indexAddresses(ArrayList<ProgramStatement> sourceStatementList) {
+        intAddresses = new int[sourceStatementList.size()];
+        // Sort by address, then row: where several rows have the same address, the last one
+        // is kept, as it is the instruction
+        long[] keys = new long[intAddresses.length];
+        for (int i = 0; i < intAddresses.length; i++) {
+            intAddresses[i] = sourceStatementList.get(i).getAddress();
+            keys[i] = ((long) intAddresses[i] << 32) | i;
+        }
+        Arrays.sort(keys);
+        sortedAddresses = new int[keys.length];
+        sortedAddressRows = new int[keys.length];
+        int count = 0;
+        for (int i = 0; i < keys.length; i++) {
+            if (i + 1 < keys.length && keys[i + 1] >> 32 == keys[i] >> 32) {
+                continue;
             }
-            data[i][ADDRESS_COLUMN] = address;
-            data[i][CODE_COLUMN] = code;
-            data[i][BASIC_COLUMN] = basicInstruction;
-            data[i][SOURCE_COLUMN] = sourceString;
-            lastLine = statement.getSourceLine();
+            sortedAddresses[count] = (int) (keys[i] >> 32);
+            sortedAddressRows[count] = (int) keys[i];
+            count++;
         }
+        sortedAddresses = Arrays.copyOf(sortedAddresses, count);
+        sortedAddressRows = Arrays.copyOf(sortedAddressRows, count);
+    }
+
+    /*
+     * Returns the values of a table row, making them from its statement the first time.
+     */
+    private Object[] getRow(int row) {
+        Object[] values = data[row];
+        if (values == null) {
+            values = data[row] = makeRow(row);
+        }
+        return values;
+    }
+
+    private Object[] makeRow(int row) {
+        ProgramStatement statement = statements.get(row);
+        int addressBase = Globals.getGui().getMainPane().getExecutePane().getAddressDisplayBase();
+        int lastLine = row == 0 ? -1 : statements.get(row - 1).getSourceLine();
+        String address = "";
+        String code = "";
+        String basicInstruction = "";
+        String sourceString = "";
+        if (statement.getInstruction() != null) {
+            address = NumberDisplayBaseChooser.formatUnsignedInteger(statement.getAddress(), addressBase);
+            code = NumberDisplayBaseChooser.formatNumber(statement.getBinaryStatement(), 16, 4);
+            basicInstruction = statement.getPrintableBasicAssemblyStatement();
+        }
+        if (!statement.getSource().equals("")) {
+            int leadingSpaces = sourceLineDigits - ("" + statement.getSourceLine()).length();
+            String lineNumber = "          ".substring(0, leadingSpaces)
+                    + statement.getSourceLine() + ": ";
+            if (statement.getSourceLine() == lastLine)
+                lineNumber = "          ".substring(0, sourceLineDigits) + "  ";
+            sourceString = lineNumber
+                    + rars.util.EditorFont.substituteSpacesForTabs(statement.getSource());
+        }
+        Object[] values = new Object[columnNames.length];
+        values[ADDRESS_COLUMN] = address;
+        values[CODE_COLUMN] = code;
+        values[BASIC_COLUMN] = basicInstruction;
+        values[SOURCE_COLUMN] = sourceString;
+        return values;
     }
 
     /**
@@ -208,48 +248,49 @@ public class TextSegmentWindow extends JInternalFrame implements Observer {
 
     /**
      * Redisplay the addresses.  This should only be done when address display base is
-     * modified (e.g. between base 16 hex and base 10 dec).
+     * modified (e.g. between base 16 hex and base 10 dec).  Rows not yet shown will be
+     * made with the new base.
      */
     public void updateCodeAddresses() {
         if (contentPane.getComponentCount() == 0)
             return; // ignore if no content to change
         int addressBase = Globals.getGui().getMainPane().getExecutePane().getAddressDisplayBase();
-        String formattedAddress;
-        for (int i = 0; i < intAddresses.length; i++) {
-            if (intAddresses[i] != -1) {
-                formattedAddress = NumberDisplayBaseChooser.formatUnsignedInteger(intAddresses[i], addressBase);
-                table.getModel().setValueAt(formattedAddress, i, ADDRESS_COLUMN);
+        for (int i = 0; i < data.length; i++) {
+            if (data[i] != null && statements.get(i).getInstruction() != null) {
+                data[i][ADDRESS_COLUMN] = NumberDisplayBaseChooser.formatUnsignedInteger(intAddresses[i], addressBase);
             }
         }
+        tableModel.fireTableChanged(new TableModelEvent(tableModel, 0, data.length - 1, ADDRESS_COLUMN));
     }
 
     /**
      * Redisplay the basic statements.  This should only be done when address or value display base is
-     * modified (e.g. between base 16 hex and base 10 dec).
+     * modified (e.g. between base 16 hex and base 10 dec).  Rows not yet shown will be
+     * made with the new base.
      */
     public void updateBasicStatements() {
         if (contentPane.getComponentCount() == 0)
             return; // ignore if no content to change
-        ArrayList<ProgramStatement> sourceStatementList = Globals.program.getMachineList();
-        for (int i = 0; i < sourceStatementList.size(); i++) {
+        for (int i = 0; i < data.length; i++) {
+            if (data[i] == null || statements.get(i).getInstruction() == null) {
+                continue;
+            }
             // Loop has been extended to cover self-modifying code.  If code at this memory location has been
             // modified at runtime, construct a ProgramStatement from the current address and binary code
             // then display its basic code.  DPS 11-July-2013
             if (executeMods.get(i) == null) { // not modified, so use original logic.
-                ProgramStatement statement = sourceStatementList.get(i);
-                table.getModel().setValueAt(statement.getPrintableBasicAssemblyStatement(), i, BASIC_COLUMN);
+                data[i][BASIC_COLUMN] = statements.get(i).getPrintableBasicAssemblyStatement();
             } else {
                 try {
                     ProgramStatement statement = new ProgramStatement(
-                            rars.util.Binary.stringToInt((String) table.getModel().getValueAt(i, CODE_COLUMN)),
-                            rars.util.Binary.stringToInt((String) table.getModel().getValueAt(i, ADDRESS_COLUMN))
-                    );
-                    table.getModel().setValueAt(statement.getPrintableBasicAssemblyStatement(), i, BASIC_COLUMN);
+                            rars.util.Binary.stringToInt((String) data[i][CODE_COLUMN]), intAddresses[i]);
+                    data[i][BASIC_COLUMN] = statement.getPrintableBasicAssemblyStatement();
                 } catch (NumberFormatException e) { // should never happen but just in case...
-                    table.getModel().setValueAt("", i, BASIC_COLUMN);
+                    data[i][BASIC_COLUMN] = "";
                 }
             }
         }
+        tableModel.fireTableChanged(new TableModelEvent(tableModel, 0, data.length - 1, BASIC_COLUMN));
     }
 
 
@@ -337,7 +378,7 @@ public class TextSegmentWindow extends JInternalFrame implements Observer {
                 // called.  (2) it updates the memory cell which in turn notifies us which invokes
                 // the update() method - the method we're in right now.  All we need to do here is
                 // update the table model then notify the controller/view to update its display.
-                data[row][CODE_COLUMN] = strValue;
+                getRow(row)[CODE_COLUMN] = strValue;
                 tableModel.fireTableCellUpdated(row, CODE_COLUMN);
                 // The other columns do not present a problem since they are not editable by user.
                 tableModel.setValueAt(strBasic, row, BASIC_COLUMN);
@@ -386,13 +427,7 @@ public class TextSegmentWindow extends JInternalFrame implements Observer {
      */
 
     public int getBreakpointCount() {
-        int breakpointCount = 0;
-        for (Object[] data : data) {
-            if ((Boolean) data[BREAK_COLUMN]) {
-                breakpointCount++;
-            }
-        }
-        return breakpointCount;
+        return breakpoints == null ? 0 : breakpoints.cardinality();
     }
 
     /**
@@ -406,27 +441,26 @@ public class TextSegmentWindow extends JInternalFrame implements Observer {
         if (breakpointCount == 0 || !breakpointsEnabled) { // added second condition 31-dec-09 DPS
             return null;
         }
-        int[] breakpoints = new int[breakpointCount];
+        int[] addresses = new int[breakpointCount];
         breakpointCount = 0;
-        for (int i = 0; i < data.length; i++) {
-            if ((Boolean) data[i][BREAK_COLUMN]) {
-                int index = i;
-                //if a breakpoint is not on an instruction, puts a breakpoint at next instruction
-                if(intAddresses[i] == -1) {
-                    for (int j = index; j < data.length; j++)
-                        if (intAddresses[j] != -1) {
-                            index = j;
-                            break;
-                        }
-                    if (index == i) //no instruction follows the breakpoint
-                        continue;   //don't add breakpoint
-                }
-                breakpoints[breakpointCount++] = intAddresses[index];
-                //TODO: we should probably, in place of this, lock the possibility to put a breakpoint if not an instruction
+        for (int i = breakpoints.nextSetBit(0); i >= 0; i = breakpoints.nextSetBit(i + 1)) {
+            int index = i;
+            //if a breakpoint is not on an instruction, puts a breakpoint at next instruction
+            if(intAddresses[i] == -1) {
+                for (int j = index; j < data.length; j++)
+                    if (intAddresses[j] != -1) {
+                        index = j;
+                        break;
+                    }
+                if (index == i) //no instruction follows the breakpoint
+                    continue;   //don't add breakpoint
             }
+            addresses[breakpointCount++] = intAddresses[index];
+            //TODO: we should probably, in place of this, lock the possibility to put a breakpoint if not an instruction
         }
-        Arrays.sort(breakpoints);
-        return breakpoints;
+        addresses = Arrays.copyOf(addresses, breakpointCount);
+        Arrays.sort(addresses);
+        return addresses;
     }
 
     /**
@@ -434,11 +468,9 @@ public class TextSegmentWindow extends JInternalFrame implements Observer {
      * updates the display of the breakpoint column.
      */
     public void clearAllBreakpoints() {
-        for (int i = 0; i < tableModel.getRowCount(); i++) {
-            if ((Boolean) data[i][BREAK_COLUMN]) {
-                // must use this method to assure display updated and listener notified
-                tableModel.setValueAt(false, i, BREAK_COLUMN);
-            }
+        for (int i = breakpoints.nextSetBit(0); i >= 0; i = breakpoints.nextSetBit(i + 1)) {
+            // must use this method to assure display updated and listener notified
+            tableModel.setValueAt(false, i, BREAK_COLUMN);
         }
         // Handles an obscure situation: if you click to set some breakpoints then "immediately" clear them
         // all using the shortcut (CTRL-K), the last checkmark set is not removed even though the breakpoint
@@ -479,12 +511,13 @@ public class TextSegmentWindow extends JInternalFrame implements Observer {
             return;
         }
         table.scrollRectToVisible(table.getCellRect(row, 0, true));
-        // Trigger highlighting, which is done by the column's cell renderer.
-        // IMPLEMENTATION NOTE: Pretty crude implementation; mark all rows
-        // as changed so assure that the previously highlighted row is
-        // unhighlighted.  Would be better to keep track of previous row
-        // then fire two events: one for it and one for the new row.
-        table.tableChanged(new TableModelEvent(tableModel));
+        // Trigger highlighting, which is done by the column's cell renderer:
+        // redraw the previously highlighted row and the new one.
+        if (highlightRow >= 0 && highlightRow < tableModel.getRowCount() && highlightRow != row) {
+            table.tableChanged(new TableModelEvent(tableModel, highlightRow));
+        }
+        highlightRow = row;
+        table.tableChanged(new TableModelEvent(tableModel, row));
         //this.inDelaySlot = false;// Added 25 June 2007
     }
 
@@ -614,14 +647,11 @@ public class TextSegmentWindow extends JInternalFrame implements Observer {
      *  corresponding to this address.
      */
     private int findRowForAddress(int address) throws IllegalArgumentException {
-        int addressRow = 0;
-        try {
-            addressRow = addressRows.get(address);
-        } catch (NullPointerException e) {
-            throw new IllegalArgumentException(); // address not found in map
-            //return addressRow;// if address not in map, do nothing.
+        int index = Arrays.binarySearch(sortedAddresses, address);
+        if (index < 0) {
+            throw new IllegalArgumentException(); // address not found
         }
-        return addressRow;
+        return sortedAddressRows[index];
     }
 
 
@@ -649,11 +679,6 @@ public class TextSegmentWindow extends JInternalFrame implements Observer {
      * Inner class to implement the Table model for this JTable.
      */
     class TextTableModel extends AbstractTableModel {
-        Object[][] data;
-
-        public TextTableModel(Object[][] d) {
-            data = d;
-        }
 
         public int getColumnCount() {
             return columnNames.length;
@@ -668,7 +693,10 @@ public class TextSegmentWindow extends JInternalFrame implements Observer {
         }
 
         public Object getValueAt(int row, int col) {
-            return data[row][col];
+            if (col == BREAK_COLUMN) {
+                return breakpoints.get(row);
+            }
+            return getRow(row)[col];
         }
 
         /*
@@ -698,30 +726,29 @@ public class TextSegmentWindow extends JInternalFrame implements Observer {
          */
         @Override
         public void setValueAt(Object value, int row, int col) {
+            if (col == BREAK_COLUMN) {
+                breakpoints.set(row, (Boolean) value);
+                fireTableCellUpdated(row, col);
+                return;
+            }
+            Object[] values = getRow(row);
             if (col != CODE_COLUMN) {
-                data[row][col] = value;
+                values[col] = value;
                 fireTableCellUpdated(row, col);
                 return;
             }
             // Handle changes in the Code column.
             int val = 0;
-            int address = 0;
-            if (value.equals(data[row][col]))
+            int address = intAddresses[row];
+            if (value.equals(values[col]))
                 return;
             try {
                 val = rars.util.Binary.stringToInt((String) value);
             } catch (NumberFormatException nfe) {
-                data[row][col] = "INVALID";
+                values[col] = "INVALID";
                 fireTableCellUpdated(row, col);
                 return;
             }
-            // calculate address from row and column
-            try {
-                address = rars.util.Binary.stringToInt((String) data[row][ADDRESS_COLUMN]);
-            } catch (NumberFormatException nfe) {
-                // can't really happen since memory addresses are completely under
-                // the control of my software.
-            }
             //  Assures that if changed during MIPS program execution, the update will
             //  occur only between instructions.
             Globals.memoryAndRegistersLock.lock();
@@ -747,7 +774,7 @@ public class TextSegmentWindow extends JInternalFrame implements Observer {
             for (int i = 0; i < numRows; i++) {
                 System.out.print("    row " + i + ":");
                 for (int j = 0; j < numCols; j++) {
-                    System.out.print("  " + data[i][j]);
+                    System.out.print("  " + getValueAt(i, j));
                 }
                 System.out.println();
             }
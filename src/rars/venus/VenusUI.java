@@ -7,6 +7,7 @@ import rars.riscv.InstructionSet;
 import rars.riscv.dump.DumpFormatLoader;
 import rars.simulator.Simulator;
 import rars.simulator.SimulatorNotice;
+import rars.simulator.TimeTravel;
 import rars.tools.ConversionTool;
 import rars.venus.registers.ControlAndStatusWindow;
 import rars.venus.registers.FloatingPointWindow;
@@ -60,8 +61,8 @@ public class VenusUI extends JFrame {
     private JMenuItem runGo, runStep, runBackstep, runReset, runAssemble, runStop, runPause, runClearBreakpoints, runToggleBreakpoints;
     private JCheckBoxMenuItem settingsLabel, settingsValueDisplayBase, settingsAddressDisplayBase,
             settingsExtended, settingsAssembleOnOpen, settingsAssembleAll, settingsAssembleOpen, settingsWarningsAreErrors,
-            settingsStartAtMain, settingsSelfModifyingCode, settingsRV64, settingsDeriveCurrentWorkingDirectory, settingsDarkMode, 
-            settingsDisplayRegisterNumbers;
+            settingsStartAtMain, settingsSelfModifyingCode, settingsRV64, settingsRVC, settingsDeriveCurrentWorkingDirectory, settingsDarkMode, 
+            settingsDisplayRegisterNumbers, settingsTimeTravel;
     private JMenuItem settingsExceptionHandler, settingsEditor, settingsHighlighting, settingsMemoryConfiguration;
     private JMenuItem helpHelp, helpAbout;
 
@@ -87,8 +88,8 @@ public class VenusUI extends JFrame {
             settingsExtendedAction, settingsAssembleOnOpenAction, settingsAssembleOpenAction, settingsAssembleAllAction,
             settingsWarningsAreErrorsAction, settingsStartAtMainAction,
             settingsExceptionHandlerAction, settingsEditorAction, settingsHighlightingAction, settingsMemoryConfigurationAction,
-            settingsSelfModifyingCodeAction, settingsRV64Action, settingsDeriveCurrentWorkingDirectoryAction, settingsDarkModeAction,
-            settingsDisplayRegisterNumbersAction;
+            settingsSelfModifyingCodeAction, settingsRV64Action, settingsRVCAction, settingsDeriveCurrentWorkingDirectoryAction, settingsDarkModeAction,
+            settingsDisplayRegisterNumbersAction, settingsTimeTravelAction;
     private Action helpHelpAction, helpAboutAction;
 
 
@@ -438,6 +439,13 @@ public class VenusUI extends JFrame {
                     csrTab.updateRegisters();
                 }
             };
+            settingsRVCAction = new SettingsAction("Compressed instructions",
+                    "If set, compressed (16-bit) instructions are executed and assembled (c.* mnemonics), and instructions may start at any halfword address",
+                    Settings.Bool.RVC_ENABLED) {
+                public void handler(boolean value) {
+                    InstructionSet.rvc = value;
+                }
+            };
             settingsDeriveCurrentWorkingDirectoryAction = new SettingsAction("Derive current working directory",
                     "If set, the working directory is derived from the main file instead of the RARS executable directory.",
                     Settings.Bool.DERIVE_CURRENT_WORKING_DIRECTORY);
@@ -445,6 +453,9 @@ public class VenusUI extends JFrame {
                     Settings.Bool.DARK_MODE_ENABLED);
             settingsDisplayRegisterNumbersAction = new SettingsAction("Display Register Numbers", "Toggle display of register numbers in the Registers Tab",
                     Settings.Bool.DISPLAY_REGISTER_NUMBERS);
+            settingsTimeTravelAction = new SettingsAction("Time travel debugging",
+                    "If set, checkpoints are kept while running so backstepping can go back past its history limit (takes effect at next assemble).",
+                    Settings.Bool.TIME_TRAVEL_ENABLED);
 
             settingsEditorAction = new SettingsEditorAction("Editor...", null,
                     "View and modify text editor settings.", null, null
@@ -596,6 +607,8 @@ public class VenusUI extends JFrame {
         settingsSelfModifyingCode.setSelected(Globals.getSettings().getBooleanSetting(Settings.Bool.SELF_MODIFYING_CODE_ENABLED));
         settingsRV64 = new JCheckBoxMenuItem(settingsRV64Action);
         settingsRV64.setSelected(Globals.getSettings().getBooleanSetting(Settings.Bool.RV64_ENABLED));
+        settingsRVC = new JCheckBoxMenuItem(settingsRVCAction);
+        settingsRVC.setSelected(Globals.getSettings().getBooleanSetting(Settings.Bool.RVC_ENABLED));
         settingsDeriveCurrentWorkingDirectory = new JCheckBoxMenuItem(settingsDeriveCurrentWorkingDirectoryAction);
         settingsDeriveCurrentWorkingDirectory.setSelected(Globals.getSettings().getBooleanSetting(Settings.Bool.DERIVE_CURRENT_WORKING_DIRECTORY));
         settingsDarkMode = new JCheckBoxMenuItem(settingsDarkModeAction);
@@ -619,6 +632,8 @@ public class VenusUI extends JFrame {
         });
         settingsDisplayRegisterNumbers = new JCheckBoxMenuItem(settingsDisplayRegisterNumbersAction);
         settingsDisplayRegisterNumbers.setSelected(Globals.getSettings().getBooleanSetting(Settings.Bool.DISPLAY_REGISTER_NUMBERS));
+        settingsTimeTravel = new JCheckBoxMenuItem(settingsTimeTravelAction);
+        settingsTimeTravel.setSelected(Globals.getSettings().getBooleanSetting(Settings.Bool.TIME_TRAVEL_ENABLED));
         settingsAssembleOnOpen = new JCheckBoxMenuItem(settingsAssembleOnOpenAction);
         settingsAssembleOnOpen.setSelected(Globals.getSettings().getBooleanSetting(Settings.Bool.ASSEMBLE_ON_OPEN));
         settingsAssembleAll = new JCheckBoxMenuItem(settingsAssembleAllAction);
@@ -648,9 +663,11 @@ public class VenusUI extends JFrame {
         settings.add(settingsExtended);
         settings.add(settingsSelfModifyingCode);
         settings.add(settingsRV64);
+        settings.add(settingsRVC);
         settings.addSeparator();
         settings.add(settingsDarkMode);
         settings.add(settingsDisplayRegisterNumbers);
+        settings.add(settingsTimeTravel);
         settings.add(settingsEditor);
         settings.add(settingsHighlighting);
         settings.add(settingsExceptionHandler);
@@ -940,6 +957,16 @@ public class VenusUI extends JFrame {
         updateUndoAndRedoState();
     }
 
+    /* With time travel on, backstepping seeks back one instruction; otherwise it needs the backstep history
+     */
+    private boolean canBackstep() {
+        TimeTravel history = TimeTravel.getActive();
+        if (history != null) {
+            return history.getPosition() > 0;
+        }
+        return Globals.getSettings().getBackSteppingEnabled() && !Globals.program.getBackStepper().empty();
+    }
+
     /* Use this upon successful assemble or reset
      */
     void setMenuStateRunnable() {
@@ -962,8 +989,7 @@ public class VenusUI extends JFrame {
         runAssembleAction.setEnabled(true);
         runGoAction.setEnabled(true);
         runStepAction.setEnabled(true);
-        runBackstepAction.setEnabled(
-                Globals.getSettings().getBackSteppingEnabled() && !Globals.program.getBackStepper().empty());
+        runBackstepAction.setEnabled(canBackstep());
         runResetAction.setEnabled(true);
         runStopAction.setEnabled(false);
         runPauseAction.setEnabled(false);
@@ -1028,8 +1054,7 @@ public class VenusUI extends JFrame {
         runAssembleAction.setEnabled(true);
         runGoAction.setEnabled(false);
         runStepAction.setEnabled(false);
-        runBackstepAction.setEnabled(
-                Globals.getSettings().getBackSteppingEnabled() && !Globals.program.getBackStepper().empty());
+        runBackstepAction.setEnabled(canBackstep());
         runResetAction.setEnabled(true);
         runStopAction.setEnabled(false);
         runPauseAction.setEnabled(false);
@@ -692,12 +692,15 @@ public class JEditTextArea extends JComponent {
 
     /**
      * Sets the document's token marker. Equivalent to caling
-     * <code>getDocument().setTokenMarker()</code>.
+     * <code>getDocument().setTokenMarker()</code>, and repaints
+     * when the marker's tokens change.
      *
      * @param tokenMarker The token marker
      */
     public final void setTokenMarker(TokenMarker tokenMarker) {
         document.setTokenMarker(tokenMarker);
+        if (tokenMarker != null)
+            tokenMarker.setTokensChangedListener(painter::repaint);
     }
 
     /**
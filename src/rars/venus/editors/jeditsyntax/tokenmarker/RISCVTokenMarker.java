@@ -11,11 +11,15 @@ import rars.venus.editors.jeditsyntax.KeywordMap;
 import rars.venus.editors.jeditsyntax.PopupHelpItem;
 import rars.venus.editors.jeditsyntax.SyntaxDocument;
 
+import javax.swing.*;
 import javax.swing.event.DocumentEvent;
+import javax.swing.text.BadLocationException;
 import javax.swing.text.Segment;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.Map;
 import java.util.TreeSet;
+import java.util.concurrent.ExecutionException;
 
 /**
  * RISCV token marker.
@@ -65,12 +69,91 @@ public class RISCVTokenMarker extends TokenMarker {
         return tokenExamples;
     }
 
+    /**
+     * Lines are tokenized on their own: strings and comments end with the line.
+     * Labels and symbols defined anywhere are found by a background scan.
+     */
+    @Override
+    public boolean supportsMultilineTokens() {
+        return false;
+    }
+
     @Override
     public void updated(DocumentEvent evt) {
-        SyntaxDocument document = (SyntaxDocument) evt.getDocument();
-        // clear info and retokenize all to collect label definitions
-        changingKeywords.clear();
-        document.tokenizeLines();
+        // rescan the whole document in the background to collect label definitions
+        scanSymbols((SyntaxDocument) evt.getDocument());
+    }
+
+    private void scanSymbols(SyntaxDocument document) {
+        if (scan != null) {
+            rescan = document;
+            return;
+        }
+        scan = new SymbolScan(document);
+        scan.execute();
+    }
+
+    /**
+     * Finds the labels and .eqv symbols defined in a document, away from the event
+     * dispatch thread, using a token marker of its own on a copy of the text.  When
+     * done, they replace the symbols this marker knows and the lines are painted again
+     * if any were added or removed.
+     */
+    private class SymbolScan extends SwingWorker<HashMap<String, Byte>, Void> {
+        private final SyntaxDocument document;
+
+        private SymbolScan(SyntaxDocument document) {
+            this.document = document;
+        }
+
+        protected HashMap<String, Byte> doInBackground() {
+            String[] text = new String[1];
+            document.render(() -> {
+                try {
+                    text[0] = document.getText(0, document.getLength());
+                } catch (BadLocationException e) {
+                    text[0] = "";
+                }
+            });
+            RISCVTokenMarker scanner = new RISCVTokenMarker(keywords);
+            scanner.symbols = new HashMap<>();
+            Segment line = new Segment(text[0].toCharArray(), 0, 0);
+            int lineIndex = 0;
+            for (int start = 0; start <= line.array.length; lineIndex++) {
+                int end = text[0].indexOf('\n', start);
+                if (end == -1)
+                    end = line.array.length;
+                line.offset = start;
+                line.count = end - start;
+                scanner.lastToken = null;
+                scanner.markTokensImpl(Token.NULL, line, lineIndex);
+                start = end + 1;
+            }
+            return scanner.symbols;
+        }
+
+        protected void done() {
+            scan = null;
+            try {
+                HashMap<String, Byte> found = get();
+                if (!found.equals(symbols) || symbolAdded) {
+                    symbols = found;
+                    symbolAdded = false;
+                    changingKeywords = new KeywordMap(false);
+                    for (Map.Entry<String, Byte> symbol : found.entrySet()) {
+                        changingKeywords.add(symbol.getKey(), symbol.getValue());
+                    }
+                    tokensChanged();
+                }
+            } catch (InterruptedException | ExecutionException e) {
+                e.printStackTrace();
+            }
+            if (rescan != null) {
+                SyntaxDocument document = rescan;
+                rescan = null;
+                scanSymbols(document);
+            }
+        }
     }
 
 
@@ -135,7 +218,7 @@ public class RISCVTokenMarker extends TokenMarker {
                                 // Register the label, if new, to recognize its usages
                                 byte t = changingKeywords.lookup(label);
                                 if (t == Token.NULL) {
-                                    changingKeywords.add(label, Token.LABEL);
+                                    addSymbol(label, Token.LABEL);
                                 }
                             }
                             break;
@@ -463,11 +546,22 @@ public class RISCVTokenMarker extends TokenMarker {
     private static KeywordMap cKeywords;
     private static String[] tokenLabels, tokenExamples;
     private KeywordMap changingKeywords = new KeywordMap(false); //for labels and .eqv symbols
+    // The symbols found by the last scan, and whether any were added since by tokenizing a line
+    private HashMap<String, Byte> symbols = new HashMap<>();
+    private boolean symbolAdded;
+    private SymbolScan scan;
+    private SyntaxDocument rescan;
     private KeywordMap keywords;
     private int lastOffset;
     private int lastKeyword;
     private boolean lastKeywordIsEqv = false;
 
+    private void addSymbol(String symbol, byte id) {
+        changingKeywords.add(symbol, id);
+        symbols.put(symbol, id);
+        symbolAdded = true;
+    }
+
     private void doKeyword(Segment line, int i, char c) {
         int i1 = i + 1;
 
@@ -483,7 +577,7 @@ public class RISCVTokenMarker extends TokenMarker {
             id = changingKeywords.lookup(line, lastKeyword, len);
             if (id == Token.NULL && lastKeywordIsEqv) {
                 if (rars.assembler.TokenTypes.isValidIdentifier(keyword))
-                    changingKeywords.add(keyword, Token.SYMBOL);
+                    addSymbol(keyword, Token.SYMBOL);
                 lastKeywordIsEqv = false;
             }
         } else if (id == Token.KEYWORD2 && keyword.equals(".eqv")) {
@@ -5,6 +5,7 @@ import rars.venus.editors.jeditsyntax.PopupHelpItem;
 import javax.swing.event.DocumentEvent;
 import javax.swing.text.Segment;
 import java.util.ArrayList;
+import java.util.Arrays;
 
 /**
  * A token marker that splits lines of text into tokens. Each token carries
@@ -14,7 +15,11 @@ import java.util.ArrayList;
  * For performance reasons, the linked list of tokens is reused after each
  * line is tokenized. Therefore, the return value of <code>markTokens</code>
  * should only be used for immediate painting. Notably, it cannot be
- * cached.
+ * cached.<p>
+ * <p>
+ * A copy of each line's tokens is kept with the line, and given again
+ * while the line's text, the token it starts with and the marker's keywords
+ * are the same, so repainting a line does not split it up again.
  *
  * @author Slava Pestov
  * @version $Id: TokenMarker.java,v 1.32 1999/12/13 03:40:30 sp Exp $
@@ -43,8 +48,16 @@ public abstract class TokenMarker {
             prev = lineInfo[lineIndex - 1];
 
         byte oldToken = info.token;
-        byte token = markTokensImpl(prev == null ?
-                Token.NULL : prev.token, line, lineIndex);
+        byte startToken = prev == null ? Token.NULL : prev.token;
+        byte token;
+        if (info.tokens != null && info.generation == generation
+                && info.startToken == startToken && info.hasText(line)) {
+            token = oldToken;
+        } else {
+            token = markTokensImpl(startToken, line, lineIndex);
+            addToken(0, Token.END);
+            info.cache(line, startToken, copyTokens(firstToken));
+        }
 
         info.token = token;
       
@@ -87,9 +100,16 @@ public abstract class TokenMarker {
 
         lastLine = lineIndex;
 
-        addToken(0, Token.END);
+        return info.tokens;
+    }
 
-        return firstToken;
+    private static Token copyTokens(Token tokens) {
+        Token first = new Token(tokens.length, tokens.id);
+        for (Token last = first; tokens.id != Token.END; last = last.next) {
+            tokens = tokens.next;
+            last.next = new Token(tokens.length, tokens.id);
+        }
+        return first;
     }
 
     /**
@@ -312,6 +332,30 @@ public abstract class TokenMarker {
     public void updated(DocumentEvent evt) {
     }
 
+    /**
+     * Sets what to run when the tokens of lines may have changed without their
+     * text changing, as when keywords are found by a background scan.  The
+     * text area repaints itself.
+     *
+     * @param listener The listener, or null for none
+     */
+    public void setTokensChangedListener(Runnable listener) {
+        tokensChangedListener = listener;
+    }
+
+    /**
+     * Forgets the tokens kept for every line, because the keywords have
+     * changed, and tells the listener so the lines are painted again.
+     */
+    protected void tokensChanged() {
+        generation++;
+        if (tokensChangedListener != null)
+            tokensChangedListener.run();
+    }
+
+    private int generation;
+    private Runnable tokensChangedListener;
+
     /**
      * Inner class for storing information about tokenized lines.
      */
@@ -344,5 +388,28 @@ public abstract class TokenMarker {
          * basis.
          */
         public Object obj;
+
+        // The tokens of the line as last marked, and what they were made from
+        private Token tokens;
+        private char[] text;
+        private byte startToken;
+        private int generation;
+
+        private boolean hasText(Segment line) {
+            if (text.length != line.count)
+                return false;
+            for (int i = 0; i < text.length; i++) {
+                if (text[i] != line.array[line.offset + i])
+                    return false;
+            }
+            return true;
+        }
+
+        private void cache(Segment line, byte startToken, Token tokens) {
+            this.text = Arrays.copyOfRange(line.array, line.offset, line.offset + line.count);
+            this.startToken = startToken;
+            this.tokens = tokens;
+            this.generation = TokenMarker.this.generation;
+        }
     }
 }
@@ -37,6 +37,9 @@ public abstract class RegisterBlockWindow extends JPanel implements Observer {
     private RegistersAccessNotice stepAccessNotices;    //contains the register access notices for the current step
     private Register[] registers;
     private TableColumn numberColumn;
+    // Change count of each register and the base when its value was last formatted
+    private int[] shownChanges;
+    private int shownBase;
 
     private static final int NAME_COLUMN = 0;
     private static final int NUMBER_COLUMN = 1;
@@ -69,7 +72,12 @@ public abstract class RegisterBlockWindow extends JPanel implements Observer {
         table.getColumnModel().getColumn(VALUE_COLUMN).setCellRenderer(new RegisterCellRenderer(MonoRightCellRenderer.MONOSPACED_PLAIN_12POINT, SwingConstants.RIGHT));
         table.setPreferredScrollableViewportSize(new Dimension(200, 700));
         this.setLayout(new BorderLayout());  // table display will occupy entire width if widened
-        this.add(new JScrollPane(table, JScrollPane.VERTICAL_SCROLLBAR_AS_NEEDED, JScrollPane.HORIZONTAL_SCROLLBAR_AS_NEEDED));
+        JScrollPane scroller = new JScrollPane(table, JScrollPane.VERTICAL_SCROLLBAR_AS_NEEDED, JScrollPane.HORIZONTAL_SCROLLBAR_AS_NEEDED);
+        // Rows scrolled into view may have changed while hidden
+        scroller.getViewport().addChangeListener(e -> {
+            if (isShowing()) refreshChangedRegisters();
+        });
+        this.add(scroller);
 
         // Copy numbers column
         numberColumn = table.getColumnModel().getColumn(NUMBER_COLUMN);
@@ -92,12 +100,14 @@ public abstract class RegisterBlockWindow extends JPanel implements Observer {
 
     private Object[][] setupWindow() {
         Object[][] tableData = new Object[registers.length][3];
+        shownChanges = new int[registers.length];
+        shownBase = NumberDisplayBaseChooser.getBase(settings.getBooleanSetting(Settings.Bool.DISPLAY_VALUES_IN_HEX));
         for (int i = 0; i < registers.length; i++) {
             tableData[i][0] = registers[i].getName();
             int temp = registers[i].getNumber();
             tableData[i][1] = temp == -1 ? "" : temp;
-            tableData[i][2] = formatRegister(registers[i],
-                    NumberDisplayBaseChooser.getBase(settings.getBooleanSetting(Settings.Bool.DISPLAY_VALUES_IN_HEX)));
+            shownChanges[i] = registers[i].getChangeCount();
+            tableData[i][2] = formatRegister(registers[i], shownBase);
         }
         return tableData;
     }
@@ -132,9 +142,34 @@ public abstract class RegisterBlockWindow extends JPanel implements Observer {
      * Update register display using specified display base
      */
     public void updateRegisters() {
+        shownBase = Globals.getGui().getMainPane().getExecutePane().getValueDisplayBase();
         for (int i = 0; i < registers.length; i++) {
-            ((RegTableModel) table.getModel()).setDisplayAndModelValueAt(formatRegister(registers[i],
-                    Globals.getGui().getMainPane().getExecutePane().getValueDisplayBase()), i, 2);
+            shownChanges[i] = registers[i].getChangeCount();
+            ((RegTableModel) table.getModel()).setDisplayAndModelValueAt(formatRegister(registers[i], shownBase), i, 2);
+        }
+    }
+
+    /**
+     * Update the display of the registers in view that have changed since they were last shown.
+     * Used while the program runs, when redrawing every register each step would be too slow.
+     */
+    public void refreshChangedRegisters() {
+        int base = Globals.getGui().getMainPane().getExecutePane().getValueDisplayBase();
+        if (base != shownBase) {
+            updateRegisters();
+            return;
+        }
+        Rectangle visible = table.getVisibleRect();
+        int first = table.rowAtPoint(new Point(0, visible.y));
+        int last = table.rowAtPoint(new Point(0, visible.y + visible.height - 1));
+        if (first < 0) first = 0;
+        if (last < 0) last = registers.length - 1;
+        for (int i = first; i <= last; i++) {
+            int changes = registers[i].getChangeCount();
+            if (changes != shownChanges[i]) {
+                shownChanges[i] = changes;
+                ((RegTableModel) table.getModel()).setDisplayAndModelValueAt(formatRegister(registers[i], base), i, VALUE_COLUMN);
+            }
         }
     }
 
@@ -5,6 +5,7 @@ import rars.riscv.hardware.ControlAndStatusRegisterFile;
 import rars.riscv.hardware.FloatingPointRegisterFile;
 import rars.riscv.hardware.Memory;
 import rars.riscv.hardware.RegisterFile;
+import rars.simulator.TimeTravel;
 import rars.venus.ExecutePane;
 import rars.venus.FileStatus;
 import rars.venus.GuiAction;
@@ -44,12 +45,20 @@ public class RunBackstepAction extends GuiAction {
         mainUI.getMessagesPane().selectRunMessageTab();
         executePane.getTextSegmentWindow().setCodeHighlighting(true);
 
-        if (Globals.getSettings().getBackSteppingEnabled()) {
+        TimeTravel history = TimeTravel.getActive();
+        boolean possible = (history != null) ? history.getPosition() > 0
+                : Globals.getSettings().getBackSteppingEnabled() && !Globals.program.getBackStepper().empty();
+        if (possible) {
             Memory.getInstance().addObserver(executePane.getDataSegmentWindow());
             RegisterFile.addRegistersObserver(executePane.getRegistersWindow());
             ControlAndStatusRegisterFile.addRegistersObserver(executePane.getControlAndStatusWindow());
             FloatingPointRegisterFile.addRegistersObserver(executePane.getFloatingPointWindow());
-            Globals.program.getBackStepper().backStep();
+            if (history != null) {
+                // Keep the time-travel position in step with the machine state
+                history.seek(history.getPosition() - 1);
+            } else {
+                Globals.program.getBackStepper().backStep();
+            }
             Memory.getInstance().deleteObserver(executePane.getDataSegmentWindow());
             RegisterFile.deleteRegistersObserver(executePane.getRegistersWindow());
             executePane.getRegistersWindow().updateRegisters();
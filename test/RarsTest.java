@@ -287,7 +287,8 @@ public class RarsTest {
         ArrayList<Instruction> insts = Globals.instructionSet.getInstructionList();
         int skips = 0;
         for(Instruction inst : insts){
-            if(inst instanceof ExtendedInstruction){
+            // Compressed mnemonics assemble to a single parcel and are checked in CompressedInstructionTest
+            if(inst instanceof ExtendedInstruction && !((ExtendedInstruction) inst).isCompressed()){
                 String program = "label:"+inst.getExampleFormat();
                 try {
                     p.assembleString(program);
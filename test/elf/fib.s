@@ -0,0 +1,41 @@
+# Source of the ELF fixtures fib32.elf and fib64.elf.  The machine code is this
+# program assembled at the default addresses (text 0x00400000, data 0x10010000).
+# The text segment also holds the read-only greeting at 0x00400100.  The data
+# segment has an initialized word, "result", and a zeroed one, "count", in .bss.
+# Symbols: _start, count (global); fib, loop, done, result, greeting (local).
+.text
+_start:
+    li   a0, 0x00400100     # greeting
+    li   a7, 4              # PrintString
+    ecall
+    li   a0, 20
+    jal  fib
+    la   t0, result
+    sw   a0, 0(t0)
+    li   a7, 1              # PrintInt
+    ecall
+    li   a0, 0
+    li   a7, 93             # Exit2
+    ecall
+
+fib:                        # a0 = fib(a0), counting iterations in count
+    li   t0, 0
+    li   t1, 1
+    la   t3, count
+loop:
+    beqz a0, done
+    add  t2, t0, t1
+    mv   t0, t1
+    mv   t1, t2
+    lw   t4, 0(t3)
+    addi t4, t4, 1
+    sw   t4, 0(t3)
+    addi a0, a0, -1
+    j    loop
+done:
+    mv   a0, t0
+    ret
+
+.data
+result: .word -1
+count:  .word 0
@@ -0,0 +1,86 @@
+package rars.assembler;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import rars.AssemblyException;
+import rars.Globals;
+import rars.Settings;
+import rars.api.Program;
+import rars.riscv.InstructionSet;
+import rars.riscv.hardware.RegisterFile;
+import rars.simulator.Simulator;
+
+import java.io.File;
+import java.util.ArrayList;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ElfLoaderTest {
+    private static final int RESULT = 0x10010000, COUNT = 0x10010004;
+
+    @BeforeAll
+    static void setUp() {
+        Globals.initialize();
+    }
+
+    @AfterEach
+    void tearDown() {
+        setRv64(false);
+    }
+
+    private static void setRv64(boolean rv64) {
+        Globals.getSettings().setBooleanSettingNonPersistent(Settings.Bool.RV64_ENABLED, rv64);
+        InstructionSet.rv64 = rv64;
+        Globals.instructionSet.populate();
+    }
+
+    private Program run(String file) throws Exception {
+        Program p = new Program();
+        p.loadElf(file);
+        p.setup(new ArrayList<>(), "");
+        assertEquals(0x00400000, RegisterFile.getProgramCounter(), "starts at the entry point");
+        assertEquals(Simulator.Reason.NORMAL_TERMINATION, p.simulate());
+        return p;
+    }
+
+    private void check(Program p) throws Exception {
+        assertEquals("Hello, ELF!\n6765", p.getSTDOUT(), "reads data from text and data segments");
+        assertEquals(6765, p.getMemory().getWord(RESULT));
+        assertEquals(20, p.getMemory().getWord(COUNT), ".bss starts zeroed");
+        assertEquals(0, p.getExitCode());
+
+        SymbolTable symbols = Globals.symbolTable;
+        assertEquals(0x00400000, symbols.getAddress("_start"));
+        assertEquals(0x00400038, symbols.getAddress("fib"), "locals are imported too");
+        assertEquals(RESULT, symbols.getAddress("result"));
+        assertEquals(SymbolTable.NOT_FOUND, symbols.getAddress("puts"), "undefined");
+        assertEquals(SymbolTable.NOT_FOUND, symbols.getAddress("$x"), "mapping symbol");
+        assertEquals(SymbolTable.NOT_FOUND, symbols.getAddress("fib.s"), "file symbol");
+        assertFalse(symbols.getSymbol("fib").getType(), "text");
+        assertTrue(symbols.getSymbol("greeting").getType(), "data, though in the text segment");
+    }
+
+    @Test
+    public void testElf32() throws Exception {
+        setRv64(false);
+        check(run("test/elf/fib32.elf"));
+    }
+
+    @Test
+    public void testElf64() throws Exception {
+        setRv64(true);
+        check(run("test/elf/fib64.elf"));
+    }
+
+    @Test
+    public void testRejected() {
+        setRv64(false);
+        assertEquals(32, ElfLoader.getElfClass(new File("test/elf/fib32.elf")));
+        assertEquals(64, ElfLoader.getElfClass(new File("test/elf/fib64.elf")));
+        assertEquals(0, ElfLoader.getElfClass(new File("test/elf/fib.s")));
+        assertThrows(AssemblyException.class, () -> new Program().loadElf("test/elf/fib.s"));
+        assertThrows(AssemblyException.class, () -> new Program().loadElf("test/elf/fib64.elf")); // needs RV64
+        assertThrows(AssemblyException.class, () -> new Program().loadElf("test/elf/missing.elf"));
+    }
+}
@@ -0,0 +1,113 @@
+package rars.riscv;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import rars.AssemblyException;
+import rars.Globals;
+import rars.api.Options;
+import rars.api.Program;
+import rars.riscv.hardware.Memory;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CompressedInstructionTest {
+    // c.li a0,5; addi a0,a0,10 (straddling a word); c.j +4; c.li a0,0; c.addi a0,1; c.jr ra; c.nop
+    private static final String CODE = "code: .word 0x05134515, 0xa01100a5, 0x05054501, 0x00018082\n";
+
+    @BeforeAll
+    public static void initialize() {
+        Globals.initialize();
+    }
+
+    @AfterEach
+    public void restore() {
+        InstructionSet.rv64 = false;
+        InstructionSet.rvc = false;
+    }
+
+    @Test
+    public void testExpandRV32C() {
+        InstructionSet.rv64 = false;
+        assertEquals(0x00150513, CompressedInstruction.expand(0x0505)); // c.addi a0,1
+        assertEquals(0x00500513, CompressedInstruction.expand(0x4515)); // c.li a0,5
+        assertEquals(0x00b00533, CompressedInstruction.expand(0x852e)); // c.mv a0,a1
+        assertEquals(0x00008067, CompressedInstruction.expand(0x8082)); // c.jr ra
+        assertEquals(0x0005a503, CompressedInstruction.expand(0x4188)); // c.lw a0,0(a1)
+        assertEquals(0x00a5a223, CompressedInstruction.expand(0xc1c8)); // c.sw a0,4(a1)
+        assertEquals(0xfe010113, CompressedInstruction.expand(0x1101)); // c.addi sp,-32
+        assertEquals(0xfe010113, CompressedInstruction.expand(0x713d)); // c.addi16sp -32
+        assertEquals(0x00810513, CompressedInstruction.expand(0x0028)); // c.addi4spn a0,sp,8
+        assertEquals(0x00c12503, CompressedInstruction.expand(0x4532)); // c.lwsp a0,12(sp)
+        assertEquals(0x00112623, CompressedInstruction.expand(0xc606)); // c.swsp ra,12(sp)
+        assertEquals(0x00050463, CompressedInstruction.expand(0xc501)); // c.beqz a0,8
+        assertEquals(0xfe051ee3, CompressedInstruction.expand(0xfd75)); // c.bnez a0,-4
+        assertEquals(0x0040006f, CompressedInstruction.expand(0xa011)); // c.j 4
+        assertEquals(0x004000ef, CompressedInstruction.expand(0x2011)); // c.jal 4
+        assertEquals(0x00251513, CompressedInstruction.expand(0x050a)); // c.slli a0,2
+        assertEquals(0x00001537, CompressedInstruction.expand(0x6505)); // c.lui a0,1
+        assertEquals(0x40b50533, CompressedInstruction.expand(0x8d0d)); // c.sub a0,a1
+        assertEquals(0x00f57513, CompressedInstruction.expand(0x893d)); // c.andi a0,15
+        assertEquals(0x40155513, CompressedInstruction.expand(0x8505)); // c.srai a0,1
+        assertEquals(0x00100073, CompressedInstruction.expand(0x9002)); // c.ebreak
+        assertEquals(0, CompressedInstruction.expand(0x0000)); // illegal
+        assertEquals(0, CompressedInstruction.expand(0x1506)); // c.slli a0,33 is reserved in RV32C
+        assertFalse(CompressedInstruction.isCompressed(0x00150513));
+    }
+
+    @Test
+    public void testExpandRV64C() {
+        InstructionSet.rv64 = true;
+        assertEquals(0x0085b503, CompressedInstruction.expand(0x6588)); // c.ld a0,8(a1)
+        assertEquals(0x0015051b, CompressedInstruction.expand(0x2505)); // c.addiw a0,1
+        assertEquals(0x00113423, CompressedInstruction.expand(0xe406)); // c.sdsp ra,8(sp)
+        assertEquals(0x02151513, CompressedInstruction.expand(0x1506)); // c.slli a0,33
+    }
+
+    private Program program(String source) throws Exception {
+        InstructionSet.rvc = true;
+        Options options = new Options();
+        options.selfModifyingCode = true;
+        Program p = new Program(options);
+        p.assembleString(source);
+        p.setup(null, "");
+        return p;
+    }
+
+    @Test
+    public void testRunsInText() throws Exception {
+        Program p = program(".data\n" + CODE + ".text\nla t0, code\nla t1, target\nli t2, 4\n"
+                + "copy: lw t3, 0(t0)\nsw t3, 0(t1)\naddi t0, t0, 4\naddi t1, t1, 4\naddi t2, t2, -1\nbnez t2, copy\n"
+                + "la t1, target\njalr ra, t1, 0\nli a7, 93\necall\ntarget: nop\nnop\nnop\nnop");
+        p.simulate();
+        assertEquals(16, p.getExitCode());
+    }
+
+    @Test
+    public void testRunsInData() throws Exception {
+        Program p = program(".data\n" + CODE + ".text\nla t1, code\njalr ra, t1, 0\nli a7, 93\necall");
+        p.simulate();
+        assertEquals(16, p.getExitCode());
+    }
+
+    @Test
+    public void testAssembles() throws Exception {
+        Program p = program("c.li a0, 0\nli t0, 5\n" // the li straddles a word
+                + "loop: c.addi a0, 3\naddi t0, t0, -1\nc.mv s0, t0\nc.bnez s0, loop\nc.j done\nc.li a0, 0\n"
+                + "done: li a7, 93\necall");
+        assertEquals(0x4501, p.getMemory().getStatementNoNotify(Memory.textBaseAddress).getCompressedStatement());
+        assertEquals(0x00500293, p.getMemory().getStatementNoNotify(Memory.textBaseAddress + 2).getBinaryStatement());
+        p.simulate();
+        assertEquals(15, p.getExitCode());
+    }
+
+    @Test
+    public void testAssemblyErrors() throws Exception {
+        assertThrows(AssemblyException.class, () -> program("c.addi a0, 32")); // immediate out of range
+        assertThrows(AssemblyException.class, () -> program("c.lw a0, 0(sp)")); // that is c.lwsp
+        assertThrows(AssemblyException.class, () -> program("c.sub a0, t0")); // t0 is not x8-x15
+        InstructionSet.rvc = false;
+        Program p = new Program();
+        assertThrows(AssemblyException.class, () -> p.assembleString("c.nop"));
+    }
+}
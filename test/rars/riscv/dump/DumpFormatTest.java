@@ -0,0 +1,70 @@
+package rars.riscv.dump;
+
+import org.junit.jupiter.api.Test;
+import rars.api.Program;
+import rars.riscv.hardware.Memory;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DumpFormatTest {
+    @Test
+    public void testDenseEndsAtFirstUnwrittenWord() throws Exception {
+        Memory m = new Program().getMemory();
+        int base = Memory.dataBaseAddress;
+        for (int i = 0; i < 3000; i++) {
+            m.setWord(base + 4 * i, i);
+        }
+        m.setWord(base + 4 * 5000, 7); // memory is allocated a block of 1024 words at a time
+        File file = File.createTempFile("dump", ".txt");
+        file.deleteOnExit();
+        new HexTextDumpFormat().dumpMemoryRange(file, base, base + 4 * 6000, m);
+        List<String> lines = Files.readAllLines(file.toPath());
+        assertEquals(3072, lines.size());
+        assertEquals("00000000", lines.get(0));
+        assertEquals("00000bb7", lines.get(2999));
+        assertEquals("00000000", lines.get(3000));
+    }
+
+    @Test
+    public void testSparseBinaryLeavesZeros() throws Exception {
+        Memory m = new Program().getMemory();
+        int base = Memory.dataBaseAddress;
+        m.setWord(base, 0x04030201);
+        m.setWord(base + 0x20000, 0x08070605); // blocks in between were never referenced
+        File file = File.createTempFile("dump", ".bin");
+        file.deleteOnExit();
+        new BinaryDumpFormat().dumpMemoryRange(file, base, base + 0x40000, m, true);
+        byte[] bytes = Files.readAllBytes(file.toPath());
+        assertEquals(0x21000, bytes.length, "nothing after the last block written");
+        assertArrayEquals(new byte[]{1, 2, 3, 4}, java.util.Arrays.copyOf(bytes, 4));
+        assertArrayEquals(new byte[]{5, 6, 7, 8}, java.util.Arrays.copyOfRange(bytes, 0x20000, 0x20004));
+        for (int i = 4; i < 0x20000; i++) {
+            assertEquals(0, bytes[i]);
+        }
+
+        new BinaryDumpFormat().dumpMemoryRange(file, base, base + 0x40000, m);
+        assertEquals(0x1000, file.length());
+    }
+
+    @Test
+    public void testIntelHexRecords() throws Exception {
+        Memory m = new Program().getMemory();
+        int base = Memory.dataBaseAddress;
+        m.setWord(base + 4, 0x12345678);
+        m.setWord(base + 0x10000, 1);
+        File file = File.createTempFile("dump", ".hex");
+        file.deleteOnExit();
+        new IntelHexDumpFormat().dumpMemoryRange(file, base, base + 0x10000, m, true);
+        List<String> lines = Files.readAllLines(file.toPath());
+        assertEquals(1024 + 1 + 1 + 1, lines.size());
+        assertEquals(":0400000000000000FC", lines.get(0));
+        assertEquals(":0400040012345678E4", lines.get(1));
+        assertEquals(":020000040001F9", lines.get(1024), "extended address past 64K");
+        assertEquals(":0400000000000001FB", lines.get(1025));
+        assertEquals(":00000001FF", lines.get(1026));
+    }
+}
@@ -0,0 +1,82 @@
+package rars.riscv.hardware;
+
+import org.junit.jupiter.api.Test;
+import rars.api.Program;
+
+import java.util.ArrayList;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AccessStreamTest {
+    // Stores 1..100 to consecutive words starting at a1
+    private static final String STORES = "li a2, 100\nloop:\n addi a0, a0, 1\n sw a0, 0(a1)\n addi a1, a1, 4\n blt a0, a2, loop";
+
+    private Program setup() throws Exception {
+        Program p = new Program();
+        p.assembleString(STORES);
+        p.setup(null, null);
+        p.setRegisterValue("a1", Memory.dataBaseAddress);
+        return p;
+    }
+
+    // Only accesses made by the program's thread are streamed, so run it on one named like the GUI's
+    private void simulate(Program p) throws Exception {
+        Exception[] failure = new Exception[1];
+        Thread t = new Thread(() -> {
+            try {
+                p.simulate();
+            } catch (Exception e) {
+                failure[0] = e;
+            }
+        }, "RISCV");
+        t.start();
+        t.join();
+        if (failure[0] != null) throw failure[0];
+    }
+
+    @Test
+    public void testLosslessDeliversEverythingInOrder() throws Exception {
+        Program p = setup();
+        ArrayList<int[]> seen = new ArrayList<>();
+        AccessStream stream = new AccessStream("test", AccessStream.Delivery.LOSSLESS, batch -> {
+            for (int i = 0; i < batch.size(); i++) {
+                seen.add(new int[]{batch.getAccessType(i), batch.getAddress(i), batch.getValue(i), batch.getProgramCounter(i)});
+            }
+            Thread.yield();
+        }, 8);
+        p.getMemory().addObserver(stream, Memory.dataBaseAddress, Memory.dataBaseAddress + 0x1000);
+        simulate(p);
+        stream.flush();
+        stream.close();
+
+        assertEquals(100, seen.size());
+        for (int i = 0; i < 100; i++) {
+            assertEquals(AccessNotice.WRITE, seen.get(i)[0]);
+            assertEquals(Memory.dataBaseAddress + 4 * i, seen.get(i)[1]);
+            assertEquals(i + 1, seen.get(i)[2]);
+            assertEquals(Memory.textBaseAddress + 8, seen.get(i)[3]);
+        }
+        assertEquals(0, stream.getDropped());
+    }
+
+    @Test
+    public void testLossyCountsWhatItDrops() throws Exception {
+        Program p = setup();
+        long[] delivered = new long[1];
+        Object gate = new Object();
+        AccessStream stream = new AccessStream("test", AccessStream.Delivery.LOSSY, batch -> {
+            synchronized (gate) {
+                delivered[0] += batch.size();
+            }
+        }, 4);
+        synchronized (gate) {
+            p.getMemory().addObserver(stream, Memory.dataBaseAddress, Memory.dataBaseAddress + 0x1000);
+            simulate(p);
+        }
+        stream.flush();
+        stream.close();
+
+        assertTrue(stream.getDropped() > 0);
+        assertEquals(100, delivered[0] + stream.getDropped());
+    }
+}
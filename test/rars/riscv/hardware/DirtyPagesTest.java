@@ -0,0 +1,49 @@
+package rars.riscv.hardware;
+
+import org.junit.jupiter.api.Test;
+import rars.api.Program;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DirtyPagesTest {
+    @Test
+    public void testWritesMarkPages() throws Exception {
+        Memory m = new Program().getMemory();
+        DirtyPages pages = new DirtyPages();
+        m.addDirtyPages(pages);
+        pages.take();
+        assertTrue(pages.wasWritten(Memory.dataBaseAddress, 4), "everything is new when added");
+        pages.take();
+        assertFalse(pages.wasWritten(Memory.dataBaseAddress, 4));
+
+        int address = Memory.dataBaseAddress + 3 * DirtyPages.PAGE_BYTES + 8;
+        m.setWord(address, 42);
+        m.writeBytes(address + 1000, new byte[100], 0, 100);
+        pages.take();
+        assertTrue(pages.wasWritten(address, 4));
+        assertTrue(pages.wasWritten(address - 8, DirtyPages.PAGE_BYTES));
+        assertFalse(pages.wasWritten(address - 8 - DirtyPages.PAGE_BYTES, DirtyPages.PAGE_BYTES));
+        assertTrue(pages.wasWritten(address + 1099, 1));
+        assertFalse(pages.wasWritten(address + 1100 + DirtyPages.PAGE_BYTES, 1));
+
+        // Each take starts afresh
+        pages.take();
+        assertFalse(pages.wasWritten(address, 4));
+
+        m.removeDirtyPages(pages);
+        m.setWord(address, 43);
+        pages.take();
+        assertFalse(pages.wasWritten(address, 4));
+    }
+
+    @Test
+    public void testTopOfMemory() {
+        DirtyPages pages = new DirtyPages();
+        pages.take();
+        pages.mark(0xFFFFFFF0, 64); // stops at the top rather than wrapping to address 0
+        pages.take();
+        assertTrue(pages.wasWritten(0xFFFFFFC0, 64));
+        assertFalse(pages.wasWritten(0, 64));
+        assertTrue(pages.wasWritten(0xFFFFFF00, 0x200));
+    }
+}
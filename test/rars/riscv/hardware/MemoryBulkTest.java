@@ -0,0 +1,113 @@
+package rars.riscv.hardware;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import rars.Globals;
+import rars.Settings;
+import rars.api.Program;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Observable;
+import java.util.Observer;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MemoryBulkTest {
+    private static class Recorder implements Observer {
+        final ArrayList<MemoryAccessNotice> notices = new ArrayList<>();
+
+        public void update(Observable o, Object notice) {
+            notices.add((MemoryAccessNotice) notice);
+        }
+    }
+
+    @AfterEach
+    void tearDown() {
+        setSelfModifyingCode(false);
+    }
+
+    private static void setSelfModifyingCode(boolean enabled) {
+        Globals.getSettings().setBooleanSettingNonPersistent(Settings.Bool.SELF_MODIFYING_CODE_ENABLED, enabled);
+    }
+
+    @Test
+    public void testRoundTripAcrossBlocks() throws Exception {
+        Memory m = new Program().getMemory();
+        byte[] bytes = new byte[10000];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = (byte) (i * 7 + 1);
+        }
+        int address = Memory.dataBaseAddress + 4093; // unaligned, and spanning three blocks
+        m.writeBytes(address, bytes, 0, bytes.length);
+        assertEquals((byte) 1, (byte) m.getByte(address));
+        assertEquals(bytes[5000], (byte) m.getByte(address + 5000));
+        byte[] back = new byte[bytes.length + 2];
+        m.readBytes(address - 1, back, 0, back.length);
+        assertEquals(0, back[0]);
+        for (int i = 0; i < bytes.length; i++) {
+            assertEquals(bytes[i], back[i + 1]);
+        }
+        assertEquals(0, back[back.length - 1]);
+        // The neighbouring bytes of the first and last words are untouched
+        assertEquals(0, m.getByte(address - 1));
+        assertEquals(0, m.getByte(address + bytes.length));
+    }
+
+    @Test
+    public void testStrings() throws Exception {
+        Memory m = new Program().getMemory();
+        int address = Memory.dataBaseAddress + 4090;
+        byte[] hello = "hello, world\0".getBytes(StandardCharsets.UTF_8);
+        m.writeBytes(address, hello, 0, hello.length);
+        assertEquals(12, m.strlen(address));
+        assertEquals(5, m.findByte(address, (byte) ',', 100));
+        assertEquals(-1, m.findByte(address, (byte) ',', 5));
+        // Never written blocks are zero
+        assertEquals(0, m.strlen(Memory.dataBaseAddress + 100000));
+
+        // The stack goes byte by byte, with the same results
+        int stack = Memory.stackPointer - 64;
+        m.writeBytes(stack, hello, 0, hello.length);
+        assertEquals(12, m.strlen(stack));
+        byte[] back = new byte[hello.length];
+        m.readBytes(stack, back, 0, back.length);
+        assertArrayEquals(hello, back);
+    }
+
+    @Test
+    public void testSingleNotice() throws Exception {
+        Memory m = new Program().getMemory();
+        int base = Memory.dataBaseAddress;
+        Recorder inside = new Recorder(), outside = new Recorder();
+        m.addObserver(inside, base + 100, base + 100);
+        m.addObserver(outside, base + 400, base + 400);
+        byte[] bytes = new byte[200];
+        bytes[0] = 42;
+        m.writeBytes(base + 10, bytes, 0, bytes.length);
+        m.readBytes(base + 10, bytes, 0, bytes.length);
+        assertEquals(2, inside.notices.size());
+        MemoryAccessNotice write = inside.notices.get(0);
+        assertEquals(AccessNotice.WRITE, write.getAccessType());
+        assertEquals(base + 10, write.getAddress());
+        assertEquals(200, write.getLength());
+        assertEquals(42, write.getValue());
+        assertEquals(AccessNotice.READ, inside.notices.get(1).getAccessType());
+        assertTrue(outside.notices.isEmpty());
+    }
+
+    @Test
+    public void testOutOfRangeWritesNothing() throws Exception {
+        Memory m = new Program().getMemory();
+        byte[] bytes = {1, 2, 3, 4};
+        assertThrows(AddressErrorException.class, () -> m.writeBytes(Memory.textBaseAddress - 2, bytes, 0, 4));
+        setSelfModifyingCode(false);
+        assertThrows(AddressErrorException.class, () -> m.writeBytes(Memory.textBaseAddress, bytes, 0, 4));
+        // Self-modifying code may write the text segment
+        setSelfModifyingCode(true);
+        m.writeBytes(Memory.textBaseAddress, bytes, 0, 4);
+        byte[] back = new byte[4];
+        m.readBytes(Memory.textBaseAddress, back, 0, 4);
+        assertArrayEquals(bytes, back);
+    }
+}
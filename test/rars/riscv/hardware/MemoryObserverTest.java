@@ -0,0 +1,85 @@
+package rars.riscv.hardware;
+
+import org.junit.jupiter.api.Test;
+import rars.api.Program;
+
+import java.util.ArrayList;
+import java.util.Observable;
+import java.util.Observer;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MemoryObserverTest {
+    private static class Recorder implements Observer {
+        final ArrayList<MemoryAccessNotice> notices = new ArrayList<>();
+
+        public void update(Observable o, Object notice) {
+            notices.add((MemoryAccessNotice) notice);
+        }
+    }
+
+    private static class Counter implements TransientNoticeObserver {
+        int count;
+        MemoryAccessNotice last;
+
+        public void update(Observable o, Object notice) {
+            count++;
+            last = (MemoryAccessNotice) notice;
+        }
+    }
+
+    private Memory memory() {
+        return new Program().getMemory();
+    }
+
+    @Test
+    public void testRangesAreIndependent() throws Exception {
+        Memory m = memory();
+        int base = Memory.dataBaseAddress;
+        Recorder low = new Recorder(), high = new Recorder(), all = new Recorder();
+        m.addObserver(low, base, base + 8);
+        m.addObserver(high, base + 0x2000, base + 0x2000);
+        m.addObserver(all);
+
+        m.setWord(base + 8, 1);
+        m.setByte(base + 11, 2);
+        m.setWord(base + 12, 3);
+        m.setWord(base + 0x2000, 4);
+        m.setWord(base + 0x1000, 5);
+
+        assertEquals(2, low.notices.size());
+        assertEquals(base + 11, low.notices.get(1).getAddress());
+        assertEquals(1, low.notices.get(1).getLength());
+        assertEquals(1, high.notices.size());
+        assertEquals(4, high.notices.get(0).getValue());
+        assertEquals(5, all.notices.size());
+        assertEquals(AccessNotice.WRITE, all.notices.get(4).getAccessType());
+
+        m.deleteObserver(all);
+        m.getWord(base + 0x2000);
+        assertEquals(5, all.notices.size());
+        assertEquals(AccessNotice.READ, high.notices.get(1).getAccessType());
+    }
+
+    @Test
+    public void testTransientObserversShareANotice() throws Exception {
+        Memory m = memory();
+        int base = Memory.dataBaseAddress;
+        Counter counter = new Counter();
+        m.addObserver(counter, base, base + 0x100);
+
+        m.setWord(base, 1);
+        MemoryAccessNotice first = counter.last;
+        m.setWord(base + 4, 2);
+
+        assertEquals(2, counter.count);
+        assertSame(first, counter.last);
+        assertEquals(base + 4, first.getAddress());
+        assertEquals(2, first.getValue());
+
+        m.deleteObservers();
+        m.setWord(base, 3);
+        assertEquals(2, counter.count);
+        assertEquals(0, m.countObservers());
+    }
+}
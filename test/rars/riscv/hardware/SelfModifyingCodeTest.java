@@ -0,0 +1,65 @@
+package rars.riscv.hardware;
+
+import org.junit.jupiter.api.Test;
+import rars.Globals;
+import rars.ProgramStatement;
+import rars.Settings;
+import rars.api.Options;
+import rars.api.Program;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SelfModifyingCodeTest {
+    private static final int ADDI_A0_42 = 0x02a00513; // addi a0, zero, 42
+
+    private Program program(String source) throws Exception {
+        Options options = new Options();
+        options.selfModifyingCode = true;
+        Program p = new Program(options);
+        p.assembleString(source);
+        p.setup(null, "");
+        return p;
+    }
+
+    @Test
+    public void testWrittenCodeRuns() throws Exception {
+        Program p = program("la t0, target\nli t1, " + ADDI_A0_42 + "\nsw t1, 0(t0)\n"
+                + "target: nop\nli a7, 93\necall");
+        p.simulate();
+        assertEquals(42, p.getExitCode());
+    }
+
+    @Test
+    public void testDataRuns() throws Exception {
+        Program p = program(".data\ncode: .word " + ADDI_A0_42 + ", 0x00008067\n"
+                + ".text\nla t0, code\njalr t0\nli a7, 93\necall");
+        p.simulate();
+        assertEquals(42, p.getExitCode());
+    }
+
+    @Test
+    public void testWordsAreDecodedOnceAndRestored() throws Exception {
+        boolean selfMod = Globals.getSettings().getBooleanSetting(Settings.Bool.SELF_MODIFYING_CODE_ENABLED);
+        Globals.getSettings().setBooleanSettingNonPersistent(Settings.Bool.SELF_MODIFYING_CODE_ENABLED, true);
+        try {
+            Memory m = program("nop\nnop").getMemory();
+            int address = Memory.textBaseAddress + 4;
+            Memory.Checkpoint before = m.checkpoint();
+            m.setWord(address, ADDI_A0_42);
+            assertEquals(ADDI_A0_42, m.getWord(address));
+            assertEquals(0xa0, m.getByte(address + 2));
+            ProgramStatement statement = m.getStatementNoNotify(address);
+            assertEquals(ADDI_A0_42, statement.getBinaryStatement());
+            assertSame(statement, m.getStatementNoNotify(address));
+            assertTrue(statement.getPrintableBasicAssemblyStatement().startsWith("addi x10,x0,"));
+
+            m.restore(before);
+            assertEquals(0x00000013, m.getWord(address));
+            assertEquals(0x00000013, m.getStatementNoNotify(address).getBinaryStatement());
+            assertNull(m.getStatementNoNotify(address + 4));
+            assertNull(m.getRawWordOrNull(address + 4));
+        } finally {
+            Globals.getSettings().setBooleanSettingNonPersistent(Settings.Bool.SELF_MODIFYING_CODE_ENABLED, selfMod);
+        }
+    }
+}
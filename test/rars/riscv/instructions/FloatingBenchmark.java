@@ -0,0 +1,65 @@
+package rars.riscv.instructions;
+
+import rars.ProgramStatement;
+import rars.api.Program;
+import rars.riscv.BasicInstruction;
+import rars.riscv.hardware.FloatingPointRegisterFile;
+import rars.riscv.hardware.RegisterFile;
+
+import java.lang.management.ManagementFactory;
+
+/**
+ * Measures the time and the garbage per simulated floating point instruction, calling each
+ * instruction's simulate method directly so nothing else is counted.  Not a unit test; run it with
+ * {@code java rars.riscv.instructions.FloatingBenchmark [iterations]}.
+ * <p>
+ * Operands are 1.1, 2.3 and 0.7 in ft1, ft2 and ft3 (as floats or doubles) and 7 in a1, which
+ * gives inexact results for arithmetic; the rtz variants take the softfloat path.
+ */
+public class FloatingBenchmark {
+    private static final String[] INSTRUCTIONS = {
+            "fadd.s ft0, ft1, ft2", "fmul.s ft0, ft1, ft2", "fdiv.s ft0, ft1, ft2", "fmadd.s ft0, ft1, ft2, ft3",
+            "fadd.d ft0, ft1, ft2", "fmul.d ft0, ft1, ft2", "fdiv.d ft0, ft1, ft2", "fmadd.d ft0, ft1, ft2, ft3",
+            "fadd.s ft0, ft1, ft2, rtz", "fmadd.d ft0, ft1, ft2, ft3, rtz", "fsqrt.d ft0, ft1",
+            "flt.s a0, ft1, ft2", "feq.d a0, ft1, ft2", "fcvt.w.s a0, ft1, rtz", "fcvt.s.w ft0, a1", "fcvt.d.s ft0, ft1",
+    };
+
+    public static void main(String[] args) throws Exception {
+        int iterations = args.length > 0 ? Integer.parseInt(args[0]) : 2_000_000;
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        System.out.printf("%-32s %10s %12s%n", "instruction", "ns/op", "bytes/op");
+        for (String source : INSTRUCTIONS) {
+            Program p = new Program();
+            p.assembleString(source);
+            p.setup(null, null);
+            ProgramStatement statement = p.getCode().getMachineList().get(0);
+            BasicInstruction instruction = (BasicInstruction) statement.getInstruction();
+            boolean single = source.matches("\\S+\\.s .*") && !source.startsWith("fcvt.d.s");
+            setOperands(single);
+
+            for (int i = 0; i < iterations; i++) { // warm up
+                instruction.simulate(statement);
+            }
+            long bytes = threads.getThreadAllocatedBytes(Thread.currentThread().getId());
+            long start = System.nanoTime();
+            for (int i = 0; i < iterations; i++) {
+                instruction.simulate(statement);
+            }
+            long time = System.nanoTime() - start;
+            bytes = threads.getThreadAllocatedBytes(Thread.currentThread().getId()) - bytes;
+            System.out.printf("%-32s %10.1f %12.1f%n", source, (double) time / iterations, (double) bytes / iterations);
+        }
+    }
+
+    private static void setOperands(boolean single) {
+        double[] values = {1.1, 2.3, 0.7};
+        for (int i = 0; i < values.length; i++) {
+            if (single) {
+                FloatingPointRegisterFile.setRegisterToFloat(i + 1, (float) values[i]);
+            } else {
+                FloatingPointRegisterFile.updateRegisterLong(i + 1, java.lang.Double.doubleToRawLongBits(values[i]));
+            }
+        }
+        RegisterFile.updateRegister(11, 7);
+    }
+}
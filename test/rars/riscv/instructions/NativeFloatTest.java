@@ -0,0 +1,148 @@
+package rars.riscv.instructions;
+
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class NativeFloatTest {
+    private static final int TRIALS = 100000;
+
+    // Mostly short mantissas, so that many results are exact, with extreme exponents now and then
+    private static float randomFloat(Random random) {
+        switch (random.nextInt(4)) {
+            case 0:
+                return Float.intBitsToFloat(random.nextInt());
+            case 1:
+                return (random.nextInt(64) - 32) * (float) Math.scalb(1.0, random.nextInt(20) - 10);
+            case 2:
+                return (random.nextInt(1 << 12) - (1 << 11)) * (float) Math.scalb(1.0, random.nextInt(300) - 150);
+            default:
+                return (float) random.nextGaussian();
+        }
+    }
+
+    private static double randomDouble(Random random) {
+        switch (random.nextInt(4)) {
+            case 0:
+                return java.lang.Double.longBitsToDouble(random.nextLong());
+            case 1:
+                return (random.nextInt(64) - 32) * Math.scalb(1.0, random.nextInt(20) - 10);
+            case 2:
+                return (random.nextInt(1 << 26) - (1 << 25)) * Math.scalb(1.0, random.nextInt(2100) - 1100);
+            default:
+                return random.nextGaussian();
+        }
+    }
+
+    // The exact value of op(a, b, c), to check the inexact flag against
+    private static BigDecimal exact(String name, double a, double b, double c) {
+        BigDecimal x = new BigDecimal(a), y = new BigDecimal(b), z = new BigDecimal(c);
+        switch (name.substring(0, name.indexOf('.'))) {
+            case "fadd":
+                return x.add(y);
+            case "fsub":
+                return x.subtract(y);
+            case "fmul":
+                return x.multiply(y);
+            case "fmadd":
+                return x.multiply(y).add(z);
+            case "fmsub":
+                return x.multiply(y).subtract(z);
+            case "fnmadd":
+                return x.multiply(y).add(z).negate();
+            case "fnmsub":
+                return x.multiply(y).subtract(z).negate();
+            default:
+                throw new IllegalArgumentException(name);
+        }
+    }
+
+    private static void check(String name, double a, double b, double c, double result, int flags) {
+        String message = name + " " + a + " " + b + " " + c;
+        boolean exact;
+        if (name.startsWith("fdiv")) {
+            exact = new BigDecimal(result).multiply(new BigDecimal(b)).compareTo(new BigDecimal(a)) == 0;
+        } else {
+            exact = exact(name, a, b, c).compareTo(new BigDecimal(result)) == 0;
+        }
+        assertEquals(exact ? 0 : 1, flags, message);
+    }
+
+    @Test
+    public void testSingleFlags() {
+        Random random = new Random(41);
+        Floating[] binary = {new FADDS(), new FSUBS(), new FMULS(), new FDIVS()};
+        FusedFloat[] fused = {new FMADDS(), new FMSUBS(), new FNMADDS(), new FNMSUBS()};
+        int nativeResults = 0;
+        for (int i = 0; i < TRIALS; i++) {
+            float a = randomFloat(random), b = randomFloat(random), c = randomFloat(random);
+            Floating op = binary[i % binary.length];
+            float result = op.computeNative(a, b);
+            int flags = op.nativeFlags(a, b, result);
+            if (flags >= 0) {
+                check(op.getName(), a, b, 0, result, flags);
+                nativeResults++;
+            }
+            FusedFloat fop = fused[i % fused.length];
+            result = fop.computeNative(a, b, c);
+            flags = fop.nativeFlags(a, b, c, result);
+            if (flags >= 0) {
+                check(fop.getName(), a, b, c, result, flags);
+                nativeResults++;
+            }
+        }
+        assertTrue(nativeResults > TRIALS);
+    }
+
+    @Test
+    public void testDoubleFlags() {
+        Random random = new Random(41);
+        Double[] binary = {new FADDD(), new FSUBD(), new FMULD(), new FDIVD()};
+        FusedDouble[] fused = {new FMADDD(), new FMSUBD(), new FNMADDD(), new FNMSUBD()};
+        int nativeResults = 0;
+        for (int i = 0; i < TRIALS; i++) {
+            double a = randomDouble(random), b = randomDouble(random), c = randomDouble(random);
+            Double op = binary[i % binary.length];
+            double result = op.computeNative(a, b);
+            int flags = op.nativeFlags(a, b, result);
+            if (flags >= 0) {
+                check(op.getName(), a, b, 0, result, flags);
+                nativeResults++;
+            }
+            FusedDouble fop = fused[i % fused.length];
+            result = fop.computeNative(a, b, c);
+            flags = fop.nativeFlags(a, b, c, result);
+            if (flags >= 0) {
+                check(fop.getName(), a, b, c, result, flags);
+                nativeResults++;
+            }
+        }
+        assertTrue(nativeResults > TRIALS);
+    }
+
+    @Test
+    public void testEdgeCasesFallBack() {
+        assertEquals(-1, new FDIVS().nativeFlags(1, 0, 1f / 0));
+        assertEquals(-1, new FMULS().nativeFlags(1e-30f, 1e-30f, 1e-30f * 1e-30f));
+        assertEquals(-1, new FADDD().nativeFlags(java.lang.Double.MAX_VALUE, java.lang.Double.MAX_VALUE, java.lang.Double.MAX_VALUE * 2));
+        assertEquals(-1, new FMULD().nativeFlags(java.lang.Double.MIN_NORMAL, 0.5, java.lang.Double.MIN_NORMAL * 0.5));
+        assertEquals(0, new FADDS().nativeFlags(1.5f, -1.5f, 0f));
+        assertEquals(1, new FDIVD().nativeFlags(1, 3, 1.0 / 3));
+    }
+
+    @Test
+    public void testSmallestNormalFallsBack() {
+        // An inexact result may have been tiny before rounding up to the smallest normal, which
+        // underflows: 2^-126 - 2^-150 converted to a float, for one
+        float rounded = (float) (Math.scalb(1.0, -126) - Math.scalb(1.0, -150));
+        assertEquals(Float.MIN_NORMAL, rounded);
+        assertEquals(-1, Floating.resultFlags(rounded, false));
+        assertEquals(0, Floating.resultFlags(-Float.MIN_NORMAL, true));
+        assertEquals(1, Floating.resultFlags(Math.nextUp(Float.MIN_NORMAL), false));
+        assertEquals(-1, Double.resultFlags(-java.lang.Double.MIN_NORMAL, false));
+        assertEquals(0, Double.resultFlags(java.lang.Double.MIN_NORMAL, true));
+    }
+}
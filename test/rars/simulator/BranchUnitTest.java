@@ -0,0 +1,69 @@
+package rars.simulator;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import rars.api.Program;
+import rars.riscv.hardware.Memory;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BranchUnitTest {
+    // A call inside a loop taken 7 times, then falling through
+    private static final String LOOP =
+            " li s0, 8\n" +            // 0x00
+            "loop:\n" +
+            " jal f\n" +               // 0x04
+            " addi s0, s0, -1\n" +     // 0x08
+            " bnez s0, loop\n" +       // 0x0c
+            " j end\n" +               // 0x10
+            "f:\n" +
+            " ret\n" +                 // 0x14
+            "end:\n";
+
+    @AfterEach
+    void tearDown() {
+        BranchUnit.setActive(null);
+    }
+
+    private BranchUnit run(String predictor) throws Exception {
+        Program p = new Program();
+        p.assembleString(LOOP);
+        p.setup(null, null);
+        BranchUnit unit = new BranchUnit(BranchPredictor.parse(predictor));
+        BranchUnit.setActive(unit);
+        p.simulate();
+        return unit;
+    }
+
+    @Test
+    public void testStatic() throws Exception {
+        BranchUnit unit = run("btfn");
+        int base = Memory.textBaseAddress;
+        assertEquals(8, unit.getExecuted(BranchUnit.Kind.BRANCH));
+        assertEquals(1, unit.getMispredicted(BranchUnit.Kind.BRANCH));
+        assertEquals(7, unit.getSite(base + 0x0c).getTaken());
+        // Eight calls and the final j; the first call and the j miss in the BTB
+        assertEquals(9, unit.getExecuted(BranchUnit.Kind.JUMP));
+        assertEquals(2, unit.getMispredicted(BranchUnit.Kind.JUMP));
+        // Every return is predicted by the return address stack
+        assertEquals(8, unit.getExecuted(BranchUnit.Kind.RETURN));
+        assertEquals(0, unit.getMispredicted(BranchUnit.Kind.RETURN));
+    }
+
+    @Test
+    public void testDynamic() throws Exception {
+        // Counters start weakly not taken: wrong on the first iteration and the exit
+        assertEquals(2, run("bimodal:64").getMispredicted(BranchUnit.Kind.BRANCH));
+        assertEquals(7, run("nottaken").getMispredicted(BranchUnit.Kind.BRANCH));
+        assertTrue(run("gshare:64:4").getMispredicted(BranchUnit.Kind.BRANCH) <= 8);
+        assertTrue(run("tournament:64:4").getMispredicted(BranchUnit.Kind.BRANCH) <= 8);
+    }
+
+    @Test
+    public void testParse() {
+        assertEquals("gshare:1024:10", BranchPredictor.parse("gshare:1024:10").getName());
+        assertThrows(IllegalArgumentException.class, () -> BranchPredictor.parse("bimodal:100"));
+        assertThrows(IllegalArgumentException.class, () -> BranchPredictor.parse("gshare:64"));
+        assertThrows(IllegalArgumentException.class, () -> BranchPredictor.parse("perceptron"));
+    }
+}
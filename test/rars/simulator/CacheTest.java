@@ -0,0 +1,100 @@
+package rars.simulator;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import rars.api.Program;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CacheTest {
+    @AfterEach
+    void tearDown() {
+        CacheHierarchy.setActive(null);
+    }
+
+    // One set of two 16 byte blocks
+    private static Cache twoWay(Cache.Replacement replacement) {
+        return new Cache("L1", 32, 16, 2, replacement, true, true, null);
+    }
+
+    @Test
+    public void testReplacement() {
+        Cache lru = twoWay(Cache.Replacement.LRU);
+        Cache fifo = twoWay(Cache.Replacement.FIFO);
+        for (Cache cache : new Cache[]{lru, fifo}) {
+            assertFalse(cache.read(0x00));
+            assertFalse(cache.read(0x10));
+            assertTrue(cache.read(0x04));   // same block as 0x00
+            assertFalse(cache.read(0x20));  // LRU evicts 0x10, FIFO evicts 0x00
+        }
+        assertTrue(lru.read(0x00));
+        assertFalse(fifo.read(0x00));
+        assertEquals(3, lru.getReadMisses());
+    }
+
+    @Test
+    public void testPseudoLRU() {
+        Cache plru = new Cache("L1", 64, 16, 4, Cache.Replacement.PLRU, true, true, null);
+        for (int address = 0; address < 0x40; address += 0x10) {
+            plru.read(address);
+        }
+        plru.read(0x00);
+        plru.read(0x20);
+        assertFalse(plru.read(0x40)); // replaces 0x10, the only block in neither recently used half
+        assertTrue(plru.read(0x00));
+        assertTrue(plru.read(0x20));
+        assertTrue(plru.read(0x30));
+        assertFalse(plru.read(0x10));
+    }
+
+    @Test
+    public void testWritePolicies() {
+        Cache memorySide = new Cache("L2", 256, 16, 4, Cache.Replacement.LRU, true, true, null);
+        Cache writeBack = new Cache("L1", 16, 16, 1, Cache.Replacement.LRU, true, true, memorySide);
+        writeBack.write(0x00);
+        writeBack.write(0x04);
+        writeBack.read(0x10);
+        assertEquals(1, writeBack.getWriteBacks());
+        assertEquals(1, memorySide.getWrites());
+
+        Cache through = new Cache("L1", 16, 16, 1, Cache.Replacement.LRU, false, false, null);
+        assertFalse(through.write(0x00));  // no allocate: still not present
+        assertFalse(through.read(0x00));
+        assertTrue(through.write(0x00));
+        assertEquals(2, through.getMemoryWrites());
+        assertEquals(0, through.getWriteBacks());
+    }
+
+    @Test
+    public void testLive() throws Exception {
+        Program p = new Program();
+        p.assembleString(".data\n" +
+                "a: .space 256\n" +
+                ".text\n" +
+                " la t0, a\n" +
+                " li t1, 64\n" +
+                "loop:\n" +
+                " lw t2, 0(t0)\n" +
+                " addi t0, t0, 4\n" +
+                " addi t1, t1, -1\n" +
+                " bnez t1, loop\n");
+        p.setup(null, null);
+        CacheHierarchy caches = CacheHierarchy.parse("l1i=64:16:1,l1d=64:16:1,l2=1K:16:2");
+        CacheHierarchy.setActive(caches);
+        p.simulate();
+        caches.detach();
+        assertEquals(3 + 4 * 64, caches.getInstructionCache().getReads());
+        assertEquals(64, caches.getDataCache().getReads());
+        assertEquals(16, caches.getDataCache().getReadMisses());
+        assertEquals(3, caches.getLevels().size());
+    }
+
+    @Test
+    public void testSpecification() {
+        CacheHierarchy unified = CacheHierarchy.parse("l1=32K:64:8:plru:wt:nwa");
+        assertSame(unified.getInstructionCache(), unified.getDataCache());
+        assertEquals(64, unified.getDataCache().getSets());
+        assertThrows(IllegalArgumentException.class, () -> CacheHierarchy.parse("l1=32K:64:3"));
+        assertThrows(IllegalArgumentException.class, () -> CacheHierarchy.parse("l2=32K:64:4"));
+    }
+}
@@ -0,0 +1,101 @@
+package rars.simulator;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import rars.api.Options;
+import rars.api.Program;
+import rars.riscv.hardware.Memory;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HartsTest {
+    // Each hart stores its number plus one and its stack pointer in its own slot, then hart 0
+    // waits for all four and adds up the numbers in a0 while the others idle
+    private static final String SLOTS = ".data\nslots: .word 0, 0, 0, 0\nstacks: .word 0, 0, 0, 0\n.text\n" +
+            "main:\n csrr t0, mhartid\n slli t1, t0, 2\n la t2, slots\n add t2, t2, t1\n addi t3, t0, 1\n" +
+            " sw t3, 0(t2)\n sw sp, 16(t2)\n bnez t0, idle\n la t2, slots\n" +
+            "wait:\n lw a0, 0(t2)\n lw a1, 4(t2)\n lw a2, 8(t2)\n lw a3, 12(t2)\n" +
+            " beqz a1, wait\n beqz a2, wait\n beqz a3, wait\n add a0, a0, a1\n add a0, a0, a2\n add a0, a0, a3\n" +
+            " li a7, 10\n ecall\n" +
+            "idle:\n wfi\n j idle\n";
+
+    @AfterEach
+    void tearDown() {
+        Harts.setActive(null);
+    }
+
+    private Program run(Harts harts, String source) throws Exception {
+        Program p = new Program();
+        p.assembleString(source);
+        p.setup(null, null);
+        Harts.setActive(harts);
+        assertEquals(Simulator.Reason.NORMAL_TERMINATION, p.simulate());
+        return p;
+    }
+
+    @Test
+    public void testSharedMemory() throws Exception {
+        Harts harts = Harts.parse("4");
+        Program p = run(harts, SLOTS);
+        assertEquals(10, p.getRegisterValue("a0"));
+        assertEquals(0, p.getRegisterValue("mhartid"));
+        // Every hart has its own stack
+        int data = Memory.dataBaseAddress;
+        for (int i = 0; i < 4; i++) {
+            assertEquals(i + 1, p.getMemory().getWord(data + 4 * i));
+            assertEquals(Memory.stackPointer - i * 0x10000, p.getMemory().getWord(data + 16 + 4 * i));
+        }
+        // Round robin gives each hart one instruction in turn
+        assertEquals(harts.getInstructions(0), harts.getInstructions(1));
+        assertEquals(harts.getInstructions(), 4 * harts.getInstructions(0));
+    }
+
+    @Test
+    public void testRandomOrderRepeats() throws Exception {
+        Harts first = Harts.parse("4,quantum=3,random=7");
+        assertEquals(10, run(first, SLOTS).getRegisterValue("a0"));
+        long[] counts = new long[4];
+        for (int i = 0; i < 4; i++) {
+            counts[i] = first.getInstructions(i);
+        }
+        assertTrue(counts[0] != counts[1] || counts[1] != counts[2], "harts ran in turn");
+        Harts second = Harts.parse("4,quantum=3,random=7");
+        run(second, SLOTS);
+        for (int i = 0; i < 4; i++) {
+            assertEquals(counts[i], second.getInstructions(i));
+        }
+    }
+
+    @Test
+    public void testStepFocusedHart() throws Exception {
+        Options options = new Options();
+        options.maxSteps = 1;
+        Program p = new Program(options);
+        p.assembleString(SLOTS);
+        p.setup(null, null);
+        Harts harts = new Harts(3);
+        harts.setFocus(1);
+        Harts.setActive(harts);
+        for (int step = 1; step <= 5; step++) {
+            assertEquals(Simulator.Reason.MAX_STEPS, p.simulate());
+            assertEquals(1, harts.getCurrent());
+            assertEquals(step, harts.getInstructions(1));
+            assertEquals(1, p.getRegisterValue("mhartid"));
+        }
+    }
+
+    @Test
+    public void testParse() {
+        Harts harts = Harts.parse("8,quantum=100,random=3,stack=0x1000");
+        assertEquals(8, harts.getCount());
+        assertEquals(100, harts.getQuantum());
+        assertTrue(harts.isRandom());
+        assertEquals(3, harts.getSeed());
+        assertFalse(Harts.parse("2").isRandom());
+        assertThrows(IllegalArgumentException.class, () -> Harts.parse("0"));
+        assertThrows(IllegalArgumentException.class, () -> Harts.parse("many"));
+        assertThrows(IllegalArgumentException.class, () -> Harts.parse("2,quantum=0"));
+        assertThrows(IllegalArgumentException.class, () -> Harts.parse("2,stack=10"));
+        assertThrows(IllegalArgumentException.class, () -> Harts.parse("2,speed=3"));
+    }
+}
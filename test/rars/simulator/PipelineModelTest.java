@@ -0,0 +1,71 @@
+package rars.simulator;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import rars.api.Program;
+import rars.riscv.hardware.Memory;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PipelineModelTest {
+    @AfterEach
+    void tearDown() {
+        PipelineModel.setActive(null);
+    }
+
+    private PipelineModel run(String spec, String source) throws Exception {
+        Program p = new Program();
+        p.assembleString(source);
+        p.setup(null, null);
+        PipelineModel model = PipelineModel.parse(spec);
+        PipelineModel.setActive(model);
+        p.simulate();
+        return model;
+    }
+
+    @Test
+    public void testIndependent() throws Exception {
+        // One instruction completes per cycle once the pipeline has filled
+        PipelineModel model = run("default", " li t0, 1\n li t1, 2\n li t2, 3\n li t3, 4\n");
+        assertEquals(4, model.getInstructions());
+        assertEquals(8, model.getCycles());
+        for (PipelineModel.Stall reason : PipelineModel.Stall.values()) {
+            assertEquals(0, model.getStalls(reason));
+        }
+    }
+
+    @Test
+    public void testHazards() throws Exception {
+        String dependent = " li t0, 1\n addi t1, t0, 1\n";
+        assertEquals(6, run("default", dependent).getCycles());
+        // Without forwarding the value is read after write back
+        PipelineModel model = run("noforward", dependent);
+        assertEquals(8, model.getCycles());
+        assertEquals(2, model.getStalls(PipelineModel.Stall.DATA, Memory.textBaseAddress + 4));
+
+        model = run("default", " lw t0, 0(gp)\n add t1, t0, t0\n");
+        assertEquals(1, model.getStalls(PipelineModel.Stall.LOAD_USE));
+        assertEquals(7, model.getCycles());
+
+        // The second divide waits for the unpipelined divider
+        model = run("div=10", " li t0, 7\n li t1, 2\n div t2, t0, t1\n div t3, t0, t1\n");
+        assertEquals(9, model.getStalls(PipelineModel.Stall.STRUCTURAL));
+    }
+
+    @Test
+    public void testBranches() throws Exception {
+        // Taken seven times; predicted not taken without a branch unit
+        String loop = " li t0, 8\nloop:\n addi t0, t0, -1\n bnez t0, loop\n";
+        assertEquals(7 * 3, run("branch=3", loop).getStalls(PipelineModel.Stall.CONTROL));
+    }
+
+    @Test
+    public void testParse() {
+        PipelineModel model = PipelineModel.parse("noforward,branch=3,div=20");
+        assertFalse(model.forwarding);
+        assertEquals(3, model.branchPenalty);
+        assertEquals(20, model.divLatency);
+        assertThrows(IllegalArgumentException.class, () -> PipelineModel.parse("branch=-1"));
+        assertThrows(IllegalArgumentException.class, () -> PipelineModel.parse("speed=3"));
+    }
+}
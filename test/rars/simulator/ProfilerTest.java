@@ -0,0 +1,76 @@
+package rars.simulator;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import rars.api.Program;
+import rars.riscv.hardware.Memory;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ProfilerTest {
+    private static final String CALLS =
+            "main:\n" +
+            " li s0, 3\n" +            // 0x00
+            "loop:\n" +
+            " jal square\n" +          // 0x04
+            " addi s0, s0, -1\n" +     // 0x08
+            " bnez s0, loop\n" +       // 0x0c
+            " j end\n" +               // 0x10
+            "square:\n" +
+            " mul a0, s0, s0\n" +      // 0x14
+            " ret\n" +                 // 0x18
+            "end:\n";
+
+    @AfterEach
+    void tearDown() {
+        Profiler.setActive(null);
+    }
+
+    private Profiler run(String source) throws Exception {
+        Program p = new Program();
+        p.assembleString(source);
+        p.setup(null, null);
+        Profiler profiler = new Profiler();
+        Profiler.setActive(profiler);
+        p.simulate();
+        return profiler;
+    }
+
+    @Test
+    public void testCounts() throws Exception {
+        Profiler profiler = run(CALLS);
+        int base = Memory.textBaseAddress;
+        assertEquals(1 + 3 * 5 + 1, profiler.getTotal());
+        assertEquals(1, profiler.getCount(base));
+        assertEquals(3, profiler.getCount(base + 0x04));
+        assertEquals(3, profiler.getCount(base + 0x18));
+        assertEquals(1, profiler.getCount(base + 0x10));
+    }
+
+    @Test
+    public void testCallGraph() throws Exception {
+        Profiler profiler = run(CALLS);
+        ByteArrayOutputStream stacks = new ByteArrayOutputStream();
+        profiler.writeCollapsedStacks(new PrintStream(stacks, true));
+        assertEquals("main 11\nmain;square 6\n", stacks.toString().replace("\r", ""));
+
+        List<Profiler.Function> functions = profiler.getFunctions(10);
+        assertEquals("main", functions.get(0).name);
+        assertEquals("square", functions.get(1).name);
+        assertEquals(3, functions.get(1).calls);
+    }
+
+    @Test
+    public void testLoops() throws Exception {
+        Profiler profiler = run(CALLS);
+        List<Profiler.Loop> loops = profiler.getLoops(10);
+        assertEquals(1, loops.size());
+        assertEquals("loop", loops.get(0).head);
+        assertEquals("loop+8", loops.get(0).tail);
+        assertEquals(2, loops.get(0).iterations);
+    }
+}
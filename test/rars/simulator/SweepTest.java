@@ -0,0 +1,110 @@
+package rars.simulator;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import rars.api.Options;
+import rars.api.Program;
+import rars.riscv.InstructionSet;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SweepTest {
+    // Sums an array twice; the inner branch is taken 15 times then falls through
+    private static final String LOOPS =
+            ".data\n" +
+            "a: .space 64\n" +
+            ".text\n" +
+            " li s0, 2\n" +
+            "outer:\n" +
+            " la t0, a\n" +
+            " li t1, 16\n" +
+            "inner:\n" +
+            " lw t2, 0(t0)\n" +
+            " addi t0, t0, 4\n" +
+            " addi t1, t1, -1\n" +
+            " bnez t1, inner\n" +
+            " addi s0, s0, -1\n" +
+            " bnez s0, outer\n" +
+            " nop\n";
+
+    // c.li a0,1; c.beqz a0,+4 (falls through); c.jr ra; c.nop -- run from the data segment
+    private static final String COMPRESSED =
+            ".data\n" +
+            "code: .word 0xc1114505, 0x00018082\n" +
+            ".text\n" +
+            " la t1, code\n" +
+            " jalr ra, t1, 0\n" +
+            " nop\n";
+
+    @AfterEach
+    void tearDown() {
+        TraceRecorder.setActive(null);
+        InstructionSet.rvc = false;
+    }
+
+    private File record(String source) throws Exception {
+        File file = File.createTempFile("sweep", ".trace");
+        file.deleteOnExit();
+        Options options = new Options();
+        options.selfModifyingCode = true;
+        Program p = new Program(options);
+        p.assembleString(source);
+        p.setup(null, null);
+        TraceRecorder trace = TraceRecorder.toFile(file);
+        TraceRecorder.setActive(trace);
+        p.simulate();
+        trace.close();
+        return file;
+    }
+
+    @Test
+    public void testGrid() throws Exception {
+        File trace = record(LOOPS);
+        List<Sweep.Model> models = new ArrayList<>();
+        Sweep.addCaches(models, "64,128:16:1,2:lru,fifo");
+        Sweep.addTables(models, "8:1,2");
+        assertEquals(2 * 2 * 2 * 2 + 2, models.size());
+        Sweep.evaluate(trace, models, 3);
+
+        for (Sweep.Model model : models) {
+            Map<String, Object> row = model.result();
+            if (row.get("model").equals("dcache")) {
+                assertEquals(32L, row.get("events"));
+                // 64 bytes of data fit in every data cache of at least 64 bytes
+                assertEquals(4L, row.get("misses"));
+            } else if (row.get("model").equals("bht")) {
+                assertEquals(2L * 16 + 2, row.get("events"));
+            }
+        }
+        // 1 bit history, initially not taken: misses the first and last of each inner loop, and the outer loop twice
+        Map<String, Object> bht = models.get(models.size() - 2).result();
+        assertEquals(1, bht.get("history"));
+        assertEquals(6L, bht.get("misses"));
+
+        ByteArrayOutputStream csv = new ByteArrayOutputStream();
+        Sweep.writeCsv(new PrintStream(csv, true), models);
+        String[] lines = csv.toString().split("\\R");
+        assertEquals(models.size() + 1, lines.length);
+        assertTrue(lines[0].startsWith("model,size,block"));
+    }
+
+    @Test
+    public void testCompressedFallThrough() throws Exception {
+        InstructionSet.rvc = true;
+        File trace = record(COMPRESSED);
+        List<Sweep.Model> models = new ArrayList<>();
+        Sweep.addTables(models, "1:1");
+        Sweep.evaluate(trace, models, 1);
+        // The branch falls through to the next halfword, which a not-taken prediction gets right
+        Map<String, Object> bht = models.get(0).result();
+        assertEquals(1L, bht.get("events"));
+        assertEquals(0L, bht.get("misses"));
+    }
+}
@@ -0,0 +1,110 @@
+package rars.simulator;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import rars.Globals;
+import rars.api.Options;
+import rars.api.Program;
+import rars.riscv.hardware.Memory;
+import rars.riscv.hardware.RegisterFile;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TimeTravelTest {
+    // Three instructions per iteration, so after 3n instructions a0 == n
+    private static final String LOOP = "loop:\n addi a0, a0, 1\n sw a0, 0(a1)\n blt a0, a2, loop";
+
+    @AfterEach
+    void tearDown() {
+        TimeTravel.setActive(null);
+        Globals.program = null;
+        Globals.memory = null;
+    }
+
+    private Program setup(String source) throws Exception {
+        Options opt = new Options();
+        opt.checkpointInterval = 10;
+        Program p = new Program(opt);
+        p.assembleString(source);
+        p.setup(null, null);
+        p.setRegisterValue("a1", Memory.dataBaseAddress);
+        p.setRegisterValue("a2", 50);
+        Globals.program = p.getCode(); // Shouldn't have to do this...
+        return p;
+    }
+
+    @Test
+    public void testSeek() throws Exception {
+        Program p = setup(LOOP);
+        p.simulate();
+        assertEquals(50, p.getRegisterValue("a0"));
+
+        assertEquals(Simulator.Reason.MAX_STEPS, p.seek(30));
+        assertEquals(30, p.getTimeTravel().getPosition());
+        assertEquals(10, p.getRegisterValue("a0"));
+        assertEquals(10, p.getMemory().getWord(Memory.dataBaseAddress));
+
+        p.seek(91);
+        assertEquals(31, p.getRegisterValue("a0"));
+        assertEquals(30, p.getMemory().getWord(Memory.dataBaseAddress));
+
+        p.seek(0);
+        assertEquals(0, p.getRegisterValue("a0"));
+        assertEquals(Memory.textBaseAddress, RegisterFile.getProgramCounter());
+    }
+
+    @Test
+    public void testBackStepAndSeek() throws Exception {
+        Program p = setup(LOOP);
+        p.simulate();
+        p.seek(35);
+        Memory.swapInstance(p.getMemory()); // Backstepping outside Program works on the global memory
+        BackStepper backStepper = p.getCode().getBackStepper();
+        backStepper.backStep();
+        backStepper.backStep();
+        assertEquals(33, p.getTimeTravel().getPosition());
+        assertEquals(11, p.getRegisterValue("a0"));
+        assertEquals(11, p.getMemory().getWord(Memory.dataBaseAddress));
+        assertEquals(Memory.textBaseAddress, RegisterFile.getProgramCounter());
+
+        p.seek(35);
+        assertEquals(12, p.getRegisterValue("a0"));
+        assertEquals(12, p.getMemory().getWord(Memory.dataBaseAddress));
+        backStepper.backStep();
+        assertEquals(34, p.getTimeTravel().getPosition());
+        assertEquals(11, p.getMemory().getWord(Memory.dataBaseAddress));
+        p.seek(30);
+        backStepper.backStep();
+        assertEquals(29, p.getTimeTravel().getPosition());
+        assertEquals(10, p.getRegisterValue("a0"));
+        assertEquals(10, p.getMemory().getWord(Memory.dataBaseAddress));
+        assertEquals(Memory.textBaseAddress + 8, RegisterFile.getProgramCounter());
+    }
+
+    @Test
+    public void testReverseContinue() throws Exception {
+        Program p = setup(LOOP);
+        p.simulate();
+        p.seek(91);
+
+        assertEquals(Simulator.Reason.BREAKPOINT, p.reverseContinue(new int[]{Memory.textBaseAddress}));
+        assertEquals(90, p.getTimeTravel().getPosition());
+        assertEquals(Memory.textBaseAddress, RegisterFile.getProgramCounter());
+        assertEquals(Simulator.Reason.BREAKPOINT, p.reverseContinue(new int[]{Memory.textBaseAddress}));
+        assertEquals(87, p.getTimeTravel().getPosition());
+        assertEquals(29, p.getRegisterValue("a0"));
+    }
+
+    @Test
+    public void testReplayInput() throws Exception {
+        Program p = setup("li a7, 41\n ecall\n mv t0, a0\n ecall\n mv t1, a0");
+        p.simulate();
+        int first = p.getRegisterValue("t0"), second = p.getRegisterValue("t1");
+
+        p.seek(3);
+        assertEquals(first, p.getRegisterValue("a0"));
+        p.seek(5);
+        assertEquals(first, p.getRegisterValue("t0"));
+        assertEquals(second, p.getRegisterValue("t1"));
+    }
+}
@@ -0,0 +1,113 @@
+package rars.simulator;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import rars.api.Program;
+import rars.riscv.hardware.Memory;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TraceRecorderTest {
+    private static final String STORES =
+            ".data\n" +
+            "words: .word 0, 0, 0, 0\n" +
+            ".text\n" +
+            " la t0, words\n" +        // 0x00, 0x04
+            " li t1, 4\n" +            // 0x08
+            "loop:\n" +
+            " sw t1, 0(t0)\n" +        // 0x0c
+            " lw t2, 0(t0)\n" +        // 0x10
+            " addi t0, t0, 4\n" +      // 0x14
+            " addi t1, t1, -1\n" +     // 0x18
+            " bnez t1, loop\n";        // 0x1c
+
+    @AfterEach
+    void tearDown() {
+        TraceRecorder.setActive(null);
+    }
+
+    private void run(TraceRecorder trace) throws Exception {
+        Program p = new Program();
+        p.assembleString(STORES);
+        p.setup(null, null);
+        TraceRecorder.setActive(trace);
+        p.simulate();
+        TraceRecorder.setActive(null);
+    }
+
+    @Test
+    public void testRecords() throws Exception {
+        File file = File.createTempFile("trace", ".bin");
+        file.deleteOnExit();
+        TraceRecorder trace = TraceRecorder.toFile(file);
+        run(trace);
+        trace.close();
+        assertEquals(3 + 4 * 5, trace.getCount());
+        assertEquals(TraceRecorder.HEADER_BYTES + trace.getCount() * TraceRecorder.RECORD_BYTES, file.length());
+
+        int base = Memory.textBaseAddress;
+        int records = 0, stores = 0, loads = 0;
+        try (TraceReader reader = new TraceReader(file)) {
+            while (reader.next()) {
+                records++;
+                if (reader.getProgramCounter() == base + 0x0c) {
+                    stores++;
+                    assertTrue(reader.isWrite());
+                    assertEquals(4, reader.getLength());
+                    assertEquals(4, reader.getInstructionLength());
+                    assertEquals(Memory.dataBaseAddress + 4 * (stores - 1), reader.getAddress());
+                    assertEquals(5 - stores, reader.getValue());
+                    assertFalse(reader.hasRegisterWrite());
+                } else if (reader.getProgramCounter() == base + 0x10) {
+                    loads++;
+                    assertTrue(reader.isRead());
+                    assertEquals(7, reader.getRegister());
+                    assertEquals(5 - loads, reader.getRegisterValue());
+                } else if (reader.getProgramCounter() == base + 0x1c) {
+                    assertEquals(0, reader.getFlags());
+                }
+            }
+        }
+        assertEquals(trace.getCount(), records);
+        assertEquals(4, stores);
+        assertEquals(4, loads);
+    }
+
+    @Test
+    public void testCompressed() throws Exception {
+        File file = File.createTempFile("trace", ".bin.gz");
+        file.deleteOnExit();
+        TraceRecorder trace = TraceRecorder.toFile(file);
+        run(trace);
+        trace.close();
+        int records = 0;
+        try (TraceReader reader = new TraceReader(file)) {
+            while (reader.next()) records++;
+        }
+        assertEquals(trace.getCount(), records);
+    }
+
+    @Test
+    public void testRingKeepsMostRecent() throws Exception {
+        TraceRecorder trace = TraceRecorder.toRing(3);
+        run(trace);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        trace.writeRing(out);
+        trace.close();
+        int base = Memory.textBaseAddress;
+        try (TraceReader reader = new TraceReader(new ByteArrayInputStream(out.toByteArray()))) {
+            assertTrue(reader.next());
+            assertEquals(base + 0x14, reader.getProgramCounter());
+            assertTrue(reader.next());
+            assertEquals(base + 0x18, reader.getProgramCounter());
+            assertEquals(0, reader.getRegisterValue());
+            assertTrue(reader.next());
+            assertEquals(base + 0x1c, reader.getProgramCounter());
+            assertFalse(reader.next());
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package rars.simulator;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import rars.api.Program;
+import rars.riscv.hardware.AccessNotice;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class VirtualClockTest {
+    // Arms timecmp for tick 5 and spins until the handler sets a0, recording instret there in a3
+    private static final String TIMER = ".text\n" +
+            "main:\n la t0, handler\n csrw t0, utvec\n li t0, 0x10\n csrs t0, uie\n csrsi ustatus, 1\n" +
+            " li t1, 0xFFFF0020\n li t2, 5\n sw zero, 4(t1)\n sw t2, 0(t1)\n li a0, 0\n" +
+            "loop:\n beqz a0, loop\n csrr a1, time\n li t1, 0xFFFF0018\n lw a2, 0(t1)\n li a7, 10\n ecall\n" +
+            "handler:\n li a0, 1\n csrr a3, instret\n uret\n";
+
+    @AfterEach
+    void tearDown() {
+        VirtualClock.setActive(null);
+    }
+
+    private Program run(String spec) throws Exception {
+        Program p = new Program();
+        p.assembleString(TIMER);
+        p.setup(null, null);
+        VirtualClock.setActive(VirtualClock.parse(spec));
+        assertEquals(Simulator.Reason.NORMAL_TERMINATION, p.simulate());
+        return p;
+    }
+
+    @Test
+    public void testTimerInterrupt() throws Exception {
+        Program p = run("10");
+        assertEquals(1, p.getRegisterValue("a0"));
+        assertEquals(5, p.getRegisterValue("a1"));
+        assertEquals(5, p.getRegisterValue("a2"));
+        // Taken as soon as the 50th instruction has executed, and the same every run
+        int taken = p.getRegisterValue("a3");
+        assertTrue(taken >= 50 && taken < 55, "interrupt taken at " + taken);
+        assertEquals(taken, run("10").getRegisterValue("a3"));
+    }
+
+    @Test
+    public void testTimeIsNotAProgramAccess() throws Exception {
+        Program p = new Program();
+        p.assembleString(TIMER);
+        p.setup(null, null);
+        int[] writes = {0};
+        p.getMemory().addObserver((o, notice) -> {
+            if (((AccessNotice) notice).getAccessType() == AccessNotice.WRITE) writes[0]++;
+        }, VirtualClock.getTimeAddress(), VirtualClock.getTimeAddress() + 4);
+        VirtualClock.setActive(VirtualClock.parse("10"));
+        assertEquals(Simulator.Reason.NORMAL_TERMINATION, p.simulate());
+        assertEquals(5, p.getRegisterValue("a2"));
+        assertEquals(0, writes[0]);
+    }
+
+    @Test
+    public void testParse() {
+        assertEquals(1000, VirtualClock.parse("1000").getInstructionsPerTick());
+        assertEquals(10000, VirtualClock.parse("10MHz").getInstructionsPerTick());
+        assertEquals(50, VirtualClock.parse("50khz").getInstructionsPerTick());
+        assertThrows(IllegalArgumentException.class, () -> VirtualClock.parse("0"));
+        assertThrows(IllegalArgumentException.class, () -> VirtualClock.parse("fast"));
+    }
+}
@@ -0,0 +1,41 @@
+package rars.tools;
+
+import org.junit.jupiter.api.Test;
+import rars.api.Program;
+import rars.riscv.hardware.Memory;
+
+import java.awt.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FramebufferTest {
+    @Test
+    public void testDirtyRectangle() {
+        int base = Memory.dataBaseAddress;
+        Framebuffer frame = new Framebuffer(base, 8, 4);
+        Memory memory = new Program().getMemory();
+        assertNull(frame.refresh(memory));
+        frame.markDirty(base + 4 * (8 + 2), 4);  // row 1, column 2
+        frame.markDirty(base + 4 * (16 + 5), 1); // row 2, column 5
+        frame.markDirty(base - 4, 4);            // outside the display
+        assertEquals(new Rectangle(2, 1, 4, 2), frame.refresh(memory));
+        assertNull(frame.refresh(memory));
+        // A doubleword store spanning two rows dirties both whole rows
+        frame.markDirty(base + 4 * 7, 8);
+        assertEquals(new Rectangle(0, 0, 8, 2), frame.refresh(memory));
+    }
+
+    @Test
+    public void testRefreshReadsMemory() throws Exception {
+        Program p = new Program();
+        p.assembleString(".data\n.word 0x00ff0000, 0x0000ff00\n.space 52\n.word 0x123456\n");
+        p.setup(null, null);
+        Framebuffer frame = Framebuffer.parse("4x4");
+        frame.markAllDirty();
+        frame.refresh(p.getMemory());
+        assertEquals(0xff0000, frame.getImage().getRGB(0, 0) & 0xffffff);
+        assertEquals(0x00ff00, frame.getImage().getRGB(1, 0) & 0xffffff);
+        assertEquals(0, frame.getImage().getRGB(2, 0) & 0xffffff);
+        assertEquals(0x123456, frame.getImage().getRGB(3, 3) & 0xffffff);
+    }
+}
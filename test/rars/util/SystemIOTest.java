@@ -0,0 +1,94 @@
+package rars.util;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SystemIOTest {
+    @BeforeEach
+    void setUp() {
+        SystemIO.resetFiles();
+    }
+
+    @AfterEach
+    void tearDown() {
+        SystemIO.resetFiles();
+        SystemIO.setMaxFiles(SystemIO.SYSCALL_MAXFILES);
+        SystemIO.setMapSize(SystemIO.SYSCALL_MAPSIZE);
+    }
+
+    private static byte[] bytes(String s) {
+        return s.getBytes(StandardCharsets.US_ASCII);
+    }
+
+    @Test
+    public void testReadWriteAndSeek() throws Exception {
+        File file = File.createTempFile("rars", ".txt");
+        file.deleteOnExit();
+        String name = file.getAbsolutePath();
+        int fd = SystemIO.openFile(name, 2);
+        assertEquals(3, fd);
+        assertEquals(11, SystemIO.writeToFile(fd, bytes("hello world"), 11));
+        assertEquals(6, SystemIO.seek(fd, 6, 0));
+        byte[] buffer = new byte[16];
+        assertEquals(5, SystemIO.readFromFile(fd, buffer, 16));
+        assertEquals("world", new String(buffer, 0, 5, StandardCharsets.US_ASCII));
+        assertEquals(0, SystemIO.readFromFile(fd, buffer, 16));
+        assertEquals(0, SystemIO.seek(fd, -11, 2));
+        assertEquals(5, SystemIO.writeToFile(fd, bytes("HELLO"), 5));
+        assertEquals(5, SystemIO.seek(fd, 0, 1));
+        SystemIO.closeFile(fd);
+        assertEquals("HELLO world", new String(Files.readAllBytes(file.toPath()), StandardCharsets.US_ASCII));
+
+        // Appending writes at the end whatever the position
+        fd = SystemIO.openFile(name, 2 | 8);
+        assertEquals(0, SystemIO.seek(fd, 0, 0));
+        SystemIO.writeToFile(fd, bytes("!"), 1);
+        assertEquals(12, SystemIO.seek(fd, 0, 1));
+        SystemIO.closeFile(fd);
+        // Standard output cannot seek
+        assertEquals(-1, SystemIO.seek(1, 0, 0));
+    }
+
+    @Test
+    public void testMappedRead() throws Exception {
+        File file = File.createTempFile("rars", ".bin");
+        file.deleteOnExit();
+        byte[] contents = new byte[10000];
+        for (int i = 0; i < contents.length; i++) {
+            contents[i] = (byte) i;
+        }
+        Files.write(file.toPath(), contents);
+        SystemIO.setMapSize(1000);
+        int fd = SystemIO.openFile(file.getAbsolutePath(), 0);
+        assertEquals(9990, SystemIO.seek(fd, -10, 2));
+        byte[] buffer = new byte[64];
+        assertEquals(10, SystemIO.readFromFile(fd, buffer, 64));
+        assertEquals((byte) 9990, buffer[0]);
+        assertEquals(0, SystemIO.readFromFile(fd, buffer, 64));
+        // A read-only descriptor cannot be written
+        assertEquals(-1, SystemIO.writeToFile(fd, buffer, 1));
+    }
+
+    @Test
+    public void testDescriptorLimit() throws Exception {
+        SystemIO.setMaxFiles(40);
+        File dir = Files.createTempDirectory("rars").toFile();
+        dir.deleteOnExit();
+        int fd = -1;
+        for (int i = 0; i < 37; i++) {
+            File file = new File(dir, "f" + i);
+            file.deleteOnExit();
+            fd = SystemIO.openFile(file.getAbsolutePath(), 1);
+        }
+        assertEquals(39, fd);
+        assertEquals(-1, SystemIO.openFile(new File(dir, "over").getAbsolutePath(), 1));
+        assertThrows(IllegalArgumentException.class, () -> SystemIO.setMaxFiles(2));
+    }
+}
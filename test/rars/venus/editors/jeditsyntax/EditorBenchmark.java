@@ -0,0 +1,88 @@
+package rars.venus.editors.jeditsyntax;
+
+import rars.Globals;
+import rars.venus.editors.jeditsyntax.tokenmarker.RISCVTokenMarker;
+
+import javax.swing.*;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+
+/**
+ * Measures how long the editor takes to paint a screen of a large generated program and to
+ * take a keystroke (an insertion followed by a repaint).  Not a unit test; run it with
+ * {@code java rars.venus.editors.jeditsyntax.EditorBenchmark [lines]}.  Everything runs on
+ * the event dispatch thread, as in the editor.
+ */
+public class EditorBenchmark {
+    private static final int REPEATS = 200;
+
+    public static void main(String[] args) throws Exception {
+        int lines = args.length > 0 ? Integer.parseInt(args[0]) : 50_000;
+        Globals.initialize();
+        SwingUtilities.invokeAndWait(() -> run(lines));
+        System.exit(0);
+    }
+
+    private static void run(int lines) {
+        JEditTextArea area = new JEditTextArea(TextAreaDefaults.getDefaults(), new JLabel());
+        area.getPainter().setFont(new Font("Monospaced", Font.PLAIN, 12));
+        area.setTokenMarker(new RISCVTokenMarker());
+        area.setSize(800, 600);
+        area.doLayout();
+        area.getPainter().setSize(800, 600);
+        area.recalculateVisibleLines();
+
+        long start = System.nanoTime();
+        area.setText(generate(lines));
+        report("load " + lines + " lines", System.nanoTime() - start, 1);
+
+        BufferedImage image = new BufferedImage(800, 600, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = image.createGraphics();
+        g.setClip(0, 0, 800, 600);
+
+        start = System.nanoTime();
+        for (int i = 0; i < REPEATS; i++) {
+            area.setFirstLine((int) ((long) i * (lines - 100) / REPEATS));
+            area.getPainter().paint(g);
+        }
+        report("paint, scrolling", System.nanoTime() - start, REPEATS);
+
+        area.setFirstLine(lines / 2);
+        start = System.nanoTime();
+        for (int i = 0; i < REPEATS; i++) {
+            area.getPainter().paint(g);
+        }
+        report("paint, same screen", System.nanoTime() - start, REPEATS);
+
+        int offset = area.getLineStartOffset(lines / 2 + 10) + 4;
+        start = System.nanoTime();
+        for (int i = 0; i < REPEATS; i++) {
+            area.select(offset, offset);
+            area.setSelectedText("x");
+            area.getPainter().paint(g);
+            area.select(offset, offset + 1);
+            area.setSelectedText("");
+            area.getPainter().paint(g);
+        }
+        report("keystroke and paint", System.nanoTime() - start, 2 * REPEATS);
+    }
+
+    private static String generate(int lines) {
+        StringBuilder text = new StringBuilder(lines * 32);
+        text.append(".data\nmessage: .asciz \"hello # not a comment\"\n.eqv SIZE 64\n.text\n");
+        for (int i = 4; i < lines; i++) {
+            if (i % 16 == 4) {
+                text.append("loop").append(i).append(":\n");
+            } else if (i % 16 == 5) {
+                text.append("    beqz t0, loop").append(i + 15).append("   # forward reference\n");
+            } else {
+                text.append("    addi t").append(i % 7).append(", t").append((i + 1) % 7).append(", SIZE\n");
+            }
+        }
+        return text.toString();
+    }
+
+    private static void report(String what, long nanos, int count) {
+        System.out.printf("%-24s %10.1f us%n", what, nanos / 1000.0 / count);
+    }
+}